@@ -0,0 +1,97 @@
+package johnston.demo.benchmark;
+
+import johnston.hashmap.CollisionPolicy;
+import johnston.hashmap.MyHashMap;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.ThreadSafePolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare loading 1M pairs into a new hash map by looping over put() against one putAll(),
+ * for each policy with locks. The loaders run on one thread, then on LOADER_COUNT threads
+ * each loading its own keys into the same hash map, where put() pays for the lock on every
+ * pair and putAll() only once per lock.
+ * <p>
+ * Each number is the best of ROUNDS runs in milliseconds.
+ */
+public class BulkLoadBenchmark {
+  private static final int PAIR_COUNT = 1 << 20;
+  private static final int LOADER_COUNT = 4;
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) throws InterruptedException {
+    List<Integer> keys = new ArrayList<>(PAIR_COUNT);
+    for (int i = 0; i < PAIR_COUNT; i++) {
+      keys.add(i);
+    }
+
+    System.out.println(String.format("%-36s%12s%12s%12s%12s", "Hash map", "put()",
+        "putAll()", LOADER_COUNT + "x put()", LOADER_COUNT + "x putAll()"));
+    for (ThreadSafePolicy policy : new ThreadSafePolicy[] {ThreadSafePolicy.SyncKeyword,
+        ThreadSafePolicy.ReadWriteLock, ThreadSafePolicy.OptimisticRead,
+        ThreadSafePolicy.Striped}) {
+      report(policy.toString(), () -> MyHashMapFactory.newMyHashMap(policy), keys);
+    }
+    report("ReadWriteLock LinearProbing", () -> MyHashMapFactory.newMyHashMap(
+        ThreadSafePolicy.ReadWriteLock, CollisionPolicy.LinearProbing), keys);
+  }
+
+  private interface MapSupplier {
+    MyHashMap<Integer, Integer> get();
+  }
+
+  private static void report(String name, MapSupplier supplier, List<Integer> keys)
+      throws InterruptedException {
+    System.out.println(String.format("%-36s%12d%12d%12d%12d", name,
+        best(supplier, keys, 1, false), best(supplier, keys, 1, true),
+        best(supplier, keys, LOADER_COUNT, false), best(supplier, keys, LOADER_COUNT, true)));
+  }
+
+  private static long best(MapSupplier supplier, List<Integer> keys, int loaderCount,
+                           boolean bulk) throws InterruptedException {
+    long result = Long.MAX_VALUE;
+
+    for (int round = 0; round < ROUNDS; round++) {
+      MyHashMap<Integer, Integer> hashMap = supplier.get();
+      List<Thread> loaders = new ArrayList<>();
+      int share = keys.size() / loaderCount;
+
+      for (int t = 0; t < loaderCount; t++) {
+        List<Integer> ownKeys = keys.subList(t * share, (t + 1) * share);
+        loaders.add(new Thread(() -> load(hashMap, ownKeys, bulk)));
+      }
+
+      long start = System.nanoTime();
+      for (Thread loader : loaders) {
+        loader.start();
+      }
+      for (Thread loader : loaders) {
+        loader.join();
+      }
+      result = Math.min(result, (System.nanoTime() - start) / 1_000_000);
+
+      if (hashMap.size() != keys.size()) {
+        throw new IllegalStateException(name(hashMap) + " lost pairs.");
+      }
+    }
+    return result;
+  }
+
+  private static void load(MyHashMap<Integer, Integer> hashMap, List<Integer> keys,
+                           boolean bulk) {
+    if (bulk) {
+      hashMap.putAll(keys, keys);
+      return;
+    }
+
+    for (Integer key : keys) {
+      hashMap.put(key, key);
+    }
+  }
+
+  private static String name(MyHashMap<Integer, Integer> hashMap) {
+    return hashMap.getClass().getSimpleName();
+  }
+}
@@ -0,0 +1,114 @@
+package johnston.demo.benchmark;
+
+import johnston.hashmap.EvictionPolicy;
+import johnston.hashmap.MyHashMapCacheImpl;
+import johnston.hashmap.MyHashMapFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Trace-driven hit rate simulator of the cache eviction policies. Each trace is replayed on
+ * one thread: get() the key, and put() it on a miss. The hit rate of each policy is printed
+ * for each maximum size.
+ * <p>
+ * Traces are text files with one request per line, the first token being the key as a long,
+ * given as arguments. Without arguments, synthetic traces are generated:
+ * -> zipf: KEY_COUNT keys by Zipf distribution with ZIPF_EXPONENT, few hot keys.
+ * -> zipf+scan: the same, with a scan of SCAN_LENGTH one-off keys every SCAN_INTERVAL
+ *    requests, the pattern that flushes the hot keys out of LRU.
+ * -> loop: LOOP_LENGTH keys requested in order again and again. Larger than the cache, so
+ *    LRU always evicts the key requested next.
+ */
+public class CacheSimulator {
+  private static final int[] MAXIMUM_SIZES = {1000, 10000};
+  private static final int REQUEST_COUNT = 1 << 21;
+  private static final int KEY_COUNT = 1 << 17;
+  private static final double ZIPF_EXPONENT = 0.9;
+  private static final int SCAN_INTERVAL = 1 << 14;
+  private static final int SCAN_LENGTH = 1 << 13;
+  private static final int LOOP_LENGTH = 12000;
+
+  public static void main(String[] args) throws IOException {
+    Map<String, long[]> traces = new LinkedHashMap<>();
+    if (args.length == 0) {
+      traces.put("zipf", zipf(false));
+      traces.put("zipf+scan", zipf(true));
+      traces.put("loop", loop());
+    }
+    for (String file : args) {
+      traces.put(Paths.get(file).getFileName().toString(), read(file));
+    }
+
+    System.out.println(String.format("%-24s%12s%12s%12s", "Trace", "Size", "LRU", "WTinyLFU"));
+    for (Map.Entry<String, long[]> trace : traces.entrySet()) {
+      for (int maximumSize : MAXIMUM_SIZES) {
+        System.out.println(String.format("%-24s%12d%11.2f%%%11.2f%%", trace.getKey(),
+            maximumSize, hitRate(trace.getValue(), maximumSize, EvictionPolicy.LRU),
+            hitRate(trace.getValue(), maximumSize, EvictionPolicy.WTinyLFU)));
+      }
+    }
+  }
+
+  private static double hitRate(long[] trace, int maximumSize, EvictionPolicy policy) {
+    MyHashMapCacheImpl<Long, Long> cache =
+        MyHashMapFactory.newBoundedMyHashMap(maximumSize, policy);
+
+    for (long key : trace) {
+      if (cache.get(key) == null) {
+        cache.put(key, key);
+      }
+    }
+    return 100.0 * cache.getHitCount() / trace.length;
+  }
+
+  /**
+   * Zipf keys by inverse transform sampling: binary search of a uniform number in the
+   * cumulative distribution. Keys are shuffled, so hot keys don't share hash bits.
+   */
+  private static long[] zipf(boolean scan) {
+    double[] cumulative = new double[KEY_COUNT];
+    double sum = 0;
+    for (int rank = 0; rank < KEY_COUNT; rank++) {
+      sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+      cumulative[rank] = sum;
+    }
+
+    Random random = new Random(42);
+    long[] keys = random.longs(KEY_COUNT).toArray();
+    long[] result = new long[REQUEST_COUNT];
+    long scanKey = 0;
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      if (scan && i % SCAN_INTERVAL >= SCAN_INTERVAL - SCAN_LENGTH) {
+        result[i] = -(++scanKey); // Never requested again
+        continue;
+      }
+      int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      result[i] = keys[rank >= 0 ? rank : -rank - 1];
+    }
+    return result;
+  }
+
+  private static long[] loop() {
+    long[] result = new long[REQUEST_COUNT];
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      result[i] = i % LOOP_LENGTH;
+    }
+    return result;
+  }
+
+  private static long[] read(String file) throws IOException {
+    try (Stream<String> lines = Files.lines(Paths.get(file))) {
+      return lines.map(String::trim)
+          .filter(line -> !line.isEmpty())
+          .mapToLong(line -> Long.parseLong(line.split("\\s+")[0]))
+          .toArray();
+    }
+  }
+}
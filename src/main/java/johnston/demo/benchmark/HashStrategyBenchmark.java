@@ -0,0 +1,97 @@
+package johnston.demo.benchmark;
+
+import johnston.hashmap.HashStrategy;
+import johnston.hashmap.MyHashMap;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.ThreadSafePolicy;
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+
+/**
+ * Compare the hash strategies by ops/sec and bytes allocated per op, on the hash function
+ * alone and on get() of a NoSync hash map. The old hash, MurmurHash3 of the BigInteger bytes
+ * of key.hashCode(), is included as the baseline.
+ * <p>
+ * Bytes per op come from com.sun.management.ThreadMXBean, so it needs a HotSpot JVM.
+ */
+public class HashStrategyBenchmark {
+  private static final int KEY_COUNT = 1 << 16;
+  private static final int ROUNDS = 200;
+  private static final int WARM_UP_ROUNDS = 50;
+
+  private static final String[] NAMES = {"BigInteger + MurmurHash3 (old)", "IDENTITY",
+      "MURMUR3", "seeded", "XXHASH"};
+  private static final HashStrategy[] STRATEGIES = {
+      h -> MurmurHash3.hash32(BigInteger.valueOf(h).toByteArray()),
+      HashStrategy.IDENTITY,
+      HashStrategy.MURMUR3,
+      HashStrategy.seeded(0x5EED),
+      HashStrategy.XXHASH};
+
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private static int sink; // Static field, so the JIT can't drop the measured work
+
+  public static void main(String[] args) {
+    Integer[] keys = new Integer[KEY_COUNT];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      keys[i] = i * 31;
+    }
+
+    System.out.println(String.format("%-32s%18s%12s%18s%12s", "Strategy", "hash ops/sec",
+        "B/op", "get() ops/sec", "B/op"));
+
+    for (int i = 0; i < STRATEGIES.length; i++) {
+      HashStrategy strategy = STRATEGIES[i];
+      MyHashMap<Integer, Integer> hashMap =
+          MyHashMapFactory.newMyHashMap(ThreadSafePolicy.NoSync, strategy);
+      for (Integer key : keys) {
+        hashMap.put(key, key);
+      }
+
+      hashRounds(strategy, keys, WARM_UP_ROUNDS);
+      getRounds(hashMap, keys, WARM_UP_ROUNDS);
+
+      double[] hashResult = measure(() -> hashRounds(strategy, keys, ROUNDS));
+      double[] getResult = measure(() -> getRounds(hashMap, keys, ROUNDS));
+      System.out.println(String.format("%-32s%18.0f%12.1f%18.0f%12.1f", NAMES[i],
+          hashResult[0], hashResult[1], getResult[0], getResult[1]));
+    }
+  }
+
+  private static void hashRounds(HashStrategy strategy, Integer[] keys, int rounds) {
+    for (int round = 0; round < rounds; round++) {
+      for (Integer key : keys) {
+        sink += strategy.hash(key);
+      }
+    }
+  }
+
+  private static void getRounds(MyHashMap<Integer, Integer> hashMap, Integer[] keys,
+                                int rounds) {
+    for (int round = 0; round < rounds; round++) {
+      for (Integer key : keys) {
+        sink += hashMap.get(key);
+      }
+    }
+  }
+
+  /**
+   * Run the given work and return {ops/sec, bytes allocated per op}.
+   */
+  private static double[] measure(Runnable work) {
+    long threadId = Thread.currentThread().getId();
+    long ops = (long) KEY_COUNT * ROUNDS;
+
+    long bytesBefore = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+    work.run();
+    long nanos = System.nanoTime() - start;
+    long bytes = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+    return new double[] {ops * 1e9 / nanos, bytes * 1.0 / ops};
+  }
+}
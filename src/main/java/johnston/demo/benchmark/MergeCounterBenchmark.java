@@ -0,0 +1,89 @@
+package johnston.demo.benchmark;
+
+import johnston.hashmap.MyHashMap;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.ThreadSafePolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare counting keys by get() then put() against one merge(), for each thread-safe policy.
+ * COUNTER_COUNT threads each add 1 to KEY_COUNT counters INCREMENTS times in total.
+ * <p>
+ * get() then put() takes the lock twice and loses counts when two threads read the same old
+ * value. merge() takes the lock once and loses nothing. Each time is the best of ROUNDS runs
+ * in milliseconds, followed by the number of lost counts.
+ */
+public class MergeCounterBenchmark {
+  private static final int INCREMENTS = 1 << 21;
+  private static final int KEY_COUNT = 1 << 10;
+  private static final int COUNTER_COUNT = 4;
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) throws InterruptedException {
+    System.out.println(String.format("%-20s%12s%12s%12s%12s", "Hash map", "get+put()",
+        "lost", "merge()", "lost"));
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      if (policy == ThreadSafePolicy.NoSync) {
+        continue;
+      }
+      long[] getPut = best(policy, false);
+      long[] merge = best(policy, true);
+      System.out.println(String.format("%-20s%12d%12d%12d%12d", policy, getPut[0], getPut[1],
+          merge[0], merge[1]));
+    }
+  }
+
+  /**
+   * Return the best time and the lost counts of that run.
+   */
+  private static long[] best(ThreadSafePolicy policy, boolean atomic)
+      throws InterruptedException {
+    long[] result = {Long.MAX_VALUE, 0};
+
+    for (int round = 0; round < ROUNDS; round++) {
+      MyHashMap<Integer, Integer> hashMap = MyHashMapFactory.newMyHashMap(policy);
+      List<Thread> counters = new ArrayList<>();
+      for (int t = 0; t < COUNTER_COUNT; t++) {
+        counters.add(new Thread(() -> count(hashMap, atomic)));
+      }
+
+      long start = System.nanoTime();
+      for (Thread counter : counters) {
+        counter.start();
+      }
+      for (Thread counter : counters) {
+        counter.join();
+      }
+      long time = (System.nanoTime() - start) / 1_000_000;
+
+      if (time < result[0]) {
+        result[0] = time;
+        result[1] = INCREMENTS - total(hashMap);
+      }
+    }
+    return result;
+  }
+
+  private static void count(MyHashMap<Integer, Integer> hashMap, boolean atomic) {
+    for (int i = 0; i < INCREMENTS / COUNTER_COUNT; i++) {
+      Integer key = i & (KEY_COUNT - 1);
+      if (atomic) {
+        hashMap.merge(key, 1, Integer::sum);
+      } else {
+        Integer old = hashMap.get(key);
+        hashMap.put(key, old == null ? 1 : old + 1);
+      }
+    }
+  }
+
+  private static long total(MyHashMap<Integer, Integer> hashMap) {
+    long result = 0;
+    for (int key = 0; key < KEY_COUNT; key++) {
+      Integer count = hashMap.get(key);
+      result += count == null ? 0 : count;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,112 @@
+package johnston.demo.benchmark;
+
+import johnston.hashmap.CollisionPolicy;
+import johnston.hashmap.IntIntMap;
+import johnston.hashmap.LongLongMap;
+import johnston.hashmap.LongObjectMap;
+import johnston.hashmap.MyHashMap;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.ThreadSafePolicy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.function.Supplier;
+
+/**
+ * Report the retained heap bytes per entry of the primitive hash maps against the generic
+ * ones holding the same int -> int, long -> long and long -> Object entries. The generic maps
+ * pay for boxed keys and values, MapPair and list nodes.
+ * <p>
+ * Retained bytes are the heap used after GC with the map alive, minus the heap used after
+ * GC once the map is dropped. All long -> Object entries share one value, so values are not
+ * counted. Run it with -XX:+UseSerialGC for stable numbers.
+ */
+public class PrimitiveMapFootprint {
+  private static final int ENTRY_COUNT = 1 << 20;
+  private static final Object VALUE = new Object();
+
+  private static final MemoryMXBean MEMORY_MX_BEAN = ManagementFactory.getMemoryMXBean();
+
+  private static Object holder; // Keeps the measured map alive
+
+  public static void main(String[] args) {
+    System.out.println(String.format("%-48s%16s%16s", "Map", "retained bytes", "bytes/entry"));
+
+    report("IntIntMap", () -> {
+      IntIntMap map = MyHashMapFactory.newIntIntMap(ThreadSafePolicy.NoSync);
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        map.put(i, i);
+      }
+      return map;
+    });
+    report("MyHashMap<Integer, Integer> SeparateChaining", () -> {
+      MyHashMap<Integer, Integer> map = MyHashMapFactory.newMyHashMap(ThreadSafePolicy.NoSync);
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        map.put(i, i);
+      }
+      return map;
+    });
+    report("MyHashMap<Integer, Integer> LinearProbing", () -> {
+      MyHashMap<Integer, Integer> map = MyHashMapFactory.newMyHashMap(ThreadSafePolicy.NoSync,
+          CollisionPolicy.LinearProbing);
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        map.put(i, i);
+      }
+      return map;
+    });
+    report("MyHashMap<Integer, Integer> LockFree", () -> {
+      MyHashMap<Integer, Integer> map = MyHashMapFactory.newMyHashMap(ThreadSafePolicy.LockFree);
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        map.put(i, i);
+      }
+      return map;
+    });
+
+    report("LongLongMap", () -> {
+      LongLongMap map = MyHashMapFactory.newLongLongMap(ThreadSafePolicy.NoSync);
+      for (long i = 0; i < ENTRY_COUNT; i++) {
+        map.put(i << 20, i);
+      }
+      return map;
+    });
+    report("MyHashMap<Long, Long> SeparateChaining", () -> {
+      MyHashMap<Long, Long> map = MyHashMapFactory.newMyHashMap(ThreadSafePolicy.NoSync);
+      for (long i = 0; i < ENTRY_COUNT; i++) {
+        map.put(i << 20, i);
+      }
+      return map;
+    });
+
+    report("LongObjectMap", () -> {
+      LongObjectMap<Object> map = MyHashMapFactory.newLongObjectMap(ThreadSafePolicy.NoSync);
+      for (long i = 0; i < ENTRY_COUNT; i++) {
+        map.put(i << 20, VALUE);
+      }
+      return map;
+    });
+    report("MyHashMap<Long, Object> SeparateChaining", () -> {
+      MyHashMap<Long, Object> map = MyHashMapFactory.newMyHashMap(ThreadSafePolicy.NoSync);
+      for (long i = 0; i < ENTRY_COUNT; i++) {
+        map.put(i << 20, VALUE);
+      }
+      return map;
+    });
+  }
+
+  private static void report(String name, Supplier<Object> builder) {
+    holder = builder.get();
+    long withMap = usedHeap();
+    holder = null;
+    long retained = withMap - usedHeap();
+
+    System.out.println(String.format("%-48s%16d%16.1f", name, retained,
+        retained * 1.0 / ENTRY_COUNT));
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return MEMORY_MX_BEAN.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,156 @@
+package johnston.hashmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Spliterator of the pairs of a hash map over a range of its bucket array, so parallel
+ * streams and bulk operations split the map by buckets instead of copying it. trySplit()
+ * gives away the first half of the remaining range, until a range is a single bucket.
+ * <p>
+ * The hash map only gives the bucket count and a visitor of one bucket, so the same class
+ * works for chained buckets, open addressing slots and lock-free bins. It's weakly
+ * consistent: it may or may not see writes done after its creation. Hash maps with a single
+ * lock copy each bucket under it by visitHashes(), open addressing ones visit the current
+ * table by visitSlots() under the lock of their wrapper, the others read the bucket array
+ * taken at creation without any lock, like their iterators.
+ * <p>
+ * tryAdvance() copies one bucket into a buffer and returns its pairs one by one, while
+ * forEachRemaining() visits the buckets directly.
+ */
+final class BucketSpliterator implements Spliterator<MapPair> {
+  /**
+   * Visit all pairs of the bucket, in any order.
+   */
+  @FunctionalInterface
+  interface BucketVisitor {
+    void visit(int bucket, Consumer<? super MapPair> action);
+  }
+
+  private final BucketVisitor visitor;
+  private int index; // Next bucket to visit
+  private final int fence; // One past the last bucket
+  private long estimate;
+  private final List<MapPair> buffer;
+  private int bufferIndex;
+
+  BucketSpliterator(int bucketCount, long estimate, BucketVisitor visitor) {
+    this(visitor, 0, bucketCount, estimate);
+  }
+
+  private BucketSpliterator(BucketVisitor visitor, int index, int fence, long estimate) {
+    this.visitor = visitor;
+    this.index = index;
+    this.fence = fence;
+    this.estimate = estimate;
+    this.buffer = new ArrayList<>();
+    this.bufferIndex = 0;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super MapPair> action) {
+    while (bufferIndex == buffer.size()) {
+      if (index >= fence) {
+        return false;
+      }
+      buffer.clear();
+      bufferIndex = 0;
+      visitor.visit(index++, buffer::add);
+    }
+    action.accept(buffer.get(bufferIndex++));
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super MapPair> action) {
+    for (; bufferIndex < buffer.size(); bufferIndex++) {
+      action.accept(buffer.get(bufferIndex));
+    }
+    for (; index < fence; index++) {
+      visitor.visit(index, action);
+    }
+  }
+
+  @Override
+  public Spliterator<MapPair> trySplit() {
+    int mid = (index + fence) >>> 1;
+
+    if (mid <= index) {
+      return null;
+    }
+    estimate >>>= 1;
+    BucketSpliterator prefix = new BucketSpliterator(visitor, index, mid, estimate);
+    index = mid;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return estimate;
+  }
+
+  @Override
+  public int characteristics() {
+    return Spliterator.DISTINCT | Spliterator.NONNULL;
+  }
+
+  /**
+   * Visit a chained bucket, which may be null.
+   */
+  static void visitList(Iterable<MapPair> bucket, Consumer<? super MapPair> action) {
+    if (bucket != null) {
+      for (MapPair pair : bucket) {
+        action.accept(pair);
+      }
+    }
+  }
+
+  /**
+   * Visit the pairs of a chained table whose hash falls in the given bucket of a table of
+   * bucketCount buckets, both lengths being powers of two. If the table has grown since, the
+   * pairs are spread over the buckets bucket + i * bucketCount, if it has shrunk, they share
+   * a bucket with others and are filtered by hash. So a bucket of the range still means the
+   * same pairs after a rehash, and each pair is visited once.
+   */
+  static void visitHashes(Iterable<MapPair>[] table, int bucket, int bucketCount,
+                          Consumer<? super MapPair> action) {
+    if (table == null) {
+      return;
+    }
+    if (table.length >= bucketCount) {
+      for (int i = bucket; i < table.length; i += bucketCount) {
+        visitList(table[i], action);
+      }
+    } else {
+      visitList(table[bucket & (table.length - 1)], pair -> {
+        if ((pair.hash & (bucketCount - 1)) == bucket) {
+          action.accept(pair);
+        }
+      });
+    }
+  }
+
+  /**
+   * Visit the used slots of an open addressing table whose hash falls in the given bucket of
+   * a table of bucketCount slots, the same way as visitHashes(). The pairs of a home slot are
+   * found by probing from it up to the first empty slot, so pairs moved by probing or by a
+   * rehash are still visited once.
+   */
+  static void visitSlots(Object[] keys, int[] hashes, int bucket, int bucketCount,
+                         IntConsumer action) {
+    int mask = keys.length - 1;
+
+    for (int home = bucket & mask; home < keys.length; home += bucketCount) {
+      int slot = home;
+      for (int probe = 0; probe < keys.length && keys[slot] != null; probe++) {
+        if ((hashes[slot] & mask) == home && (hashes[slot] & (bucketCount - 1)) == bucket) {
+          action.accept(slot);
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+  }
+}
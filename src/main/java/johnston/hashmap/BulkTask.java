@@ -0,0 +1,218 @@
+package johnston.hashmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * ForkJoin task of the bulk operations of MyHashMap, over the spliterator of its pairs. A
+ * task forks the first half of its range while the range is larger than the batch size, then
+ * visits the rest itself and joins the forked tasks. Hash maps with a bucket array split by
+ * bucket ranges, so the task tree is a tree of bucket ranges.
+ * <p>
+ * The parallelism threshold is the size from which an operation runs in parallel, as in
+ * ConcurrentHashMap: Long.MAX_VALUE is always sequential on the calling thread, 1 splits
+ * the most. Batches are at least the threshold, and no smaller than needed to give each
+ * thread of the common pool 4 tasks.
+ * <p>
+ * No lock is held: the traversal is as weakly consistent as the spliterator, so pairs
+ * written during the operation may or may not be seen.
+ */
+abstract class BulkTask<K, V, R> extends RecursiveTask<R> {
+  private final Spliterator<MapPair> spliterator;
+  private final long batchSize;
+
+  private static final int TASKS_PER_THREAD = 4;
+
+  BulkTask(Spliterator<MapPair> spliterator, long batchSize) {
+    this.spliterator = spliterator;
+    this.batchSize = batchSize;
+  }
+
+  static <K, V> void forEach(MyHashMap<K, V> hashMap, long parallelismThreshold,
+                             BiConsumer<? super K, ? super V> action) {
+    invoke(new ForEachTask<>(hashMap.spliterator(),
+        batchSize(hashMap, parallelismThreshold), action));
+  }
+
+  static <K, V, U> U reduce(MyHashMap<K, V> hashMap, long parallelismThreshold,
+                            BiFunction<? super K, ? super V, ? extends U> transformer,
+                            BiFunction<? super U, ? super U, ? extends U> reducer) {
+    return invoke(new ReduceTask<>(hashMap.spliterator(),
+        batchSize(hashMap, parallelismThreshold), transformer, reducer));
+  }
+
+  static <K, V, U> U search(MyHashMap<K, V> hashMap, long parallelismThreshold,
+                            BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+    return invoke(new SearchTask<>(hashMap.spliterator(),
+        batchSize(hashMap, parallelismThreshold), searchFunction, new AtomicReference<>()));
+  }
+
+  private static long batchSize(MyHashMap<?, ?> hashMap, long parallelismThreshold) {
+    if (parallelismThreshold <= 0) {
+      throw new IllegalArgumentException("Parallelism threshold must be positive.");
+    }
+    int size = hashMap.size();
+    if (size < parallelismThreshold) {
+      return Long.MAX_VALUE;
+    }
+    long taskCount = (long) ForkJoinPool.getCommonPoolParallelism() * TASKS_PER_THREAD;
+    return Math.max(parallelismThreshold, size / taskCount);
+  }
+
+  private static <R> R invoke(BulkTask<?, ?, R> task) {
+    if (task.batchSize == Long.MAX_VALUE) {
+      return task.compute(); // Sequential, no need to go through the pool
+    }
+    return ForkJoinPool.commonPool().invoke(task);
+  }
+
+  @Override
+  protected final R compute() {
+    List<BulkTask<K, V, R>> forked = new ArrayList<>();
+    Spliterator<MapPair> prefix;
+
+    while (!isFinished() && spliterator.estimateSize() > batchSize
+        && (prefix = spliterator.trySplit()) != null) {
+      BulkTask<K, V, R> child = newTask(prefix, batchSize);
+      child.fork();
+      forked.add(child);
+    }
+    R result = visit(spliterator);
+    for (int i = forked.size() - 1; i >= 0; i--) { // Last forked is likely still local
+      result = combine(result, forked.get(i).join());
+    }
+    return result;
+  }
+
+  abstract BulkTask<K, V, R> newTask(Spliterator<MapPair> prefix, long batchSize);
+
+  /**
+   * Visit the pairs of the range by this thread and return its result.
+   */
+  abstract R visit(Spliterator<MapPair> range);
+
+  abstract R combine(R one, R two);
+
+  /**
+   * Return true if the operation needs no more pairs, so no more tasks are forked.
+   */
+  boolean isFinished() {
+    return false;
+  }
+
+  private static final class ForEachTask<K, V> extends BulkTask<K, V, Void> {
+    private final BiConsumer<? super K, ? super V> action;
+
+    ForEachTask(Spliterator<MapPair> spliterator, long batchSize,
+                BiConsumer<? super K, ? super V> action) {
+      super(spliterator, batchSize);
+      this.action = action;
+    }
+
+    @Override
+    BulkTask<K, V, Void> newTask(Spliterator<MapPair> prefix, long batchSize) {
+      return new ForEachTask<>(prefix, batchSize, action);
+    }
+
+    @Override
+    Void visit(Spliterator<MapPair> range) {
+      range.forEachRemaining(pair -> action.accept((K) pair.key, (V) pair.getV()));
+      return null;
+    }
+
+    @Override
+    Void combine(Void one, Void two) {
+      return null;
+    }
+  }
+
+  /**
+   * Null results of the transformer are skipped, so the result is null only if all are.
+   */
+  private static final class ReduceTask<K, V, U> extends BulkTask<K, V, U> {
+    private final BiFunction<? super K, ? super V, ? extends U> transformer;
+    private final BiFunction<? super U, ? super U, ? extends U> reducer;
+
+    ReduceTask(Spliterator<MapPair> spliterator, long batchSize,
+               BiFunction<? super K, ? super V, ? extends U> transformer,
+               BiFunction<? super U, ? super U, ? extends U> reducer) {
+      super(spliterator, batchSize);
+      this.transformer = transformer;
+      this.reducer = reducer;
+    }
+
+    @Override
+    BulkTask<K, V, U> newTask(Spliterator<MapPair> prefix, long batchSize) {
+      return new ReduceTask<>(prefix, batchSize, transformer, reducer);
+    }
+
+    @Override
+    U visit(Spliterator<MapPair> range) {
+      Object[] result = new Object[1];
+      range.forEachRemaining(pair -> {
+        U u = transformer.apply((K) pair.key, (V) pair.getV());
+        result[0] = combine((U) result[0], u);
+      });
+      return (U) result[0];
+    }
+
+    @Override
+    U combine(U one, U two) {
+      if (one == null) {
+        return two;
+      }
+      return two == null ? one : reducer.apply(one, two);
+    }
+  }
+
+  /**
+   * The first non-null result of any task is kept in a shared reference. All tasks check it
+   * before each pair and stop once it's set, and no more tasks are forked.
+   */
+  private static final class SearchTask<K, V, U> extends BulkTask<K, V, U> {
+    private final BiFunction<? super K, ? super V, ? extends U> searchFunction;
+    private final AtomicReference<U> found;
+
+    SearchTask(Spliterator<MapPair> spliterator, long batchSize,
+               BiFunction<? super K, ? super V, ? extends U> searchFunction,
+               AtomicReference<U> found) {
+      super(spliterator, batchSize);
+      this.searchFunction = searchFunction;
+      this.found = found;
+    }
+
+    @Override
+    BulkTask<K, V, U> newTask(Spliterator<MapPair> prefix, long batchSize) {
+      return new SearchTask<>(prefix, batchSize, searchFunction, found);
+    }
+
+    @Override
+    U visit(Spliterator<MapPair> range) {
+      while (!isFinished() && range.tryAdvance(pair -> {
+        U u = searchFunction.apply((K) pair.key, (V) pair.getV());
+        if (u != null) {
+          found.compareAndSet(null, u);
+        }
+      })) {
+        // Next pair, until a hit of any task
+      }
+      return found.get();
+    }
+
+    @Override
+    U combine(U one, U two) {
+      return found.get();
+    }
+
+    @Override
+    boolean isFinished() {
+      return found.get() != null;
+    }
+  }
+}
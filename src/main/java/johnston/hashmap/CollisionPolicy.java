@@ -0,0 +1,12 @@
+package johnston.hashmap;
+
+/**
+ * This enum is for factory class caller to decide how hash collision is handled, namely
+ * separate chaining with a linked list per bucket, open addressing with linear probing, or
+ * open addressing with Robin Hood probing.
+ */
+public enum CollisionPolicy {
+  SeparateChaining,
+  LinearProbing,
+  RobinHood
+}
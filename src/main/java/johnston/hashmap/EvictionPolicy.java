@@ -0,0 +1,12 @@
+package johnston.hashmap;
+
+/**
+ * This enum is for factory class caller to decide which pair the bounded cache hash map
+ * evicts, namely the least recently used one, or by W-TinyLFU, which admits a new pair into
+ * the main area only if it's used more often than the pair it would evict, so a scan of
+ * one-off keys can't flush the frequently used ones.
+ */
+public enum EvictionPolicy {
+  LRU,
+  WTinyLFU
+}
@@ -0,0 +1,115 @@
+package johnston.hashmap;
+
+/**
+ * Count-min sketch of 4-bit counters, estimating how often a hash was recorded recently. It's
+ * the frequency filter of the W-TinyLFU eviction policy.
+ * <p>
+ * A long holds 16 counters, as 4 groups of 4. A hash picks one group by its low 2 bits, and
+ * each of its 4 counters is in a long picked by a different seed, so a hash costs 4 counters
+ * and the estimate is their minimum. A counter stops at 15, which is enough to tell hot keys
+ * from cold ones.
+ * <p>
+ * Aging: after sampleSize increments, all counters are halved, so old popularity fades and
+ * the table never saturates.
+ * <p>
+ * Not thread-safe, the eviction lock of the cache segment guards it.
+ */
+final class FrequencySketch {
+  private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+      0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L; // Clears the shifted-in bits
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MAX_TABLE_LENGTH = 1 << 22; // 32 MB
+
+  private long[] table;
+  private int tableMask;
+  private int sampleSize;
+  private int size; // Increments since the last reset
+
+  /**
+   * The table has about one long per item, so 4 bits of counters per item and hash.
+   */
+  FrequencySketch(int maximumSize) {
+    resize(maximumSize);
+  }
+
+  /**
+   * Grow the table if the item count outgrew it. The counts are lost, so it's only for
+   * caches whose item count is not known ahead, like the weighted ones, and doubles at least.
+   */
+  void ensureCapacity(int itemCount) {
+    if (itemCount > table.length && table.length < MAX_TABLE_LENGTH) {
+      resize(Math.max(itemCount, table.length * 2));
+    }
+  }
+
+  /**
+   * Return the estimated count of the hash, 0 to 15.
+   */
+  int frequency(int hash) {
+    int start = (hash & 3) << 2;
+    int result = Integer.MAX_VALUE;
+
+    for (int i = 0; i < 4; i++) {
+      int offset = (start + i) << 2;
+      int count = (int) ((table[indexOf(hash, i)] >>> offset) & 0xfL);
+      result = Math.min(result, count);
+    }
+    return result;
+  }
+
+  /**
+   * Add one to the counters of the hash, unless they are all 15. Halve all counters once the
+   * sample is full.
+   */
+  void increment(int hash) {
+    int start = (hash & 3) << 2;
+    boolean added = false;
+
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size >= sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Halve all counters. Odd counters lose half an increment each, so the size is corrected
+   * by the count of odd counters over 4.
+   */
+  private void reset() {
+    int oddCount = 0;
+    for (int i = 0; i < table.length; i++) {
+      oddCount += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size - (oddCount >>> 2)) >>> 1;
+  }
+
+  private void resize(int itemCount) {
+    int length = Integer.highestOneBit(Math.max(Math.min(itemCount, MAX_TABLE_LENGTH), 2)
+        - 1) << 1; // Round up to a power of two
+    this.table = new long[length];
+    this.tableMask = length - 1;
+    this.sampleSize = (int) Math.min(10L * itemCount, Integer.MAX_VALUE);
+    this.size = 0;
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return (int) h & tableMask;
+  }
+}
@@ -0,0 +1,13 @@
+package johnston.hashmap;
+
+/**
+ * This enum is for factory class caller to decide when the persistent hash maps force their
+ * file to disk, namely after every put() and remove(), at most once per interval, or only
+ * on sync() and close(). Writes not forced yet survive a process crash through the page
+ * cache, but may be lost on power loss or OS crash.
+ */
+public enum FsyncPolicy {
+  Always,
+  Periodic,
+  Never
+}
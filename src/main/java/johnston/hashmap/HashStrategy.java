@@ -0,0 +1,97 @@
+package johnston.hashmap;
+
+import java.security.SecureRandom;
+
+/**
+ * Strategy for turning key.hashCode() into the hash used by the hash maps. The hash maps
+ * call it on every get(), put() and remove(), so all strategies here mix the int directly
+ * and allocate nothing.
+ * <p>
+ * -> IDENTITY: key.hashCode() as it is. Fastest, but keys like Integer cluster.
+ * -> MURMUR3: the MurmurHash3 fmix32 finalizer (default).
+ * -> XXHASH: xxHash32 of the 4 bytes of key.hashCode().
+ * -> seeded(seed), randomized(): MurmurHash3 finalizer of key.hashCode() xor a seed, so the
+ *    bucket of a key can't be guessed without the seed.
+ * <p>
+ * Caller can also pass a lambda for the spread function.
+ */
+public interface HashStrategy {
+  HashStrategy IDENTITY = h -> h;
+  HashStrategy MURMUR3 = HashStrategy::fmix32;
+  HashStrategy XXHASH = h -> xxHash32(h, 0);
+
+  /**
+   * Return the mixed bits of the given hash code.
+   */
+  int spread(int h);
+
+  /**
+   * Return the hash of the given key. It's always >= 0, and 0 for null key.
+   */
+  default int hash(Object k) {
+    if (k == null) {
+      return 0;
+    }
+    return spread(k.hashCode()) & 0x7FFFFFFF; // Ensure >= 0
+  }
+
+  static HashStrategy seeded(int seed) {
+    return h -> fmix32(h ^ seed);
+  }
+
+  static HashStrategy randomized() {
+    return seeded(new SecureRandom().nextInt());
+  }
+
+  /**
+   * Finalization mix of MurmurHash3. Every input bit affects every output bit.
+   */
+  static int fmix32(int h) {
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  /**
+   * 64-bit finalization mix of MurmurHash3, for primitive long keys.
+   */
+  static long fmix64(long h) {
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Hash of serialized key bytes, for the hash maps that match keys by bytes. It's always
+   * >= 0, and doesn't depend on key.hashCode(), so it's the same across JVM runs.
+   */
+  static int hashBytes(byte[] bytes) {
+    int h = 1;
+    for (byte b : bytes) {
+      h = 31 * h + b;
+    }
+    return fmix32(h) & 0x7FFFFFFF;
+  }
+
+  /**
+   * xxHash32 of a single 4-byte input.
+   */
+  static int xxHash32(int h, int seed) {
+    int result = seed + 0x165667B1 + 4; // PRIME32_5 + input length
+    result += h * 0xC2B2AE3D; // PRIME32_3
+    result = Integer.rotateLeft(result, 17) * 0x27D4EB2F; // PRIME32_4
+
+    result ^= result >>> 15;
+    result *= 0x85EBCA77; // PRIME32_2
+    result ^= result >>> 13;
+    result *= 0xC2B2AE3D; // PRIME32_3
+    result ^= result >>> 16;
+    return result;
+  }
+}
@@ -0,0 +1,23 @@
+package johnston.hashmap;
+
+/**
+ * Hash map from int to int. Keys and values are stored in primitive arrays, so get() and
+ * put() never box them, and there is no MapPair or list node per entry.
+ */
+public interface IntIntMap {
+  public int size();
+  public boolean isEmpty();
+
+  public int getOrDefault(int key, int defaultValue);
+  public boolean containsKey(int key);
+
+  public void put(int key, int val);
+
+  public void removeAll();
+  public boolean remove(int key);
+
+  /**
+   * Return the bytes held by the backing arrays, for memory footprint report.
+   */
+  public long getMemoryFootprint();
+}
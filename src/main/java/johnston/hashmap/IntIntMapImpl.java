@@ -0,0 +1,376 @@
+package johnston.hashmap;
+
+import java.util.Arrays;
+
+/**
+ * This is the primitive int to int hash map. Each entry takes two ints in two flat arrays,
+ * instead of boxed Integer key and value, a MapPair and a list node.
+ * <p>
+ * Hash collision is handled by linear probing. Key 0 marks an empty slot, so the pair of
+ * key 0 is kept in its own fields. Removal shifts the following pairs back instead of
+ * leaving tombstones.
+ * <p>
+ * Thread-safety is decided by ThreadSafePolicy, see PrimitiveMapLock. Striped, LockFree and
+ * Cuckoo policies split the map into segments by the high bits of the hash, each segment
+ * has its own arrays and lock.
+ */
+public class IntIntMapImpl implements IntIntMap {
+  private final Segment[] segments;
+  private final int segmentShift;
+  private final int segmentMask;
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  private static final int REHASH_FACTOR = 2;
+  private static final int ARRAY_HEADER_BYTES = 16;
+  private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+  public IntIntMapImpl(ThreadSafePolicy policy, int capacity, float loadFactor,
+                       int concurrencyLevel) {
+    if (capacity <= 0 || loadFactor <= 0 || loadFactor >= 1 || concurrencyLevel <= 0) {
+      throw new IllegalArgumentException("Capacity and concurrency level must be positive, " +
+          "and load factor must be in (0, 1) for open addressing.");
+    }
+    int segmentCount = PrimitiveMapLock.segmentCount(policy, concurrencyLevel);
+    this.segments = new Segment[segmentCount];
+    this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+    this.segmentMask = segmentCount - 1;
+
+    int segmentCapacity = tableSizeFor((capacity + segmentCount - 1) / segmentCount);
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(policy, segmentCapacity, loadFactor);
+    }
+  }
+
+  public IntIntMapImpl(ThreadSafePolicy policy, int capacity, float loadFactor) {
+    this(policy, capacity, loadFactor, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  public IntIntMapImpl(ThreadSafePolicy policy) {
+    this(policy, DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  public IntIntMapImpl() {
+    this(ThreadSafePolicy.NoSync);
+  }
+
+  /**
+   * Sum of segment sizes. Not atomic across segments.
+   */
+  @Override
+  public int size() {
+    int result = 0;
+    for (Segment segment : segments) {
+      result += segment.size;
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Return the value by given key. If no such key, return defaultValue.
+   * <p>
+   * Optimistic read first if the policy supports it. Any result or exception is only
+   * trusted after validation, otherwise read again with read lock.
+   */
+  @Override
+  public int getOrDefault(int key, int defaultValue) {
+    int hash = hash(key);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.tryOptimisticRead();
+
+    if (stamp != 0) {
+      try {
+        int result = segment.getOrDefault(key, hash, defaultValue);
+        if (segment.validate(stamp)) {
+          return result;
+        }
+      } catch (RuntimeException e) {
+        // Inconsistent read during a write, read again with read lock.
+      }
+    }
+
+    stamp = segment.readLock();
+    try {
+      return segment.getOrDefault(key, hash, defaultValue);
+    } finally {
+      segment.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Return true if key exists, otherwise false. Same locking as getOrDefault().
+   */
+  @Override
+  public boolean containsKey(int key) {
+    int hash = hash(key);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.tryOptimisticRead();
+
+    if (stamp != 0) {
+      try {
+        boolean result = segment.containsKey(key, hash);
+        if (segment.validate(stamp)) {
+          return result;
+        }
+      } catch (RuntimeException e) {
+        // Inconsistent read during a write, read again with read lock.
+      }
+    }
+
+    stamp = segment.readLock();
+    try {
+      return segment.containsKey(key, hash);
+    } finally {
+      segment.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * If the key exists, update the value, otherwise insert a new pair.
+   * <p>
+   * Write lock of the segment required.
+   */
+  @Override
+  public void put(int key, int val) {
+    int hash = hash(key);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.writeLock();
+
+    try {
+      segment.put(key, hash, val);
+    } finally {
+      segment.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Empty the hash map, one segment at a time.
+   */
+  @Override
+  public void removeAll() {
+    for (Segment segment : segments) {
+      long stamp = segment.writeLock();
+      try {
+        segment.clear();
+      } finally {
+        segment.unlockWrite(stamp);
+      }
+    }
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   * <p>
+   * Write lock of the segment required.
+   */
+  @Override
+  public boolean remove(int key) {
+    int hash = hash(key);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.writeLock();
+
+    try {
+      return segment.remove(key, hash);
+    } finally {
+      segment.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public long getMemoryFootprint() {
+    long result = 0;
+    for (Segment segment : segments) {
+      long stamp = segment.readLock();
+      try {
+        result += 2 * (ARRAY_HEADER_BYTES + 4L * segment.keys.length);
+      } finally {
+        segment.unlockRead(stamp);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * MurmurHash3 finalizer of the key, so sequential keys don't cluster in linear probing.
+   */
+  private static int hash(int key) {
+    return HashStrategy.fmix32(key);
+  }
+
+  private Segment segmentFor(int hash) {
+    return segments[(hash >>> segmentShift) & segmentMask];
+  }
+
+  private static int tableSizeFor(int capacity) {
+    int n = 1;
+    while (n < capacity && n < MAXIMUM_CAPACITY) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  /**
+   * One open addressing table. Caller holds the lock, except for optimistic read.
+   */
+  static final class Segment extends PrimitiveMapLock {
+    int[] keys;
+    int[] vals;
+    boolean hasZeroKey;
+    int zeroVal;
+    volatile int size;
+    final float loadFactor;
+
+    Segment(ThreadSafePolicy policy, int capacity, float loadFactor) {
+      super(policy);
+      this.keys = new int[capacity];
+      this.vals = new int[capacity];
+      this.loadFactor = loadFactor;
+    }
+
+    int getOrDefault(int key, int hash, int defaultValue) {
+      if (key == 0) {
+        return hasZeroKey ? zeroVal : defaultValue;
+      }
+
+      int[] keys = this.keys;
+      int[] vals = this.vals;
+      int slot = findSlot(keys, key, hash);
+      return slot == -1 ? defaultValue : vals[slot];
+    }
+
+    boolean containsKey(int key, int hash) {
+      if (key == 0) {
+        return hasZeroKey;
+      }
+      return findSlot(this.keys, key, hash) != -1;
+    }
+
+    void put(int key, int hash, int val) {
+      if (key == 0) {
+        if (!hasZeroKey) {
+          hasZeroKey = true;
+          size++;
+        }
+        zeroVal = val;
+        return;
+      }
+
+      rehash();
+      int mask = keys.length - 1;
+      int slot = hash & mask;
+
+      while (keys[slot] != 0) {
+        if (keys[slot] == key) { // Update old value
+          vals[slot] = val;
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      keys[slot] = key;
+      vals[slot] = val;
+      size++;
+    }
+
+    /**
+     * Remove the key, then shift back each following pair in the probing run that may move
+     * into the hole, so no tombstone is needed.
+     */
+    boolean remove(int key, int hash) {
+      if (key == 0) {
+        if (!hasZeroKey) {
+          return false;
+        }
+        hasZeroKey = false;
+        zeroVal = 0;
+        size--;
+        return true;
+      }
+
+      int slot = findSlot(keys, key, hash);
+      if (slot == -1) { // No such value
+        return false;
+      }
+
+      int mask = keys.length - 1;
+      int next = (slot + 1) & mask;
+      while (keys[next] != 0) {
+        int home = hash(keys[next]) & mask;
+        if (((next - home) & mask) >= ((next - slot) & mask)) {
+          keys[slot] = keys[next];
+          vals[slot] = vals[next];
+          slot = next;
+        }
+        next = (next + 1) & mask;
+      }
+
+      keys[slot] = 0;
+      vals[slot] = 0;
+      size--;
+      return true;
+    }
+
+    void clear() {
+      Arrays.fill(keys, 0);
+      Arrays.fill(vals, 0);
+      hasZeroKey = false;
+      zeroVal = 0;
+      size = 0;
+    }
+
+    /**
+     * Return the slot of the key, or -1 if no such key. Probing is bounded by the table
+     * length, so an optimistic read over a changing table still ends.
+     */
+    private static int findSlot(int[] keys, int key, int hash) {
+      int mask = keys.length - 1;
+      int slot = hash & mask;
+
+      for (int probe = 0; probe <= mask && keys[slot] != 0; probe++) {
+        if (keys[slot] == key) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    /**
+     * Double the table if the pairs in it reach the load factor.
+     */
+    private void rehash() {
+      int used = hasZeroKey ? size - 1 : size;
+      if ((used + 1) * 1.0f / keys.length < loadFactor || keys.length >= MAXIMUM_CAPACITY) {
+        return;
+      }
+
+      int[] oldKeys = keys;
+      int[] oldVals = vals;
+      int[] newKeys = new int[oldKeys.length * REHASH_FACTOR];
+      int[] newVals = new int[newKeys.length];
+      int mask = newKeys.length - 1;
+
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] == 0) {
+          continue;
+        }
+
+        int slot = hash(oldKeys[i]) & mask;
+        while (newKeys[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        newKeys[slot] = oldKeys[i];
+        newVals[slot] = oldVals[i];
+      }
+
+      vals = newVals;
+      keys = newKeys;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package johnston.hashmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator of a hash map without thread safety, for the wrappers that add a lock to it.
+ * The pairs are copied out of the hash map in batches under the lock, and the action runs on
+ * the copy after the lock is released, so a pair is never read while a writer is half way
+ * through it, and writers wait for one batch at most, never for the traversal.
+ * <p>
+ * Each tryAdvance() of the hash map spliterator must read the table under the lock. The open
+ * addressing ones visit a home slot at a time in the current table, so a pair moved by a
+ * rehash in between batches is still seen once.
+ */
+final class LockedSpliterator implements Spliterator<MapPair> {
+  /**
+   * Run the body while holding the lock of the wrapper.
+   */
+  @FunctionalInterface
+  interface Locker {
+    void locked(Runnable body);
+  }
+
+  private final Spliterator<MapPair> spliterator;
+  private final Locker locker;
+  private final List<MapPair> buffer;
+  private int bufferIndex;
+
+  private static final int BATCH_SIZE = 64;
+
+  LockedSpliterator(Spliterator<MapPair> spliterator, Locker locker) {
+    this.spliterator = spliterator;
+    this.locker = locker;
+    this.buffer = new ArrayList<>();
+    this.bufferIndex = 0;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super MapPair> action) {
+    if (bufferIndex == buffer.size() && !fill()) {
+      return false;
+    }
+    action.accept(buffer.get(bufferIndex++));
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super MapPair> action) {
+    do {
+      for (; bufferIndex < buffer.size(); bufferIndex++) {
+        action.accept(buffer.get(bufferIndex));
+      }
+    } while (fill());
+  }
+
+  /**
+   * Copy the next batch of pairs into the buffer under the lock. Return false if none is
+   * left.
+   */
+  private boolean fill() {
+    buffer.clear();
+    bufferIndex = 0;
+    locker.locked(() -> {
+      while (buffer.size() < BATCH_SIZE && spliterator.tryAdvance(buffer::add)) {
+        // Next pair, until the batch is full
+      }
+    });
+    return !buffer.isEmpty();
+  }
+
+  @Override
+  public Spliterator<MapPair> trySplit() {
+    Spliterator<MapPair> prefix = spliterator.trySplit();
+    return prefix == null ? null : new LockedSpliterator(prefix, locker);
+  }
+
+  @Override
+  public long estimateSize() {
+    return spliterator.estimateSize();
+  }
+
+  @Override
+  public int characteristics() {
+    return spliterator.characteristics();
+  }
+}
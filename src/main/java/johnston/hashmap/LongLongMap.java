@@ -0,0 +1,23 @@
+package johnston.hashmap;
+
+/**
+ * Hash map from long to long. Keys and values are stored in primitive arrays, so get() and
+ * put() never box them, and there is no MapPair or list node per entry.
+ */
+public interface LongLongMap {
+  public int size();
+  public boolean isEmpty();
+
+  public long getOrDefault(long key, long defaultValue);
+  public boolean containsKey(long key);
+
+  public void put(long key, long val);
+
+  public void removeAll();
+  public boolean remove(long key);
+
+  /**
+   * Return the bytes held by the backing arrays, for memory footprint report.
+   */
+  public long getMemoryFootprint();
+}
@@ -0,0 +1,24 @@
+package johnston.hashmap;
+
+/**
+ * Hash map from long to object. Keys are stored in a primitive array, so get() and put()
+ * never box them, and there is no MapPair or list node per entry.
+ */
+public interface LongObjectMap<V> {
+  public int size();
+  public boolean isEmpty();
+
+  public V get(long key);
+  public boolean containsKey(long key);
+
+  public void put(long key, V val);
+
+  public void removeAll();
+  public boolean remove(long key);
+
+  /**
+   * Return the bytes held by the backing arrays, for memory footprint report. The values
+   * themselves are not counted.
+   */
+  public long getMemoryFootprint();
+}
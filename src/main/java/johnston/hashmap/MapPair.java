@@ -1,12 +1,26 @@
 package johnston.hashmap;
 
-public class MapPair<K, V> {
+import johnston.linkedlist.Keyed;
+
+public class MapPair<K, V> implements Keyed {
   public final K key;
+  public final int hash; // Spread hash of the key, computed once
   private V val;
 
+  /**
+   * The hash is spread by the default hash strategy.
+   */
   public MapPair(K key, V val) {
+    this(key, val, HashStrategy.MURMUR3.hash(key));
+  }
+
+  /**
+   * The hash maps pass the hash they already computed, so the key is never hashed again.
+   */
+  public MapPair(K key, V val, int hash) {
     this.key = key;
     this.val = val;
+    this.hash = hash;
   }
 
   public V getV() {
@@ -21,6 +35,9 @@ public class MapPair<K, V> {
    * Guarantee that given a key, the hash map would return the corresponding key-val pair
    * iff two keys are equals.
    *
+   * The cached hashes are compared first, so a chain walk calls key.equals() only on pairs
+   * that likely match. Pairs must be hashed by the same hash strategy to be compared.
+   *
    * Overriding is not allowed.
    */
   @Override
@@ -33,16 +50,27 @@ public class MapPair<K, V> {
       return false;
     }
 
-    return ((MapPair<K, V>) o).key.equals(this.key);
+    MapPair<K, V> other = (MapPair<K, V>) o;
+    return other.hash == this.hash && other.key.equals(this.key);
   }
 
   /**
    * The equals() method is overridden, so hashCode() needs to override to maintain
-   * equality consistence in hashing object of MapPair class.
+   * equality consistence in hashing object of MapPair class. Return the cached hash instead
+   * of calling key.hashCode() again.
    */
   @Override
   public int hashCode() {
-    return key.hashCode();
+    return hash;
+  }
+
+  /**
+   * Same check as equals(), but takes the hash and key directly, so the hash maps can search
+   * a bucket without a dummy pair.
+   */
+  @Override
+  public final boolean keyEquals(int hash, Object key) {
+    return this.hash == hash && key.equals(this.key);
   }
 
   @Override
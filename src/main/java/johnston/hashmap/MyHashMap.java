@@ -1,5 +1,14 @@
 package johnston.hashmap;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 public interface MyHashMap<K, V> extends Iterable<MapPair> {
   public int size();
   public boolean isEmpty();
@@ -12,4 +21,162 @@ public interface MyHashMap<K, V> extends Iterable<MapPair> {
 
   public void removeAll();
   public boolean remove(K k);
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key, and
+   * return it. A null new value removes the pair, and returning the old value itself leaves
+   * the pair as it is.
+   * <p>
+   * Each hash map finds the key once and runs the function under the same lock as the write,
+   * so a read-modify-write is atomic. The lock-free one may call it again after a failed CAS
+   * on an empty bucket. So the function must be short, have no side effect and must not
+   * modify this hash map.
+   */
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping);
+
+  /**
+   * Put the pair only if no such key. Return the old value, or null if the pair is put.
+   */
+  public default V putIfAbsent(K k, V v) {
+    Object[] oldVal = new Object[1];
+    compute(k, (key, old) -> {
+      oldVal[0] = old;
+      return old != null ? old : v;
+    });
+    return (V) oldVal[0];
+  }
+
+  /**
+   * Return the value of the key. If no such key, put the value from the function first, a
+   * null value puts nothing.
+   */
+  public default V computeIfAbsent(K k, Function<? super K, ? extends V> mapping) {
+    return compute(k, (key, old) -> old != null ? old : mapping.apply(key));
+  }
+
+  /**
+   * If the key exists, replace its value by the function, a null value removes the pair.
+   * Return the new value, or null if no such key.
+   */
+  public default V computeIfPresent(K k,
+                                    BiFunction<? super K, ? super V, ? extends V> remapping) {
+    return compute(k, (key, old) -> old == null ? null : remapping.apply(key, old));
+  }
+
+  /**
+   * Put the value if no such key, otherwise combine the old value and the given value by the
+   * function, a null result removes the pair. Return the new value.
+   * <p>
+   * E.g. merge(word, 1, Integer::sum) counts words.
+   */
+  public default V merge(K k, V v, BiFunction<? super V, ? super V, ? extends V> remapping) {
+    return compute(k, (key, old) -> old == null ? v : remapping.apply(old, v));
+  }
+
+  /**
+   * Replace the value by the new one only if the key has the expected value, and return
+   * true. Otherwise return false.
+   */
+  public default boolean replace(K k, V expected, V newVal) {
+    boolean[] replaced = new boolean[1];
+    compute(k, (key, old) -> {
+      replaced[0] = old != null && old.equals(expected);
+      return replaced[0] ? newVal : old;
+    });
+    return replaced[0];
+  }
+
+  /**
+   * Put keys.get(i) with vals.get(i) for each i. Hash maps with locks override it to grow the
+   * table once and take each lock once per batch, this default just loops over put().
+   */
+  public default void putAll(List<K> keys, List<V> vals) {
+    if (keys.size() != vals.size()) {
+      throw new IllegalArgumentException("Keys and values must have the same size.");
+    }
+    for (int i = 0; i < keys.size(); i++) {
+      put(keys.get(i), vals.get(i));
+    }
+  }
+
+  /**
+   * Return the values of the given keys in the same order, null for missing keys.
+   */
+  public default List<V> getAll(List<K> keys) {
+    List<V> result = new ArrayList<>(keys.size());
+    for (K k : keys) {
+      result.add(get(k));
+    }
+    return result;
+  }
+
+  /**
+   * Remove the pairs of the given keys and return how many were removed.
+   */
+  public default int removeAll(List<K> keys) {
+    int result = 0;
+    for (K k : keys) {
+      if (remove(k)) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return a sequential stream of the pairs.
+   */
+  public default Stream<MapPair<K, V>> stream() {
+    return StreamSupport.stream((Spliterator) spliterator(), false);
+  }
+
+  /**
+   * Return a parallel stream of the pairs, run on the common ForkJoinPool. Hash maps with a
+   * bucket array override spliterator() by a BucketSpliterator, so the stream splits by
+   * bucket ranges. The others split by batches of their iterator. It's as consistent as the
+   * iterator against concurrent writes.
+   */
+  public default Stream<MapPair<K, V>> parallelStream() {
+    return StreamSupport.stream((Spliterator) spliterator(), true);
+  }
+
+  /**
+   * Run the action on each pair, in parallel on the common ForkJoinPool if the size is at
+   * least parallelismThreshold. Long.MAX_VALUE runs it on the calling thread, 1 splits the
+   * most. The pairs are split by bucket ranges as for parallelStream(), without holding any
+   * lock, so it's weakly consistent against concurrent writes.
+   */
+  public default void forEach(long parallelismThreshold,
+                              BiConsumer<? super K, ? super V> action) {
+    BulkTask.forEach(this, parallelismThreshold, action);
+  }
+
+  /**
+   * Return the reduction of the transformed pairs by the reducer, in any order. Null results
+   * of the transformer are skipped, and null is returned if all are null or no pair.
+   */
+  public default <U> U reduce(long parallelismThreshold,
+                              BiFunction<? super K, ? super V, ? extends U> transformer,
+                              BiFunction<? super U, ? super U, ? extends U> reducer) {
+    return BulkTask.reduce(this, parallelismThreshold, transformer, reducer);
+  }
+
+  /**
+   * Return the reduction of the values by the reducer, in any order, null if no pair.
+   * <p>
+   * E.g. reduceValues(1, Integer::sum) sums the values.
+   */
+  public default V reduceValues(long parallelismThreshold,
+                                BiFunction<? super V, ? super V, ? extends V> reducer) {
+    return BulkTask.reduce(this, parallelismThreshold, (key, val) -> val, reducer);
+  }
+
+  /**
+   * Return a non-null result of the function on any pair, or null if none. Once a pair gives
+   * one, all tasks stop and no more pairs are visited.
+   */
+  public default <U> U search(long parallelismThreshold,
+                              BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+    return BulkTask.search(this, parallelismThreshold, searchFunction);
+  }
 }
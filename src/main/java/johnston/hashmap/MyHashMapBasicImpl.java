@@ -2,11 +2,12 @@ package johnston.hashmap;
 
 import johnston.linkedlist.MyLinkedList;
 import johnston.linkedlist.MyLinkedListBasicImpl;
-import java.math.BigInteger;
-import org.apache.commons.codec.digest.MurmurHash3;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 /**
  * This is the basic hash map implementation without thread safety.
@@ -18,17 +19,34 @@ public class MyHashMapBasicImpl<K, V> implements MyHashMapTesting<K, V> {
   private int capacity;
   private MyLinkedList<MapPair>[] bucketList;
   private final float loadFactor;
+  private final RehashPolicy rehashPolicy;
+  private final HashStrategy hashStrategy;
+  private MyLinkedList<MapPair>[] oldBucketList; // Not null during incremental rehashing
+  private int migrateIndex; // Old buckets before this index are moved to bucketList
 
   private static final int DEFAULT_CAPACITY = 16;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
   private static final int REHASH_FACTOR = 2;
+  private static final int MIGRATION_STEP = 8; // Old buckets moved per put() or remove()
   private static final float DEFAULT_LOAD_FACTOR = 0.5f;
   private static final int THREAD_SLEEP_MILLI_SEC = 20;
 
   public MyHashMapBasicImpl(int capacity, float loadFactor) {
-    this.capacity = capacity;
+    this(capacity, loadFactor, RehashPolicy.StopTheWorld);
+  }
+
+  public MyHashMapBasicImpl(int capacity, float loadFactor, RehashPolicy rehashPolicy) {
+    this(capacity, loadFactor, rehashPolicy, HashStrategy.MURMUR3);
+  }
+
+  public MyHashMapBasicImpl(int capacity, float loadFactor, RehashPolicy rehashPolicy,
+                            HashStrategy hashStrategy) {
+    this.rehashPolicy = rehashPolicy;
+    this.hashStrategy = hashStrategy;
+    this.capacity = tableSizeFor(capacity);
     this.size = 0;
     this.loadFactor = loadFactor;
-    this.bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+    this.bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[this.capacity]);
   }
 
   public MyHashMapBasicImpl() {
@@ -55,18 +73,7 @@ public class MyHashMapBasicImpl<K, V> implements MyHashMapTesting<K, V> {
    */
   @Override
   public V get(K k) {
-    int bucketIdx = getIndex(k);
-    if (bucketList[bucketIdx] == null) {
-      return null;
-    }
-
-    MapPair<K, V> dummy = new MapPair<>(k, null);
-    int pairIdx = bucketList[bucketIdx].getIndex(dummy);
-
-    if (pairIdx == -1) {
-      return null;
-    }
-    return (V) bucketList[bucketIdx].get(pairIdx).getV();
+    return getValue(k, hash(k));
   }
 
   /**
@@ -82,45 +89,105 @@ public class MyHashMapBasicImpl<K, V> implements MyHashMapTesting<K, V> {
    */
   @Override
   public void put(K k, V v) {
+    putPair(new MapPair<>(k, v, hash(k)));
+  }
+
+  @Override
+  public void removeAll() {
+    size = 0;
+    Arrays.fill(bucketList, null);
+    oldBucketList = null;
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   */
+  @Override
+  public boolean remove(K k) {
+    return removePair(k, hash(k));
+  }
+
+  /**
+   * Grow the table once for all keys, then put the pairs.
+   */
+  @Override
+  public void putAll(List<K> keys, List<V> vals) {
+    if (keys.size() != vals.size()) {
+      throw new IllegalArgumentException("Keys and values must have the same size.");
+    }
+    reserve(keys.size());
+    Iterator<V> valIterator = vals.iterator();
+    for (K k : keys) {
+      putPair(new MapPair<>(k, valIterator.next(), hash(k)));
+    }
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key, with one
+   * bucket lookup. A null new value removes the pair.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    return computePair(k, hash(k), remapping);
+  }
+
+  /**
+   * Return the value of the pair with the given key and hash.
+   */
+  private V getValue(K k, int hash) {
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    MyLinkedList<MapPair> bucket = table[hash & (table.length - 1)];
+
+    if (bucket == null) {
+      return null;
+    }
+
+    MapPair<K, V> pair = bucket.getByKey(hash, k);
+    return pair == null ? null : pair.getV();
+  }
+
+  /**
+   * Insert or update the given pair.
+   */
+  private void putPair(MapPair<K, V> newPair) {
     rehash();
-    int bucketIdx = getIndex(k);
-    MapPair<K, V> newPair = new MapPair<>(k, v);
+    int hash = newPair.hash;
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
 
-    if (bucketList[bucketIdx] == null) {
-      bucketList[bucketIdx] = getNewLinkedList();
-      bucketList[bucketIdx].addFirst(newPair);
+    if (table[bucketIdx] == null) {
+      table[bucketIdx] = getNewLinkedList();
+      table[bucketIdx].addFirst(newPair);
       size++;
       return;
     }
 
-    MapPair<K, V> oldPair = bucketList[bucketIdx].get(newPair);
+    MapPair<K, V> oldPair = table[bucketIdx].getByKey(hash, newPair.key);
     if (oldPair == null) { // No such pair
-      bucketList[bucketIdx].addFirst(newPair);
+      table[bucketIdx].addFirst(newPair);
       size++;
+      treeifyIfNeeded(table, bucketIdx);
     } else { // Update old value
-      oldPair.setV(v);
+      oldPair.setV(newPair.getV());
     }
   }
 
-  @Override
-  public void removeAll() {
-    size = 0;
-    Arrays.fill(bucketList, null);
-  }
-
   /**
-   * Remove the pair by the given key and return true. If no such keys, return false.
+   * Remove the pair with the given key and hash.
    */
-  @Override
-  public boolean remove(K k) {
-    int bucketIdx = getIndex(k);
-    if (bucketList[bucketIdx] == null) {
+  private boolean removePair(K k, int hash) {
+    if (oldBucketList != null) { // Incremental rehashing
+      migrate(MIGRATION_STEP);
+    }
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
+    if (table[bucketIdx] == null) {
       return false;
     }
-    MapPair<K, V> dummy = new MapPair<>(k, null);
 
-    if (bucketList[bucketIdx].remove(dummy)) {
+    if (table[bucketIdx].removeByKey(hash, k)) {
       size--;
+      untreeifyIfNeeded(table, bucketIdx);
       return true;
     } else { // No such value
       return false;
@@ -128,55 +195,183 @@ public class MyHashMapBasicImpl<K, V> implements MyHashMapTesting<K, V> {
   }
 
   /**
-   * Return hashcode of the given key. Using MurmurHash function here to avoid
-   * primary clustering. MurmurHash is a performance efficient non-cryptographic hash function.
+   * Compute the new value of the given key from its old value in one bucket lookup, then
+   * update, insert or remove the pair.
    */
-  private int hash(K k) {
-    if (k == null) {
-      return 0;
+  private V computePair(K k, int hash, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    rehash();
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
+    MapPair<K, V> oldPair = table[bucketIdx] == null ? null : table[bucketIdx].getByKey(hash, k);
+    V oldVal = oldPair == null ? null : oldPair.getV();
+    V newVal = remapping.apply(k, oldVal);
+
+    if (oldPair != null) {
+      if (newVal != null) { // Update old value
+        oldPair.setV(newVal);
+      } else if (table[bucketIdx].removeByKey(hash, k)) {
+        size--;
+        untreeifyIfNeeded(table, bucketIdx);
+      }
+    } else if (newVal != null) { // No such pair
+      if (table[bucketIdx] == null) {
+        table[bucketIdx] = getNewLinkedList();
+      }
+      table[bucketIdx].addFirst(new MapPair<>(k, newVal, hash));
+      size++;
+      treeifyIfNeeded(table, bucketIdx);
     }
-    byte[] temp = BigInteger.valueOf(k.hashCode()).toByteArray();
-    return MurmurHash3.hash32(temp) & 0x7FFFFFFF; // Ensure > 0
+    return newVal;
   }
 
-  private int getIndex(K k) {
-    int hash = hash(k);
-    return hash % bucketList.length;
+  /**
+   * Return hashcode of the given key, mixed by the hash strategy to avoid primary clustering.
+   * The default MurmurHash3 finalizer mixes the int directly, so it allocates nothing.
+   */
+  private int hash(K k) {
+    return hashStrategy.hash(k);
+  }
+
+  /**
+   * Return the smallest power of two >= the given capacity, so the bucket index of a hash is
+   * hash & (length - 1) instead of an integer division.
+   */
+  private static int tableSizeFor(int capacity) {
+    int n = 1;
+    while (n < capacity && n < MAXIMUM_CAPACITY) {
+      n <<= 1;
+    }
+    return n;
   }
 
   /**
    * Double the capacity of the hash table if the load factor is > 0.5. All pairs are guaranteed
-   * to be found by given keys after rehashing.
+   * to be found by given keys after rehashing. The capacity stays a power of two.
+   * <p>
+   * StopTheWorld policy moves all old buckets here. Incremental policy only moves
+   * MIGRATION_STEP old buckets, and each following put() and remove() moves some more.
    */
   private void rehash() {
-    if (this.size * 1.0f / this.capacity < this.loadFactor) {
+    if (size() * 1.0f / this.capacity >= loadFactor) {
+      if (oldBucketList != null) { // Previous rehashing not done yet, finish it first.
+        migrate(oldBucketList.length);
+      }
+
+      capacity *= REHASH_FACTOR;
+      oldBucketList = bucketList;
+      migrateIndex = 0;
+      bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+    }
+
+    if (oldBucketList != null) {
+      migrate(rehashPolicy == RehashPolicy.Incremental ? MIGRATION_STEP : oldBucketList.length);
+    }
+  }
+
+  /**
+   * Grow the table once for a batch of new pairs, so putAll() doesn't double it again and
+   * again. An incremental rehash in progress is finished first, then all pairs are moved.
+   */
+  private void reserve(int pairCount) {
+    int newCapacity = MyHashMapBasicImpl.reservedCapacity(capacity, size + pairCount,
+        loadFactor, MAXIMUM_CAPACITY);
+    if (newCapacity == capacity) {
       return;
     }
+    if (oldBucketList != null) { // Previous rehashing not done yet, finish it first.
+      migrate(oldBucketList.length);
+    }
+
+    capacity = newCapacity;
+    bucketList = MyHashMapBasicImpl.regroup(bucketList, capacity, this::getNewLinkedList);
+    for (int i = 0; i < capacity; i++) {
+      treeifyIfNeeded(bucketList, i);
+    }
+  }
 
-    capacity *= REHASH_FACTOR;
-    MyLinkedList<MapPair>[] oldBucketList = bucketList;
-    bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+  /**
+   * Move at most the given number of old buckets to the new table, from migrateIndex on. A
+   * bucket is moved as a whole, so each key is in exactly one of the two tables.
+   * <p>
+   * Both tables are powers of two, so old bucket i splits into new buckets i and
+   * i + oldLength only, picked by the hash bit oldLength. Nothing else writes to those two new
+   * buckets before old bucket i is moved, so each old bucket can be split on its own.
+   */
+  private void migrate(int bucketCount) {
+    int oldLength = oldBucketList.length;
+    int end = Math.min(migrateIndex + bucketCount, oldLength);
 
-    for (MyLinkedList<MapPair> oldList : oldBucketList) {
+    for (; migrateIndex < end; migrateIndex++) {
+      MyLinkedList<MapPair> oldList = oldBucketList[migrateIndex];
       if (oldList == null) {
         continue;
       }
 
+      MyLinkedList<MapPair> lowList = null;
+      MyLinkedList<MapPair> highList = null;
       List<MapPair> pairList = oldList.getAll();
-      for (MapPair pair : pairList) {
-        int bucketIdx = getIndex((K) pair.key);
 
-        if (bucketList[bucketIdx] == null) {
-          bucketList[bucketIdx] = getNewLinkedList();
+      for (MapPair pair : pairList) {
+        if ((pair.hash & oldLength) == 0) { // Cached hash, no need to hash again
+          lowList = lowList == null ? getNewLinkedList() : lowList;
+          lowList.addFirst(pair);
+        } else {
+          highList = highList == null ? getNewLinkedList() : highList;
+          highList.addFirst(pair);
         }
-        bucketList[bucketIdx].addFirst(pair);
       }
+      bucketList[migrateIndex] = lowList;
+      bucketList[migrateIndex + oldLength] = highList;
+      treeifyIfNeeded(bucketList, migrateIndex);
+      treeifyIfNeeded(bucketList, migrateIndex + oldLength);
+      oldBucketList[migrateIndex] = null;
+    }
+
+    if (migrateIndex == oldLength) { // Rehashing done
+      oldBucketList = null;
+    }
+  }
+
+  /**
+   * Return the table holding the key of the given hash. During incremental rehashing, the key
+   * is still in oldBucketList if its old bucket is not moved yet.
+   */
+  private MyLinkedList<MapPair>[] getTable(int hash) {
+    MyLinkedList<MapPair>[] oldTable = oldBucketList;
+
+    if (oldTable != null && (hash & (oldTable.length - 1)) >= migrateIndex) {
+      return oldTable;
     }
+    return bucketList;
+  }
+
+  /**
+   * Return all buckets of both tables. Moved old buckets are null, so no pair is counted twice.
+   */
+  private MyLinkedList<MapPair>[] getAllBuckets() {
+    if (oldBucketList == null) {
+      return bucketList;
+    }
+
+    MyLinkedList<MapPair>[] result = Arrays.copyOf(bucketList,
+        bucketList.length + oldBucketList.length);
+    System.arraycopy(oldBucketList, 0, result, bucketList.length, oldBucketList.length);
+    return result;
   }
 
   @Override
   public Iterator<MapPair> iterator() {
-    return new MyHashMapIterator<>(this.bucketList);
+    return new MyHashMapIterator<>(getAllBuckets());
+  }
+
+  /**
+   * Split by ranges of the same bucket arrays as the iterator.
+   */
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    MyLinkedList<MapPair>[] buckets = getAllBuckets();
+    return new BucketSpliterator(buckets.length, size(),
+        (bucket, action) -> BucketSpliterator.visitList(buckets[bucket], action));
   }
 
   /**
@@ -245,6 +440,42 @@ public class MyHashMapBasicImpl<K, V> implements MyHashMapTesting<K, V> {
     return result.toString();
   }
 
+  /**
+   * Return the capacity, doubled from the given one as needed, under which the given number
+   * of pairs stays below the load factor. The chained hash maps grow by it once per batch.
+   */
+  static int reservedCapacity(int capacity, long pairCount, float loadFactor,
+                              int maximumCapacity) {
+    int result = capacity;
+    while (pairCount * 1.0f / result > loadFactor && result < maximumCapacity) {
+      result *= REHASH_FACTOR;
+    }
+    return result;
+  }
+
+  /**
+   * Return a table of the given capacity with all pairs of the old one, each in the bucket
+   * of its cached hash, in lists from newList. Buckets are left for the caller to treeify.
+   */
+  static MyLinkedList<MapPair>[] regroup(MyLinkedList<MapPair>[] oldTable, int capacity,
+                                         Supplier<MyLinkedList<MapPair>> newList) {
+    MyLinkedList<MapPair>[] result = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+
+    for (MyLinkedList<MapPair> oldList : oldTable) {
+      if (oldList == null) {
+        continue;
+      }
+      for (MapPair pair : oldList.getAll()) {
+        int bucketIdx = pair.hash & (capacity - 1);
+        if (result[bucketIdx] == null) {
+          result[bucketIdx] = newList.get();
+        }
+        result[bucketIdx].addFirst(pair);
+      }
+    }
+    return result;
+  }
+
   /**
    * Place different linked list implementations here.
    */
@@ -253,16 +484,47 @@ public class MyHashMapBasicImpl<K, V> implements MyHashMapTesting<K, V> {
     // return new MyLinkedListThreadSafeImpl<>();
   }
 
+  /**
+   * Turn the bucket at the given index into a tree bucket once its list reaches
+   * TREEIFY_THRESHOLD, so a long collision chain is searched in O(log n).
+   */
+  private void treeifyIfNeeded(MyLinkedList<MapPair>[] table, int bucketIdx) {
+    MyLinkedList<MapPair> bucket = table[bucketIdx];
+
+    if (bucket != null && !(bucket instanceof MyHashMapTreeBucket)
+        && bucket.size() >= MyHashMapTreeBucket.TREEIFY_THRESHOLD) {
+      table[bucketIdx] = new MyHashMapTreeBucket(bucket);
+    }
+  }
+
+  /**
+   * Turn the tree bucket at the given index back into a linked list once it shrinks to
+   * UNTREEIFY_THRESHOLD. The gap between both thresholds avoids converting back and forth.
+   */
+  private void untreeifyIfNeeded(MyLinkedList<MapPair>[] table, int bucketIdx) {
+    MyLinkedList<MapPair> bucket = table[bucketIdx];
+
+    if (bucket instanceof MyHashMapTreeBucket
+        && bucket.size() <= MyHashMapTreeBucket.UNTREEIFY_THRESHOLD) {
+      MyLinkedList<MapPair> list = getNewLinkedList();
+      for (MapPair pair : bucket) {
+        list.addFirst(pair);
+      }
+      table[bucketIdx] = list;
+    }
+  }
+
   /**
    * Methods below are for testing.
    */
   @Override
   public int[] getAllBucketSize() {
-    int[] result = new int[bucketList.length];
+    MyLinkedList<MapPair>[] buckets = getAllBuckets();
+    int[] result = new int[buckets.length];
 
     for (int i = 0; i < result.length; i++) {
-      if (bucketList[i] != null) {
-        result[i] = bucketList[i].size();
+      if (buckets[i] != null) {
+        result[i] = buckets[i].size();
       }
     }
     return result;
@@ -270,11 +532,12 @@ public class MyHashMapBasicImpl<K, V> implements MyHashMapTesting<K, V> {
 
   @Override
   public int getTotalPairCount() {
+    MyLinkedList<MapPair>[] buckets = getAllBuckets();
     int result = 0;
 
-    for (int i = 0; i < bucketList.length; i++) {
-      if (bucketList[i] != null) {
-        result += bucketList[i].size();
+    for (int i = 0; i < buckets.length; i++) {
+      if (buckets[i] != null) {
+        result += buckets[i].size();
       }
     }
     return result;
@@ -0,0 +1,978 @@
+package johnston.hashmap;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * This is the bounded cache hash map. Once the total weight of its pairs is over the maximum
+ * weight, pairs are evicted by the EvictionPolicy. The Weigher gives the weight of a pair,
+ * such as its size in bytes. By default every pair weighs 1, so the maximum weight is the
+ * maximum size.
+ * -> LRU evicts the least recently used pair.
+ * -> WTinyLFU puts new pairs in a small LRU window, 1% of the segment weight. A pair leaving the
+ *    window enters the main area only if a FrequencySketch says it's used more often than
+ *    the pair the main area would evict, otherwise it's evicted itself. The main area is a
+ *    segmented LRU: a pair hit in probation is promoted to protected, which holds 80% of it.
+ *    So one-off keys of a scan pass through the window without flushing the hot ones.
+ * <p>
+ * Pairs are stored as nodes in a lock-free hash map, so get() never locks. The access order
+ * is in doubly linked lists per segment, guarded by the eviction lock of the segment:
+ * -> Writes take the eviction lock of the key's segment, change the hash map and the lists,
+ *    then evict while the segment is over its bound.
+ * -> Reads only record the node in a read buffer, a small ring buffer of the segment picked
+ *    by the thread. A full buffer drops the event, so the LRU order is approximate under
+ *    heavy reads, but a read never waits.
+ * -> The read that fills a buffer drains all buffers of the segment if the eviction lock is
+ *    free (tryLock), moving the read nodes to their list tail and counting them in the
+ *    sketch. Writes drain them first too.
+ * <p>
+ * The segments split the maximum weight, so eviction is per segment. Small caches have fewer
+ * segments, each one holds at least MIN_SEGMENT_SIZE weight. Weights are tracked on every
+ * write, so the total is never scanned, and getWeightReport() shows the weight per segment.
+ * A pair heavier than the share of its segment is evicted right away, as one eviction: it's
+ * never linked, and the old pair of its key is removed, so other pairs stay.
+ * <p>
+ * A pair put with a time to live expires after it. Each segment keeps a TimerWheel of its
+ * pairs with a time to live, so expiration is O(1) per pair and never scans the hash map:
+ * -> get() and containsKey() treat an expired pair as absent, and get() removes it if the
+ *    eviction lock is free.
+ * -> Writes advance the wheel of their segment, removing the due pairs.
+ * -> The sweeper thread, started by the first put() with a time to live, advances all wheels
+ *    every SWEEP_INTERVAL_MILLIS, so pairs never read again are reclaimed too. Call close()
+ *    to stop it.
+ * size() counts expired pairs until they are reclaimed.
+ * <p>
+ * Hits, misses, evictions and expirations are counted by LongAdder, so counting costs no
+ * contention.
+ */
+public class MyHashMapCacheImpl<K, V> implements MyHashMapTesting<K, V>, Closeable {
+  /**
+   * A cached pair. The list and timer links are only read and written under the eviction lock.
+   */
+  static final class Node<K, V> {
+    final K key;
+    final int hash;
+    volatile V val;
+    volatile long expiresAt; // NO_EXPIRY if no time to live
+    int weight; // Eviction lock required
+    Node<K, V> prev;
+    Node<K, V> next;
+    Node<K, V> prevInTimer;
+    Node<K, V> nextInTimer;
+    byte queue; // WINDOW, PROBATION or PROTECTED
+    boolean retired; // Removed from the list, its buffered reads are dropped.
+
+    Node(K key, V val, int hash) {
+      this.key = key;
+      this.val = val;
+      this.hash = hash;
+      this.expiresAt = NO_EXPIRY;
+    }
+  }
+
+  /**
+   * Lossy ring buffer of read nodes. Read threads reserve a slot by CAS on the write count and
+   * give up if the CAS fails or the buffer is full. Only the thread holding the eviction lock
+   * drains it.
+   */
+  static final class ReadBuffer<K, V> {
+    final AtomicReferenceArray<Node<K, V>> slots;
+    final AtomicLong writeCount;
+    volatile long readCount; // Only written under the eviction lock
+
+    ReadBuffer() {
+      this.slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+      this.writeCount = new AtomicLong();
+    }
+
+    /**
+     * Record the node, or drop it if the buffer is full or another thread got the slot.
+     * Return true if the buffer is full and should be drained.
+     */
+    boolean offer(Node<K, V> node) {
+      long tail = writeCount.get();
+      long size = tail - readCount;
+
+      if (size >= READ_BUFFER_SIZE) {
+        return true;
+      }
+      if (writeCount.compareAndSet(tail, tail + 1)) {
+        slots.lazySet((int) (tail & (READ_BUFFER_SIZE - 1)), node);
+        return size + 1 == READ_BUFFER_SIZE;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Doubly linked list of nodes in access order, the head is the least recently used one.
+   */
+  static final class AccessOrder<K, V> {
+    Node<K, V> head;
+    Node<K, V> tail;
+    long weight;
+
+    void linkLast(Node<K, V> node) {
+      node.prev = tail;
+      node.next = null;
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+      weight += node.weight;
+    }
+
+    void unlink(Node<K, V> node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+      weight -= node.weight;
+    }
+
+    void moveToTail(Node<K, V> node) {
+      if (node != tail) {
+        unlink(node);
+        linkLast(node);
+      }
+    }
+  }
+
+  /**
+   * One share of the maximum weight, with its access order lists, timing wheel and read
+   * buffers. For LRU the window is the whole segment and the main area is empty.
+   */
+  static final class Segment<K, V> {
+    final ReentrantLock evictionLock;
+    final ReadBuffer<K, V>[] readBuffers;
+    final TimerWheel<K, V> timerWheel;
+    final FrequencySketch sketch; // Null for LRU
+    final boolean weighted;
+    final AccessOrder<K, V> window;
+    final AccessOrder<K, V> probation;
+    final AccessOrder<K, V> protectedOrder;
+    final long maximumWeight;
+    final long windowMaximum;
+    final long protectedMaximum;
+    long weightedSize; // Eviction lock required
+    int count; // Eviction lock required
+
+    Segment(long maximumWeight, EvictionPolicy evictionPolicy, boolean weighted) {
+      this.evictionLock = new ReentrantLock();
+      this.readBuffers = (ReadBuffer<K, V>[]) new ReadBuffer[READ_BUFFER_STRIPES];
+      for (int i = 0; i < READ_BUFFER_STRIPES; i++) {
+        readBuffers[i] = new ReadBuffer<>();
+      }
+      this.timerWheel = new TimerWheel<>();
+      this.window = new AccessOrder<>();
+      this.probation = new AccessOrder<>();
+      this.protectedOrder = new AccessOrder<>();
+      this.maximumWeight = maximumWeight;
+      this.weighted = weighted;
+
+      if (evictionPolicy == EvictionPolicy.WTinyLFU) {
+        // The pair count of a weighted segment is unknown, so its sketch grows with it.
+        this.sketch = new FrequencySketch((int) Math.min(weighted ? MIN_SEGMENT_SIZE
+            : maximumWeight, Integer.MAX_VALUE));
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * 4 / 5;
+      } else {
+        this.sketch = null;
+        this.windowMaximum = maximumWeight;
+        this.protectedMaximum = 0;
+      }
+    }
+
+    /**
+     * Add a new node to the window tail.
+     */
+    void linkLast(Node<K, V> node) {
+      node.queue = WINDOW;
+      window.linkLast(node);
+      weightedSize += node.weight;
+      count++;
+      if (sketch != null) {
+        if (weighted) {
+          sketch.ensureCapacity(count);
+        }
+        sketch.increment(node.hash);
+      }
+    }
+
+    void unlink(Node<K, V> node) {
+      orderOf(node).unlink(node);
+      weightedSize -= node.weight;
+      count--;
+      node.retired = true;
+    }
+
+    /**
+     * Change the weight of a linked node, in its list and the segment.
+     */
+    void setWeight(Node<K, V> node, int weight) {
+      long delta = weight - node.weight;
+      orderOf(node).weight += delta;
+      weightedSize += delta;
+      node.weight = weight;
+    }
+
+    /**
+     * Move a node leaving the window to the probation tail.
+     */
+    void admit(Node<K, V> node) {
+      window.unlink(node);
+      node.queue = PROBATION;
+      probation.linkLast(node);
+    }
+
+    /**
+     * Record an access of the node: count it in the sketch, and move it to its list tail. A
+     * probation node is promoted to protected, which demotes the protected head if full.
+     */
+    void onAccess(Node<K, V> node) {
+      if (node.retired) {
+        return;
+      }
+      if (sketch != null) {
+        sketch.increment(node.hash);
+      }
+
+      if (node.queue == PROBATION) {
+        probation.unlink(node);
+        node.queue = PROTECTED;
+        protectedOrder.linkLast(node);
+        if (protectedOrder.weight > protectedMaximum) {
+          Node<K, V> demoted = protectedOrder.head;
+          protectedOrder.unlink(demoted);
+          demoted.queue = PROBATION;
+          probation.linkLast(demoted);
+        }
+      } else {
+        orderOf(node).moveToTail(node);
+      }
+    }
+
+    private AccessOrder<K, V> orderOf(Node<K, V> node) {
+      return node.queue == WINDOW ? window : node.queue == PROBATION ? probation
+          : protectedOrder;
+    }
+
+    /**
+     * Apply all buffered reads to the lists. Eviction lock required from caller.
+     */
+    void drainReadBuffers() {
+      for (ReadBuffer<K, V> buffer : readBuffers) {
+        long readCount = buffer.readCount;
+        long writeCount = buffer.writeCount.get();
+
+        for (; readCount < writeCount; readCount++) {
+          int slot = (int) (readCount & (READ_BUFFER_SIZE - 1));
+          Node<K, V> node = buffer.slots.get(slot);
+          if (node == null) { // Slot reserved, but the node is not written yet.
+            break;
+          }
+          buffer.slots.lazySet(slot, null);
+          onAccess(node);
+        }
+        buffer.readCount = readCount;
+      }
+    }
+  }
+
+  private final MyHashMapLockFreeImpl<K, Node<K, V>> data;
+  private final Segment<K, V>[] segments;
+  private final int segmentShift;
+  private final int segmentMask;
+  private final long maximumWeight;
+  private final Weigher<? super K, ? super V> weigher;
+  private final HashStrategy hashStrategy;
+  private final LongAdder hitCount;
+  private final LongAdder missCount;
+  private final LongAdder evictionCount;
+  private final LongAdder expirationCount;
+  private final LongSupplier ticker; // Nano time source
+  private final long startTime;
+  private volatile Thread sweeper;
+  private volatile boolean closed;
+  private final Consumer<Node<K, V>> expirer = this::expireNode;
+
+  static final long NO_EXPIRY = Long.MAX_VALUE;
+  static final byte WINDOW = 0;
+  static final byte PROBATION = 1;
+  static final byte PROTECTED = 2;
+  static final int READ_BUFFER_SIZE = 16; // Power of two
+  static final int READ_BUFFER_STRIPES = 4; // Power of two
+  private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+  private static final int MAX_SEGMENTS = 1 << 16;
+  private static final int MIN_SEGMENT_SIZE = 64;
+  private static final int THREAD_SLEEP_MILLI_SEC = 20;
+  private static final int SWEEP_INTERVAL_MILLIS = 1000;
+
+  /**
+   * The ticker returns the current time in nanos, System::nanoTime by default. Tests can pass
+   * a fake one to move the time.
+   */
+  public MyHashMapCacheImpl(long maximumWeight, int concurrencyLevel,
+                            Weigher<? super K, ? super V> weigher,
+                            EvictionPolicy evictionPolicy, LongSupplier ticker) {
+    if (maximumWeight <= 0 || concurrencyLevel <= 0) {
+      throw new IllegalArgumentException("Maximum weight and concurrency level must be " +
+          "positive.");
+    }
+
+    // Round the segment count up to a power of two, but keep MIN_SEGMENT_SIZE per segment.
+    int segmentBits = 0;
+    int segmentCount = 1;
+    while (segmentCount < Math.min(concurrencyLevel, MAX_SEGMENTS)
+        && maximumWeight / (segmentCount * 2) >= MIN_SEGMENT_SIZE) {
+      segmentCount <<= 1;
+      segmentBits++;
+    }
+    this.segmentShift = 31 - segmentBits; // Hash is always >= 0, so it has 31 bits.
+    this.segmentMask = segmentCount - 1;
+    this.segments = (Segment<K, V>[]) (new Segment[segmentCount]);
+    for (int i = 0; i < segmentCount; i++) { // Spread the remainder, the sum is exact.
+      segments[i] = new Segment<>(maximumWeight / segmentCount +
+          (i < maximumWeight % segmentCount ? 1 : 0), evictionPolicy, weigher != Weigher.SINGLETON);
+    }
+
+    this.maximumWeight = maximumWeight;
+    this.weigher = weigher;
+    this.hashStrategy = HashStrategy.MURMUR3;
+    this.data = new MyHashMapLockFreeImpl<>();
+    this.hitCount = new LongAdder();
+    this.missCount = new LongAdder();
+    this.evictionCount = new LongAdder();
+    this.expirationCount = new LongAdder();
+    this.ticker = ticker;
+    this.startTime = ticker.getAsLong();
+  }
+
+  public MyHashMapCacheImpl(int maximumSize, int concurrencyLevel) {
+    this(maximumSize, concurrencyLevel, Weigher.singleton(), EvictionPolicy.LRU, System::nanoTime);
+  }
+
+  public MyHashMapCacheImpl(int maximumSize, EvictionPolicy evictionPolicy) {
+    this(maximumSize, DEFAULT_CONCURRENCY_LEVEL, Weigher.singleton(), evictionPolicy,
+        System::nanoTime);
+  }
+
+  public MyHashMapCacheImpl(long maximumWeight, Weigher<? super K, ? super V> weigher,
+                            EvictionPolicy evictionPolicy) {
+    this(maximumWeight, DEFAULT_CONCURRENCY_LEVEL, weigher, evictionPolicy, System::nanoTime);
+  }
+
+  public MyHashMapCacheImpl(int maximumSize) {
+    this(maximumSize, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  @Override
+  public int size() {
+    return data.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hash(one) == hash(two);
+  }
+
+  /**
+   * Return the value by given key. If no such key or the pair has expired, return null.
+   * <p>
+   * No lock. A hit is recorded in a read buffer and applied to the LRU order later. An
+   * expired pair is a miss, and is removed if the eviction lock is free.
+   */
+  @Override
+  public V get(K k) {
+    Node<K, V> node = data.get(k);
+
+    if (node == null) {
+      missCount.increment();
+      return null;
+    }
+    if (hasExpired(node)) {
+      missCount.increment();
+      tryExpire(node);
+      return null;
+    }
+    hitCount.increment();
+    afterRead(node);
+    return node.val;
+  }
+
+  /**
+   * Return true if key exists and has not expired, otherwise false. It's not a hit or miss,
+   * and doesn't change the LRU order.
+   */
+  @Override
+  public boolean containsKey(K k) {
+    Node<K, V> node = data.get(k);
+    return node != null && !hasExpired(node);
+  }
+
+  /**
+   * If the key exists, update the value, otherwise insert a new pair and evict if the
+   * segment is full. Both make the pair the most recently used. The pair has no time to live,
+   * even if the old one had.
+   * <p>
+   * Eviction lock of the key's segment required.
+   */
+  @Override
+  public void put(K k, V v) {
+    putNode(k, v, NO_EXPIRY);
+  }
+
+  /**
+   * Same as put(), but the pair expires after the given time to live. Putting the key again
+   * replaces the time to live.
+   */
+  public void put(K k, V v, long ttl, TimeUnit unit) {
+    if (ttl <= 0) {
+      throw new IllegalArgumentException("Time to live must be positive.");
+    }
+    startSweeper();
+    putNode(k, v, unit.toNanos(ttl));
+  }
+
+  /**
+   * Empty the cache, one segment at a time. Hits, misses and evictions are kept.
+   */
+  @Override
+  public void removeAll() {
+    for (Segment<K, V> segment : segments) {
+      segment.evictionLock.lock();
+      try {
+        segment.drainReadBuffers();
+        for (AccessOrder<K, V> order : new AccessOrder[] {segment.window, segment.probation,
+            segment.protectedOrder}) {
+          while (order.head != null) {
+            removeNode(segment, order.head);
+          }
+        }
+      } finally {
+        segment.evictionLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   * <p>
+   * Eviction lock of the key's segment required.
+   */
+  @Override
+  public boolean remove(K k) {
+    Segment<K, V> segment = segmentFor(hash(k));
+
+    segment.evictionLock.lock();
+    try {
+      Node<K, V> node = findLiveNode(segment, k, maintain(segment));
+      if (node == null) { // No such value
+        return false;
+      }
+      removeNode(segment, node);
+      return true;
+    } finally {
+      segment.evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key. A null
+   * new value removes the pair, otherwise the pair becomes the most recently used. It's not
+   * a hit or miss. An updated pair keeps its time to live, a new one has none.
+   * <p>
+   * Eviction lock of the key's segment required. All writes of a key hold it, so the lookup
+   * and the write are atomic.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    int hash = hash(k);
+    Segment<K, V> segment = segmentFor(hash);
+
+    segment.evictionLock.lock();
+    try {
+      Node<K, V> node = findLiveNode(segment, k, maintain(segment));
+      V newVal = remapping.apply(k, node == null ? null : node.val);
+      int weight = newVal == null ? 0 : weigh(k, newVal);
+
+      if (weight > segment.maximumWeight) {
+        evictHeavy(segment, node);
+      } else if (node != null && newVal != null) { // Update old value
+        node.val = newVal;
+        segment.setWeight(node, weight);
+        segment.onAccess(node);
+        evict(segment);
+      } else if (node != null) {
+        removeNode(segment, node);
+      } else if (newVal != null) {
+        node = new Node<>(k, newVal, hash);
+        node.weight = weight;
+        addNode(segment, node);
+      }
+      return newVal;
+    } finally {
+      segment.evictionLock.unlock();
+    }
+  }
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  /**
+   * Return the total weight of the pairs, expired ones not reclaimed yet included.
+   */
+  public long getWeightedSize() {
+    long result = 0;
+    for (long weight : getSegmentWeights()) {
+      result += weight;
+    }
+    return result;
+  }
+
+  /**
+   * Return the current weight of each segment. Each one is read under its eviction lock, but
+   * not all at once.
+   */
+  public long[] getSegmentWeights() {
+    long[] result = new long[segments.length];
+
+    for (int i = 0; i < segments.length; i++) {
+      segments[i].evictionLock.lock();
+      try {
+        result[i] = segments[i].weightedSize;
+      } finally {
+        segments[i].evictionLock.unlock();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return the weight accounting of each segment, one line per segment: weight, maximum
+   * weight, use and pair count, then the total.
+   */
+  public String getWeightReport() {
+    StringBuilder result = new StringBuilder();
+    long totalWeight = 0;
+
+    for (int i = 0; i < segments.length; i++) {
+      Segment<K, V> segment = segments[i];
+      long weight;
+      int count;
+      segment.evictionLock.lock();
+      try {
+        weight = segment.weightedSize;
+        count = segment.count;
+      } finally {
+        segment.evictionLock.unlock();
+      }
+      totalWeight += weight;
+      result.append(String.format("Segment %d: %d / %d (%.1f%%), %d pairs%n", i, weight,
+          segment.maximumWeight, 100.0 * weight / segment.maximumWeight, count));
+    }
+    result.append(String.format("Total: %d / %d (%.1f%%)%n", totalWeight, maximumWeight,
+        100.0 * totalWeight / maximumWeight));
+    return result.toString();
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  public long getExpirationCount() {
+    return expirationCount.sum();
+  }
+
+  /**
+   * Apply the buffered reads and remove the expired pairs in all segments. The sweeper thread
+   * calls it every SWEEP_INTERVAL_MILLIS.
+   */
+  public void cleanUp() {
+    for (Segment<K, V> segment : segments) {
+      segment.evictionLock.lock();
+      try {
+        maintain(segment);
+      } finally {
+        segment.evictionLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Stop the sweeper thread. The cache still works, and expired pairs are still removed on
+   * access and writes. Calling it again does nothing.
+   */
+  @Override
+  public void close() {
+    Thread runningSweeper;
+    synchronized (this) {
+      closed = true;
+      runningSweeper = sweeper;
+    }
+
+    if (runningSweeper != null) {
+      runningSweeper.interrupt();
+      try {
+        runningSweeper.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Update the old pair, or add a new one, with the given time to live in nanos, NO_EXPIRY
+   * for none. Eviction lock of the key's segment required.
+   */
+  private void putNode(K k, V v, long ttlNanos) {
+    int hash = hash(k);
+    Segment<K, V> segment = segmentFor(hash);
+
+    segment.evictionLock.lock();
+    try {
+      long now = maintain(segment);
+      long expiresAt = ttlNanos >= NO_EXPIRY - now ? NO_EXPIRY : now + ttlNanos;
+      Node<K, V> node = findLiveNode(segment, k, now);
+
+      int weight = weigh(k, v);
+
+      if (weight > segment.maximumWeight) {
+        evictHeavy(segment, node);
+      } else if (node != null) { // Update old value
+        node.val = v;
+        segment.setWeight(node, weight);
+        segment.onAccess(node);
+        setExpiry(segment, node, expiresAt);
+        evict(segment);
+      } else {
+        node = new Node<>(k, v, hash);
+        node.weight = weight;
+        setExpiry(segment, node, expiresAt);
+        addNode(segment, node);
+      }
+    } finally {
+      segment.evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Evict a new pair heavier than the segment, instead of evicting the whole segment before
+   * it. The old node of its key, if any, is removed, and it's one eviction either way.
+   * Eviction lock required from caller.
+   */
+  private void evictHeavy(Segment<K, V> segment, Node<K, V> oldNode) {
+    if (oldNode != null) {
+      removeNode(segment, oldNode);
+    }
+    evictionCount.increment();
+  }
+
+  /**
+   * Add a new node to the window tail, then evict while the segment is over its bound.
+   * Eviction lock required from caller.
+   */
+  private void addNode(Segment<K, V> segment, Node<K, V> node) {
+    data.put(node.key, node);
+    segment.linkLast(node);
+    evict(segment);
+  }
+
+  /**
+   * Move the nodes over the window bound to the main area. If the segment is full, the node
+   * leaving the window competes with the main area victim, the probation head, and the one
+   * less frequently used is evicted. A tie evicts the new one, so a scan can't flush hot
+   * pairs. For LRU the main area is empty, so the window head is evicted.
+   * <p>
+   * A heavier update in the main area can overflow the segment with the window in bound, so
+   * the least recently used main nodes are evicted then.
+   */
+  private void evict(Segment<K, V> segment) {
+    while (segment.window.weight > segment.windowMaximum) {
+      Node<K, V> candidate = segment.window.head;
+      if (segment.weightedSize <= segment.maximumWeight) {
+        segment.admit(candidate);
+        continue;
+      }
+
+      Node<K, V> victim = segment.probation.head != null ? segment.probation.head
+          : segment.protectedOrder.head;
+      if (victim != null && candidate.weight <= segment.maximumWeight
+          && segment.sketch.frequency(candidate.hash) > segment.sketch.frequency(victim.hash)) {
+        removeNode(segment, victim); // The candidate is admitted once there is room.
+      } else {
+        removeNode(segment, candidate);
+      }
+      evictionCount.increment();
+    }
+
+    while (segment.weightedSize > segment.maximumWeight) {
+      Node<K, V> victim = segment.probation.head != null ? segment.probation.head
+          : segment.protectedOrder.head != null ? segment.protectedOrder.head
+          : segment.window.head;
+      removeNode(segment, victim);
+      evictionCount.increment();
+    }
+  }
+
+  /**
+   * Return the weight of the pair by the weigher, which must not be negative.
+   */
+  private int weigh(K k, V v) {
+    int weight = weigher.weigh(k, v);
+    if (weight < 0) {
+      throw new IllegalArgumentException("Weight must not be negative.");
+    }
+    return weight;
+  }
+
+  /**
+   * Eviction lock required from caller.
+   */
+  private void removeNode(Segment<K, V> segment, Node<K, V> node) {
+    segment.unlink(node);
+    segment.timerWheel.deschedule(node);
+    data.remove(node.key);
+  }
+
+  /**
+   * Apply the buffered reads and expire the due pairs of the segment, then return the current
+   * time. Eviction lock required from caller.
+   */
+  private long maintain(Segment<K, V> segment) {
+    long now = currentTime();
+    segment.drainReadBuffers();
+    segment.timerWheel.advance(now, expirer);
+    return now;
+  }
+
+  /**
+   * Return the node of the key, or null if no such key. An expired node is removed and null
+   * is returned. Eviction lock required from caller.
+   */
+  private Node<K, V> findLiveNode(Segment<K, V> segment, K k, long now) {
+    Node<K, V> node = data.get(k);
+
+    if (node != null && node.expiresAt <= now) {
+      removeNode(segment, node);
+      expirationCount.increment();
+      return null;
+    }
+    return node;
+  }
+
+  /**
+   * Eviction lock required from caller.
+   */
+  private void setExpiry(Segment<K, V> segment, Node<K, V> node, long expiresAt) {
+    segment.timerWheel.deschedule(node);
+    node.expiresAt = expiresAt;
+    if (expiresAt != NO_EXPIRY) {
+      segment.timerWheel.schedule(node);
+    }
+  }
+
+  /**
+   * Called by the timing wheel for a due node, which is not scheduled anymore.
+   */
+  private void expireNode(Node<K, V> node) {
+    removeNode(segmentFor(node.hash), node);
+    expirationCount.increment();
+  }
+
+  /**
+   * Remove the expired node found by a read, unless another thread holds the eviction lock.
+   * The node may be due in the current wheel bucket, so it's checked again after maintain().
+   */
+  private void tryExpire(Node<K, V> node) {
+    Segment<K, V> segment = segmentFor(node.hash);
+
+    if (segment.evictionLock.tryLock()) {
+      try {
+        long now = maintain(segment);
+        if (!node.retired && node.expiresAt <= now) {
+          removeNode(segment, node);
+          expirationCount.increment();
+        }
+      } finally {
+        segment.evictionLock.unlock();
+      }
+    }
+  }
+
+  private boolean hasExpired(Node<K, V> node) {
+    long expiresAt = node.expiresAt;
+    return expiresAt != NO_EXPIRY && expiresAt <= currentTime();
+  }
+
+  private long currentTime() {
+    return ticker.getAsLong() - startTime;
+  }
+
+  private void startSweeper() {
+    if (sweeper == null) {
+      synchronized (this) {
+        if (sweeper == null && !closed) {
+          Thread thread = new Thread(this::sweepPeriodically, "cache-sweeper");
+          thread.setDaemon(true);
+          thread.start();
+          sweeper = thread;
+        }
+      }
+    }
+  }
+
+  /**
+   * Body of the sweeper thread.
+   */
+  private void sweepPeriodically() {
+    while (!closed) {
+      try {
+        Thread.sleep(SWEEP_INTERVAL_MILLIS);
+      } catch (InterruptedException e) {
+        return;
+      }
+      cleanUp();
+    }
+  }
+
+  /**
+   * Record the read in a buffer picked by the thread. If the buffer is full, drain the
+   * segment buffers unless another thread holds the eviction lock.
+   */
+  private void afterRead(Node<K, V> node) {
+    Segment<K, V> segment = segmentFor(node.hash);
+    int stripe = (int) (Thread.currentThread().getId() * 0x9E3779B9L >>> 16)
+        & (READ_BUFFER_STRIPES - 1);
+
+    if (segment.readBuffers[stripe].offer(node) && segment.evictionLock.tryLock()) {
+      try {
+        segment.drainReadBuffers();
+      } finally {
+        segment.evictionLock.unlock();
+      }
+    }
+  }
+
+  private int hash(K k) {
+    return hashStrategy.hash(k);
+  }
+
+  private Segment<K, V> segmentFor(int hash) {
+    return segments[(hash >>> segmentShift) & segmentMask];
+  }
+
+  /**
+   * The iterator is weakly consistent like the lock-free hash map one, skips expired pairs,
+   * and doesn't change the LRU order.
+   */
+  @Override
+  public Iterator<MapPair> iterator() {
+    Iterator<MapPair> nodeIterator = data.iterator();
+
+    return new Iterator<MapPair>() {
+      private MapPair<K, V> nextPair = findNext();
+
+      @Override
+      public boolean hasNext() {
+        return nextPair != null;
+      }
+
+      @Override
+      public MapPair next() {
+        if (nextPair == null) {
+          throw new NoSuchElementException();
+        }
+        MapPair<K, V> result = nextPair;
+        nextPair = findNext();
+        return result;
+      }
+
+      private MapPair<K, V> findNext() {
+        while (nodeIterator.hasNext()) {
+          MapPair<K, Node<K, V>> pair = nodeIterator.next();
+          Node<K, V> node = pair.getV();
+          if (!hasExpired(node)) {
+            return new MapPair<>(pair.key, node.val, pair.hash);
+          }
+        }
+        return null;
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("\"MyHashMapCacheImpl{\"");
+
+    for (MapPair<K, V> pair : this) {
+      String temp = "key=" + pair.key + ", val=" + pair.getV() + "; ";
+      result.append(temp);
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+
+  /**
+   * Methods below are for testing.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    return data.getAllBucketSize();
+  }
+
+  @Override
+  public int getTotalPairCount() {
+    return data.getTotalPairCount();
+  }
+
+  @Override
+  public void addAndDelete(K k, V v) {
+    put(k, v);
+    remove(k);
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work. Read threads take no lock.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    Thread.sleep(THREAD_SLEEP_MILLI_SEC);
+  }
+}
@@ -0,0 +1,961 @@
+package johnston.hashmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * This is the thread-safe bucketized cuckoo hash map implementation.
+ * <p>
+ * Each key has exactly two candidate buckets, picked by two independent hash functions, and
+ * each bucket has SLOTS_PER_BUCKET slots. So get() touches at most 2 * SLOTS_PER_BUCKET slots,
+ * no matter how full the table is. When both buckets are full, an insert moves other keys to
+ * their alternate bucket to make room ("cuckoo path").
+ * <p>
+ * Thread-safety:
+ * -> Buckets are guarded by a fixed array of lock stripes. Each stripe also has a version
+ *    counter, which is odd while a write thread is changing a bucket of that stripe.
+ * -> Read threads never lock. They read the versions of both buckets, read the slots, and
+ *    retry if any version changed meanwhile.
+ * -> Write threads lock only the stripes of the two buckets they touch. A cuckoo path is
+ *    searched without lock, then each move locks its two buckets and checks the path is
+ *    still valid before moving.
+ * -> Rehashing locks all stripes.
+ * <p>
+ * More than 2 * SLOTS_PER_BUCKET keys with the same hash code share both buckets, and no
+ * rehash can split them. So a new key that finds no cuckoo path while the table is less than
+ * half full goes to the stash of the table instead, and so do the pairs that a rehash still
+ * fails to place after MAX_REHASH_ATTEMPTS doublings. The stash is a copy-on-write array
+ * searched after the two buckets, written under the stash lock, and read without lock.
+ */
+public class MyHashMapCuckooImpl<K, V> implements MyHashMapTesting<K, V> {
+  /**
+   * The slot arrays. Slot i of bucket b is at index b * SLOTS_PER_BUCKET + i. Hashes are only
+   * read and written by threads holding the stripe lock.
+   */
+  static final class Table {
+    final int bucketCount;
+    final AtomicReferenceArray<Object> keys;
+    final AtomicReferenceArray<Object> vals;
+    final int[] firstHashes;
+    final int[] secondHashes;
+    volatile Stashed[] stash; // Replaced as a whole under the stash lock
+
+    Table(int bucketCount) {
+      this.bucketCount = bucketCount;
+      this.keys = new AtomicReferenceArray<>(bucketCount * SLOTS_PER_BUCKET);
+      this.vals = new AtomicReferenceArray<>(bucketCount * SLOTS_PER_BUCKET);
+      this.firstHashes = new int[bucketCount * SLOTS_PER_BUCKET];
+      this.secondHashes = new int[bucketCount * SLOTS_PER_BUCKET];
+      this.stash = new Stashed[0];
+    }
+
+    int firstBucket(int firstHash) {
+      return firstHash % bucketCount;
+    }
+
+    int secondBucket(int firstHash, int secondHash) {
+      int bucket = secondHash % bucketCount;
+      // Two candidate buckets must differ, otherwise the key has only one bucket.
+      return bucket != firstBucket(firstHash) ? bucket : (bucket + 1) % bucketCount;
+    }
+
+    int alternateBucket(int slot, int bucket) {
+      int first = firstBucket(firstHashes[slot]);
+      return bucket == first ? secondBucket(firstHashes[slot], secondHashes[slot]) : first;
+    }
+  }
+
+  /**
+   * A pair that fits in neither of its buckets. It's immutable, an update replaces it.
+   */
+  static final class Stashed {
+    final Object key;
+    final Object val;
+    final int firstHash;
+    final int secondHash;
+
+    Stashed(Object key, Object val, int firstHash, int secondHash) {
+      this.key = key;
+      this.val = val;
+      this.firstHash = firstHash;
+      this.secondHash = secondHash;
+    }
+  }
+
+  private volatile Table table;
+  private final ReentrantLock[] locks;
+  private final ReentrantLock stashLock; // Taken after the stripe locks
+  private final AtomicLongArray versions;
+  private final LongAdder size;
+  private final float loadFactor;
+  private final HashStrategy hashStrategy;
+
+  static final int SLOTS_PER_BUCKET = 4;
+  private static final int LOCK_STRIPES = 64;
+  private static final int MAX_SEARCH_BUCKETS = 256; // Bound of cuckoo path search
+  private static final int MAX_MOVE_RETRIES = 8;
+  private static final int MAX_REHASH_KICKS = 500;
+  private static final int MAX_REHASH_ATTEMPTS = 4; // Doublings before pairs go to the stash
+  private static final Object NULL_KEY = new Object(); // Stored in place of null key
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int REHASH_FACTOR = 2;
+  private static final float DEFAULT_LOAD_FACTOR = 0.9f;
+  private static final int THREAD_SLEEP_MILLI_SEC = 20;
+
+  /**
+   * Capacity is the number of slots. Cuckoo hashing works well up to ~95% full with 4 slots
+   * per bucket, so the load factor only decides when to rehash before an insert fails.
+   */
+  public MyHashMapCuckooImpl(int capacity, float loadFactor) {
+    this(capacity, loadFactor, HashStrategy.MURMUR3);
+  }
+
+  public MyHashMapCuckooImpl(int capacity, float loadFactor, HashStrategy hashStrategy) {
+    if (capacity <= 0 || loadFactor <= 0 || loadFactor > 1) {
+      throw new IllegalArgumentException("Capacity must be positive, and load factor must be " +
+          "in (0, 1].");
+    }
+    int bucketCount = Math.max(2, (capacity + SLOTS_PER_BUCKET - 1) / SLOTS_PER_BUCKET);
+    this.table = new Table(bucketCount);
+    this.loadFactor = loadFactor;
+    this.hashStrategy = hashStrategy;
+    this.size = new LongAdder();
+    this.versions = new AtomicLongArray(LOCK_STRIPES);
+    this.locks = new ReentrantLock[LOCK_STRIPES];
+    this.stashLock = new ReentrantLock();
+
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  public MyHashMapCuckooImpl() {
+    this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  @Override
+  public int size() {
+    long result = size.sum();
+    return result < 0 ? 0 : (int) result;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hash(one) == hash(two);
+  }
+
+  /**
+   * Return the value by given key. If no such key, return null.
+   * <p>
+   * No lock. Each try reads at most 2 * SLOTS_PER_BUCKET slots and the stash, and it's
+   * retried only if a write thread changed one of the two buckets meanwhile.
+   */
+  @Override
+  public V get(K k) {
+    Object key = maskNull(k);
+    int firstHash = firstHash(k);
+    int secondHash = hash(k);
+
+    while (true) {
+      Table tab = table;
+      int firstBucket = tab.firstBucket(firstHash);
+      int secondBucket = tab.secondBucket(firstHash, secondHash);
+      int firstStripe = getStripe(firstBucket);
+      int secondStripe = getStripe(secondBucket);
+      long firstVersion = versions.get(firstStripe);
+      long secondVersion = versions.get(secondStripe);
+
+      if ((firstVersion & 1) != 0 || (secondVersion & 1) != 0) { // Write in progress
+        Thread.yield();
+        continue;
+      }
+
+      Object result = null;
+      int slot = findSlot(tab, firstBucket, key);
+      if (slot == -1) {
+        slot = findSlot(tab, secondBucket, key);
+      }
+      if (slot != -1) {
+        result = tab.vals.get(slot);
+      } else {
+        Stashed stashed = findStashed(tab.stash, key);
+        result = stashed == null ? null : stashed.val;
+      }
+
+      if (versions.get(firstStripe) == firstVersion &&
+          versions.get(secondStripe) == secondVersion && tab == table) {
+        return (V) result;
+      }
+    }
+  }
+
+  /**
+   * Return true if key exists, otherwise false.
+   */
+  @Override
+  public boolean containsKey(K k) {
+    return get(k) != null;
+  }
+
+  /**
+   * If the key exists, update the value, otherwise insert a new pair.
+   * <p>
+   * Lock the stripes of the two candidate buckets. If both buckets are full, unlock and move
+   * keys along a cuckoo path, or rehash if no path is found, then try again. If the table is
+   * less than half full, the keys of both buckets collide, so the pair goes to the stash.
+   */
+  @Override
+  public void put(K k, V v) {
+    Object key = maskNull(k);
+    int firstHash = firstHash(k);
+    int secondHash = hash(k);
+    int moveRetries = 0;
+    boolean stashing = false;
+
+    while (true) {
+      Table tab = table;
+      int firstBucket = tab.firstBucket(firstHash);
+      int secondBucket = tab.secondBucket(firstHash, secondHash);
+
+      lockBuckets(firstBucket, secondBucket);
+      try {
+        if (tab != table) { // Rehashed before the locks are taken, try again.
+          continue;
+        }
+
+        int slot = findSlot(tab, firstBucket, key);
+        if (slot == -1) {
+          slot = findSlot(tab, secondBucket, key);
+        }
+
+        if (slot != -1) { // Update old value
+          beginWrite(firstBucket, secondBucket);
+          tab.vals.set(slot, v);
+          endWrite(firstBucket, secondBucket);
+          return;
+        }
+        if (replaceStashed(tab, key, v)) {
+          return;
+        }
+
+        slot = findEmptySlot(tab, firstBucket);
+        if (slot == -1) {
+          slot = findEmptySlot(tab, secondBucket);
+        }
+
+        if (slot != -1 && size() + 1 <= maxSize(tab)) {
+          beginWrite(firstBucket, secondBucket);
+          tab.firstHashes[slot] = firstHash;
+          tab.secondHashes[slot] = secondHash;
+          tab.vals.set(slot, v);
+          tab.keys.set(slot, key);
+          endWrite(firstBucket, secondBucket);
+          size.increment();
+          return;
+        }
+        if (stashing && size() + 1 <= maxSize(tab)) {
+          addStashed(tab, new Stashed(key, v, firstHash, secondHash));
+          size.increment();
+          return;
+        }
+      } finally {
+        unlockBuckets(firstBucket, secondBucket);
+      }
+
+      // Both buckets are full or the table is too full.
+      if (size() + 1 > maxSize(tab)) {
+        rehash(tab);
+        moveRetries = 0;
+      } else if (moveRetries++ >= MAX_MOVE_RETRIES ||
+          !moveCuckooPath(tab, firstBucket, secondBucket)) {
+        if (size() + 1 > maxSize(tab) / 2) {
+          rehash(tab);
+          moveRetries = 0;
+        } else {
+          stashing = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Empty the hash table. All stripes are locked.
+   */
+  @Override
+  public void removeAll() {
+    lockAll();
+    try {
+      beginWriteAll();
+      table = new Table(table.bucketCount);
+      size.reset();
+      endWriteAll();
+    } finally {
+      unlockAll();
+    }
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   * <p>
+   * Lock the stripes of the two candidate buckets.
+   */
+  @Override
+  public boolean remove(K k) {
+    Object key = maskNull(k);
+    int firstHash = firstHash(k);
+    int secondHash = hash(k);
+
+    while (true) {
+      Table tab = table;
+      int firstBucket = tab.firstBucket(firstHash);
+      int secondBucket = tab.secondBucket(firstHash, secondHash);
+
+      lockBuckets(firstBucket, secondBucket);
+      try {
+        if (tab != table) { // Rehashed before the locks are taken, try again.
+          continue;
+        }
+
+        int slot = findSlot(tab, firstBucket, key);
+        if (slot == -1) {
+          slot = findSlot(tab, secondBucket, key);
+        }
+        if (slot == -1) { // No such value, unless it's stashed
+          if (replaceStashed(tab, key, null)) {
+            size.decrement();
+            return true;
+          }
+          return false;
+        }
+
+        beginWrite(firstBucket, secondBucket);
+        tab.keys.set(slot, null);
+        tab.vals.set(slot, null);
+        endWrite(firstBucket, secondBucket);
+        size.decrement();
+        return true;
+      } finally {
+        unlockBuckets(firstBucket, secondBucket);
+      }
+    }
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key. A null
+   * new value removes the pair.
+   * <p>
+   * Lock the stripes of the two candidate buckets, same as put(). The function is called once
+   * under the locks, only after a free slot is found for a new key. If both buckets are full,
+   * unlock and make room first, then try again. A stashed key is computed in the stash.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    Object key = maskNull(k);
+    int firstHash = firstHash(k);
+    int secondHash = hash(k);
+    int moveRetries = 0;
+    boolean stashing = false;
+
+    while (true) {
+      Table tab = table;
+      int firstBucket = tab.firstBucket(firstHash);
+      int secondBucket = tab.secondBucket(firstHash, secondHash);
+
+      lockBuckets(firstBucket, secondBucket);
+      try {
+        if (tab != table) { // Rehashed before the locks are taken, try again.
+          continue;
+        }
+
+        int slot = findSlot(tab, firstBucket, key);
+        if (slot == -1) {
+          slot = findSlot(tab, secondBucket, key);
+        }
+
+        if (slot != -1) {
+          V newVal = remapping.apply(k, (V) tab.vals.get(slot));
+          beginWrite(firstBucket, secondBucket);
+          if (newVal != null) { // Update old value
+            tab.vals.set(slot, newVal);
+          } else {
+            tab.keys.set(slot, null);
+            tab.vals.set(slot, null);
+          }
+          endWrite(firstBucket, secondBucket);
+          if (newVal == null) {
+            size.decrement();
+          }
+          return newVal;
+        }
+
+        Stashed stashed = findStashed(tab.stash, key);
+        if (stashed != null) {
+          V newVal = remapping.apply(k, (V) stashed.val);
+          replaceStashed(tab, key, newVal);
+          if (newVal == null) {
+            size.decrement();
+          }
+          return newVal;
+        }
+
+        slot = findEmptySlot(tab, firstBucket);
+        if (slot == -1) {
+          slot = findEmptySlot(tab, secondBucket);
+        }
+
+        if ((slot != -1 || stashing) && size() + 1 <= maxSize(tab)) {
+          V newVal = remapping.apply(k, null);
+          if (newVal == null) {
+            return null;
+          }
+          if (slot == -1) {
+            addStashed(tab, new Stashed(key, newVal, firstHash, secondHash));
+            size.increment();
+            return newVal;
+          }
+          beginWrite(firstBucket, secondBucket);
+          tab.firstHashes[slot] = firstHash;
+          tab.secondHashes[slot] = secondHash;
+          tab.vals.set(slot, newVal);
+          tab.keys.set(slot, key);
+          endWrite(firstBucket, secondBucket);
+          size.increment();
+          return newVal;
+        }
+      } finally {
+        unlockBuckets(firstBucket, secondBucket);
+      }
+
+      // Both buckets are full or the table is too full, same as put().
+      if (size() + 1 > maxSize(tab)) {
+        rehash(tab);
+        moveRetries = 0;
+      } else if (moveRetries++ >= MAX_MOVE_RETRIES ||
+          !moveCuckooPath(tab, firstBucket, secondBucket)) {
+        if (size() + 1 > maxSize(tab) / 2) {
+          rehash(tab);
+          moveRetries = 0;
+        } else {
+          stashing = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the number of pairs the table holds under the load factor.
+   */
+  private float maxSize(Table tab) {
+    return tab.bucketCount * SLOTS_PER_BUCKET * loadFactor;
+  }
+
+  private static Stashed findStashed(Stashed[] stash, Object key) {
+    for (Stashed stashed : stash) {
+      if (stashed.key == key || key.equals(stashed.key)) {
+        return stashed;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Append a new pair to the stash of the table. The stripes of its buckets are locked.
+   */
+  private void addStashed(Table tab, Stashed stashed) {
+    stashLock.lock();
+    try {
+      Stashed[] stash = Arrays.copyOf(tab.stash, tab.stash.length + 1);
+      stash[stash.length - 1] = stashed;
+      tab.stash = stash;
+    } finally {
+      stashLock.unlock();
+    }
+  }
+
+  /**
+   * Replace the value of the stashed key, or remove it if the new value is null. Return false
+   * if the key is not stashed. The stripes of its buckets are locked.
+   */
+  private boolean replaceStashed(Table tab, Object key, Object val) {
+    stashLock.lock();
+    try {
+      Stashed[] stash = tab.stash;
+      for (int i = 0; i < stash.length; i++) {
+        Stashed stashed = stash[i];
+        if (stashed.key != key && !key.equals(stashed.key)) {
+          continue;
+        }
+
+        Stashed[] newStash;
+        if (val != null) {
+          newStash = stash.clone();
+          newStash[i] = new Stashed(stashed.key, val, stashed.firstHash, stashed.secondHash);
+        } else {
+          newStash = new Stashed[stash.length - 1];
+          System.arraycopy(stash, 0, newStash, 0, i);
+          System.arraycopy(stash, i + 1, newStash, i, stash.length - i - 1);
+        }
+        tab.stash = newStash;
+        return true;
+      }
+      return false;
+    } finally {
+      stashLock.unlock();
+    }
+  }
+
+  /**
+   * Return the slot index of the key in the given bucket, or -1 if not found.
+   */
+  private static int findSlot(Table tab, int bucket, Object key) {
+    int start = bucket * SLOTS_PER_BUCKET;
+
+    for (int slot = start; slot < start + SLOTS_PER_BUCKET; slot++) {
+      Object slotKey = tab.keys.get(slot);
+      if (slotKey != null && (slotKey == key || key.equals(slotKey))) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private static int findEmptySlot(Table tab, int bucket) {
+    int start = bucket * SLOTS_PER_BUCKET;
+
+    for (int slot = start; slot < start + SLOTS_PER_BUCKET; slot++) {
+      if (tab.keys.get(slot) == null) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Search a cuckoo path from one of the two full buckets to a bucket with an empty slot,
+   * by breadth-first search without lock. Then move the keys along the path backward, so
+   * one slot of the start bucket becomes empty.
+   * <p>
+   * Return false if no path is found within MAX_SEARCH_BUCKETS buckets. Return true if the
+   * path is moved, or if some bucket on it changed meanwhile, then the caller tries again.
+   */
+  private boolean moveCuckooPath(Table tab, int firstBucket, int secondBucket) {
+    // Each search node is a bucket, with the parent node and the parent slot moving into it.
+    List<int[]> nodes = new ArrayList<>(); // {bucket, parent node index, parent slot}
+    nodes.add(new int[] {firstBucket, -1, -1});
+    nodes.add(new int[] {secondBucket, -1, -1});
+    int found = -1;
+
+    for (int i = 0; i < nodes.size() && nodes.size() < MAX_SEARCH_BUCKETS; i++) {
+      int bucket = nodes.get(i)[0];
+
+      if (i >= 2 && findEmptySlot(tab, bucket) != -1) {
+        found = i;
+        break;
+      }
+
+      int start = bucket * SLOTS_PER_BUCKET;
+      for (int slot = start; slot < start + SLOTS_PER_BUCKET; slot++) {
+        if (tab.keys.get(slot) != null) {
+          nodes.add(new int[] {tab.alternateBucket(slot, bucket), i, slot});
+        }
+      }
+    }
+
+    if (found == -1) {
+      return false;
+    }
+
+    // Move from the end of the path: the key in parent slot moves into the child bucket.
+    for (int node = found; nodes.get(node)[1] != -1; node = nodes.get(node)[1]) {
+      int toBucket = nodes.get(node)[0];
+      int fromSlot = nodes.get(node)[2];
+      int fromBucket = nodes.get(nodes.get(node)[1])[0];
+
+      if (!moveKey(tab, fromBucket, fromSlot, toBucket)) {
+        return true; // Path changed by other threads, let the caller try again.
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Move the key in the given slot to an empty slot of its alternate bucket. Both buckets are
+   * locked, and the move is done only if the key still belongs there and a slot is empty.
+   */
+  private boolean moveKey(Table tab, int fromBucket, int fromSlot, int toBucket) {
+    lockBuckets(fromBucket, toBucket);
+    try {
+      if (tab != table || tab.keys.get(fromSlot) == null ||
+          tab.alternateBucket(fromSlot, fromBucket) != toBucket) {
+        return false;
+      }
+
+      int toSlot = findEmptySlot(tab, toBucket);
+      if (toSlot == -1) {
+        return false;
+      }
+
+      beginWrite(fromBucket, toBucket);
+      tab.firstHashes[toSlot] = tab.firstHashes[fromSlot];
+      tab.secondHashes[toSlot] = tab.secondHashes[fromSlot];
+      tab.vals.set(toSlot, tab.vals.get(fromSlot));
+      tab.keys.set(toSlot, tab.keys.get(fromSlot));
+      tab.keys.set(fromSlot, null);
+      tab.vals.set(fromSlot, null);
+      endWrite(fromBucket, toBucket);
+      return true;
+    } finally {
+      unlockBuckets(fromBucket, toBucket);
+    }
+  }
+
+  /**
+   * Double the bucket count and reinsert all pairs, at most MAX_REHASH_ATTEMPTS times. The
+   * last attempt stashes the pairs it fails to place. All stripes are locked, and nothing is
+   * done if another thread already replaced the given table.
+   */
+  private void rehash(Table oldTable) {
+    lockAll();
+    try {
+      if (oldTable != table) {
+        return;
+      }
+
+      int bucketCount = oldTable.bucketCount;
+      int attempts = 0;
+      Table newTable;
+      do {
+        bucketCount *= REHASH_FACTOR;
+        newTable = new Table(bucketCount);
+      } while (!copyAll(oldTable, newTable, ++attempts == MAX_REHASH_ATTEMPTS));
+
+      beginWriteAll();
+      table = newTable;
+      endWriteAll();
+    } finally {
+      unlockAll();
+    }
+  }
+
+  /**
+   * Insert all pairs of the old table into the new table, which is not visible to other
+   * threads yet. Full buckets are solved by random walk. Return false if it fails, unless
+   * the pair left over is stashed instead. Stashed pairs move to a bucket only if it has an
+   * empty slot, colliding keys would fail anyway.
+   */
+  private static boolean copyAll(Table oldTable, Table newTable, boolean stashOnFailure) {
+    List<Stashed> stash = new ArrayList<>();
+
+    for (Stashed stashed : oldTable.stash) {
+      int slot = findEmptySlot(newTable, newTable.firstBucket(stashed.firstHash));
+      if (slot == -1) {
+        slot = findEmptySlot(newTable,
+            newTable.secondBucket(stashed.firstHash, stashed.secondHash));
+      }
+      if (slot == -1) {
+        stash.add(stashed);
+        continue;
+      }
+      newTable.keys.set(slot, stashed.key);
+      newTable.vals.set(slot, stashed.val);
+      newTable.firstHashes[slot] = stashed.firstHash;
+      newTable.secondHashes[slot] = stashed.secondHash;
+    }
+
+    for (int slot = 0; slot < oldTable.keys.length(); slot++) {
+      Object key = oldTable.keys.get(slot);
+      if (key == null) {
+        continue;
+      }
+
+      Object val = oldTable.vals.get(slot);
+      int firstHash = oldTable.firstHashes[slot];
+      int secondHash = oldTable.secondHashes[slot];
+      int bucket = newTable.firstBucket(firstHash);
+      int kicks = 0;
+
+      while (true) {
+        int emptySlot = findEmptySlot(newTable, bucket);
+        if (emptySlot == -1) {
+          emptySlot = findEmptySlot(newTable, newTable.secondBucket(firstHash, secondHash));
+        }
+        if (emptySlot != -1) {
+          newTable.keys.set(emptySlot, key);
+          newTable.vals.set(emptySlot, val);
+          newTable.firstHashes[emptySlot] = firstHash;
+          newTable.secondHashes[emptySlot] = secondHash;
+          break;
+        }
+        if (kicks++ == MAX_REHASH_KICKS) {
+          if (!stashOnFailure) {
+            return false;
+          }
+          stash.add(new Stashed(key, val, firstHash, secondHash));
+          break;
+        }
+
+        // Kick out a random pair of the bucket and carry it to its alternate bucket.
+        int victim = bucket * SLOTS_PER_BUCKET +
+            ThreadLocalRandom.current().nextInt(SLOTS_PER_BUCKET);
+        Object tempKey = newTable.keys.get(victim);
+        Object tempVal = newTable.vals.get(victim);
+        int tempFirstHash = newTable.firstHashes[victim];
+        int tempSecondHash = newTable.secondHashes[victim];
+        int nextBucket = newTable.alternateBucket(victim, bucket);
+        newTable.keys.set(victim, key);
+        newTable.vals.set(victim, val);
+        newTable.firstHashes[victim] = firstHash;
+        newTable.secondHashes[victim] = secondHash;
+        key = tempKey;
+        val = tempVal;
+        firstHash = tempFirstHash;
+        secondHash = tempSecondHash;
+        bucket = nextBucket;
+      }
+    }
+    newTable.stash = stash.toArray(new Stashed[0]);
+    return true;
+  }
+
+  private int getStripe(int bucket) {
+    return bucket % LOCK_STRIPES;
+  }
+
+  /**
+   * Lock the stripes of two buckets, always the smaller stripe first to avoid dead lock.
+   */
+  private void lockBuckets(int one, int two) {
+    int first = Math.min(getStripe(one), getStripe(two));
+    int second = Math.max(getStripe(one), getStripe(two));
+    locks[first].lock();
+    if (second != first) {
+      locks[second].lock();
+    }
+  }
+
+  private void unlockBuckets(int one, int two) {
+    int first = Math.min(getStripe(one), getStripe(two));
+    int second = Math.max(getStripe(one), getStripe(two));
+    if (second != first) {
+      locks[second].unlock();
+    }
+    locks[first].unlock();
+  }
+
+  private void lockAll() {
+    for (ReentrantLock lock : locks) {
+      lock.lock();
+    }
+  }
+
+  private void unlockAll() {
+    for (int i = locks.length - 1; i >= 0; i--) {
+      locks[i].unlock();
+    }
+  }
+
+  /**
+   * Make the versions odd before changing the buckets, so read threads retry.
+   */
+  private void beginWrite(int one, int two) {
+    versions.incrementAndGet(getStripe(one));
+    if (getStripe(two) != getStripe(one)) {
+      versions.incrementAndGet(getStripe(two));
+    }
+  }
+
+  /**
+   * Make the versions even again after changing the buckets.
+   */
+  private void endWrite(int one, int two) {
+    beginWrite(one, two);
+  }
+
+  private void beginWriteAll() {
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      versions.incrementAndGet(i);
+    }
+  }
+
+  private void endWriteAll() {
+    beginWriteAll();
+  }
+
+  /**
+   * The first hash function, independent of the MurmurHash one: spread the hash code by a
+   * multiplicative hash with the golden ratio.
+   */
+  private static int firstHash(Object k) {
+    if (k == null) {
+      return 0;
+    }
+    int h = k.hashCode() * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & 0x7FFFFFFF; // Ensure > 0
+  }
+
+  /**
+   * Return hashcode of the given key, mixed by the hash strategy to avoid primary clustering.
+   * The default MurmurHash3 finalizer mixes the int directly, so it allocates nothing.
+   * It's also the second hash function of cuckoo hashing.
+   */
+  private int hash(K k) {
+    return hashStrategy.hash(k);
+  }
+
+  private static Object maskNull(Object k) {
+    return k == null ? NULL_KEY : k;
+  }
+
+  private static Object unmaskNull(Object k) {
+    return k == NULL_KEY ? null : k;
+  }
+
+  @Override
+  public Iterator<MapPair> iterator() {
+    return new MyHashMapCuckooIterator<>(this.table);
+  }
+
+  /**
+   * Split by slot ranges, never locks. Like the iterator, a pair moved by a concurrent insert
+   * may be missed or seen twice. The stash is one more bucket after the last slot.
+   */
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    Table tab = this.table;
+    return new BucketSpliterator(tab.keys.length() + 1, size(), (slot, action) -> {
+      if (slot == tab.keys.length()) {
+        for (Stashed stashed : tab.stash) {
+          action.accept(new MapPair<>((K) unmaskNull(stashed.key), (V) stashed.val,
+              stashed.secondHash));
+        }
+        return;
+      }
+      Object key = tab.keys.get(slot);
+      if (key != null) {
+        action.accept(new MapPair<>((K) unmaskNull(key), (V) tab.vals.get(slot),
+            tab.secondHashes[slot]));
+      }
+    });
+  }
+
+  /**
+   * Iterator class for cuckoo hash map. It never locks, and it's not thread-safe: a pair
+   * moved by a concurrent insert may be missed or seen twice. Each MapPair is a new copy.
+   * The stash taken at creation is iterated after the slots.
+   */
+  static class MyHashMapCuckooIterator<K, V> implements Iterator<MapPair> {
+    final Table tab;
+    final Stashed[] stash;
+    int slot;
+
+    MyHashMapCuckooIterator(Table tab) {
+      this.tab = tab;
+      this.stash = tab.stash;
+      this.slot = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (slot < tab.keys.length() && tab.keys.get(slot) == null) {
+        slot++;
+      }
+      return slot < tab.keys.length() + stash.length;
+    }
+
+    @Override
+    public MapPair next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      MapPair<K, V> result;
+      if (slot < tab.keys.length()) {
+        result = new MapPair<>((K) unmaskNull(tab.keys.get(slot)), (V) tab.vals.get(slot),
+            tab.secondHashes[slot]);
+      } else {
+        Stashed stashed = stash[slot - tab.keys.length()];
+        result = new MapPair<>((K) unmaskNull(stashed.key), (V) stashed.val,
+            stashed.secondHash);
+      }
+      slot++;
+      return result;
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("\"MyHashMapCuckooImpl{\"");
+
+    for (MapPair<K, V> pair : this) {
+      String temp = "key=" + pair.key + ", val=" + pair.getV() + "; ";
+      result.append(temp);
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+
+  /**
+   * Method for testing only, won't expose to MyHashMap interface. Return the number of used
+   * slots of each bucket, which is at most SLOTS_PER_BUCKET.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    Table tab = table;
+    int[] result = new int[tab.bucketCount];
+
+    for (int slot = 0; slot < tab.keys.length(); slot++) {
+      if (tab.keys.get(slot) != null) {
+        result[slot / SLOTS_PER_BUCKET]++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Method for testing only, won't expose to MyHashMap interface. Stashed pairs are counted.
+   */
+  @Override
+  public int getTotalPairCount() {
+    int result = table.stash.length;
+
+    for (int bucketSize : getAllBucketSize()) {
+      result += bucketSize;
+    }
+    return result;
+  }
+
+  /**
+   * There is no map-wide lock to hold, so the pair is visible to other threads between
+   * put() and remove().
+   */
+  @Override
+  public void addAndDelete(K k, V v) {
+    put(k, v);
+    remove(k);
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work. Read threads take no lock.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    Thread.sleep(THREAD_SLEEP_MILLI_SEC);
+  }
+}
@@ -1,10 +1,18 @@
 package johnston.hashmap;
 
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
 /**
  * Factory class for MyHashMap interface. Caller can decide thread-safe policy and
  * hash map object with debug methods or not.
  */
 public class MyHashMapFactory {
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
   // Generate hash map without debug methods
   // Call hash map default ctor
   public static MyHashMap newMyHashMap(ThreadSafePolicy policy) {
@@ -17,6 +25,140 @@ public class MyHashMapFactory {
     return newMyHashMapTesting(policy, capacity, loadFactor);
   }
 
+  // Call hash map ctor with parameter and concurrency level.
+  // Only Striped policy uses the concurrency level, other policies ignore it.
+  public static MyHashMap newMyHashMap(ThreadSafePolicy policy, int capacity,
+                                       float loadFactor, int concurrencyLevel) {
+    return newMyHashMapTesting(policy, capacity, loadFactor, concurrencyLevel);
+  }
+
+  // Call hash map default ctor with given collision policy
+  public static MyHashMap newMyHashMap(ThreadSafePolicy policy, CollisionPolicy collision) {
+    return newMyHashMapTesting(policy, collision);
+  }
+
+  // Call hash map ctor with given collision policy and parameter
+  public static MyHashMap newMyHashMap(ThreadSafePolicy policy, CollisionPolicy collision,
+                                       int capacity, float loadFactor) {
+    return newMyHashMapTesting(policy, collision, capacity, loadFactor);
+  }
+
+  // Call hash map default ctor with given rehash policy
+  public static MyHashMap newMyHashMap(ThreadSafePolicy policy, RehashPolicy rehash) {
+    return newMyHashMapTesting(policy, rehash);
+  }
+
+  // Call hash map ctor with given rehash policy and parameter
+  public static MyHashMap newMyHashMap(ThreadSafePolicy policy, RehashPolicy rehash,
+                                       int capacity, float loadFactor) {
+    return newMyHashMapTesting(policy, rehash, capacity, loadFactor);
+  }
+
+  // Call hash map default ctor with given hash strategy
+  public static MyHashMap newMyHashMap(ThreadSafePolicy policy, HashStrategy hashStrategy) {
+    return newMyHashMapTesting(policy, hashStrategy);
+  }
+
+  // Call hash map ctor with given hash strategy and parameter
+  public static MyHashMap newMyHashMap(ThreadSafePolicy policy, HashStrategy hashStrategy,
+                                       int capacity, float loadFactor) {
+    return newMyHashMapTesting(policy, hashStrategy, capacity, loadFactor);
+  }
+
+  // Call hash map ctor with given hash strategy, rehash policy and parameter
+  public static MyHashMap newMyHashMap(ThreadSafePolicy policy, HashStrategy hashStrategy,
+                                       RehashPolicy rehash, int capacity, float loadFactor) {
+    return newMyHashMapTesting(policy, hashStrategy, rehash, capacity, loadFactor);
+  }
+
+  // Generate primitive hash maps without boxing, with the given thread-safe policy
+  public static IntIntMap newIntIntMap(ThreadSafePolicy policy) {
+    return new IntIntMapImpl(policy);
+  }
+
+  public static IntIntMap newIntIntMap(ThreadSafePolicy policy, int capacity, float loadFactor) {
+    return new IntIntMapImpl(policy, capacity, loadFactor);
+  }
+
+  public static LongLongMap newLongLongMap(ThreadSafePolicy policy) {
+    return new LongLongMapImpl(policy);
+  }
+
+  public static LongLongMap newLongLongMap(ThreadSafePolicy policy, int capacity,
+                                           float loadFactor) {
+    return new LongLongMapImpl(policy, capacity, loadFactor);
+  }
+
+  public static <V> LongObjectMap<V> newLongObjectMap(ThreadSafePolicy policy) {
+    return new LongObjectMapImpl<>(policy);
+  }
+
+  public static <V> LongObjectMap<V> newLongObjectMap(ThreadSafePolicy policy, int capacity,
+                                                      float loadFactor) {
+    return new LongObjectMapImpl<>(policy, capacity, loadFactor);
+  }
+
+  // Generate off-heap hash map storing serialized pairs in direct buffers.
+  // Only NoSync and Striped policies are supported. Call close() to free the memory.
+  public static <K, V> MyHashMapOffHeapImpl<K, V> newOffHeapMyHashMap(
+      ThreadSafePolicy policy, Serializer<K> keySerializer, Serializer<V> valSerializer) {
+    return new MyHashMapOffHeapImpl<>(policy, keySerializer, valSerializer);
+  }
+
+  // Generate persistent hash map in a memory-mapped file, reopening it if it exists.
+  // Only NoSync, SyncKeyword and ReadWriteLock policies are supported. Call close() to unmap.
+  public static <K, V> MyHashMapMappedImpl<K, V> newPersistentMyHashMap(
+      ThreadSafePolicy policy, Path file, Serializer<K> keySerializer,
+      Serializer<V> valSerializer, FsyncPolicy fsyncPolicy) {
+    return new MyHashMapMappedImpl<>(file, policy, keySerializer, valSerializer, fsyncPolicy);
+  }
+
+  // Add a write-ahead log to the given empty hash map, replaying the log in the directory.
+  // Call close() to force and close the log.
+  public static <K, V> MyHashMapWalWrapper<K, V> newDurableMyHashMap(
+      MyHashMapTesting<K, V> hashMap, Path directory, Serializer<K> keySerializer,
+      Serializer<V> valSerializer, FsyncPolicy fsyncPolicy) {
+    return new MyHashMapWalWrapper<>(hashMap, directory, keySerializer, valSerializer,
+        fsyncPolicy);
+  }
+
+  // Generate bounded cache hash map, evicting the least recently used pair once it holds
+  // more than the maximum size. Reads take no lock.
+  public static <K, V> MyHashMapCacheImpl<K, V> newBoundedMyHashMap(int maximumSize) {
+    return new MyHashMapCacheImpl<>(maximumSize);
+  }
+
+  // Generate bounded cache hash map, evicting by the given policy once it holds more than
+  // the maximum size.
+  public static <K, V> MyHashMapCacheImpl<K, V> newBoundedMyHashMap(
+      int maximumSize, EvictionPolicy evictionPolicy) {
+    return new MyHashMapCacheImpl<>(maximumSize, evictionPolicy);
+  }
+
+  // Generate bounded cache hash map, evicting by the given policy once the total weight of
+  // its pairs is over the maximum weight, such as a byte budget.
+  public static <K, V> MyHashMapCacheImpl<K, V> newWeightedMyHashMap(
+      long maximumWeight, Weigher<? super K, ? super V> weigher,
+      EvictionPolicy evictionPolicy) {
+    return new MyHashMapCacheImpl<>(maximumWeight, weigher, evictionPolicy);
+  }
+
+  // Generate unbounded hash map whose pairs put with a time to live expire.
+  // Call close() to stop the sweeper thread.
+  public static <K, V> MyHashMapCacheImpl<K, V> newExpiringMyHashMap() {
+    return new MyHashMapCacheImpl<>(Integer.MAX_VALUE);
+  }
+
+  // Make the given hash map a loading cache, calling the loader on a miss, once per key at a
+  // time. Pairs are reloaded on the executor after refreshAfter and expire after expireAfter.
+  public static <K, V> MyHashMapLoadingCache<K, V> newLoadingMyHashMap(
+      MyHashMapTesting<K, MyHashMapLoadingCache.Entry<V>> hashMap,
+      Function<? super K, ? extends V> loader, long refreshAfter, long expireAfter,
+      TimeUnit unit, Executor executor) {
+    return new MyHashMapLoadingCache<>(hashMap, loader, refreshAfter, expireAfter, unit,
+        executor);
+  }
+
   // Generate hash map with debug methods
   // Call hash map default ctor
   public static MyHashMapTesting newMyHashMapTesting(ThreadSafePolicy policy) {
@@ -29,6 +171,152 @@ public class MyHashMapFactory {
     return getMyHashMapTestingWithParam(policy, capacity, loadFactor);
   }
 
+  // Call hash map ctor with parameter and concurrency level.
+  // Only Striped policy uses the concurrency level, other policies ignore it.
+  public static MyHashMapTesting newMyHashMapTesting(ThreadSafePolicy policy, int capacity,
+                                                     float loadFactor, int concurrencyLevel) {
+    if (policy == ThreadSafePolicy.Striped) {
+      return new MyHashMapStripedImpl(capacity, loadFactor, concurrencyLevel);
+    }
+    return getMyHashMapTestingWithParam(policy, capacity, loadFactor);
+  }
+
+  // Call hash map default ctor with given collision policy
+  public static MyHashMapTesting newMyHashMapTesting(ThreadSafePolicy policy,
+                                                     CollisionPolicy collision) {
+    switch (collision) {
+      case SeparateChaining:
+        return getMyHashMapTestingDefault(policy);
+      case LinearProbing:
+        return getOpenAddressingWithPolicy(policy, new MyHashMapLinearProbingImpl());
+      case RobinHood:
+        return getOpenAddressingWithPolicy(policy, new MyHashMapRobinHoodImpl());
+      default:
+        return null;
+    }
+  }
+
+  // Call hash map ctor with given collision policy and parameter
+  public static MyHashMapTesting newMyHashMapTesting(ThreadSafePolicy policy,
+                                                     CollisionPolicy collision,
+                                                     int capacity, float loadFactor) {
+    switch (collision) {
+      case SeparateChaining:
+        return getMyHashMapTestingWithParam(policy, capacity, loadFactor);
+      case LinearProbing:
+        return getOpenAddressingWithPolicy(policy,
+            new MyHashMapLinearProbingImpl(capacity, loadFactor));
+      case RobinHood:
+        return getOpenAddressingWithPolicy(policy,
+            new MyHashMapRobinHoodImpl(capacity, loadFactor));
+      default:
+        return null;
+    }
+  }
+
+  // Call hash map default ctor with given rehash policy
+  public static MyHashMapTesting newMyHashMapTesting(ThreadSafePolicy policy,
+                                                     RehashPolicy rehash) {
+    return newMyHashMapTesting(policy, rehash, DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  // Call hash map ctor with given rehash policy and parameter.
+  // Only the hash maps with a single table lock support incremental rehashing.
+  public static MyHashMapTesting newMyHashMapTesting(ThreadSafePolicy policy,
+                                                     RehashPolicy rehash,
+                                                     int capacity, float loadFactor) {
+    if (rehash == RehashPolicy.StopTheWorld) {
+      return getMyHashMapTestingWithParam(policy, capacity, loadFactor);
+    }
+
+    switch (policy) {
+      case NoSync:
+        return new MyHashMapBasicImpl(capacity, loadFactor, rehash);
+      case SyncKeyword:
+        return new MyHashMapSyncedImpl(capacity, loadFactor, rehash);
+      case ReadWriteLock:
+        return new MyHashMapReentrantImpl(capacity, loadFactor, rehash);
+      case OptimisticRead:
+        return new MyHashMapStampedImpl(capacity, loadFactor, rehash);
+      default:
+        throw new IllegalArgumentException(rehash + " rehashing does not support " + policy);
+    }
+  }
+
+  // Call hash map default ctor with given hash strategy
+  public static MyHashMapTesting newMyHashMapTesting(ThreadSafePolicy policy,
+                                                     HashStrategy hashStrategy) {
+    return newMyHashMapTesting(policy, hashStrategy, DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  // Call hash map ctor with given hash strategy and parameter
+  public static MyHashMapTesting newMyHashMapTesting(ThreadSafePolicy policy,
+                                                     HashStrategy hashStrategy,
+                                                     int capacity, float loadFactor) {
+    return newMyHashMapTesting(policy, hashStrategy, RehashPolicy.StopTheWorld, capacity,
+        loadFactor);
+  }
+
+  // Call hash map ctor with given hash strategy, rehash policy and parameter.
+  // Only the hash maps with a single table lock support incremental rehashing.
+  public static MyHashMapTesting newMyHashMapTesting(ThreadSafePolicy policy,
+                                                     HashStrategy hashStrategy,
+                                                     RehashPolicy rehash,
+                                                     int capacity, float loadFactor) {
+    if (rehash != RehashPolicy.StopTheWorld) {
+      switch (policy) {
+        case NoSync:
+          return new MyHashMapBasicImpl(capacity, loadFactor, rehash, hashStrategy);
+        case SyncKeyword:
+          return new MyHashMapSyncedImpl(capacity, loadFactor, rehash, hashStrategy);
+        case ReadWriteLock:
+          return new MyHashMapReentrantImpl(capacity, loadFactor, rehash, hashStrategy);
+        case OptimisticRead:
+          return new MyHashMapStampedImpl(capacity, loadFactor, rehash, hashStrategy);
+        default:
+          throw new IllegalArgumentException(rehash + " rehashing does not support " + policy);
+      }
+    }
+
+    switch (policy) {
+      case NoSync:
+        return new MyHashMapBasicImpl(capacity, loadFactor, RehashPolicy.StopTheWorld,
+            hashStrategy);
+      case SyncKeyword:
+        return new MyHashMapSyncedImpl(capacity, loadFactor, RehashPolicy.StopTheWorld,
+            hashStrategy);
+      case ReadWriteLock:
+        return new MyHashMapReentrantImpl(capacity, loadFactor, RehashPolicy.StopTheWorld,
+            hashStrategy);
+      case Striped:
+        return new MyHashMapStripedImpl(capacity, loadFactor, hashStrategy);
+      case LockFree:
+        return new MyHashMapLockFreeImpl(capacity, loadFactor, hashStrategy);
+      case Cuckoo:
+        return new MyHashMapCuckooImpl(capacity, loadFactor, hashStrategy);
+      case OptimisticRead:
+        return new MyHashMapStampedImpl(capacity, loadFactor, RehashPolicy.StopTheWorld,
+            hashStrategy);
+      default:
+        return null;
+    }
+  }
+
+  // Open addressing hash maps have no thread-safety, so wrap them for the given policy.
+  private static MyHashMapTesting getOpenAddressingWithPolicy(ThreadSafePolicy policy,
+                                                              MyHashMapTesting hashMap) {
+    switch (policy) {
+      case NoSync:
+        return hashMap;
+      case SyncKeyword:
+        return new MyHashMapSyncedWrapper(hashMap);
+      case ReadWriteLock:
+        return new MyHashMapReentrantWrapper(hashMap);
+      default:
+        throw new IllegalArgumentException("Open addressing does not support " + policy);
+    }
+  }
+
   // Return hash map object based on given enum types and parameter
   private static MyHashMapTesting getMyHashMapTestingWithParam(ThreadSafePolicy policy,
                                                                int capacity, float loadFactor) {
@@ -39,6 +327,14 @@ public class MyHashMapFactory {
         return new MyHashMapSyncedImpl(capacity, loadFactor);
       case ReadWriteLock:
         return new MyHashMapReentrantImpl(capacity, loadFactor);
+      case Striped:
+        return new MyHashMapStripedImpl(capacity, loadFactor);
+      case LockFree:
+        return new MyHashMapLockFreeImpl(capacity, loadFactor);
+      case Cuckoo:
+        return new MyHashMapCuckooImpl(capacity, loadFactor);
+      case OptimisticRead:
+        return new MyHashMapStampedImpl(capacity, loadFactor);
       default:
         return null;
     }
@@ -53,6 +349,14 @@ public class MyHashMapFactory {
         return new MyHashMapSyncedImpl();
       case ReadWriteLock:
         return new MyHashMapReentrantImpl();
+      case Striped:
+        return new MyHashMapStripedImpl();
+      case LockFree:
+        return new MyHashMapLockFreeImpl();
+      case Cuckoo:
+        return new MyHashMapCuckooImpl();
+      case OptimisticRead:
+        return new MyHashMapStampedImpl();
       default:
         return null;
     }
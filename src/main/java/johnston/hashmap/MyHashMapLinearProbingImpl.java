@@ -0,0 +1,440 @@
+package johnston.hashmap;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+
+/**
+ * This is the open addressing hash map implementation without thread safety.
+ * <p>
+ * Hash collision is handled by linear probing instead of separate chaining. Keys, values and
+ * hashes are stored in flat parallel arrays, so there is no MapPair and list node per entry,
+ * and probing walks neighbouring array slots.
+ * <p>
+ * -> Removed slots are marked by a tombstone, so probing does not stop early at them.
+ * -> Rehashing drops all tombstones. If most used slots are tombstones, the table is only
+ *    cleaned up instead of doubled.
+ * <p>
+ * Use MyHashMapSyncedWrapper or MyHashMapReentrantWrapper for thread-safety.
+ */
+public class MyHashMapLinearProbingImpl<K, V> implements MyHashMapTesting<K, V> {
+  private Object[] keys;
+  private Object[] vals;
+  private int[] hashes;
+  private int size;
+  private int tombstones;
+  private final float loadFactor;
+  private final HashStrategy hashStrategy;
+
+  private static final Object TOMBSTONE = new Object();
+  private static final Object NULL_KEY = new Object(); // Stored in place of null key
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int MINIMUM_CAPACITY = 2; // At least one slot is always empty
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  private static final int REHASH_FACTOR = 2;
+  private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+  private static final int THREAD_SLEEP_MILLI_SEC = 20;
+
+  public MyHashMapLinearProbingImpl(int capacity, float loadFactor) {
+    this(capacity, loadFactor, HashStrategy.MURMUR3);
+  }
+
+  public MyHashMapLinearProbingImpl(int capacity, float loadFactor, HashStrategy hashStrategy) {
+    if (capacity <= 0 || loadFactor <= 0 || loadFactor >= 1) {
+      throw new IllegalArgumentException("Capacity must be positive, and load factor must be " +
+          "in (0, 1) for open addressing.");
+    }
+    this.size = 0;
+    this.tombstones = 0;
+    this.loadFactor = loadFactor;
+    this.hashStrategy = hashStrategy;
+    int tableSize = tableSizeFor(capacity);
+    this.keys = new Object[tableSize];
+    this.vals = new Object[tableSize];
+    this.hashes = new int[tableSize];
+  }
+
+  public MyHashMapLinearProbingImpl() {
+    this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hash(one) == hash(two);
+  }
+
+  /**
+   * Return the value by given key. If no such key, return null.
+   */
+  @Override
+  public V get(K k) {
+    int slot = findSlot(maskNull(k), hash(k));
+    return slot == -1 ? null : (V) vals[slot];
+  }
+
+  /**
+   * Return true if key exists, otherwise false.
+   */
+  @Override
+  public boolean containsKey(K k) {
+    return get(k) != null;
+  }
+
+  /**
+   * If the key exists, update the value, otherwise insert a new pair. The new pair reuses the
+   * first tombstone on the probing path if there is one.
+   */
+  @Override
+  public void put(K k, V v) {
+    rehash();
+    Object key = maskNull(k);
+    int hash = hash(k);
+    int slot = hash & (keys.length - 1);
+    int firstTombstone = -1;
+
+    for (int probe = 0; probe < keys.length && keys[slot] != null; probe++) {
+      if (keys[slot] == TOMBSTONE) {
+        if (firstTombstone == -1) {
+          firstTombstone = slot;
+        }
+      } else if (hashes[slot] == hash && key.equals(keys[slot])) { // Update old value
+        vals[slot] = v;
+        return;
+      }
+      slot = (slot + 1) & (keys.length - 1);
+    }
+
+    if (firstTombstone != -1) {
+      slot = firstTombstone;
+      tombstones--;
+    }
+    keys[slot] = key;
+    vals[slot] = v;
+    hashes[slot] = hash;
+    size++;
+  }
+
+  @Override
+  public void removeAll() {
+    size = 0;
+    tombstones = 0;
+    Arrays.fill(keys, null);
+    Arrays.fill(vals, null);
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   */
+  @Override
+  public boolean remove(K k) {
+    int slot = findSlot(maskNull(k), hash(k));
+
+    if (slot == -1) { // No such value
+      return false;
+    }
+
+    keys[slot] = TOMBSTONE;
+    vals[slot] = null;
+    size--;
+    tombstones++;
+    return true;
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key, with one
+   * probe. A null new value removes the pair, an insert reuses the first tombstone on the
+   * probing path if there is one.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    rehash();
+    Object key = maskNull(k);
+    int hash = hash(k);
+    int slot = hash & (keys.length - 1);
+    int firstTombstone = -1;
+
+    for (int probe = 0; probe < keys.length && keys[slot] != null; probe++) {
+      if (keys[slot] == TOMBSTONE) {
+        if (firstTombstone == -1) {
+          firstTombstone = slot;
+        }
+      } else if (hashes[slot] == hash && key.equals(keys[slot])) {
+        V newVal = remapping.apply(k, (V) vals[slot]);
+        if (newVal != null) { // Update old value
+          vals[slot] = newVal;
+        } else {
+          keys[slot] = TOMBSTONE;
+          vals[slot] = null;
+          size--;
+          tombstones++;
+        }
+        return newVal;
+      }
+      slot = (slot + 1) & (keys.length - 1);
+    }
+
+    V newVal = remapping.apply(k, null);
+    if (newVal == null) {
+      return null;
+    }
+    if (firstTombstone != -1) {
+      slot = firstTombstone;
+      tombstones--;
+    }
+    keys[slot] = key;
+    vals[slot] = newVal;
+    hashes[slot] = hash;
+    size++;
+    return newVal;
+  }
+
+  /**
+   * Grow the table once for all keys, then put the pairs.
+   */
+  @Override
+  public void putAll(List<K> newKeys, List<V> newVals) {
+    if (newKeys.size() != newVals.size()) {
+      throw new IllegalArgumentException("Keys and values must have the same size.");
+    }
+    reserve(newKeys.size());
+    Iterator<V> valIterator = newVals.iterator();
+    for (K k : newKeys) {
+      put(k, valIterator.next());
+    }
+  }
+
+  /**
+   * Return the slot index of the given key, or -1 if no such key. Probing stops at the first
+   * empty slot, which rehash() always leaves, or after a full round of the table.
+   */
+  private int findSlot(Object key, int hash) {
+    int slot = hash & (keys.length - 1);
+
+    for (int probe = 0; probe < keys.length && keys[slot] != null; probe++) {
+      if (keys[slot] != TOMBSTONE && hashes[slot] == hash && key.equals(keys[slot])) {
+        return slot;
+      }
+      slot = (slot + 1) & (keys.length - 1);
+    }
+    return -1;
+  }
+
+  /**
+   * Return hashcode of the given key, mixed by the hash strategy to avoid primary clustering.
+   * The default MurmurHash3 finalizer mixes the int directly, so it allocates nothing.
+   */
+  private int hash(K k) {
+    return hashStrategy.hash(k);
+  }
+
+  /**
+   * Return the smallest power of two >= the given capacity and the minimum capacity, so the
+   * home slot of a hash is hash & (length - 1) and probing wraps around by the same mask.
+   */
+  private static int tableSizeFor(int capacity) {
+    int n = MINIMUM_CAPACITY;
+    while (n < capacity && n < MAXIMUM_CAPACITY) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  private static Object maskNull(Object k) {
+    return k == null ? NULL_KEY : k;
+  }
+
+  private static Object unmaskNull(Object k) {
+    return k == NULL_KEY ? null : k;
+  }
+
+  /**
+   * Rebuild the table if live pairs plus tombstones reach the load factor. Tombstones are
+   * dropped during rebuilding. The capacity is doubled only if live pairs alone take more
+   * than half of the allowed load, otherwise it's a cleanup pass with the same capacity. Either
+   * way the next put leaves at least one empty slot, so probing for a missing key stops.
+   */
+  private void rehash() {
+    int capacity = keys.length;
+    if ((size + tombstones + 1) * 1.0f / capacity < loadFactor
+        && size + tombstones + 1 < capacity) {
+      return;
+    }
+
+    if (size * 2.0f / capacity >= loadFactor || size + 1 >= capacity) {
+      capacity *= REHASH_FACTOR;
+    }
+    resize(capacity);
+  }
+
+  /**
+   * Grow the table once so the given number of new pairs fits under the load factor, instead
+   * of doubling it at each threshold while they are put.
+   */
+  private void reserve(int pairCount) {
+    int capacity = keys.length;
+    while ((size + tombstones + pairCount) * 1.0f / capacity >= loadFactor
+        && capacity < MAXIMUM_CAPACITY) {
+      capacity *= REHASH_FACTOR;
+    }
+    if (capacity != keys.length) {
+      resize(capacity);
+    }
+  }
+
+  /**
+   * Move all live pairs to a new table of the given capacity, dropping tombstones.
+   */
+  private void resize(int capacity) {
+    Object[] oldKeys = keys;
+    Object[] oldVals = vals;
+    int[] oldHashes = hashes;
+    keys = new Object[capacity];
+    vals = new Object[capacity];
+    hashes = new int[capacity];
+    tombstones = 0;
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == null || oldKeys[i] == TOMBSTONE) {
+        continue;
+      }
+
+      int slot = oldHashes[i] & (capacity - 1);
+      while (keys[slot] != null) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      keys[slot] = oldKeys[i];
+      vals[slot] = oldVals[i];
+      hashes[slot] = oldHashes[i];
+    }
+  }
+
+  @Override
+  public Iterator<MapPair> iterator() {
+    return new MyHashMapLinearProbingIterator<>(this.keys, this.vals, this.hashes);
+  }
+
+  /**
+   * Split by ranges of home slots. Each visit reads the current table, so a pair put back by
+   * a rehash is still found from its home slot.
+   */
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    int slotCount = keys.length;
+    return new BucketSpliterator(slotCount, size(), (home, action) -> {
+      Object[] keys = this.keys;
+      Object[] vals = this.vals;
+      int[] hashes = this.hashes;
+      BucketSpliterator.visitSlots(keys, hashes, home, slotCount, slot -> {
+        if (keys[slot] != TOMBSTONE) {
+          action.accept(new MapPair<>((K) unmaskNull(keys[slot]), (V) vals[slot], hashes[slot]));
+        }
+      });
+    });
+  }
+
+  /**
+   * Iterator class for open addressing hash map. Pairs are not stored in the table, so each
+   * returned MapPair is a new copy of the slot.
+   */
+  static class MyHashMapLinearProbingIterator<K, V> implements Iterator<MapPair> {
+    final Object[] keys;
+    final Object[] vals;
+    final int[] hashes;
+    int slot;
+
+    MyHashMapLinearProbingIterator(Object[] keys, Object[] vals, int[] hashes) {
+      this.keys = keys;
+      this.vals = vals;
+      this.hashes = hashes;
+      this.slot = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (slot < keys.length && (keys[slot] == null || keys[slot] == TOMBSTONE)) {
+        slot++;
+      }
+      return slot < keys.length;
+    }
+
+    @Override
+    public MapPair next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      MapPair<K, V> result = new MapPair<>((K) unmaskNull(keys[slot]), (V) vals[slot],
+          hashes[slot]);
+      slot++;
+      return result;
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("\"MyHashMapLinearProbingImpl{\"");
+
+    for (MapPair<K, V> pair : this) {
+      String temp = "key=" + pair.key + ", val=" + pair.getV() + "; ";
+      result.append(temp);
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+
+  /**
+   * Methods below are for testing. Each slot is a bucket which holds at most one pair.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    int[] result = new int[keys.length];
+
+    for (int i = 0; i < result.length; i++) {
+      if (keys[i] != null && keys[i] != TOMBSTONE) {
+        result[i] = 1;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int getTotalPairCount() {
+    int result = 0;
+
+    for (Object key : keys) {
+      if (key != null && key != TOMBSTONE) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void addAndDelete(K k, V v) {
+    put(k, v);
+    remove(k);
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    Thread.sleep(THREAD_SLEEP_MILLI_SEC);
+  }
+}
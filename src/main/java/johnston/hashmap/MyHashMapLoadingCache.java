@@ -0,0 +1,383 @@
+package johnston.hashmap;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * This class makes any hash map a loading cache: get() of a missing key calls the loader and
+ * puts its value, so callers don't load by themselves.
+ * <p>
+ * Single flight: a running load is kept as a CompletableFuture in a lock-free hash map of
+ * loads in flight. A miss starts a load only if it puts its future there first, the other
+ * misses of the key wait for that future, so a burst of misses costs the backend one load.
+ * The future is removed once the value is put.
+ * -> get() runs the load on the calling thread, and rethrows the loader exception.
+ * -> getAsync() runs it on the executor and returns the future right away.
+ * -> A loader that gets its own key, directly or through the loaders of other keys, would
+ *    wait for its own future forever. The future records the thread running the loader, so
+ *    get() of a key loaded by the same thread throws IllegalStateException instead.
+ * <p>
+ * With expireAfter, a pair older than it is a miss. A pair older than refreshAfter is still
+ * returned, but it's reloaded on the executor, once at a time, so hot keys are reloaded
+ * before they expire and nobody waits for them. A failed refresh keeps the old value. Pairs
+ * are stored with their load time, so the hash map holds Entry values. If it's a cache hash
+ * map, pairs are put with expireAfter as their time to live so it reclaims them.
+ * <p>
+ * A null value from the loader is not stored. Writes by put() during a load may be
+ * overwritten by the loaded value. The hash map must be thread-safe if used by multiple
+ * threads.
+ */
+public class MyHashMapLoadingCache<K, V> implements MyHashMapTesting<K, V> {
+  /**
+   * A loaded value with its load time.
+   */
+  public static final class Entry<V> {
+    private final V val;
+    private final long loadTime;
+
+    Entry(V val, long loadTime) {
+      this.val = val;
+      this.loadTime = loadTime;
+    }
+  }
+
+  /**
+   * A load in flight, with the thread running its loader, null until the loader starts.
+   */
+  private static final class Load<V> extends CompletableFuture<V> {
+    private volatile Thread loadingThread;
+  }
+
+  private final MyHashMapTesting<K, Entry<V>> hashMap;
+  private final MyHashMapLockFreeImpl<K, Load<V>> inFlight;
+  private final Function<? super K, ? extends V> loader;
+  private final Executor executor;
+  private final long refreshAfterNanos;
+  private final long expireAfterNanos;
+  private final LongAdder loadCount;
+  private final LongAdder loadFailureCount;
+
+  private static final long NEVER = Long.MAX_VALUE;
+
+  /**
+   * Pairs older than refreshAfter are reloaded in the background, and pairs older than
+   * expireAfter are reloaded on access.
+   */
+  public MyHashMapLoadingCache(MyHashMapTesting<K, Entry<V>> hashMap,
+                               Function<? super K, ? extends V> loader, long refreshAfter,
+                               long expireAfter, TimeUnit unit, Executor executor) {
+    if (refreshAfter <= 0 || expireAfter < refreshAfter) {
+      throw new IllegalArgumentException("Refresh time must be positive and not after the " +
+          "expiry time.");
+    }
+
+    this.hashMap = hashMap;
+    this.inFlight = new MyHashMapLockFreeImpl<>();
+    this.loader = loader;
+    this.executor = executor;
+    this.refreshAfterNanos = refreshAfter == NEVER ? NEVER : unit.toNanos(refreshAfter);
+    this.expireAfterNanos = expireAfter == NEVER ? NEVER : unit.toNanos(expireAfter);
+    this.loadCount = new LongAdder();
+    this.loadFailureCount = new LongAdder();
+  }
+
+  /**
+   * Loaded pairs never expire or refresh.
+   */
+  public MyHashMapLoadingCache(MyHashMapTesting<K, Entry<V>> hashMap,
+                               Function<? super K, ? extends V> loader, Executor executor) {
+    this(hashMap, loader, NEVER, NEVER, TimeUnit.NANOSECONDS, executor);
+  }
+
+  @Override
+  public int size() {
+    return hashMap.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return hashMap.isEmpty();
+  }
+
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hashMap.isSameHash(one, two);
+  }
+
+  /**
+   * Return the value by given key, loading it on the calling thread if missing or expired.
+   * If a load of the key is in flight, wait for it instead. Return null if the loader does.
+   * Throw IllegalStateException if the load in flight runs on this thread, that is, a loader
+   * gets its own key.
+   */
+  @Override
+  public V get(K k) {
+    Entry<V> entry = hashMap.get(k);
+    long now = System.nanoTime();
+
+    if (isFresh(entry, now)) {
+      refreshIfStale(k, entry, now);
+      return entry.val;
+    }
+    return join(load(k, false, false));
+  }
+
+  /**
+   * Return a future of the value by given key. A missing or expired pair is loaded on the
+   * executor, the others return a completed future.
+   */
+  public CompletableFuture<V> getAsync(K k) {
+    Entry<V> entry = hashMap.get(k);
+    long now = System.nanoTime();
+
+    if (isFresh(entry, now)) {
+      refreshIfStale(k, entry, now);
+      return CompletableFuture.completedFuture(entry.val);
+    }
+    return load(k, true, false);
+  }
+
+  /**
+   * Return the value by given key without loading it, null if missing or expired.
+   */
+  public V getIfPresent(K k) {
+    Entry<V> entry = hashMap.get(k);
+    return isFresh(entry, System.nanoTime()) ? entry.val : null;
+  }
+
+  /**
+   * Reload the key on the executor and return the future of the new value. If a load of the
+   * key is in flight, return its future instead.
+   */
+  public CompletableFuture<V> refresh(K k) {
+    return load(k, true, true);
+  }
+
+  @Override
+  public boolean containsKey(K k) {
+    return getIfPresent(k) != null;
+  }
+
+  @Override
+  public void put(K k, V v) {
+    putEntry(k, v);
+  }
+
+  @Override
+  public void removeAll() {
+    hashMap.removeAll();
+  }
+
+  @Override
+  public boolean remove(K k) {
+    return hashMap.remove(k);
+  }
+
+  /**
+   * Compute by the compute() of the hash map, an expired pair is passed as null. It doesn't
+   * load, and the computed value gets a new load time.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    Entry<V> result = hashMap.compute(k, (key, old) -> {
+      long now = System.nanoTime();
+      V newVal = remapping.apply(key, isFresh(old, now) ? old.val : null);
+      return newVal == null ? null : new Entry<>(newVal, now);
+    });
+    return result == null ? null : result.val;
+  }
+
+  public long getLoadCount() {
+    return loadCount.sum();
+  }
+
+  public long getLoadFailureCount() {
+    return loadFailureCount.sum();
+  }
+
+  /**
+   * Return the future of the load in flight, or start a new one, on the executor if async.
+   * A sync load runs on the calling thread before returning its completed future. Unless
+   * it's a reload, a fresh pair put by a load just finished is used instead of loading again.
+   */
+  private CompletableFuture<V> load(K k, boolean async, boolean reload) {
+    Load<V> future = new Load<>();
+    Load<V> running = inFlight.putIfAbsent(k, future);
+
+    if (running != null) {
+      if (!async && running.loadingThread == Thread.currentThread()) {
+        throw new IllegalStateException("Recursive load: the loader of key " + k +
+            " gets it.");
+      }
+      return running;
+    }
+    if (async) {
+      try {
+        executor.execute(() -> runLoad(k, future, reload));
+      } catch (RuntimeException e) { // Rejected, don't leave the future in flight.
+        finishLoad(k, future);
+        future.completeExceptionally(e);
+      }
+    } else {
+      runLoad(k, future, reload);
+    }
+    return future;
+  }
+
+  private void runLoad(K k, Load<V> future, boolean reload) {
+    Entry<V> entry = reload ? null : hashMap.get(k);
+    if (isFresh(entry, System.nanoTime())) {
+      finishLoad(k, future);
+      future.complete(entry.val);
+      return;
+    }
+
+    future.loadingThread = Thread.currentThread();
+    try {
+      V v = loader.apply(k);
+      loadCount.increment();
+      if (v == null) {
+        hashMap.remove(k);
+      } else {
+        putEntry(k, v);
+      }
+      finishLoad(k, future);
+      future.complete(v);
+    } catch (RuntimeException | Error e) {
+      loadFailureCount.increment();
+      finishLoad(k, future);
+      future.completeExceptionally(e);
+    } finally {
+      future.loadingThread = null;
+    }
+  }
+
+  /**
+   * Remove the future from the loads in flight, unless a newer load replaced it.
+   */
+  private void finishLoad(K k, Load<V> future) {
+    inFlight.compute(k, (key, running) -> running == future ? null : running);
+  }
+
+  private void putEntry(K k, V v) {
+    Entry<V> entry = new Entry<>(v, System.nanoTime());
+
+    if (expireAfterNanos != NEVER && hashMap instanceof MyHashMapCacheImpl) {
+      ((MyHashMapCacheImpl<K, Entry<V>>) hashMap).put(k, entry, expireAfterNanos,
+          TimeUnit.NANOSECONDS);
+    } else {
+      hashMap.put(k, entry);
+    }
+  }
+
+  private boolean isFresh(Entry<V> entry, long now) {
+    return entry != null && now - entry.loadTime < expireAfterNanos;
+  }
+
+  private void refreshIfStale(K k, Entry<V> entry, long now) {
+    if (now - entry.loadTime >= refreshAfterNanos && !inFlight.containsKey(k)) {
+      load(k, true, true);
+    }
+  }
+
+  /**
+   * Wait for the future, and throw the loader exception as it is.
+   */
+  private static <V> V join(CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * The iterator skips expired pairs, and is as consistent as the one of the hash map.
+   */
+  @Override
+  public Iterator<MapPair> iterator() {
+    Iterator<MapPair> entryIterator = hashMap.iterator();
+    long now = System.nanoTime();
+
+    return new Iterator<MapPair>() {
+      private MapPair<K, V> nextPair = findNext();
+
+      @Override
+      public boolean hasNext() {
+        return nextPair != null;
+      }
+
+      @Override
+      public MapPair next() {
+        if (nextPair == null) {
+          throw new NoSuchElementException();
+        }
+        MapPair<K, V> result = nextPair;
+        nextPair = findNext();
+        return result;
+      }
+
+      private MapPair<K, V> findNext() {
+        while (entryIterator.hasNext()) {
+          MapPair<K, Entry<V>> pair = entryIterator.next();
+          if (isFresh(pair.getV(), now)) {
+            return new MapPair<>(pair.key, pair.getV().val, pair.hash);
+          }
+        }
+        return null;
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("\"MyHashMapLoadingCache{\"");
+
+    for (MapPair<K, V> pair : this) {
+      String temp = "key=" + pair.key + ", val=" + pair.getV() + "; ";
+      result.append(temp);
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+
+  /**
+   * Methods below are for testing.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    return hashMap.getAllBucketSize();
+  }
+
+  @Override
+  public int getTotalPairCount() {
+    return hashMap.getTotalPairCount();
+  }
+
+  @Override
+  public void addAndDelete(K k, V v) {
+    put(k, v);
+    remove(k);
+  }
+
+  @Override
+  public void heavyRead() throws InterruptedException {
+    hashMap.heavyRead();
+  }
+}
@@ -0,0 +1,629 @@
+package johnston.hashmap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * This is the non-blocking hash map implementation, designed like the Java 8 ConcurrentHashMap.
+ * <p>
+ * Read threads never take any lock, not even during rehashing:
+ * -> The bucket heads live in an AtomicReferenceArray, and node fields are volatile.
+ * -> Insert into an empty bucket is a single CAS on the bucket head.
+ * -> Insert into a non-empty bucket, update and remove lock the head node of that bucket only.
+ * -> Rehashing copies each bucket into the new table, then replaces the old bucket with a
+ *    forwarding node. A read thread that meets a forwarding node just continues in the new
+ *    table. Old chains are never modified by rehashing, so a read thread walking one is safe.
+ * <p>
+ * The table length is always a power of two, so an old bucket i is split into new bucket i
+ * and i + old length.
+ */
+public class MyHashMapLockFreeImpl<K, V> implements MyHashMapTesting<K, V> {
+  /**
+   * Bucket node. Hash and key never change, value and next are volatile so read threads
+   * can see the latest write without lock.
+   */
+  static class Node<K, V> {
+    final int hash;
+    final K key;
+    volatile V val;
+    volatile Node<K, V> next;
+
+    Node(int hash, K key, V val, Node<K, V> next) {
+      this.hash = hash;
+      this.key = key;
+      this.val = val;
+      this.next = next;
+    }
+  }
+
+  /**
+   * Placed at the head of a bucket which is already copied to the next table.
+   */
+  static final class ForwardingNode<K, V> extends Node<K, V> {
+    final AtomicReferenceArray<Node<K, V>> nextTable;
+
+    ForwardingNode(AtomicReferenceArray<Node<K, V>> nextTable) {
+      super(MOVED, null, null, null);
+      this.nextTable = nextTable;
+    }
+  }
+
+  private volatile AtomicReferenceArray<Node<K, V>> table;
+  private volatile AtomicReferenceArray<Node<K, V>> nextTable;
+  private volatile int threshold;
+  private final float loadFactor;
+  private final HashStrategy hashStrategy;
+  private final LongAdder size;
+  private final AtomicBoolean resizing;
+
+  private static final int MOVED = -1; // Hash of forwarding nodes, real hash is always >= 0
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+  private static final int THREAD_SLEEP_MILLI_SEC = 20;
+
+  public MyHashMapLockFreeImpl(int capacity, float loadFactor) {
+    this(capacity, loadFactor, HashStrategy.MURMUR3);
+  }
+
+  public MyHashMapLockFreeImpl(int capacity, float loadFactor, HashStrategy hashStrategy) {
+    if (capacity <= 0 || loadFactor <= 0) {
+      throw new IllegalArgumentException("Capacity and load factor must be positive.");
+    }
+    int tableSize = tableSizeFor(capacity);
+    this.loadFactor = loadFactor;
+    this.hashStrategy = hashStrategy;
+    this.table = new AtomicReferenceArray<>(tableSize);
+    this.nextTable = null;
+    this.threshold = (int) (tableSize * loadFactor);
+    this.size = new LongAdder();
+    this.resizing = new AtomicBoolean(false);
+  }
+
+  public MyHashMapLockFreeImpl() {
+    this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * Return size of the hash table. No need to lock, the counter is a LongAdder so write
+   * threads do not contend on a single counter.
+   */
+  @Override
+  public int size() {
+    long result = size.sum();
+    return result < 0 ? 0 : (int) result;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hash(one) == hash(two);
+  }
+
+  /**
+   * Return the value by given key. If no such key, return null.
+   * <p>
+   * No lock. If the bucket is already moved, continue in the next table.
+   */
+  @Override
+  public V get(K k) {
+    int hash = hash(k);
+    AtomicReferenceArray<Node<K, V>> tab = table;
+
+    while (true) {
+      Node<K, V> node = tab.get(hash & (tab.length() - 1));
+
+      if (node == null) {
+        return null;
+      }
+      if (node.hash == MOVED) {
+        tab = ((ForwardingNode<K, V>) node).nextTable;
+        continue;
+      }
+
+      for (; node != null; node = node.next) {
+        if (node.hash == hash && isSameKey(k, node.key)) {
+          return node.val;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Return true if key exists, otherwise false.
+   */
+  @Override
+  public boolean containsKey(K k) {
+    return get(k) != null;
+  }
+
+  /**
+   * If the key exists, update the value, otherwise insert a new pair.
+   * <p>
+   * Empty bucket: CAS the new node as bucket head, no lock.
+   * Otherwise: lock the bucket head node, and retry if the head is changed meanwhile.
+   */
+  @Override
+  public void put(K k, V v) {
+    int hash = hash(k);
+    AtomicReferenceArray<Node<K, V>> tab = table;
+    boolean added = false;
+
+    while (true) {
+      int bucketIdx = hash & (tab.length() - 1);
+      Node<K, V> head = tab.get(bucketIdx);
+
+      if (head == null) {
+        if (tab.compareAndSet(bucketIdx, null, new Node<>(hash, k, v, null))) {
+          added = true;
+          break;
+        }
+      } else if (head.hash == MOVED) {
+        tab = ((ForwardingNode<K, V>) head).nextTable;
+      } else {
+        boolean done = false;
+
+        synchronized (head) {
+          if (tab.get(bucketIdx) == head) { // Head not changed, safe to write the bucket
+            done = true;
+            for (Node<K, V> node = head; ; node = node.next) {
+              if (node.hash == hash && isSameKey(k, node.key)) { // Update old value
+                node.val = v;
+                break;
+              }
+              if (node.next == null) { // No such pair, append to the end.
+                node.next = new Node<>(hash, k, v, null);
+                added = true;
+                break;
+              }
+            }
+          }
+        }
+
+        if (done) {
+          break;
+        }
+      }
+    }
+
+    if (added) {
+      size.increment();
+      rehash();
+    }
+  }
+
+  /**
+   * Empty the hash table. Each bucket is cleared under its head lock. If a rehashing is
+   * running, wait for it and start over in the new table.
+   */
+  @Override
+  public void removeAll() {
+    AtomicReferenceArray<Node<K, V>> tab = table;
+    int bucketIdx = 0;
+
+    while (bucketIdx < tab.length()) {
+      Node<K, V> head = tab.get(bucketIdx);
+
+      if (head == null) {
+        bucketIdx++;
+      } else if (head.hash == MOVED) {
+        while (nextTable != null) {
+          Thread.yield();
+        }
+        tab = table;
+        bucketIdx = 0;
+      } else {
+        synchronized (head) {
+          if (tab.get(bucketIdx) == head) {
+            int removed = 0;
+            for (Node<K, V> node = head; node != null; node = node.next) {
+              removed++;
+            }
+            tab.set(bucketIdx, null);
+            size.add(-removed);
+            bucketIdx++;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   * <p>
+   * Lock the bucket head node only.
+   */
+  @Override
+  public boolean remove(K k) {
+    int hash = hash(k);
+    AtomicReferenceArray<Node<K, V>> tab = table;
+
+    while (true) {
+      int bucketIdx = hash & (tab.length() - 1);
+      Node<K, V> head = tab.get(bucketIdx);
+
+      if (head == null) {
+        return false;
+      }
+      if (head.hash == MOVED) {
+        tab = ((ForwardingNode<K, V>) head).nextTable;
+        continue;
+      }
+
+      synchronized (head) {
+        if (tab.get(bucketIdx) != head) { // Head changed, try again.
+          continue;
+        }
+
+        Node<K, V> prev = null;
+        for (Node<K, V> node = head; node != null; prev = node, node = node.next) {
+          if (node.hash == hash && isSameKey(k, node.key)) {
+            if (prev == null) {
+              tab.set(bucketIdx, node.next);
+            } else {
+              prev.next = node.next;
+            }
+            size.decrement();
+            return true;
+          }
+        }
+        return false; // No such value
+      }
+    }
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key. A null
+   * new value removes the pair.
+   * <p>
+   * Empty bucket: compute from null, then CAS the new node as bucket head, no lock. If the
+   * CAS fails, try again, so the function may be called more than once and must have no
+   * side effect.
+   * Otherwise: lock the bucket head node, same as put(), and compute once under it.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    int hash = hash(k);
+    AtomicReferenceArray<Node<K, V>> tab = table;
+    int delta = 0;
+    V newVal;
+
+    while (true) {
+      int bucketIdx = hash & (tab.length() - 1);
+      Node<K, V> head = tab.get(bucketIdx);
+
+      if (head == null) {
+        newVal = remapping.apply(k, null);
+        if (newVal == null) {
+          return null;
+        }
+        if (tab.compareAndSet(bucketIdx, null, new Node<>(hash, k, newVal, null))) {
+          delta = 1;
+          break;
+        }
+      } else if (head.hash == MOVED) {
+        tab = ((ForwardingNode<K, V>) head).nextTable;
+      } else {
+        synchronized (head) {
+          if (tab.get(bucketIdx) != head) { // Head changed, try again.
+            continue;
+          }
+
+          Node<K, V> prev = null;
+          Node<K, V> node = head;
+          while (node != null && !(node.hash == hash && isSameKey(k, node.key))) {
+            prev = node;
+            node = node.next;
+          }
+          newVal = remapping.apply(k, node == null ? null : node.val);
+
+          if (node != null && newVal != null) { // Update old value
+            node.val = newVal;
+          } else if (node != null) { // Remove old pair
+            if (prev == null) {
+              tab.set(bucketIdx, node.next);
+            } else {
+              prev.next = node.next;
+            }
+            delta = -1;
+          } else if (newVal != null) { // No such pair, append to the end.
+            prev.next = new Node<>(hash, k, newVal, null);
+            delta = 1;
+          }
+        }
+        break;
+      }
+    }
+
+    if (delta > 0) {
+      size.increment();
+      rehash();
+    } else if (delta < 0) {
+      size.decrement();
+    }
+    return newVal;
+  }
+
+  /**
+   * Return hashcode of the given key, mixed by the hash strategy to avoid primary clustering.
+   * The default MurmurHash3 finalizer mixes the int directly, so it allocates nothing.
+   */
+  private int hash(K k) {
+    return hashStrategy.hash(k);
+  }
+
+  private static boolean isSameKey(Object one, Object two) {
+    return one == two || (one != null && one.equals(two));
+  }
+
+  /**
+   * Return the smallest power of two which is >= the given capacity.
+   */
+  private static int tableSizeFor(int capacity) {
+    int n = 1;
+    while (n < capacity && n < MAXIMUM_CAPACITY) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  /**
+   * Double the table if the size reaches the threshold. Only one thread does the copy, the
+   * others keep going: readers and writers that meet a forwarding node move on to the next
+   * table.
+   */
+  private void rehash() {
+    AtomicReferenceArray<Node<K, V>> tab = table;
+    if (size.sum() < threshold || tab.length() >= MAXIMUM_CAPACITY ||
+        !resizing.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      if (tab != table) { // Another thread already finished rehashing.
+        return;
+      }
+      int oldLength = tab.length();
+      AtomicReferenceArray<Node<K, V>> newTab = new AtomicReferenceArray<>(oldLength * 2);
+      ForwardingNode<K, V> forwardingNode = new ForwardingNode<>(newTab);
+      nextTable = newTab;
+
+      for (int bucketIdx = oldLength - 1; bucketIdx >= 0; bucketIdx--) {
+        transferBucket(tab, newTab, bucketIdx, forwardingNode);
+      }
+
+      table = newTab;
+      nextTable = null;
+      threshold = (int) (newTab.length() * loadFactor);
+    } finally {
+      resizing.set(false);
+    }
+  }
+
+  /**
+   * Copy one bucket into the next table. The old chain is not changed, new nodes are created
+   * for both halves, so a read thread in the old chain is not affected.
+   */
+  private void transferBucket(AtomicReferenceArray<Node<K, V>> tab,
+                              AtomicReferenceArray<Node<K, V>> newTab, int bucketIdx,
+                              ForwardingNode<K, V> forwardingNode) {
+    int oldLength = tab.length();
+
+    while (true) {
+      Node<K, V> head = tab.get(bucketIdx);
+
+      if (head == null) {
+        if (tab.compareAndSet(bucketIdx, null, forwardingNode)) {
+          return;
+        }
+        continue;
+      }
+
+      synchronized (head) {
+        if (tab.get(bucketIdx) != head) {
+          continue;
+        }
+
+        Node<K, V> low = null;
+        Node<K, V> high = null;
+        for (Node<K, V> node = head; node != null; node = node.next) {
+          if ((node.hash & oldLength) == 0) {
+            low = new Node<>(node.hash, node.key, node.val, low);
+          } else {
+            high = new Node<>(node.hash, node.key, node.val, high);
+          }
+        }
+
+        newTab.set(bucketIdx, low);
+        newTab.set(bucketIdx + oldLength, high);
+        tab.set(bucketIdx, forwardingNode);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Return the chain length of a bucket. Follow the forwarding node if it's moved.
+   */
+  private int getBucketLength(AtomicReferenceArray<Node<K, V>> tab, int bucketIdx) {
+    Node<K, V> head = tab.get(bucketIdx);
+
+    if (head != null && head.hash == MOVED) {
+      AtomicReferenceArray<Node<K, V>> newTab = ((ForwardingNode<K, V>) head).nextTable;
+      return getBucketLength(newTab, bucketIdx) +
+          getBucketLength(newTab, bucketIdx + tab.length());
+    }
+
+    int result = 0;
+    for (Node<K, V> node = head; node != null; node = node.next) {
+      result++;
+    }
+    return result;
+  }
+
+  @Override
+  public Iterator<MapPair> iterator() {
+    return new MyHashMapLockFreeIterator<>(this.table);
+  }
+
+  /**
+   * Split by ranges of the base table. A moved bucket is visited in its two halves of the
+   * next table, like the iterator, so it's weakly consistent and never locks.
+   */
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    AtomicReferenceArray<Node<K, V>> baseTable = this.table;
+    return new BucketSpliterator(baseTable.length(), size(),
+        (bucket, action) -> visitBucket(baseTable, bucket, action));
+  }
+
+  private static <K, V> void visitBucket(AtomicReferenceArray<Node<K, V>> tab, int bucketIdx,
+                                         Consumer<? super MapPair> action) {
+    Node<K, V> head = tab.get(bucketIdx);
+
+    if (head != null && head.hash == MOVED) {
+      AtomicReferenceArray<Node<K, V>> newTab = ((ForwardingNode<K, V>) head).nextTable;
+      visitBucket(newTab, bucketIdx, action);
+      visitBucket(newTab, bucketIdx + tab.length(), action);
+      return;
+    }
+    for (Node<K, V> node = head; node != null; node = node.next) {
+      action.accept(new MapPair<>(node.key, node.val, node.hash));
+    }
+  }
+
+  /**
+   * Iterator class for lock-free hash map. It's weakly consistent: it never throws
+   * ConcurrentModificationException and never locks, and it may or may not show the writes
+   * done after it's created. Each pair is a snapshot of the node.
+   */
+  static class MyHashMapLockFreeIterator<K, V> implements Iterator<MapPair> {
+    // Buckets to visit: a moved bucket pushes its two halves in the next table.
+    final Deque<AtomicReferenceArray<Node<K, V>>> tableStack;
+    final Deque<Integer> bucketStack;
+    final AtomicReferenceArray<Node<K, V>> baseTable;
+    int baseIndex;
+    Node<K, V> curr;
+
+    MyHashMapLockFreeIterator(AtomicReferenceArray<Node<K, V>> baseTable) {
+      this.tableStack = new ArrayDeque<>();
+      this.bucketStack = new ArrayDeque<>();
+      this.baseTable = baseTable;
+      this.baseIndex = 0;
+      this.curr = null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (curr == null) {
+        AtomicReferenceArray<Node<K, V>> tab;
+        int bucketIdx;
+
+        if (!tableStack.isEmpty()) {
+          tab = tableStack.pop();
+          bucketIdx = bucketStack.pop();
+        } else if (baseIndex < baseTable.length()) {
+          tab = baseTable;
+          bucketIdx = baseIndex++;
+        } else {
+          return false;
+        }
+
+        Node<K, V> head = tab.get(bucketIdx);
+        if (head != null && head.hash == MOVED) {
+          AtomicReferenceArray<Node<K, V>> newTab = ((ForwardingNode<K, V>) head).nextTable;
+          tableStack.push(newTab);
+          bucketStack.push(bucketIdx + tab.length());
+          tableStack.push(newTab);
+          bucketStack.push(bucketIdx);
+        } else {
+          curr = head;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public MapPair next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      MapPair<K, V> result = new MapPair<>(curr.key, curr.val, curr.hash);
+      curr = curr.next;
+      return result;
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("\"MyHashMapLockFreeImpl{\"");
+
+    for (MapPair<K, V> pair : this) {
+      String temp = "key=" + pair.key + ", val=" + pair.getV() + "; ";
+      result.append(temp);
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+
+  /**
+   * Method for testing only, won't expose to MyHashMap interface.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    AtomicReferenceArray<Node<K, V>> tab = table;
+    int[] result = new int[tab.length()];
+
+    for (int i = 0; i < result.length; i++) {
+      result[i] = getBucketLength(tab, i);
+    }
+    return result;
+  }
+
+  /**
+   * Method for testing only, won't expose to MyHashMap interface.
+   */
+  @Override
+  public int getTotalPairCount() {
+    int result = 0;
+
+    for (int bucketSize : getAllBucketSize()) {
+      result += bucketSize;
+    }
+    return result;
+  }
+
+  /**
+   * There is no map-wide lock to hold, so the pair is visible to other threads between
+   * put() and remove().
+   */
+  @Override
+  public void addAndDelete(K k, V v) {
+    put(k, v);
+    remove(k);
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work. Read threads take no lock.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    Thread.sleep(THREAD_SLEEP_MILLI_SEC);
+  }
+}
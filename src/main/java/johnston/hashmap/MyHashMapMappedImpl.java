@@ -0,0 +1,829 @@
+package johnston.hashmap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.zip.CRC32;
+
+/**
+ * This is the persistent hash map implementation whose table lives in a memory-mapped file.
+ * Reopening an existing file only reads its header and maps the file, pages are loaded by
+ * the OS on first access. So a warm start takes the same time however many pairs it holds.
+ * <p>
+ * The file is mapped in chunks of the same size:
+ * -> Header at offset 0: magic number, version, chunk size, and two metadata slots.
+ * -> Records: int hash, int key length, int value length, key bytes, value bytes. A record
+ *    never spans two chunks.
+ * -> Index: open addressing table of long file offsets of records, 0 for empty slot and -1
+ *    for tombstone.
+ * <p>
+ * Records and indexes are appended at the data end. put() of an existing key appends a new
+ * record, and rehashing appends a new index, the old ones are left as garbage.
+ * <p>
+ * Metadata (index offset, index capacity, count, data end) is committed after each write to
+ * the older of the two slots, with a sequence number and a CRC32. Opening picks the valid
+ * slot with the higher sequence, so a torn header write never corrupts the map. An update
+ * commits its record before pointing the slot to it, so only the slot of an unfinished
+ * insert can point past the committed data end, and it's treated as a tombstone. If the
+ * file was not closed cleanly, opening scans the index once to drop them.
+ * <p>
+ * Keys are hashed and matched by their serialized bytes, so the hash is the same across
+ * runs. Thread-safety: NoSync, SyncKeyword and ReadWriteLock policies, one lock for the
+ * whole map. Call close() to force and unmap the file.
+ */
+public class MyHashMapMappedImpl<K, V> implements MyHashMapTesting<K, V>, Closeable {
+  private final Serializer<K> keySerializer;
+  private final Serializer<V> valSerializer;
+  private final FsyncPolicy fsyncPolicy;
+  private final PrimitiveMapLock lock;
+  private final FileChannel channel;
+  private final List<MappedByteBuffer> chunks;
+  private final int chunkSize;
+  private boolean[] dirtyChunks;
+  private long lastForceMillis;
+  private volatile boolean closed;
+
+  // Committed metadata
+  private long sequence;
+  private long indexOffset;
+  private int indexCapacity;
+  private volatile int count;
+  private int tombstones;
+  private long dataEnd;
+
+  private static final long MAGIC = 0x4D59484D4D415031L; // "MYHMMAP1"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 4096;
+  private static final int METADATA_OFFSET = 64;
+  private static final int METADATA_BYTES = 64;
+  private static final int METADATA_CRC_OFFSET = 44;
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int DEFAULT_CHUNK_SIZE = 1 << 26;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  private static final int REHASH_FACTOR = 2;
+  private static final float LOAD_FACTOR = 0.5f;
+  private static final int RECORD_HEADER_BYTES = 12;
+  private static final int SLOT_BYTES = 8;
+  private static final long EMPTY = 0;
+  private static final long TOMBSTONE = -1;
+  private static final long FSYNC_INTERVAL_MILLIS = 1000;
+  private static final int THREAD_SLEEP_MILLI_SEC = 20;
+
+  /**
+   * Open the hash map in the given file, or create it if the file is empty or missing. The
+   * chunk size is only used for a new file, an existing file keeps its own.
+   */
+  public MyHashMapMappedImpl(Path file, ThreadSafePolicy policy, Serializer<K> keySerializer,
+                             Serializer<V> valSerializer, FsyncPolicy fsyncPolicy,
+                             int chunkSize) {
+    if (policy != ThreadSafePolicy.NoSync && policy != ThreadSafePolicy.SyncKeyword &&
+        policy != ThreadSafePolicy.ReadWriteLock) {
+      throw new IllegalArgumentException("Memory-mapped hash map does not support " + policy);
+    }
+    if (chunkSize < HEADER_BYTES * 2 || chunkSize % SLOT_BYTES != 0) {
+      throw new IllegalArgumentException("Chunk size must be a multiple of 8 and at least " +
+          HEADER_BYTES * 2 + " bytes.");
+    }
+    this.keySerializer = keySerializer;
+    this.valSerializer = valSerializer;
+    this.fsyncPolicy = fsyncPolicy;
+    this.lock = new PrimitiveMapLock(policy);
+    this.chunks = new ArrayList<>();
+
+    try {
+      this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+      if (channel.size() == 0) {
+        this.chunkSize = chunkSize;
+        this.dirtyChunks = new boolean[1];
+        create();
+      } else {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        channel.read(header, 0);
+        if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+          throw new IllegalArgumentException(file + " is not a memory-mapped hash map file.");
+        }
+        this.chunkSize = header.getInt(12);
+        this.dirtyChunks = new boolean[1];
+        open();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.lastForceMillis = System.currentTimeMillis();
+  }
+
+  public MyHashMapMappedImpl(Path file, ThreadSafePolicy policy, Serializer<K> keySerializer,
+                             Serializer<V> valSerializer, FsyncPolicy fsyncPolicy) {
+    this(file, policy, keySerializer, valSerializer, fsyncPolicy, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Write the header and an empty index to a new file.
+   */
+  private void create() throws IOException {
+    MappedByteBuffer first = chunk(0);
+    first.putLong(0, MAGIC);
+    first.putInt(8, VERSION);
+    first.putInt(12, chunkSize);
+
+    sequence = 0;
+    indexCapacity = DEFAULT_CAPACITY;
+    indexOffset = HEADER_BYTES;
+    dataEnd = HEADER_BYTES + (long) indexCapacity * SLOT_BYTES;
+    count = 0;
+    tombstones = 0;
+    commit(true);
+    force();
+  }
+
+  /**
+   * Map the existing chunks and load the newer valid metadata. The index is only scanned if
+   * the file was not closed cleanly.
+   */
+  private void open() throws IOException {
+    long chunkCount = (channel.size() + chunkSize - 1) / chunkSize;
+    for (int i = 0; i < chunkCount; i++) {
+      chunk(i);
+    }
+
+    MappedByteBuffer first = chunks.get(0);
+    int latest = -1;
+    for (int slot = 0; slot < 2; slot++) {
+      int offset = METADATA_OFFSET + slot * METADATA_BYTES;
+      if (first.getInt(offset + METADATA_CRC_OFFSET) == metadataCrc(first, offset) &&
+          (latest == -1 || first.getLong(offset) > sequence)) {
+        latest = slot;
+        sequence = first.getLong(offset);
+      }
+    }
+    if (latest == -1) {
+      throw new IllegalStateException("Both metadata slots are corrupted.");
+    }
+
+    int offset = METADATA_OFFSET + latest * METADATA_BYTES;
+    indexOffset = first.getLong(offset + 8);
+    indexCapacity = first.getInt(offset + 16);
+    count = first.getInt(offset + 20);
+    tombstones = first.getInt(offset + 24);
+    boolean clean = first.getInt(offset + 28) == 1;
+    dataEnd = first.getLong(offset + 32);
+
+    if (!clean) {
+      recover();
+    }
+  }
+
+  /**
+   * Drop index slots of unfinished writes, and count the pairs again.
+   */
+  private void recover() {
+    int newCount = 0;
+    int newTombstones = 0;
+
+    for (int i = 0; i < indexCapacity; i++) {
+      long address = getSlot(i);
+      if (address >= dataEnd) {
+        setSlot(i, TOMBSTONE);
+        address = TOMBSTONE;
+      }
+      if (address == TOMBSTONE) {
+        newTombstones++;
+      } else if (address != EMPTY) {
+        newCount++;
+      }
+    }
+    count = newCount;
+    tombstones = newTombstones;
+    commit(false);
+  }
+
+  @Override
+  public int size() {
+    return count;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hash(serialize(one)) == hash(serialize(two));
+  }
+
+  /**
+   * Return the value by given key. If no such key, return null.
+   * <p>
+   * Read lock required.
+   */
+  @Override
+  public V get(K k) {
+    byte[] keyBytes = serialize(k);
+    int hash = hash(keyBytes);
+    long stamp = lock.readLock();
+
+    try {
+      ensureOpen();
+      int slot = findSlot(hash, keyBytes);
+      if (slot == -1) {
+        return null;
+      }
+
+      return readValue(getSlot(slot));
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Return true if key exists, otherwise false.
+   */
+  @Override
+  public boolean containsKey(K k) {
+    byte[] keyBytes = serialize(k);
+    int hash = hash(keyBytes);
+    long stamp = lock.readLock();
+
+    try {
+      ensureOpen();
+      return findSlot(hash, keyBytes) != -1;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Append a record, point the slot of the key to it, then commit the metadata. An update
+   * commits twice, see writeSlot().
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public void put(K k, V v) {
+    byte[] keyBytes = serialize(k);
+    int hash = hash(keyBytes);
+    int valLength = valSerializer.serializedSize(v);
+    checkRecordSize(keyBytes, valLength);
+    long stamp = lock.writeLock();
+
+    try {
+      ensureOpen();
+      rehash();
+
+      long address = writeRecord(hash, keyBytes, v, valLength);
+      writeSlot(findSlot(hash, keyBytes), hash, address);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Start over with an empty index after the header. Old records are overwritten by later
+   * writes.
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public void removeAll() {
+    long stamp = lock.writeLock();
+    try {
+      ensureOpen();
+      indexCapacity = DEFAULT_CAPACITY;
+      indexOffset = HEADER_BYTES;
+      for (int i = 0; i < indexCapacity; i++) {
+        setSlot(i, EMPTY);
+      }
+      dataEnd = HEADER_BYTES + (long) indexCapacity * SLOT_BYTES;
+      count = 0;
+      tombstones = 0;
+      commitWrite();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public boolean remove(K k) {
+    byte[] keyBytes = serialize(k);
+    int hash = hash(keyBytes);
+    long stamp = lock.writeLock();
+
+    try {
+      ensureOpen();
+      int slot = findSlot(hash, keyBytes);
+      if (slot == -1) { // No such value
+        return false;
+      }
+
+      removeSlot(slot);
+      commitWrite();
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key. A null
+   * new value removes the pair, and returning the old value itself writes nothing.
+   * <p>
+   * Write lock required. The key is found once, then the new record and the metadata are
+   * written like put() or remove().
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    byte[] keyBytes = serialize(k);
+    int hash = hash(keyBytes);
+    long stamp = lock.writeLock();
+
+    try {
+      ensureOpen();
+      rehash();
+      int slot = findSlot(hash, keyBytes);
+      V oldVal = slot == -1 ? null : readValue(getSlot(slot));
+      V newVal = remapping.apply(k, oldVal);
+
+      if (newVal == oldVal) { // Nothing to change
+        return newVal;
+      }
+      if (newVal == null) {
+        removeSlot(slot);
+      } else {
+        int valLength = valSerializer.serializedSize(newVal);
+        checkRecordSize(keyBytes, valLength);
+        writeSlot(slot, hash, writeRecord(hash, keyBytes, newVal, valLength));
+        return newVal;
+      }
+      commitWrite();
+      return newVal;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Force all written pages to disk.
+   */
+  public void sync() {
+    long stamp = lock.writeLock();
+    try {
+      ensureOpen();
+      force();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Mark the file clean, force and unmap it. Calling it again does nothing.
+   */
+  @Override
+  public void close() {
+    long stamp = lock.writeLock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      commit(true);
+      force();
+      for (MappedByteBuffer chunk : chunks) {
+        DirectBuffers.release(chunk);
+      }
+      chunks.clear();
+      channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Return the file size in bytes, including garbage records and indexes.
+   */
+  public long getFileSize() {
+    long stamp = lock.readLock();
+    try {
+      return (long) chunks.size() * chunkSize;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private void checkRecordSize(byte[] keyBytes, int valLength) {
+    int recordSize = RECORD_HEADER_BYTES + keyBytes.length + valLength;
+    if (recordSize > chunkSize) {
+      throw new IllegalArgumentException("Pair of " + recordSize + " bytes is larger than " +
+          "the chunk size.");
+    }
+  }
+
+  /**
+   * Append a record of the pair and return its address. Write lock required from caller.
+   */
+  private long writeRecord(int hash, byte[] keyBytes, V v, int valLength) {
+    long address = allocateRecord(RECORD_HEADER_BYTES + keyBytes.length + valLength);
+    ByteBuffer record = recordAt(address);
+    record.putInt(hash);
+    record.putInt(keyBytes.length);
+    record.putInt(valLength);
+    record.put(keyBytes);
+    valSerializer.write(v, record);
+    dirtyChunks[(int) (address / chunkSize)] = true;
+    return address;
+  }
+
+  private V readValue(long address) {
+    ByteBuffer record = recordAt(address);
+    int keyLength = record.getInt(record.position() + 4);
+    int valLength = record.getInt(record.position() + 8);
+    record.position(record.position() + RECORD_HEADER_BYTES + keyLength);
+    return valSerializer.read(record, valLength);
+  }
+
+  /**
+   * Point the given slot of the key to the new record, or insert it if the slot is -1, and
+   * commit. An update commits the data end over the record first, then swaps the slot: a
+   * crash in between leaves the old record, and after it, the slot points to a committed
+   * record. Either way it's valid, while a slot past the data end would be dropped by
+   * recover() along with the committed old value. Write lock required from caller.
+   */
+  private void writeSlot(int slot, int hash, long address) {
+    if (slot != -1) {
+      commitWrite();
+    }
+    putSlot(slot, hash, address);
+    commitWrite();
+  }
+
+  /**
+   * Point the given slot of the key to the record, or insert the record if the slot is -1.
+   * The old record becomes garbage. Write lock required from caller.
+   */
+  private void putSlot(int slot, int hash, long address) {
+    if (slot != -1) { // Update old value
+      setSlot(slot, address);
+      return;
+    }
+
+    slot = hash & (indexCapacity - 1);
+    while (getSlot(slot) != EMPTY && getSlot(slot) != TOMBSTONE) {
+      slot = (slot + 1) & (indexCapacity - 1);
+    }
+    if (getSlot(slot) == TOMBSTONE) {
+      tombstones--;
+    }
+    setSlot(slot, address);
+    count++;
+  }
+
+  private void removeSlot(int slot) {
+    setSlot(slot, TOMBSTONE);
+    count--;
+    tombstones++;
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Hash map is closed.");
+    }
+  }
+
+  private byte[] serialize(K k) {
+    byte[] result = new byte[keySerializer.serializedSize(k)];
+    keySerializer.write(k, ByteBuffer.wrap(result));
+    return result;
+  }
+
+  private static int hash(byte[] keyBytes) {
+    return HashStrategy.hashBytes(keyBytes);
+  }
+
+  /**
+   * Return the chunk of the given number, mapping it first if needed. Mapping past the end
+   * of the file grows the file.
+   */
+  private MappedByteBuffer chunk(int chunkIdx) {
+    while (chunks.size() <= chunkIdx) {
+      try {
+        chunks.add(channel.map(FileChannel.MapMode.READ_WRITE,
+            (long) chunks.size() * chunkSize, chunkSize));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    if (dirtyChunks.length < chunks.size()) {
+      boolean[] newDirtyChunks = new boolean[chunks.size() * 2];
+      System.arraycopy(dirtyChunks, 0, newDirtyChunks, 0, dirtyChunks.length);
+      dirtyChunks = newDirtyChunks;
+    }
+    return chunks.get(chunkIdx);
+  }
+
+  private long getSlot(int slot) {
+    long offset = indexOffset + (long) slot * SLOT_BYTES;
+    return chunks.get((int) (offset / chunkSize)).getLong((int) (offset % chunkSize));
+  }
+
+  private void setSlot(int slot, long address) {
+    long offset = indexOffset + (long) slot * SLOT_BYTES;
+    int chunkIdx = (int) (offset / chunkSize);
+    chunk(chunkIdx).putLong((int) (offset % chunkSize), address);
+    dirtyChunks[chunkIdx] = true;
+  }
+
+  /**
+   * Return a buffer positioned at the record of the given file offset.
+   */
+  private ByteBuffer recordAt(long address) {
+    ByteBuffer record = chunks.get((int) (address / chunkSize)).duplicate();
+    record.position((int) (address % chunkSize));
+    return record;
+  }
+
+  /**
+   * Reserve the given bytes at the data end, moving to the next chunk if the record doesn't
+   * fit in the current one.
+   */
+  private long allocateRecord(int size) {
+    long offsetInChunk = dataEnd % chunkSize;
+    if (offsetInChunk + size > chunkSize) {
+      dataEnd += chunkSize - offsetInChunk;
+    }
+    long address = dataEnd;
+    dataEnd += size;
+    chunk((int) ((dataEnd - 1) / chunkSize));
+    return address;
+  }
+
+  /**
+   * Return the slot of the key, or -1 if no such key. Slots pointing past the data end are
+   * skipped like tombstones.
+   */
+  private int findSlot(int hash, byte[] keyBytes) {
+    int slot = hash & (indexCapacity - 1);
+
+    for (int probe = 0; probe < indexCapacity; probe++) {
+      long address = getSlot(slot);
+      if (address == EMPTY) {
+        return -1;
+      }
+      if (address != TOMBSTONE && address < dataEnd && isSameKey(address, hash, keyBytes)) {
+        return slot;
+      }
+      slot = (slot + 1) & (indexCapacity - 1);
+    }
+    return -1;
+  }
+
+  private boolean isSameKey(long address, int hash, byte[] keyBytes) {
+    MappedByteBuffer chunk = chunks.get((int) (address / chunkSize));
+    int offset = (int) (address % chunkSize);
+
+    if (chunk.getInt(offset) != hash || chunk.getInt(offset + 4) != keyBytes.length) {
+      return false;
+    }
+    offset += RECORD_HEADER_BYTES;
+    for (int i = 0; i < keyBytes.length; i++) {
+      if (chunk.get(offset + i) != keyBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Append a doubled index if live pairs plus tombstones reach the load factor, and switch to
+   * it. The old index stays as it is until the new metadata is committed.
+   */
+  private void rehash() {
+    if ((count + tombstones + 1) * 1.0f / indexCapacity < LOAD_FACTOR) {
+      return;
+    }
+
+    int newCapacity = indexCapacity;
+    if (count * 2.0f / indexCapacity >= LOAD_FACTOR && indexCapacity < MAXIMUM_CAPACITY) {
+      newCapacity *= REHASH_FACTOR;
+    }
+
+    long oldIndexOffset = indexOffset;
+    int oldCapacity = indexCapacity;
+    dataEnd = (dataEnd + SLOT_BYTES - 1) / SLOT_BYTES * SLOT_BYTES;
+    indexOffset = dataEnd;
+    indexCapacity = newCapacity;
+    dataEnd += (long) newCapacity * SLOT_BYTES;
+    chunk((int) ((dataEnd - 1) / chunkSize));
+    for (int i = 0; i < newCapacity; i++) { // Reused space after removeAll() may be dirty.
+      setSlot(i, EMPTY);
+    }
+
+    for (int i = 0; i < oldCapacity; i++) {
+      long offset = oldIndexOffset + (long) i * SLOT_BYTES;
+      long address = chunks.get((int) (offset / chunkSize)).getLong((int) (offset % chunkSize));
+      if (address == EMPTY || address == TOMBSTONE) {
+        continue;
+      }
+
+      int hash = chunks.get((int) (address / chunkSize)).getInt((int) (address % chunkSize));
+      int slot = hash & (newCapacity - 1);
+      while (getSlot(slot) != EMPTY) {
+        slot = (slot + 1) & (newCapacity - 1);
+      }
+      setSlot(slot, address);
+    }
+    tombstones = 0;
+  }
+
+  /**
+   * Commit the metadata after a write, and force the file as the fsync policy says.
+   */
+  private void commitWrite() {
+    switch (fsyncPolicy) {
+      case Always:
+        force(); // Records and index reach the disk before the metadata pointing to them.
+        commit(false);
+        chunks.get(0).force();
+        break;
+      case Periodic:
+        commit(false);
+        if (System.currentTimeMillis() - lastForceMillis >= FSYNC_INTERVAL_MILLIS) {
+          force();
+        }
+        break;
+      default:
+        commit(false);
+    }
+  }
+
+  /**
+   * Write the metadata with the next sequence number to the older slot. It's the commit
+   * point: until the CRC is written, opening still picks the other slot.
+   */
+  private void commit(boolean clean) {
+    sequence++;
+    MappedByteBuffer first = chunk(0);
+    int offset = METADATA_OFFSET + (int) (sequence % 2) * METADATA_BYTES;
+
+    first.putLong(offset, sequence);
+    first.putLong(offset + 8, indexOffset);
+    first.putInt(offset + 16, indexCapacity);
+    first.putInt(offset + 20, count);
+    first.putInt(offset + 24, tombstones);
+    first.putInt(offset + 28, clean ? 1 : 0);
+    first.putLong(offset + 32, dataEnd);
+    first.putInt(offset + METADATA_CRC_OFFSET, metadataCrc(first, offset));
+    dirtyChunks[0] = true;
+  }
+
+  private static int metadataCrc(ByteBuffer first, int offset) {
+    ByteBuffer metadata = first.duplicate();
+    metadata.limit(offset + METADATA_CRC_OFFSET);
+    metadata.position(offset);
+    CRC32 crc = new CRC32();
+    crc.update(metadata);
+    return (int) crc.getValue();
+  }
+
+  private void force() {
+    for (int i = 0; i < chunks.size(); i++) {
+      if (dirtyChunks[i]) {
+        chunks.get(i).force();
+        dirtyChunks[i] = false;
+      }
+    }
+    lastForceMillis = System.currentTimeMillis();
+  }
+
+  @Override
+  public Iterator<MapPair> iterator() {
+    return new MyHashMapMappedIterator();
+  }
+
+  /**
+   * Iterator class for memory-mapped hash map. Each next() takes the read lock and copies
+   * one pair into a new MapPair. It's weakly consistent: a pair moved by a concurrent
+   * rehash may be missed or returned twice.
+   */
+  class MyHashMapMappedIterator implements Iterator<MapPair> {
+    int slot;
+    MapPair<K, V> nextPair;
+
+    MyHashMapMappedIterator() {
+      this.slot = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (nextPair != null) {
+        return true;
+      }
+
+      long stamp = lock.readLock();
+      try {
+        ensureOpen();
+        while (slot < indexCapacity && nextPair == null) {
+          long address = getSlot(slot++);
+          if (address != EMPTY && address != TOMBSTONE && address < dataEnd) {
+            ByteBuffer record = recordAt(address);
+            record.getInt(); // Hash of the key bytes
+            int keyLength = record.getInt();
+            int valLength = record.getInt();
+            K key = keySerializer.read(record, keyLength);
+            V val = valSerializer.read(record, valLength);
+            nextPair = new MapPair<>(key, val);
+          }
+        }
+      } finally {
+        lock.unlockRead(stamp);
+      }
+      return nextPair != null;
+    }
+
+    @Override
+    public MapPair next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      MapPair<K, V> result = nextPair;
+      nextPair = null;
+      return result;
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("\"MyHashMapMappedImpl{\"");
+
+    for (MapPair<K, V> pair : this) {
+      String temp = "key=" + pair.key + ", val=" + pair.getV() + "; ";
+      result.append(temp);
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+
+  /**
+   * Methods below are for testing. Each index slot is a bucket which holds at most one pair.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    long stamp = lock.readLock();
+    try {
+      int[] result = new int[indexCapacity];
+      for (int i = 0; i < indexCapacity; i++) {
+        long address = getSlot(i);
+        if (address != EMPTY && address != TOMBSTONE && address < dataEnd) {
+          result[i] = 1;
+        }
+      }
+      return result;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public int getTotalPairCount() {
+    int result = 0;
+    for (int size : getAllBucketSize()) {
+      result += size;
+    }
+    return result;
+  }
+
+  @Override
+  public void addAndDelete(K k, V v) {
+    put(k, v);
+    remove(k);
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    Thread.sleep(THREAD_SLEEP_MILLI_SEC);
+  }
+}
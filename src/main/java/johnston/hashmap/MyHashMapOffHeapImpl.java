@@ -0,0 +1,705 @@
+package johnston.hashmap;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+
+/**
+ * This is the hash map implementation storing keys and values off the Java heap, so a big
+ * cache adds nothing for GC to trace.
+ * <p>
+ * Keys and values are serialized by the given Serializer into records in direct ByteBuffer
+ * slabs. The index is an open addressing table in a direct ByteBuffer too, each slot holds
+ * the slab number and offset of a record. So heap usage stays the same however many pairs
+ * are stored.
+ * <p>
+ * -> Record layout: int hash, int key length, int value length, key bytes, value bytes.
+ * -> Keys are matched by hash, then by bytes. The hash is computed from the key bytes, so
+ *    keys need no hashCode() and equals(), but equal keys must serialize to equal bytes.
+ * -> Records are appended to the current slab. put() of an existing key appends a new record
+ *    and remove() only marks the index slot, the old records become garbage. A segment
+ *    copies its live records into new slabs once garbage outgrows them.
+ * -> Null keys and values are not supported.
+ * <p>
+ * NoSync policy has one segment without lock. Striped policy splits the map into segments
+ * by the high bits of the hash, each with its own read-write lock, index and slabs.
+ * <p>
+ * Call close() to free the off-heap memory. The hash map can't be used after it.
+ */
+public class MyHashMapOffHeapImpl<K, V> implements MyHashMapTesting<K, V>, Closeable {
+  private final Serializer<K> keySerializer;
+  private final Serializer<V> valSerializer;
+  private final Segment[] segments;
+  private final int segmentShift;
+  private final int segmentMask;
+  private volatile boolean closed;
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+  private static final int DEFAULT_SLAB_SIZE = 1 << 20;
+  private static final int MIN_SEGMENT_CAPACITY = 2;
+  private static final int MAX_SEGMENT_CAPACITY = 1 << 27; // Index of 1 GB
+  private static final int REHASH_FACTOR = 2;
+  private static final float LOAD_FACTOR = 0.5f;
+  private static final int RECORD_HEADER_BYTES = 12;
+  private static final int SLOT_BYTES = 8;
+  private static final long EMPTY = 0;
+  private static final long TOMBSTONE = -1;
+  private static final int THREAD_SLEEP_MILLI_SEC = 20;
+
+  public MyHashMapOffHeapImpl(ThreadSafePolicy policy, Serializer<K> keySerializer,
+                              Serializer<V> valSerializer, int capacity, int concurrencyLevel,
+                              int slabSize) {
+    if (policy != ThreadSafePolicy.NoSync && policy != ThreadSafePolicy.Striped) {
+      throw new IllegalArgumentException("Off-heap hash map does not support " + policy);
+    }
+    if (capacity <= 0 || concurrencyLevel <= 0 || slabSize <= RECORD_HEADER_BYTES) {
+      throw new IllegalArgumentException("Capacity, concurrency level and slab size must be " +
+          "positive.");
+    }
+    this.keySerializer = keySerializer;
+    this.valSerializer = valSerializer;
+
+    int segmentCount = PrimitiveMapLock.segmentCount(policy, concurrencyLevel);
+    this.segments = new Segment[segmentCount];
+    this.segmentShift = 31 - Integer.numberOfTrailingZeros(segmentCount); // Hash has 31 bits.
+    this.segmentMask = segmentCount - 1;
+
+    int segmentCapacity = MIN_SEGMENT_CAPACITY;
+    while (segmentCapacity * segmentCount < capacity &&
+        segmentCapacity < MAX_SEGMENT_CAPACITY) {
+      segmentCapacity <<= 1;
+    }
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(policy, segmentCapacity, slabSize);
+    }
+  }
+
+  public MyHashMapOffHeapImpl(ThreadSafePolicy policy, Serializer<K> keySerializer,
+                              Serializer<V> valSerializer) {
+    this(policy, keySerializer, valSerializer, DEFAULT_CAPACITY, DEFAULT_CONCURRENCY_LEVEL,
+        DEFAULT_SLAB_SIZE);
+  }
+
+  /**
+   * Sum of segment sizes. Not atomic across segments.
+   */
+  @Override
+  public int size() {
+    int result = 0;
+    for (Segment segment : segments) {
+      result += segment.count;
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hash(serialize(one)) == hash(serialize(two));
+  }
+
+  /**
+   * Return the value by given key. If no such key, return null.
+   * <p>
+   * Read lock of the segment required.
+   */
+  @Override
+  public V get(K k) {
+    byte[] keyBytes = serialize(k);
+    int hash = hash(keyBytes);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.readLock();
+
+    try {
+      ensureOpen();
+      int slot = segment.findSlot(hash, keyBytes);
+      if (slot == -1) {
+        return null;
+      }
+
+      return readValue(segment, segment.getSlot(slot));
+    } finally {
+      segment.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Return true if key exists, otherwise false.
+   */
+  @Override
+  public boolean containsKey(K k) {
+    byte[] keyBytes = serialize(k);
+    int hash = hash(keyBytes);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.readLock();
+
+    try {
+      ensureOpen();
+      return segment.findSlot(hash, keyBytes) != -1;
+    } finally {
+      segment.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * If the key exists, point its slot to a new record, otherwise insert a new pair.
+   * <p>
+   * Write lock of the segment required.
+   */
+  @Override
+  public void put(K k, V v) {
+    byte[] keyBytes = serialize(k);
+    int hash = hash(keyBytes);
+    int valLength = valSerializer.serializedSize(v);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.writeLock();
+
+    try {
+      ensureOpen();
+      segment.put(hash, keyBytes, writeRecord(segment, hash, keyBytes, v, valLength));
+    } finally {
+      segment.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Empty the hash map, one segment at a time. Slabs are freed.
+   */
+  @Override
+  public void removeAll() {
+    for (Segment segment : segments) {
+      long stamp = segment.writeLock();
+      try {
+        ensureOpen();
+        segment.clear();
+      } finally {
+        segment.unlockWrite(stamp);
+      }
+    }
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   * <p>
+   * Write lock of the segment required.
+   */
+  @Override
+  public boolean remove(K k) {
+    byte[] keyBytes = serialize(k);
+    int hash = hash(keyBytes);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.writeLock();
+
+    try {
+      ensureOpen();
+      return segment.remove(hash, keyBytes);
+    } finally {
+      segment.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key. A null
+   * new value removes the pair, and returning the old value itself writes nothing.
+   * <p>
+   * Write lock of the segment required. The key is found once, the old value is deserialized
+   * for the function, and the new value is appended as a record like put().
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    byte[] keyBytes = serialize(k);
+    int hash = hash(keyBytes);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.writeLock();
+
+    try {
+      ensureOpen();
+      int slot = segment.findSlot(hash, keyBytes);
+      V oldVal = slot == -1 ? null : readValue(segment, segment.getSlot(slot));
+      V newVal = remapping.apply(k, oldVal);
+
+      if (newVal == oldVal) { // Nothing to change
+        return newVal;
+      }
+      if (newVal == null) {
+        segment.removeSlot(slot);
+      } else {
+        int valLength = valSerializer.serializedSize(newVal);
+        segment.putSlot(slot, hash, writeRecord(segment, hash, keyBytes, newVal, valLength));
+      }
+      return newVal;
+    } finally {
+      segment.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Free all off-heap memory. Calling it again does nothing.
+   */
+  @Override
+  public void close() {
+    for (Segment segment : segments) {
+      long stamp = segment.writeLock();
+      try {
+        closed = true;
+        segment.release();
+      } finally {
+        segment.unlockWrite(stamp);
+      }
+    }
+  }
+
+  /**
+   * Return the bytes of off-heap memory held by the index and slabs.
+   */
+  public long getOffHeapBytes() {
+    long result = 0;
+    for (Segment segment : segments) {
+      long stamp = segment.readLock();
+      try {
+        result += segment.getOffHeapBytes();
+      } finally {
+        segment.unlockRead(stamp);
+      }
+    }
+    return result;
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Hash map is closed.");
+    }
+  }
+
+  /**
+   * Append a record of the pair to the segment and return its address.
+   */
+  private long writeRecord(Segment segment, int hash, byte[] keyBytes, V v, int valLength) {
+    long address = segment.allocate(RECORD_HEADER_BYTES + keyBytes.length + valLength);
+    ByteBuffer record = segment.recordAt(address);
+    record.putInt(hash);
+    record.putInt(keyBytes.length);
+    record.putInt(valLength);
+    record.put(keyBytes);
+    valSerializer.write(v, record);
+    return address;
+  }
+
+  private V readValue(Segment segment, long address) {
+    ByteBuffer record = segment.recordAt(address);
+    int keyLength = record.getInt(record.position() + 4);
+    int valLength = record.getInt(record.position() + 8);
+    record.position(record.position() + RECORD_HEADER_BYTES + keyLength);
+    return valSerializer.read(record, valLength);
+  }
+
+  private byte[] serialize(K k) {
+    byte[] result = new byte[keySerializer.serializedSize(k)];
+    keySerializer.write(k, ByteBuffer.wrap(result));
+    return result;
+  }
+
+  private static int hash(byte[] keyBytes) {
+    return HashStrategy.hashBytes(keyBytes);
+  }
+
+  private Segment segmentFor(int hash) {
+    return segments[(hash >>> segmentShift) & segmentMask];
+  }
+
+  /**
+   * One index and its slabs. Caller holds the lock.
+   */
+  static final class Segment extends PrimitiveMapLock {
+    ByteBuffer index;
+    int capacity; // Slot count of the index
+    volatile int count;
+    int tombstones;
+    final List<ByteBuffer> slabs;
+    final int slabSize;
+    long liveBytes;
+    long garbageBytes;
+
+    Segment(ThreadSafePolicy policy, int capacity, int slabSize) {
+      super(policy);
+      this.capacity = capacity;
+      this.index = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+      this.slabs = new ArrayList<>();
+      this.slabSize = slabSize;
+    }
+
+    long getSlot(int slot) {
+      return index.getLong(slot * SLOT_BYTES);
+    }
+
+    void setSlot(int slot, long address) {
+      index.putLong(slot * SLOT_BYTES, address);
+    }
+
+    /**
+     * Return a buffer positioned at the record of the given address. Slab numbers start
+     * from 1, so address 0 is left for empty slots.
+     */
+    ByteBuffer recordAt(long address) {
+      ByteBuffer record = slabs.get((int) (address >>> 32) - 1).duplicate();
+      record.position((int) address);
+      return record;
+    }
+
+    int recordSize(long address) {
+      ByteBuffer slab = slabs.get((int) (address >>> 32) - 1);
+      int offset = (int) address;
+      return RECORD_HEADER_BYTES + slab.getInt(offset + 4) + slab.getInt(offset + 8);
+    }
+
+    /**
+     * Return the slot of the key, or -1 if no such key. Probing skips tombstones and stops at
+     * the first empty slot.
+     */
+    int findSlot(int hash, byte[] keyBytes) {
+      int slot = hash & (capacity - 1);
+
+      for (int probe = 0; probe < capacity; probe++) {
+        long address = getSlot(slot);
+        if (address == EMPTY) {
+          return -1;
+        }
+        if (address != TOMBSTONE && isSameKey(address, hash, keyBytes)) {
+          return slot;
+        }
+        slot = (slot + 1) & (capacity - 1);
+      }
+      return -1;
+    }
+
+    private boolean isSameKey(long address, int hash, byte[] keyBytes) {
+      ByteBuffer slab = slabs.get((int) (address >>> 32) - 1);
+      int offset = (int) address;
+
+      if (slab.getInt(offset) != hash || slab.getInt(offset + 4) != keyBytes.length) {
+        return false;
+      }
+      offset += RECORD_HEADER_BYTES;
+      for (int i = 0; i < keyBytes.length; i++) {
+        if (slab.get(offset + i) != keyBytes[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Reserve the given bytes in the current slab, or in a new slab if it's full. Return the
+     * address of the reserved bytes.
+     */
+    long allocate(int size) {
+      ByteBuffer slab = slabs.isEmpty() ? null : slabs.get(slabs.size() - 1);
+
+      if (slab == null || slab.remaining() < size) {
+        slab = ByteBuffer.allocateDirect(Math.max(slabSize, size));
+        slabs.add(slab);
+      }
+
+      long address = ((long) slabs.size() << 32) | slab.position();
+      slab.position(slab.position() + size);
+      return address;
+    }
+
+    void put(int hash, byte[] keyBytes, long address) {
+      putSlot(findSlot(hash, keyBytes), hash, address);
+    }
+
+    /**
+     * Point the given slot of the key to the record, or insert the record if the slot is -1.
+     */
+    void putSlot(int slot, int hash, long address) {
+      int size = recordSize(address);
+
+      if (slot != -1) { // Update old value, the old record becomes garbage.
+        int oldSize = recordSize(getSlot(slot));
+        garbageBytes += oldSize;
+        liveBytes += size - oldSize;
+        setSlot(slot, address);
+        compactIfNeeded();
+        return;
+      }
+
+      rehash();
+      slot = hash & (capacity - 1);
+      while (getSlot(slot) != EMPTY && getSlot(slot) != TOMBSTONE) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      if (getSlot(slot) == TOMBSTONE) {
+        tombstones--;
+      }
+      setSlot(slot, address);
+      liveBytes += size;
+      count++;
+    }
+
+    boolean remove(int hash, byte[] keyBytes) {
+      int slot = findSlot(hash, keyBytes);
+      if (slot == -1) { // No such value
+        return false;
+      }
+
+      removeSlot(slot);
+      return true;
+    }
+
+    void removeSlot(int slot) {
+      int size = recordSize(getSlot(slot));
+      liveBytes -= size;
+      garbageBytes += size;
+      setSlot(slot, TOMBSTONE);
+      count--;
+      tombstones++;
+      compactIfNeeded();
+    }
+
+    /**
+     * Double the index if live pairs plus tombstones reach the load factor. Tombstones are
+     * dropped, records stay where they are.
+     */
+    private void rehash() {
+      if ((count + tombstones + 1) * 1.0f / capacity < LOAD_FACTOR) {
+        return;
+      }
+
+      int newCapacity = capacity;
+      if (count * 2.0f / capacity >= LOAD_FACTOR && capacity < MAX_SEGMENT_CAPACITY) {
+        newCapacity *= REHASH_FACTOR;
+      }
+
+      ByteBuffer oldIndex = index;
+      int oldCapacity = capacity;
+      index = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES);
+      capacity = newCapacity;
+      tombstones = 0;
+
+      for (int i = 0; i < oldCapacity; i++) {
+        long address = oldIndex.getLong(i * SLOT_BYTES);
+        if (address == EMPTY || address == TOMBSTONE) {
+          continue;
+        }
+
+        int hash = slabs.get((int) (address >>> 32) - 1).getInt((int) address);
+        int slot = hash & (capacity - 1);
+        while (getSlot(slot) != EMPTY) {
+          slot = (slot + 1) & (capacity - 1);
+        }
+        setSlot(slot, address);
+      }
+      DirectBuffers.release(oldIndex);
+    }
+
+    /**
+     * Copy live records into new slabs once garbage takes more than half of the slabs and
+     * more than one slab.
+     */
+    private void compactIfNeeded() {
+      if (garbageBytes <= liveBytes || garbageBytes <= slabSize) {
+        return;
+      }
+
+      List<ByteBuffer> oldSlabs = new ArrayList<>(slabs);
+      slabs.clear();
+
+      for (int i = 0; i < capacity; i++) {
+        long address = getSlot(i);
+        if (address == EMPTY || address == TOMBSTONE) {
+          continue;
+        }
+
+        ByteBuffer oldRecord = oldSlabs.get((int) (address >>> 32) - 1).duplicate();
+        int offset = (int) address;
+        int size = RECORD_HEADER_BYTES + oldRecord.getInt(offset + 4) +
+            oldRecord.getInt(offset + 8);
+        oldRecord.limit(offset + size);
+        oldRecord.position(offset);
+
+        long newAddress = allocate(size);
+        recordAt(newAddress).put(oldRecord);
+        setSlot(i, newAddress);
+      }
+
+      garbageBytes = 0;
+      for (ByteBuffer slab : oldSlabs) {
+        DirectBuffers.release(slab);
+      }
+    }
+
+    void clear() {
+      for (ByteBuffer slab : slabs) {
+        DirectBuffers.release(slab);
+      }
+      slabs.clear();
+      for (int i = 0; i < capacity; i++) {
+        setSlot(i, EMPTY);
+      }
+      count = 0;
+      tombstones = 0;
+      liveBytes = 0;
+      garbageBytes = 0;
+    }
+
+    void release() {
+      if (index == null) {
+        return;
+      }
+      clear();
+      DirectBuffers.release(index);
+      index = null;
+      capacity = 0;
+    }
+
+    long getOffHeapBytes() {
+      long result = (long) capacity * SLOT_BYTES;
+      for (ByteBuffer slab : slabs) {
+        result += slab.capacity();
+      }
+      return result;
+    }
+  }
+
+  @Override
+  public Iterator<MapPair> iterator() {
+    return new MyHashMapOffHeapIterator();
+  }
+
+  /**
+   * Iterator class for off-heap hash map. Each next() takes the read lock of the segment and
+   * copies one pair into a new MapPair. It's weakly consistent: a pair moved by a concurrent
+   * rehash may be missed or returned twice.
+   */
+  class MyHashMapOffHeapIterator implements Iterator<MapPair> {
+    int segmentIdx;
+    int slot;
+    MapPair<K, V> nextPair;
+
+    MyHashMapOffHeapIterator() {
+      this.segmentIdx = 0;
+      this.slot = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (nextPair == null && segmentIdx < segments.length) {
+        Segment segment = segments[segmentIdx];
+        long stamp = segment.readLock();
+
+        try {
+          ensureOpen();
+          while (slot < segment.capacity && nextPair == null) {
+            long address = segment.getSlot(slot++);
+            if (address != EMPTY && address != TOMBSTONE) {
+              nextPair = readPair(segment, address);
+            }
+          }
+        } finally {
+          segment.unlockRead(stamp);
+        }
+
+        if (nextPair == null) {
+          segmentIdx++;
+          slot = 0;
+        }
+      }
+      return nextPair != null;
+    }
+
+    @Override
+    public MapPair next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      MapPair<K, V> result = nextPair;
+      nextPair = null;
+      return result;
+    }
+
+    private MapPair<K, V> readPair(Segment segment, long address) {
+      ByteBuffer record = segment.recordAt(address);
+      record.getInt(); // Hash of the key bytes, not the hash strategy one MapPair expects.
+      int keyLength = record.getInt();
+      int valLength = record.getInt();
+      K key = keySerializer.read(record, keyLength);
+      V val = valSerializer.read(record, valLength);
+      return new MapPair<>(key, val);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("\"MyHashMapOffHeapImpl{\"");
+
+    for (MapPair<K, V> pair : this) {
+      String temp = "key=" + pair.key + ", val=" + pair.getV() + "; ";
+      result.append(temp);
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+
+  /**
+   * Methods below are for testing. Each index slot is a bucket which holds at most one pair,
+   * listed segment by segment.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    List<Integer> sizes = new ArrayList<>();
+
+    for (Segment segment : segments) {
+      long stamp = segment.readLock();
+      try {
+        for (int i = 0; i < segment.capacity; i++) {
+          long address = segment.getSlot(i);
+          sizes.add(address == EMPTY || address == TOMBSTONE ? 0 : 1);
+        }
+      } finally {
+        segment.unlockRead(stamp);
+      }
+    }
+
+    int[] result = new int[sizes.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = sizes.get(i);
+    }
+    return result;
+  }
+
+  @Override
+  public int getTotalPairCount() {
+    int result = 0;
+    for (int size : getAllBucketSize()) {
+      result += size;
+    }
+    return result;
+  }
+
+  @Override
+  public void addAndDelete(K k, V v) {
+    put(k, v);
+    remove(k);
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    Thread.sleep(THREAD_SLEEP_MILLI_SEC);
+  }
+}
@@ -3,16 +3,17 @@ package johnston.hashmap;
 import johnston.linkedlist.MyLinkedListBasicImpl;
 import johnston.linkedlist.MyLinkedList;
 import johnston.linkedlist.MyLinkedListReentrantLockImpl;
-import org.apache.commons.codec.digest.MurmurHash3;
 
-import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
 
 /**
  * This is the basic hash map implementation with thread safety.
@@ -31,9 +32,15 @@ public class MyHashMapReentrantImpl<K, V> implements MyHashMapTesting<K, V> {
   private int capacity;
   private MyLinkedList<MapPair>[] bucketList;
   private final float loadFactor;
+  private final RehashPolicy rehashPolicy;
+  private final HashStrategy hashStrategy;
+  private MyLinkedList<MapPair>[] oldBucketList; // Not null during incremental rehashing
+  private int migrateIndex; // Old buckets before this index are moved to bucketList
 
   private static final int DEFAULT_CAPACITY = 16;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
   private static final int REHASH_FACTOR = 2;
+  private static final int MIGRATION_STEP = 8; // Old buckets moved per put() or remove()
   private static final float DEFAULT_LOAD_FACTOR = 0.5f;
   private static final int THREAD_SLEEP_MILLI_SEC = 20;
 
@@ -42,10 +49,21 @@ public class MyHashMapReentrantImpl<K, V> implements MyHashMapTesting<K, V> {
   private final Lock WRITE_LOCK;
 
   public MyHashMapReentrantImpl(int capacity, float loadFactor) {
-    this.capacity = capacity;
+    this(capacity, loadFactor, RehashPolicy.StopTheWorld);
+  }
+
+  public MyHashMapReentrantImpl(int capacity, float loadFactor, RehashPolicy rehashPolicy) {
+    this(capacity, loadFactor, rehashPolicy, HashStrategy.MURMUR3);
+  }
+
+  public MyHashMapReentrantImpl(int capacity, float loadFactor, RehashPolicy rehashPolicy,
+                                HashStrategy hashStrategy) {
+    this.rehashPolicy = rehashPolicy;
+    this.hashStrategy = hashStrategy;
+    this.capacity = tableSizeFor(capacity);
     this.size = new AtomicInteger(0);
     this.loadFactor = loadFactor;
-    this.bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+    this.bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[this.capacity]);
 
     // Init read-write lock.
     READ_WRITE_LOCK = new ReentrantReadWriteLock();
@@ -92,24 +110,10 @@ public class MyHashMapReentrantImpl<K, V> implements MyHashMapTesting<K, V> {
    */
   @Override
   public V get(K k) {
-    int bucketIdx;
-    MapPair<K, V> dummy = new MapPair<>(k, null);
-    int pairIdx;
+    int hash = hash(k);
     READ_LOCK.lock();
-
     try {
-      bucketIdx = getIndex(k);
-      if (bucketList[bucketIdx] == null) {
-        return null;
-      }
-
-      pairIdx = bucketList[bucketIdx].getIndex(dummy);
-
-      if (pairIdx == -1) {
-        return null;
-      }
-      return (V) bucketList[bucketIdx].get(pairIdx).getV();
-
+      return getValue(k, hash);
     } finally {
       READ_LOCK.unlock();
     }
@@ -130,29 +134,10 @@ public class MyHashMapReentrantImpl<K, V> implements MyHashMapTesting<K, V> {
    */
   @Override
   public void put(K k, V v) {
-    int bucketIdx;
-    MapPair<K, V> newPair = new MapPair<>(k, v);
+    MapPair<K, V> newPair = new MapPair<>(k, v, hash(k));
     WRITE_LOCK.lock();
-
     try {
-      rehash();
-      bucketIdx = getIndex(k);
-
-      if (bucketList[bucketIdx] == null) {
-        bucketList[bucketIdx] = getNewLinkedList();
-        bucketList[bucketIdx].addFirst(newPair);
-        size.incrementAndGet();
-        return;
-      }
-
-      MapPair<K, V> oldPair = bucketList[bucketIdx].get(newPair);
-
-      if (oldPair == null) { // No such pair, add to the bucket at index 0.
-        bucketList[bucketIdx].addFirst(newPair);
-        size.incrementAndGet();
-      } else { // Update old value
-        oldPair.setV(v);
-      }
+      putPair(newPair);
     } finally {
       WRITE_LOCK.unlock();
     }
@@ -169,6 +154,7 @@ public class MyHashMapReentrantImpl<K, V> implements MyHashMapTesting<K, V> {
     try {
       size.set(0);
       Arrays.fill(bucketList, null);
+      oldBucketList = null;
     } finally {
       WRITE_LOCK.unlock();
     }
@@ -181,84 +167,384 @@ public class MyHashMapReentrantImpl<K, V> implements MyHashMapTesting<K, V> {
    */
   @Override
   public boolean remove(K k) {
-    int bucketIdx;
-    MapPair<K, V> dummy = new MapPair<>(k, null);
+    int hash = hash(k);
     WRITE_LOCK.lock();
+    try {
+      return removePair(k, hash);
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
 
+  /**
+   * Put all pairs under one write lock, growing the table once for them. Pairs are built
+   * before locking, same as put().
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public void putAll(List<K> keys, List<V> vals) {
+    if (keys.size() != vals.size()) {
+      throw new IllegalArgumentException("Keys and values must have the same size.");
+    }
+    List<MapPair<K, V>> newPairs = new ArrayList<>(keys.size());
+    Iterator<V> valIterator = vals.iterator();
+    for (K k : keys) {
+      newPairs.add(new MapPair<>(k, valIterator.next(), hash(k)));
+    }
+
+    WRITE_LOCK.lock();
     try {
-      bucketIdx = getIndex(k);
+      reserve(newPairs.size());
+      for (MapPair<K, V> newPair : newPairs) {
+        putPair(newPair);
+      }
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Return the values of the given keys in the same order, null for missing keys.
+   * <p>
+   * Read lock required, once for all keys.
+   */
+  @Override
+  public List<V> getAll(List<K> keys) {
+    int[] hashes = hashAll(keys);
+    List<V> result = new ArrayList<>(keys.size());
+    int i = 0;
 
-      if (bucketList[bucketIdx] == null) {
-        return false;
+    READ_LOCK.lock();
+    try {
+      for (K k : keys) {
+        result.add(getValue(k, hashes[i++]));
       }
+    } finally {
+      READ_LOCK.unlock();
+    }
+    return result;
+  }
 
-      if (bucketList[bucketIdx].remove(dummy)) {
-        size.decrementAndGet();
-        return true;
-      } else { // No such value
-        return false;
+  /**
+   * Remove the pairs of the given keys and return how many were removed.
+   * <p>
+   * Write lock required, once for all keys.
+   */
+  @Override
+  public int removeAll(List<K> keys) {
+    int[] hashes = hashAll(keys);
+    int result = 0;
+    int i = 0;
+
+    WRITE_LOCK.lock();
+    try {
+      for (K k : keys) {
+        if (removePair(k, hashes[i++])) {
+          result++;
+        }
       }
     } finally {
       WRITE_LOCK.unlock();
     }
+    return result;
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key, with one
+   * bucket lookup. A null new value removes the pair. The function runs under the lock, so
+   * a get() then put() race is impossible.
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    int hash = hash(k);
+    WRITE_LOCK.lock();
+    try {
+      return computePair(k, hash, remapping);
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Return the value of the pair with the given key and hash. Read lock required from caller.
+   */
+  private V getValue(K k, int hash) {
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    MyLinkedList<MapPair> bucket = table[hash & (table.length - 1)];
+
+    if (bucket == null) {
+      return null;
+    }
+
+    MapPair<K, V> pair = bucket.getByKey(hash, k);
+    return pair == null ? null : pair.getV();
+  }
+
+  /**
+   * Insert or update the given pair. Write lock required from caller.
+   */
+  private void putPair(MapPair<K, V> newPair) {
+    rehash();
+    int hash = newPair.hash;
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
+
+    if (table[bucketIdx] == null) {
+      table[bucketIdx] = getNewLinkedList();
+      table[bucketIdx].addFirst(newPair);
+      size.incrementAndGet();
+      return;
+    }
+
+    MapPair<K, V> oldPair = table[bucketIdx].getByKey(hash, newPair.key);
+
+    if (oldPair == null) { // No such pair, add to the bucket at index 0.
+      table[bucketIdx].addFirst(newPair);
+      size.incrementAndGet();
+      treeifyIfNeeded(table, bucketIdx);
+    } else { // Update old value
+      oldPair.setV(newPair.getV());
+    }
+  }
+
+  /**
+   * Remove the pair with the given key and hash. Write lock required from caller.
+   */
+  private boolean removePair(K k, int hash) {
+    if (oldBucketList != null) { // Incremental rehashing
+      migrate(MIGRATION_STEP);
+    }
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
+
+    if (table[bucketIdx] == null) {
+      return false;
+    }
+
+    if (table[bucketIdx].removeByKey(hash, k)) {
+      size.decrementAndGet();
+      untreeifyIfNeeded(table, bucketIdx);
+      return true;
+    } else { // No such value
+      return false;
+    }
   }
 
   /**
-   * Return hashcode of the given key. Using MurmurHash function here to avoid
-   * primary clustering. MurmurHash is a performance efficient non-cryptographic hash function.
+   * Compute the new value of the given key from its old value in one bucket lookup, then
+   * update, insert or remove the pair. Write lock required from caller.
+   */
+  private V computePair(K k, int hash, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    rehash();
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
+    MapPair<K, V> oldPair = table[bucketIdx] == null ? null : table[bucketIdx].getByKey(hash, k);
+    V oldVal = oldPair == null ? null : oldPair.getV();
+    V newVal = remapping.apply(k, oldVal);
+
+    if (oldPair != null) {
+      if (newVal != null) { // Update old value
+        oldPair.setV(newVal);
+      } else if (table[bucketIdx].removeByKey(hash, k)) {
+        size.decrementAndGet();
+        untreeifyIfNeeded(table, bucketIdx);
+      }
+    } else if (newVal != null) { // No such pair
+      if (table[bucketIdx] == null) {
+        table[bucketIdx] = getNewLinkedList();
+      }
+      table[bucketIdx].addFirst(new MapPair<>(k, newVal, hash));
+      size.incrementAndGet();
+      treeifyIfNeeded(table, bucketIdx);
+    }
+    return newVal;
+  }
+
+  /**
+   * Return hashcode of the given key, mixed by the hash strategy to avoid primary clustering.
+   * The default MurmurHash3 finalizer mixes the int directly, so it allocates nothing.
    * No need to lock.
    */
   private int hash(K k) {
-    if (k == null) {
-      return 0;
+    return hashStrategy.hash(k);
+  }
+
+  /**
+   * Return the hashes of the given keys, computed before locking. No need to lock.
+   */
+  private int[] hashAll(List<K> keys) {
+    int[] result = new int[keys.size()];
+    int i = 0;
+    for (K k : keys) {
+      result[i++] = hash(k);
     }
-    byte[] temp = BigInteger.valueOf(k.hashCode()).toByteArray();
-    return MurmurHash3.hash32(temp) & 0x7FFFFFFF; // Ensure > 0
+    return result;
   }
 
   /**
-   * Return bucket index of the given key. No need to lock. The variable bucketList has write lock.
+   * Return the smallest power of two >= the given capacity, so the bucket index of a hash is
+   * hash & (length - 1) instead of an integer division.
    */
-  private int getIndex(K k) {
-    int hash = hash(k);
-    return hash % bucketList.length;
+  private static int tableSizeFor(int capacity) {
+    int n = 1;
+    while (n < capacity && n < MAXIMUM_CAPACITY) {
+      n <<= 1;
+    }
+    return n;
   }
 
   /**
    * Double the capacity of the hash table if the load factor is > 0.5. All pairs are guaranteed
-   * to be found by given keys after rehashing.
+   * to be found by given keys after rehashing. The capacity stays a power of two.
+   * <p>
+   * StopTheWorld policy moves all old buckets here. Incremental policy only moves
+   * MIGRATION_STEP old buckets, and each following put() and remove() moves some more.
    * <p>
    * No need to lock since all caller functions are locked by write lock.
    */
   private void rehash() {
-    if (size() * 1.0f / this.capacity < loadFactor) {
+    if (size() * 1.0f / this.capacity >= loadFactor) {
+      if (oldBucketList != null) { // Previous rehashing not done yet, finish it first.
+        migrate(oldBucketList.length);
+      }
+
+      capacity *= REHASH_FACTOR;
+      oldBucketList = bucketList;
+      migrateIndex = 0;
+      bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+    }
+
+    if (oldBucketList != null) {
+      migrate(rehashPolicy == RehashPolicy.Incremental ? MIGRATION_STEP : oldBucketList.length);
+    }
+  }
+
+  /**
+   * Grow the table once for a batch of new pairs. Readers are blocked for the whole move,
+   * which is still shorter than the rehashes putAll() would trigger one after another.
+   * <p>
+   * Write lock required from caller.
+   */
+  private void reserve(int pairCount) {
+    int newCapacity = MyHashMapBasicImpl.reservedCapacity(capacity, size() + pairCount,
+        loadFactor, MAXIMUM_CAPACITY);
+    if (newCapacity == capacity) {
       return;
     }
+    if (oldBucketList != null) { // Previous rehashing not done yet, finish it first.
+      migrate(oldBucketList.length);
+    }
+
+    capacity = newCapacity;
+    bucketList = MyHashMapBasicImpl.regroup(bucketList, capacity, this::getNewLinkedList);
+    for (int i = 0; i < capacity; i++) {
+      treeifyIfNeeded(bucketList, i);
+    }
+  }
 
-    capacity *= REHASH_FACTOR;
-    MyLinkedList<MapPair>[] oldBucketList = bucketList;
-    bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+  /**
+   * Move at most the given number of old buckets to the new table, from migrateIndex on. A
+   * bucket is moved as a whole, so each key is in exactly one of the two tables.
+   * <p>
+   * Both tables are powers of two, so old bucket i splits into new buckets i and
+   * i + oldLength only, picked by the hash bit oldLength. Nothing else writes to those two new
+   * buckets before old bucket i is moved, so each old bucket can be split on its own.
+   */
+  private void migrate(int bucketCount) {
+    int oldLength = oldBucketList.length;
+    int end = Math.min(migrateIndex + bucketCount, oldLength);
 
-    for (MyLinkedList<MapPair> oldList : oldBucketList) {
+    for (; migrateIndex < end; migrateIndex++) {
+      MyLinkedList<MapPair> oldList = oldBucketList[migrateIndex];
       if (oldList == null) {
         continue;
       }
 
+      MyLinkedList<MapPair> lowList = null;
+      MyLinkedList<MapPair> highList = null;
       List<MapPair> pairList = oldList.getAll();
-      for (MapPair pair : pairList) {
-        int bucketIdx = getIndex((K) pair.key);
 
-        if (bucketList[bucketIdx] == null) {
-          bucketList[bucketIdx] = getNewLinkedList();
+      for (MapPair pair : pairList) {
+        if ((pair.hash & oldLength) == 0) { // Cached hash, no need to hash again
+          lowList = lowList == null ? getNewLinkedList() : lowList;
+          lowList.addFirst(pair);
+        } else {
+          highList = highList == null ? getNewLinkedList() : highList;
+          highList.addFirst(pair);
         }
-        bucketList[bucketIdx].addFirst(pair);
       }
+      bucketList[migrateIndex] = lowList;
+      bucketList[migrateIndex + oldLength] = highList;
+      treeifyIfNeeded(bucketList, migrateIndex);
+      treeifyIfNeeded(bucketList, migrateIndex + oldLength);
+      oldBucketList[migrateIndex] = null;
+    }
+
+    if (migrateIndex == oldLength) { // Rehashing done
+      oldBucketList = null;
+    }
+  }
+
+  /**
+   * Return the table holding the key of the given hash. During incremental rehashing, the key
+   * is still in oldBucketList if its old bucket is not moved yet.
+   */
+  private MyLinkedList<MapPair>[] getTable(int hash) {
+    MyLinkedList<MapPair>[] oldTable = oldBucketList;
+
+    if (oldTable != null && (hash & (oldTable.length - 1)) >= migrateIndex) {
+      return oldTable;
     }
+    return bucketList;
+  }
+
+  /**
+   * Return all buckets of both tables. Moved old buckets are null, so no pair is counted twice.
+   */
+  private MyLinkedList<MapPair>[] getAllBuckets() {
+    if (oldBucketList == null) {
+      return bucketList;
+    }
+
+    MyLinkedList<MapPair>[] result = Arrays.copyOf(bucketList,
+        bucketList.length + oldBucketList.length);
+    System.arraycopy(oldBucketList, 0, result, bucketList.length, oldBucketList.length);
+    return result;
   }
 
   @Override
   public Iterator<MapPair> iterator() {
-    return new MyHashMapBasicImpl.MyHashMapIterator<>(this.bucketList);
+    return new MyHashMapBasicImpl.MyHashMapIterator<>(getAllBuckets());
+  }
+
+  /**
+   * Split by bucket ranges of the table at creation. Each bucket is copied from the current
+   * tables under the read lock, then visited without it, so pairs moved by a rehash in between
+   * are still seen once, and writers wait for a bucket at most, never for the traversal.
+   */
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    int bucketCount;
+    READ_LOCK.lock();
+    try {
+      bucketCount = bucketList.length;
+    } finally {
+      READ_LOCK.unlock();
+    }
+    return new BucketSpliterator(bucketCount, size(), (bucket, action) -> {
+      List<MapPair> pairs = new ArrayList<>();
+      READ_LOCK.lock();
+      try {
+        BucketSpliterator.visitHashes(bucketList, bucket, bucketCount, pairs::add);
+        BucketSpliterator.visitHashes(oldBucketList, bucket, bucketCount, pairs::add);
+      } finally {
+        READ_LOCK.unlock();
+      }
+      pairs.forEach(action);
+    });
   }
 
   /**
@@ -336,16 +622,47 @@ public class MyHashMapReentrantImpl<K, V> implements MyHashMapTesting<K, V> {
     return new MyLinkedListReentrantLockImpl<>();
   }
 
+  /**
+   * Turn the bucket at the given index into a tree bucket once its list reaches
+   * TREEIFY_THRESHOLD, so a long collision chain is searched in O(log n).
+   */
+  private void treeifyIfNeeded(MyLinkedList<MapPair>[] table, int bucketIdx) {
+    MyLinkedList<MapPair> bucket = table[bucketIdx];
+
+    if (bucket != null && !(bucket instanceof MyHashMapTreeBucket)
+        && bucket.size() >= MyHashMapTreeBucket.TREEIFY_THRESHOLD) {
+      table[bucketIdx] = new MyHashMapTreeBucket(bucket);
+    }
+  }
+
+  /**
+   * Turn the tree bucket at the given index back into a linked list once it shrinks to
+   * UNTREEIFY_THRESHOLD. The gap between both thresholds avoids converting back and forth.
+   */
+  private void untreeifyIfNeeded(MyLinkedList<MapPair>[] table, int bucketIdx) {
+    MyLinkedList<MapPair> bucket = table[bucketIdx];
+
+    if (bucket instanceof MyHashMapTreeBucket
+        && bucket.size() <= MyHashMapTreeBucket.UNTREEIFY_THRESHOLD) {
+      MyLinkedList<MapPair> list = getNewLinkedList();
+      for (MapPair pair : bucket) {
+        list.addFirst(pair);
+      }
+      table[bucketIdx] = list;
+    }
+  }
+
   /**
    * Method for testing only, won't expose to MyHashMap interface.
    */
   @Override
   public int[] getAllBucketSize() {
-    int[] result = new int[bucketList.length];
+    MyLinkedList<MapPair>[] buckets = getAllBuckets();
+    int[] result = new int[buckets.length];
 
     for (int i = 0; i < result.length; i++) {
-      if (bucketList[i] != null) {
-        result[i] = bucketList[i].size();
+      if (buckets[i] != null) {
+        result[i] = buckets[i].size();
       }
     }
     return result;
@@ -356,11 +673,12 @@ public class MyHashMapReentrantImpl<K, V> implements MyHashMapTesting<K, V> {
    */
   @Override
   public int getTotalPairCount() {
+    MyLinkedList<MapPair>[] buckets = getAllBuckets();
     int result = 0;
 
-    for (int i = 0; i < bucketList.length; i++) {
-      if (bucketList[i] != null) {
-        result += bucketList[i].size();
+    for (int i = 0; i < buckets.length; i++) {
+      if (buckets[i] != null) {
+        result += buckets[i].size();
       }
     }
     return result;
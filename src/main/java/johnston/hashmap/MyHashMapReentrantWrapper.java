@@ -0,0 +1,264 @@
+package johnston.hashmap;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+/**
+ * This class adds thread-safety to a hash map without thread safety, using read-write lock.
+ * It's the same policy as MyHashMapReentrantImpl, but it works for any hash map
+ * implementation whose read methods do not modify the table, such as the open addressing ones.
+ * <p>
+ * Read-write lock can ensure:
+ * -> All read threads do not mutually exclude each other.
+ * -> Read threads mutually exclude write threads.
+ * -> Write threads mutually exclude each other.
+ */
+public class MyHashMapReentrantWrapper<K, V> implements MyHashMapTesting<K, V> {
+  private final MyHashMapTesting<K, V> hashMap;
+
+  private final ReadWriteLock READ_WRITE_LOCK;
+  private final Lock READ_LOCK;
+  private final Lock WRITE_LOCK;
+
+  public MyHashMapReentrantWrapper(MyHashMapTesting<K, V> hashMap) {
+    this.hashMap = hashMap;
+
+    // Init read-write lock.
+    READ_WRITE_LOCK = new ReentrantReadWriteLock();
+    READ_LOCK = READ_WRITE_LOCK.readLock();
+    WRITE_LOCK = READ_WRITE_LOCK.writeLock();
+  }
+
+  /**
+   * Read lock required.
+   */
+  @Override
+  public int size() {
+    READ_LOCK.lock();
+    try {
+      return hashMap.size();
+    } finally {
+      READ_LOCK.unlock();
+    }
+  }
+
+  /**
+   * No need to lock because size() has read lock.
+   */
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * No need to lock.
+   */
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hashMap.isSameHash(one, two);
+  }
+
+  /**
+   * Read lock required.
+   */
+  @Override
+  public V get(K k) {
+    READ_LOCK.lock();
+    try {
+      return hashMap.get(k);
+    } finally {
+      READ_LOCK.unlock();
+    }
+  }
+
+  /**
+   * No need to lock since get() is locked.
+   */
+  @Override
+  public boolean containsKey(K k) {
+    return get(k) != null;
+  }
+
+  /**
+   * Write lock required.
+   */
+  @Override
+  public void put(K k, V v) {
+    WRITE_LOCK.lock();
+    try {
+      hashMap.put(k, v);
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Write lock required.
+   */
+  @Override
+  public void removeAll() {
+    WRITE_LOCK.lock();
+    try {
+      hashMap.removeAll();
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Write lock required.
+   */
+  @Override
+  public boolean remove(K k) {
+    WRITE_LOCK.lock();
+    try {
+      return hashMap.remove(k);
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Write lock required, the inner hash map computes the new value with one lookup.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    WRITE_LOCK.lock();
+    try {
+      return hashMap.compute(k, remapping);
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Write lock required, once for all pairs.
+   */
+  @Override
+  public void putAll(List<K> keys, List<V> vals) {
+    WRITE_LOCK.lock();
+    try {
+      hashMap.putAll(keys, vals);
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Read lock required, once for all keys.
+   */
+  @Override
+  public List<V> getAll(List<K> keys) {
+    READ_LOCK.lock();
+    try {
+      return hashMap.getAll(keys);
+    } finally {
+      READ_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Write lock required, once for all keys.
+   */
+  @Override
+  public int removeAll(List<K> keys) {
+    WRITE_LOCK.lock();
+    try {
+      return hashMap.removeAll(keys);
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
+
+  /**
+   * The iterator is not thread-safe, same as other hash map iterators.
+   */
+  @Override
+  public Iterator<MapPair> iterator() {
+    return hashMap.iterator();
+  }
+
+  /**
+   * Pairs are copied in batches under the read lock, see LockedSpliterator.
+   */
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    READ_LOCK.lock();
+    try {
+      return new LockedSpliterator(hashMap.spliterator(), body -> {
+        READ_LOCK.lock();
+        try {
+          body.run();
+        } finally {
+          READ_LOCK.unlock();
+        }
+      });
+    } finally {
+      READ_LOCK.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    READ_LOCK.lock();
+    try {
+      return hashMap.toString();
+    } finally {
+      READ_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Method for testing only, won't expose to MyHashMap interface.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    READ_LOCK.lock();
+    try {
+      return hashMap.getAllBucketSize();
+    } finally {
+      READ_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Method for testing only, won't expose to MyHashMap interface.
+   */
+  @Override
+  public int getTotalPairCount() {
+    READ_LOCK.lock();
+    try {
+      return hashMap.getTotalPairCount();
+    } finally {
+      READ_LOCK.unlock();
+    }
+  }
+
+  @Override
+  public void addAndDelete(K k, V v) {
+    WRITE_LOCK.lock();
+    try {
+      hashMap.addAndDelete(k, v);
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    READ_LOCK.lock();
+    try {
+      hashMap.heavyRead();
+    } finally {
+      READ_LOCK.unlock();
+    }
+  }
+}
@@ -0,0 +1,445 @@
+package johnston.hashmap;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+
+/**
+ * This is the Robin Hood hashing implementation without thread safety.
+ * <p>
+ * It's open addressing with linear probing, but on insertion a pair that is farther from its
+ * home slot takes the slot from a pair that is closer ("take from the rich"). This keeps the
+ * variance of probe distance low.
+ * <p>
+ * -> Lookup stops as soon as it meets a pair closer to home than the current probe distance.
+ * -> Removal shifts the following pairs one slot back instead of leaving a tombstone, so
+ *    lookups do not slow down after heavy put-remove churn.
+ * <p>
+ * Use MyHashMapSyncedWrapper or MyHashMapReentrantWrapper for thread-safety.
+ */
+public class MyHashMapRobinHoodImpl<K, V> implements MyHashMapTesting<K, V> {
+  private Object[] keys;
+  private Object[] vals;
+  private int[] hashes;
+  private int size;
+  private final float loadFactor;
+  private final HashStrategy hashStrategy;
+
+  private static final Object NULL_KEY = new Object(); // Stored in place of null key
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  private static final int REHASH_FACTOR = 2;
+  private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+  private static final int THREAD_SLEEP_MILLI_SEC = 20;
+
+  public MyHashMapRobinHoodImpl(int capacity, float loadFactor) {
+    this(capacity, loadFactor, HashStrategy.MURMUR3);
+  }
+
+  public MyHashMapRobinHoodImpl(int capacity, float loadFactor, HashStrategy hashStrategy) {
+    if (capacity <= 0 || loadFactor <= 0 || loadFactor >= 1) {
+      throw new IllegalArgumentException("Capacity must be positive, and load factor must be " +
+          "in (0, 1) for open addressing.");
+    }
+    this.size = 0;
+    this.loadFactor = loadFactor;
+    this.hashStrategy = hashStrategy;
+    int tableSize = tableSizeFor(capacity);
+    this.keys = new Object[tableSize];
+    this.vals = new Object[tableSize];
+    this.hashes = new int[tableSize];
+  }
+
+  public MyHashMapRobinHoodImpl() {
+    this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hash(one) == hash(two);
+  }
+
+  /**
+   * Return the value by given key. If no such key, return null.
+   */
+  @Override
+  public V get(K k) {
+    int slot = findSlot(maskNull(k), hash(k));
+    return slot == -1 ? null : (V) vals[slot];
+  }
+
+  /**
+   * Return true if key exists, otherwise false.
+   */
+  @Override
+  public boolean containsKey(K k) {
+    return get(k) != null;
+  }
+
+  /**
+   * If the key exists, update the value, otherwise insert a new pair.
+   */
+  @Override
+  public void put(K k, V v) {
+    Object key = maskNull(k);
+    int hash = hash(k);
+    int slot = findSlot(key, hash);
+
+    if (slot != -1) { // Update old value
+      vals[slot] = v;
+      return;
+    }
+
+    rehash();
+    insert(key, v, hash);
+    size++;
+  }
+
+  @Override
+  public void removeAll() {
+    size = 0;
+    Arrays.fill(keys, null);
+    Arrays.fill(vals, null);
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   */
+  @Override
+  public boolean remove(K k) {
+    int slot = findSlot(maskNull(k), hash(k));
+
+    if (slot == -1) { // No such value
+      return false;
+    }
+
+    removeSlot(slot);
+    return true;
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key, with one
+   * lookup. A null new value removes the pair by backward shift, same as remove().
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    Object key = maskNull(k);
+    int hash = hash(k);
+    int slot = findSlot(key, hash);
+    V newVal = remapping.apply(k, slot == -1 ? null : (V) vals[slot]);
+
+    if (slot != -1) {
+      if (newVal != null) { // Update old value
+        vals[slot] = newVal;
+      } else {
+        removeSlot(slot);
+      }
+    } else if (newVal != null) { // No such pair
+      rehash();
+      insert(key, newVal, hash);
+      size++;
+    }
+    return newVal;
+  }
+
+  /**
+   * Grow the table once for all keys, then put the pairs.
+   */
+  @Override
+  public void putAll(List<K> newKeys, List<V> newVals) {
+    if (newKeys.size() != newVals.size()) {
+      throw new IllegalArgumentException("Keys and values must have the same size.");
+    }
+    reserve(newKeys.size());
+    Iterator<V> valIterator = newVals.iterator();
+    for (K k : newKeys) {
+      put(k, valIterator.next());
+    }
+  }
+
+  /**
+   * Return the slot index of the given key, or -1 if no such key. The key cannot be behind a
+   * pair whose probe distance is shorter than the current one, so lookup stops there.
+   */
+  private int findSlot(Object key, int hash) {
+    int slot = hash & (keys.length - 1);
+
+    for (int distance = 0; keys[slot] != null; distance++) {
+      if (getProbeDistance(slot) < distance) {
+        return -1;
+      }
+      if (hashes[slot] == hash && key.equals(keys[slot])) {
+        return slot;
+      }
+      slot = (slot + 1) & (keys.length - 1);
+    }
+    return -1;
+  }
+
+  /**
+   * Insert a new pair. The caller makes sure the key does not exist and there is a free slot.
+   */
+  private void insert(Object key, Object val, int hash) {
+    int slot = hash & (keys.length - 1);
+    int distance = 0;
+
+    while (keys[slot] != null) {
+      int slotDistance = getProbeDistance(slot);
+
+      if (slotDistance < distance) { // Take the slot, and carry the old pair forward.
+        Object tempKey = keys[slot];
+        Object tempVal = vals[slot];
+        int tempHash = hashes[slot];
+        keys[slot] = key;
+        vals[slot] = val;
+        hashes[slot] = hash;
+        key = tempKey;
+        val = tempVal;
+        hash = tempHash;
+        distance = slotDistance;
+      }
+      slot = (slot + 1) & (keys.length - 1);
+      distance++;
+    }
+
+    keys[slot] = key;
+    vals[slot] = val;
+    hashes[slot] = hash;
+  }
+
+  /**
+   * Remove the pair in the given slot. Backward shift: move each following pair one slot
+   * back, until an empty slot or a pair already at its home slot.
+   */
+  private void removeSlot(int slot) {
+    int next = (slot + 1) & (keys.length - 1);
+    while (keys[next] != null && getProbeDistance(next) > 0) {
+      keys[slot] = keys[next];
+      vals[slot] = vals[next];
+      hashes[slot] = hashes[next];
+      slot = next;
+      next = (next + 1) & (keys.length - 1);
+    }
+
+    keys[slot] = null;
+    vals[slot] = null;
+    size--;
+  }
+
+  /**
+   * Return how far the pair in the given slot is from its home slot.
+   */
+  private int getProbeDistance(int slot) {
+    int home = hashes[slot] & (keys.length - 1);
+    return (slot - home) & (keys.length - 1); // Wraps around like probing
+  }
+
+  /**
+   * Return hashcode of the given key, mixed by the hash strategy to avoid primary clustering.
+   * The default MurmurHash3 finalizer mixes the int directly, so it allocates nothing.
+   */
+  private int hash(K k) {
+    return hashStrategy.hash(k);
+  }
+
+  /**
+   * Return the smallest power of two >= the given capacity, so the home slot of a hash is
+   * hash & (length - 1) and probing wraps around by the same mask.
+   */
+  private static int tableSizeFor(int capacity) {
+    int n = 1;
+    while (n < capacity && n < MAXIMUM_CAPACITY) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  private static Object maskNull(Object k) {
+    return k == null ? NULL_KEY : k;
+  }
+
+  private static Object unmaskNull(Object k) {
+    return k == NULL_KEY ? null : k;
+  }
+
+  /**
+   * Double the capacity if one more pair would reach the load factor. There are no
+   * tombstones, so only live pairs count.
+   */
+  private void rehash() {
+    if ((size + 1) * 1.0f / keys.length < loadFactor) {
+      return;
+    }
+    resize(keys.length * REHASH_FACTOR);
+  }
+
+  /**
+   * Grow the table once so the given number of new pairs fits under the load factor, instead
+   * of doubling it at each threshold while they are put.
+   */
+  private void reserve(int pairCount) {
+    int capacity = keys.length;
+    while ((size + pairCount) * 1.0f / capacity >= loadFactor && capacity < MAXIMUM_CAPACITY) {
+      capacity *= REHASH_FACTOR;
+    }
+    if (capacity != keys.length) {
+      resize(capacity);
+    }
+  }
+
+  /**
+   * Insert all pairs again into a new table of the given capacity.
+   */
+  private void resize(int capacity) {
+    Object[] oldKeys = keys;
+    Object[] oldVals = vals;
+    int[] oldHashes = hashes;
+    keys = new Object[capacity];
+    vals = new Object[capacity];
+    hashes = new int[capacity];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        insert(oldKeys[i], oldVals[i], oldHashes[i]);
+      }
+    }
+  }
+
+  @Override
+  public Iterator<MapPair> iterator() {
+    return new MyHashMapRobinHoodIterator<>(this.keys, this.vals, this.hashes);
+  }
+
+  /**
+   * Split by ranges of home slots. Each visit reads the current table, so a pair shifted by
+   * an insert, a removal or a rehash is still found from its home slot.
+   */
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    int slotCount = keys.length;
+    return new BucketSpliterator(slotCount, size(), (home, action) -> {
+      Object[] keys = this.keys;
+      Object[] vals = this.vals;
+      int[] hashes = this.hashes;
+      BucketSpliterator.visitSlots(keys, hashes, home, slotCount, slot ->
+          action.accept(new MapPair<>((K) unmaskNull(keys[slot]), (V) vals[slot],
+              hashes[slot])));
+    });
+  }
+
+  /**
+   * Iterator class for Robin Hood hash map. Pairs are not stored in the table, so each
+   * returned MapPair is a new copy of the slot.
+   */
+  static class MyHashMapRobinHoodIterator<K, V> implements Iterator<MapPair> {
+    final Object[] keys;
+    final Object[] vals;
+    final int[] hashes;
+    int slot;
+
+    MyHashMapRobinHoodIterator(Object[] keys, Object[] vals, int[] hashes) {
+      this.keys = keys;
+      this.vals = vals;
+      this.hashes = hashes;
+      this.slot = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (slot < keys.length && keys[slot] == null) {
+        slot++;
+      }
+      return slot < keys.length;
+    }
+
+    @Override
+    public MapPair next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      MapPair<K, V> result = new MapPair<>((K) unmaskNull(keys[slot]), (V) vals[slot],
+          hashes[slot]);
+      slot++;
+      return result;
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("\"MyHashMapRobinHoodImpl{\"");
+
+    for (MapPair<K, V> pair : this) {
+      String temp = "key=" + pair.key + ", val=" + pair.getV() + "; ";
+      result.append(temp);
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+
+  /**
+   * Methods below are for testing.
+   * <p>
+   * A Robin Hood table has no buckets, so this returns the probe distance histogram:
+   * result[d] is the count of pairs which are d slots away from their home slot. The array
+   * length is the longest probe distance + 1.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    int maxDistance = -1;
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != null) {
+        maxDistance = Math.max(maxDistance, getProbeDistance(i));
+      }
+    }
+
+    int[] result = new int[maxDistance + 1];
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != null) {
+        result[getProbeDistance(i)]++;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int getTotalPairCount() {
+    int result = 0;
+
+    for (Object key : keys) {
+      if (key != null) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void addAndDelete(K k, V v) {
+    put(k, v);
+    remove(k);
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    Thread.sleep(THREAD_SLEEP_MILLI_SEC);
+  }
+}
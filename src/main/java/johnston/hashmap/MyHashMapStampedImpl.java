@@ -0,0 +1,673 @@
+package johnston.hashmap;
+
+import johnston.linkedlist.MyLinkedList;
+import johnston.linkedlist.MyLinkedListBasicImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+
+/**
+ * This is the basic hash map implementation with thread safety, using optimistic read.
+ * <p>
+ * It's the same as MyHashMapReentrantImpl, but uses StampedLock instead of read-write lock.
+ * A read thread first reads without lock, then validates the stamp. It takes the real read
+ * lock only if a write thread came in meanwhile. So read threads do not write to any shared
+ * lock state in the common case.
+ * <p>
+ * StampedLock can ensure:
+ * -> Optimistic read threads never block, and never block write threads.
+ * -> Read threads holding the read lock mutually exclude write threads.
+ * -> Write threads mutually exclude each other.
+ * <p>
+ * StampedLock is not reentrant, so locked methods never call each other.
+ */
+public class MyHashMapStampedImpl<K, V> implements MyHashMapTesting<K, V> {
+  private AtomicInteger size;
+  private int capacity;
+  private MyLinkedList<MapPair>[] bucketList;
+  private final float loadFactor;
+  private final RehashPolicy rehashPolicy;
+  private final HashStrategy hashStrategy;
+  private MyLinkedList<MapPair>[] oldBucketList; // Not null during incremental rehashing
+  private int migrateIndex; // Old buckets before this index are moved to bucketList
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  private static final int REHASH_FACTOR = 2;
+  private static final int MIGRATION_STEP = 8; // Old buckets moved per put() or remove()
+  private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+  private static final int THREAD_SLEEP_MILLI_SEC = 20;
+
+  private final StampedLock STAMPED_LOCK;
+
+  public MyHashMapStampedImpl(int capacity, float loadFactor) {
+    this(capacity, loadFactor, RehashPolicy.StopTheWorld);
+  }
+
+  public MyHashMapStampedImpl(int capacity, float loadFactor, RehashPolicy rehashPolicy) {
+    this(capacity, loadFactor, rehashPolicy, HashStrategy.MURMUR3);
+  }
+
+  public MyHashMapStampedImpl(int capacity, float loadFactor, RehashPolicy rehashPolicy,
+                              HashStrategy hashStrategy) {
+    this.rehashPolicy = rehashPolicy;
+    this.hashStrategy = hashStrategy;
+    this.capacity = tableSizeFor(capacity);
+    this.size = new AtomicInteger(0);
+    this.loadFactor = loadFactor;
+    this.bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[this.capacity]);
+
+    STAMPED_LOCK = new StampedLock();
+  }
+
+  public MyHashMapStampedImpl() {
+    this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * Return size of the hash table. No need to lock, size is atomic.
+   */
+  @Override
+  public int size() {
+    return this.size.get();
+  }
+
+  /**
+   * Return if the current hash table is empty. No need to lock.
+   */
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Return if two given keys have the same hash value. No need to lock.
+   */
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hash(one) == hash(two);
+  }
+
+  /**
+   * Return the value by given key. If no such key, return null.
+   * <p>
+   * Optimistic read first. The buckets may be changed by a write thread during the read, so
+   * any result or exception is only trusted after validation. If validation fails, read
+   * again with read lock.
+   */
+  @Override
+  public V get(K k) {
+    int hash = hash(k);
+    long stamp = STAMPED_LOCK.tryOptimisticRead();
+
+    if (stamp != 0) {
+      try {
+        V result = getValue(k, hash);
+        if (STAMPED_LOCK.validate(stamp)) {
+          return result;
+        }
+      } catch (RuntimeException e) {
+        // Inconsistent read during a write, read again with read lock.
+      }
+    }
+
+    stamp = STAMPED_LOCK.readLock();
+    try {
+      return getValue(k, hash);
+    } finally {
+      STAMPED_LOCK.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Return true if key exists, otherwise false. No need to lock since get() is locked.
+   */
+  @Override
+  public boolean containsKey(K k) {
+    return get(k) != null;
+  }
+
+  /**
+   * If the key exists, update the value, otherwise insert a new pair.
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public void put(K k, V v) {
+    MapPair<K, V> newPair = new MapPair<>(k, v, hash(k));
+    long stamp = STAMPED_LOCK.writeLock();
+    try {
+      putPair(newPair);
+    } finally {
+      STAMPED_LOCK.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Empty the hash table.
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public void removeAll() {
+    long stamp = STAMPED_LOCK.writeLock();
+    try {
+      size.set(0);
+      Arrays.fill(bucketList, null);
+      oldBucketList = null;
+    } finally {
+      STAMPED_LOCK.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public boolean remove(K k) {
+    int hash = hash(k);
+    long stamp = STAMPED_LOCK.writeLock();
+    try {
+      return removePair(k, hash);
+    } finally {
+      STAMPED_LOCK.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Put all pairs under one write lock, growing the table once for them. Pairs are built
+   * before locking, same as put().
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public void putAll(List<K> keys, List<V> vals) {
+    if (keys.size() != vals.size()) {
+      throw new IllegalArgumentException("Keys and values must have the same size.");
+    }
+    List<MapPair<K, V>> newPairs = new ArrayList<>(keys.size());
+    Iterator<V> valIterator = vals.iterator();
+    for (K k : keys) {
+      newPairs.add(new MapPair<>(k, valIterator.next(), hash(k)));
+    }
+
+    long stamp = STAMPED_LOCK.writeLock();
+    try {
+      reserve(newPairs.size());
+      for (MapPair<K, V> newPair : newPairs) {
+        putPair(newPair);
+      }
+    } finally {
+      STAMPED_LOCK.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Return the values of the given keys in the same order, null for missing keys.
+   * <p>
+   * Read lock required, once for all keys.
+   */
+  @Override
+  public List<V> getAll(List<K> keys) {
+    int[] hashes = hashAll(keys);
+    List<V> result = new ArrayList<>(keys.size());
+    int i = 0;
+
+    long stamp = STAMPED_LOCK.readLock();
+    try {
+      for (K k : keys) {
+        result.add(getValue(k, hashes[i++]));
+      }
+    } finally {
+      STAMPED_LOCK.unlockRead(stamp);
+    }
+    return result;
+  }
+
+  /**
+   * Remove the pairs of the given keys and return how many were removed.
+   * <p>
+   * Write lock required, once for all keys.
+   */
+  @Override
+  public int removeAll(List<K> keys) {
+    int[] hashes = hashAll(keys);
+    int result = 0;
+    int i = 0;
+
+    long stamp = STAMPED_LOCK.writeLock();
+    try {
+      for (K k : keys) {
+        if (removePair(k, hashes[i++])) {
+          result++;
+        }
+      }
+    } finally {
+      STAMPED_LOCK.unlockWrite(stamp);
+    }
+    return result;
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key, with one
+   * bucket lookup. A null new value removes the pair. The function runs under the lock, so
+   * a get() then put() race is impossible.
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    int hash = hash(k);
+    long stamp = STAMPED_LOCK.writeLock();
+    try {
+      return computePair(k, hash, remapping);
+    } finally {
+      STAMPED_LOCK.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Return the value of the pair with the given key and hash. Caller decides the lock.
+   * <p>
+   * Safe for optimistic read: buckets only get new nodes at the head and removed nodes are
+   * unlinked, so a stale chain always ends. A tree bucket throws instead of descending past
+   * any real tree height, and the caller reads again with read lock.
+   */
+  private V getValue(K k, int hash) {
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    MyLinkedList<MapPair> bucket = table[hash & (table.length - 1)];
+
+    if (bucket == null) {
+      return null;
+    }
+
+    MapPair<K, V> pair = bucket.getByKey(hash, k);
+    return pair == null ? null : pair.getV();
+  }
+
+  /**
+   * Insert or update the given pair. Write lock required from caller.
+   */
+  private void putPair(MapPair<K, V> newPair) {
+    rehash();
+    int hash = newPair.hash;
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
+
+    if (table[bucketIdx] == null) {
+      table[bucketIdx] = getNewLinkedList();
+      table[bucketIdx].addFirst(newPair);
+      size.incrementAndGet();
+      return;
+    }
+
+    MapPair<K, V> oldPair = table[bucketIdx].getByKey(hash, newPair.key);
+
+    if (oldPair == null) { // No such pair, add to the bucket at index 0.
+      table[bucketIdx].addFirst(newPair);
+      size.incrementAndGet();
+      treeifyIfNeeded(table, bucketIdx);
+    } else { // Update old value
+      oldPair.setV(newPair.getV());
+    }
+  }
+
+  /**
+   * Remove the pair with the given key and hash. Write lock required from caller.
+   */
+  private boolean removePair(K k, int hash) {
+    if (oldBucketList != null) { // Incremental rehashing
+      migrate(MIGRATION_STEP);
+    }
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
+
+    if (table[bucketIdx] == null) {
+      return false;
+    }
+
+    if (table[bucketIdx].removeByKey(hash, k)) {
+      size.decrementAndGet();
+      untreeifyIfNeeded(table, bucketIdx);
+      return true;
+    } else { // No such value
+      return false;
+    }
+  }
+
+  /**
+   * Compute the new value of the given key from its old value in one bucket lookup, then
+   * update, insert or remove the pair. Write lock required from caller.
+   */
+  private V computePair(K k, int hash, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    rehash();
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
+    MapPair<K, V> oldPair = table[bucketIdx] == null ? null : table[bucketIdx].getByKey(hash, k);
+    V oldVal = oldPair == null ? null : oldPair.getV();
+    V newVal = remapping.apply(k, oldVal);
+
+    if (oldPair != null) {
+      if (newVal != null) { // Update old value
+        oldPair.setV(newVal);
+      } else if (table[bucketIdx].removeByKey(hash, k)) {
+        size.decrementAndGet();
+        untreeifyIfNeeded(table, bucketIdx);
+      }
+    } else if (newVal != null) { // No such pair
+      if (table[bucketIdx] == null) {
+        table[bucketIdx] = getNewLinkedList();
+      }
+      table[bucketIdx].addFirst(new MapPair<>(k, newVal, hash));
+      size.incrementAndGet();
+      treeifyIfNeeded(table, bucketIdx);
+    }
+    return newVal;
+  }
+
+  /**
+   * Return hashcode of the given key, mixed by the hash strategy to avoid primary clustering.
+   * The default MurmurHash3 finalizer mixes the int directly, so it allocates nothing.
+   * No need to lock.
+   */
+  private int hash(K k) {
+    return hashStrategy.hash(k);
+  }
+
+  /**
+   * Return the hashes of the given keys, computed before locking. No need to lock.
+   */
+  private int[] hashAll(List<K> keys) {
+    int[] result = new int[keys.size()];
+    int i = 0;
+    for (K k : keys) {
+      result[i++] = hash(k);
+    }
+    return result;
+  }
+
+  /**
+   * Return the smallest power of two >= the given capacity, so the bucket index of a hash is
+   * hash & (length - 1) instead of an integer division.
+   */
+  private static int tableSizeFor(int capacity) {
+    int n = 1;
+    while (n < capacity && n < MAXIMUM_CAPACITY) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  /**
+   * Double the capacity of the hash table if the load factor is > 0.5. All pairs are guaranteed
+   * to be found by given keys after rehashing. The capacity stays a power of two.
+   * <p>
+   * StopTheWorld policy moves all old buckets here. Incremental policy only moves
+   * MIGRATION_STEP old buckets, and each following put() and remove() moves some more.
+   * <p>
+   * No need to lock since all caller functions are locked by write lock. Optimistic read
+   * threads validate the stamp, so they never trust a half-moved bucket.
+   */
+  private void rehash() {
+    if (size() * 1.0f / this.capacity >= loadFactor) {
+      if (oldBucketList != null) { // Previous rehashing not done yet, finish it first.
+        migrate(oldBucketList.length);
+      }
+
+      capacity *= REHASH_FACTOR;
+      oldBucketList = bucketList;
+      migrateIndex = 0;
+      bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+    }
+
+    if (oldBucketList != null) {
+      migrate(rehashPolicy == RehashPolicy.Incremental ? MIGRATION_STEP : oldBucketList.length);
+    }
+  }
+
+  /**
+   * Grow the table once for a batch of new pairs. The write lock invalidates the stamps of
+   * optimistic readers, so they retry on the new table.
+   * <p>
+   * Write lock required from caller.
+   */
+  private void reserve(int pairCount) {
+    int newCapacity = MyHashMapBasicImpl.reservedCapacity(capacity, size() + pairCount,
+        loadFactor, MAXIMUM_CAPACITY);
+    if (newCapacity == capacity) {
+      return;
+    }
+    if (oldBucketList != null) { // Previous rehashing not done yet, finish it first.
+      migrate(oldBucketList.length);
+    }
+
+    capacity = newCapacity;
+    bucketList = MyHashMapBasicImpl.regroup(bucketList, capacity, this::getNewLinkedList);
+    for (int i = 0; i < capacity; i++) {
+      treeifyIfNeeded(bucketList, i);
+    }
+  }
+
+  /**
+   * Move at most the given number of old buckets to the new table, from migrateIndex on. A
+   * bucket is moved as a whole, so each key is in exactly one of the two tables.
+   * <p>
+   * Both tables are powers of two, so old bucket i splits into new buckets i and
+   * i + oldLength only, picked by the hash bit oldLength. Nothing else writes to those two new
+   * buckets before old bucket i is moved, so each old bucket can be split on its own.
+   */
+  private void migrate(int bucketCount) {
+    int oldLength = oldBucketList.length;
+    int end = Math.min(migrateIndex + bucketCount, oldLength);
+
+    for (; migrateIndex < end; migrateIndex++) {
+      MyLinkedList<MapPair> oldList = oldBucketList[migrateIndex];
+      if (oldList == null) {
+        continue;
+      }
+
+      MyLinkedList<MapPair> lowList = null;
+      MyLinkedList<MapPair> highList = null;
+      List<MapPair> pairList = oldList.getAll();
+
+      for (MapPair pair : pairList) {
+        if ((pair.hash & oldLength) == 0) { // Cached hash, no need to hash again
+          lowList = lowList == null ? getNewLinkedList() : lowList;
+          lowList.addFirst(pair);
+        } else {
+          highList = highList == null ? getNewLinkedList() : highList;
+          highList.addFirst(pair);
+        }
+      }
+      bucketList[migrateIndex] = lowList;
+      bucketList[migrateIndex + oldLength] = highList;
+      treeifyIfNeeded(bucketList, migrateIndex);
+      treeifyIfNeeded(bucketList, migrateIndex + oldLength);
+      oldBucketList[migrateIndex] = null;
+    }
+
+    if (migrateIndex == oldLength) { // Rehashing done
+      oldBucketList = null;
+    }
+  }
+
+  /**
+   * Return the table holding the key of the given hash. During incremental rehashing, the key
+   * is still in oldBucketList if its old bucket is not moved yet.
+   */
+  private MyLinkedList<MapPair>[] getTable(int hash) {
+    MyLinkedList<MapPair>[] oldTable = oldBucketList;
+
+    if (oldTable != null && (hash & (oldTable.length - 1)) >= migrateIndex) {
+      return oldTable;
+    }
+    return bucketList;
+  }
+
+  /**
+   * Return all buckets of both tables. Moved old buckets are null, so no pair is counted twice.
+   */
+  private MyLinkedList<MapPair>[] getAllBuckets() {
+    if (oldBucketList == null) {
+      return bucketList;
+    }
+
+    MyLinkedList<MapPair>[] result = Arrays.copyOf(bucketList,
+        bucketList.length + oldBucketList.length);
+    System.arraycopy(oldBucketList, 0, result, bucketList.length, oldBucketList.length);
+    return result;
+  }
+
+  @Override
+  public Iterator<MapPair> iterator() {
+    return new MyHashMapBasicImpl.MyHashMapIterator<>(getAllBuckets());
+  }
+
+  /**
+   * Split by bucket ranges of the table at creation. Each bucket is copied from the current
+   * tables under the read lock, then visited without it, so pairs moved by a rehash in between
+   * are still seen once, and writers wait for a bucket at most, never for the traversal.
+   */
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    long stamp = STAMPED_LOCK.readLock();
+    int bucketCount;
+    try {
+      bucketCount = bucketList.length;
+    } finally {
+      STAMPED_LOCK.unlockRead(stamp);
+    }
+    return new BucketSpliterator(bucketCount, size(), (bucket, action) -> {
+      List<MapPair> pairs = new ArrayList<>();
+      long bucketStamp = STAMPED_LOCK.readLock();
+      try {
+        BucketSpliterator.visitHashes(bucketList, bucket, bucketCount, pairs::add);
+        BucketSpliterator.visitHashes(oldBucketList, bucket, bucketCount, pairs::add);
+      } finally {
+        STAMPED_LOCK.unlockRead(bucketStamp);
+      }
+      pairs.forEach(action);
+    });
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("\"MyHashMapStampedImpl{\"");
+
+    for (MapPair<K, V> pair : this) {
+      String temp = "key=" + pair.key + ", val=" + pair.getV() + "; ";
+      result.append(temp);
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+
+  /**
+   * The map lock already guards the buckets. A thread-safe linked list would take its own
+   * lock on every optimistic read, which is what this class avoids.
+   */
+  private MyLinkedList<MapPair> getNewLinkedList() {
+    return new MyLinkedListBasicImpl<>();
+  }
+
+  /**
+   * Turn the bucket at the given index into a tree bucket once its list reaches
+   * TREEIFY_THRESHOLD, so a long collision chain is searched in O(log n).
+   */
+  private void treeifyIfNeeded(MyLinkedList<MapPair>[] table, int bucketIdx) {
+    MyLinkedList<MapPair> bucket = table[bucketIdx];
+
+    if (bucket != null && !(bucket instanceof MyHashMapTreeBucket)
+        && bucket.size() >= MyHashMapTreeBucket.TREEIFY_THRESHOLD) {
+      table[bucketIdx] = new MyHashMapTreeBucket(bucket);
+    }
+  }
+
+  /**
+   * Turn the tree bucket at the given index back into a linked list once it shrinks to
+   * UNTREEIFY_THRESHOLD. The gap between both thresholds avoids converting back and forth.
+   */
+  private void untreeifyIfNeeded(MyLinkedList<MapPair>[] table, int bucketIdx) {
+    MyLinkedList<MapPair> bucket = table[bucketIdx];
+
+    if (bucket instanceof MyHashMapTreeBucket
+        && bucket.size() <= MyHashMapTreeBucket.UNTREEIFY_THRESHOLD) {
+      MyLinkedList<MapPair> list = getNewLinkedList();
+      for (MapPair pair : bucket) {
+        list.addFirst(pair);
+      }
+      table[bucketIdx] = list;
+    }
+  }
+
+  /**
+   * Method for testing only, won't expose to MyHashMap interface.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    long stamp = STAMPED_LOCK.readLock();
+    try {
+      MyLinkedList<MapPair>[] buckets = getAllBuckets();
+      int[] result = new int[buckets.length];
+
+      for (int i = 0; i < result.length; i++) {
+        if (buckets[i] != null) {
+          result[i] = buckets[i].size();
+        }
+      }
+      return result;
+    } finally {
+      STAMPED_LOCK.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Method for testing only, won't expose to MyHashMap interface.
+   */
+  @Override
+  public int getTotalPairCount() {
+    int result = 0;
+
+    for (int bucketSize : getAllBucketSize()) {
+      result += bucketSize;
+    }
+    return result;
+  }
+
+  @Override
+  public void addAndDelete(K k, V v) {
+    long stamp = STAMPED_LOCK.writeLock();
+
+    try {
+      putPair(new MapPair<>(k, v, hash(k)));
+      removePair(k, hash(k));
+    } finally {
+      STAMPED_LOCK.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    long stamp = STAMPED_LOCK.readLock();
+
+    try {
+      Thread.sleep(THREAD_SLEEP_MILLI_SEC);
+    } finally {
+      STAMPED_LOCK.unlockRead(stamp);
+    }
+  }
+}
@@ -0,0 +1,788 @@
+package johnston.hashmap;
+
+import johnston.linkedlist.MyLinkedList;
+import johnston.linkedlist.MyLinkedListBasicImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+/**
+ * This is the thread-safe hash map implementation using lock striping.
+ * <p>
+ * The hash table is split into segments. Each segment is a small hash table with its own
+ * bucket list and its own read-write lock, so only threads working on the same segment
+ * mutually exclude each other.
+ * <p>
+ * -> The segment of a key is picked by the high bits of the hash mixed once more, the bucket
+ *    inside the segment is picked by the low bits. The extra mix keeps small keys of the
+ *    IDENTITY strategy, which only have low bits, from all landing in segment 0.
+ * -> Each segment rehashes on its own, under its own write lock.
+ * -> size() is the sum of all segment counters.
+ */
+public class MyHashMapStripedImpl<K, V> implements MyHashMapTesting<K, V> {
+  private final Segment<K, V>[] segments;
+  private final int segmentShift;
+  private final int segmentMask;
+  private final HashStrategy hashStrategy;
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+  private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+  private static final int MAX_SEGMENTS = 1 << 16;
+  private static final int MIN_SEGMENT_CAPACITY = 2;
+  private static final int MAX_SEGMENT_CAPACITY = 1 << 30;
+  private static final int REHASH_FACTOR = 2;
+  private static final int THREAD_SLEEP_MILLI_SEC = 20;
+
+  public MyHashMapStripedImpl(int capacity, float loadFactor, int concurrencyLevel) {
+    this(capacity, loadFactor, concurrencyLevel, HashStrategy.MURMUR3);
+  }
+
+  public MyHashMapStripedImpl(int capacity, float loadFactor, int concurrencyLevel,
+                              HashStrategy hashStrategy) {
+    if (capacity <= 0 || loadFactor <= 0 || concurrencyLevel <= 0) {
+      throw new IllegalArgumentException("Capacity, load factor and concurrency level " +
+          "must be positive.");
+    }
+
+    // Round the segment count up to a power of two, so the high bits of the hash can pick it.
+    int segmentBits = 0;
+    int segmentCount = 1;
+    while (segmentCount < Math.min(concurrencyLevel, MAX_SEGMENTS)) {
+      segmentCount <<= 1;
+      segmentBits++;
+    }
+    this.segmentShift = 32 - segmentBits; // Top bits of the mixed hash, none for 1 segment.
+    this.segmentMask = segmentCount - 1;
+    this.hashStrategy = hashStrategy;
+
+    // Round the segment capacity up to a power of two, so the low bits of the hash pick the
+    // bucket by a mask.
+    int segmentCapacity = MIN_SEGMENT_CAPACITY;
+    while (segmentCapacity < (capacity + segmentCount - 1) / segmentCount
+        && segmentCapacity < MAX_SEGMENT_CAPACITY) {
+      segmentCapacity <<= 1;
+    }
+    this.segments = (Segment<K, V>[]) (new Segment[segmentCount]);
+
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment<>(segmentCapacity, loadFactor, hashStrategy);
+    }
+  }
+
+  public MyHashMapStripedImpl(int capacity, float loadFactor) {
+    this(capacity, loadFactor, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  public MyHashMapStripedImpl(int capacity, float loadFactor, HashStrategy hashStrategy) {
+    this(capacity, loadFactor, DEFAULT_CONCURRENCY_LEVEL, hashStrategy);
+  }
+
+  public MyHashMapStripedImpl() {
+    this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  /**
+   * Return size of the hash table, which is the sum of all segment counters. No need to lock,
+   * the counters are volatile. It is exact when no write thread is running.
+   */
+  @Override
+  public int size() {
+    int result = 0;
+
+    for (Segment<K, V> segment : segments) {
+      result += segment.count;
+    }
+    return result;
+  }
+
+  /**
+   * No need to lock since size() does not need lock.
+   */
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Return if two given keys have the same hash value. No need to lock.
+   */
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hash(one) == hash(two);
+  }
+
+  /**
+   * Return the value by given key. If no such key, return null.
+   * <p>
+   * Read lock of the key's segment required.
+   */
+  @Override
+  public V get(K k) {
+    int hash = hash(k);
+    return segmentFor(hash).get(k, hash);
+  }
+
+  /**
+   * Return true if key exists, otherwise false. No need to lock since get() is locked.
+   */
+  @Override
+  public boolean containsKey(K k) {
+    return get(k) != null;
+  }
+
+  /**
+   * If the key exists, update the value, otherwise insert a new pair.
+   * <p>
+   * Write lock of the key's segment required.
+   */
+  @Override
+  public void put(K k, V v) {
+    int hash = hash(k);
+    segmentFor(hash).put(k, v, hash);
+  }
+
+  /**
+   * Empty the hash table. Each segment is cleared under its own write lock.
+   */
+  @Override
+  public void removeAll() {
+    for (Segment<K, V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   * <p>
+   * Write lock of the key's segment required.
+   */
+  @Override
+  public boolean remove(K k) {
+    int hash = hash(k);
+    return segmentFor(hash).remove(k, hash);
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key, with one
+   * bucket lookup. A null new value removes the pair.
+   * <p>
+   * Write lock of the key's segment required, so only that segment waits for the function.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    int hash = hash(k);
+    return segmentFor(hash).compute(k, hash, remapping);
+  }
+
+  /**
+   * Group the pairs by segment, then put each group under its segment write lock once. Each
+   * segment grows once for its group.
+   */
+  @Override
+  public void putAll(List<K> keys, List<V> vals) {
+    if (keys.size() != vals.size()) {
+      throw new IllegalArgumentException("Keys and values must have the same size.");
+    }
+    MapPair<K, V>[] newPairs = (MapPair<K, V>[]) new MapPair[keys.size()];
+    int[] hashes = new int[keys.size()];
+    Iterator<V> valIterator = vals.iterator();
+    int i = 0;
+    for (K k : keys) {
+      hashes[i] = hash(k);
+      newPairs[i] = new MapPair<>(k, valIterator.next(), hashes[i]);
+      i++;
+    }
+
+    int[] group = new int[hashes.length];
+    int[] groupStart = groupBySegment(hashes, group);
+    for (int s = 0; s < segments.length; s++) {
+      if (groupStart[s] < groupStart[s + 1]) {
+        segments[s].putAll(newPairs, group, groupStart[s], groupStart[s + 1]);
+      }
+    }
+  }
+
+  /**
+   * Return the values of the given keys in the same order, null for missing keys. Keys are
+   * grouped by segment, and each group is read under its segment read lock once.
+   */
+  @Override
+  public List<V> getAll(List<K> keys) {
+    K[] keyArray = (K[]) keys.toArray();
+    int[] hashes = new int[keyArray.length];
+    for (int i = 0; i < keyArray.length; i++) {
+      hashes[i] = hash(keyArray[i]);
+    }
+
+    V[] result = (V[]) new Object[keyArray.length];
+    int[] group = new int[hashes.length];
+    int[] groupStart = groupBySegment(hashes, group);
+    for (int s = 0; s < segments.length; s++) {
+      if (groupStart[s] < groupStart[s + 1]) {
+        segments[s].getAll(keyArray, hashes, group, groupStart[s], groupStart[s + 1], result);
+      }
+    }
+    return new ArrayList<>(Arrays.asList(result));
+  }
+
+  /**
+   * Remove the pairs of the given keys and return how many were removed. Keys are grouped by
+   * segment, and each group is removed under its segment write lock once.
+   */
+  @Override
+  public int removeAll(List<K> keys) {
+    K[] keyArray = (K[]) keys.toArray();
+    int[] hashes = new int[keyArray.length];
+    for (int i = 0; i < keyArray.length; i++) {
+      hashes[i] = hash(keyArray[i]);
+    }
+
+    int result = 0;
+    int[] group = new int[hashes.length];
+    int[] groupStart = groupBySegment(hashes, group);
+    for (int s = 0; s < segments.length; s++) {
+      if (groupStart[s] < groupStart[s + 1]) {
+        result += segments[s].removeAll(keyArray, hashes, group, groupStart[s],
+            groupStart[s + 1]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return hashcode of the given key, mixed by the hash strategy to avoid primary clustering.
+   * The default MurmurHash3 finalizer mixes the int directly, so it allocates nothing.
+   * No need to lock.
+   */
+  private int hash(Object k) {
+    return hashStrategy.hash(k);
+  }
+
+  private Segment<K, V> segmentFor(int hash) {
+    return segments[segmentIndex(hash)];
+  }
+
+  private int segmentIndex(int hash) {
+    return (HashStrategy.fmix32(hash) >>> segmentShift) & segmentMask;
+  }
+
+  /**
+   * Fill group with the indexes of the given hashes sorted by segment, and return the start
+   * of each segment's indexes in it, plus the end. It's a counting sort, so it takes
+   * O(hash count + segment count). No need to lock.
+   */
+  private int[] groupBySegment(int[] hashes, int[] group) {
+    int[] groupStart = new int[segments.length + 1];
+    for (int hash : hashes) {
+      groupStart[segmentIndex(hash) + 1]++;
+    }
+    for (int s = 0; s < segments.length; s++) {
+      groupStart[s + 1] += groupStart[s];
+    }
+
+    int[] next = Arrays.copyOf(groupStart, segments.length);
+    for (int i = 0; i < hashes.length; i++) {
+      group[next[segmentIndex(hashes[i])]++] = i;
+    }
+    return groupStart;
+  }
+
+  /**
+   * A segment is a small separate chaining hash table guarded by its own read-write lock.
+   * The methods are the same as MyHashMapReentrantImpl, except the hash is computed once by
+   * the outer map.
+   */
+  static final class Segment<K, V> {
+    private MyLinkedList<MapPair>[] bucketList;
+    private int capacity;
+    private final float loadFactor;
+    private final HashStrategy hashStrategy;
+    private volatile int count; // Only modified under write lock
+
+    private final ReadWriteLock READ_WRITE_LOCK;
+    private final Lock READ_LOCK;
+    private final Lock WRITE_LOCK;
+
+    Segment(int capacity, float loadFactor, HashStrategy hashStrategy) {
+      this.capacity = capacity;
+      this.loadFactor = loadFactor;
+      this.hashStrategy = hashStrategy;
+      this.count = 0;
+      this.bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+
+      // Init read-write lock.
+      READ_WRITE_LOCK = new ReentrantReadWriteLock();
+      READ_LOCK = READ_WRITE_LOCK.readLock();
+      WRITE_LOCK = READ_WRITE_LOCK.writeLock();
+    }
+
+    V get(K k, int hash) {
+      READ_LOCK.lock();
+      try {
+        return getValue(k, hash);
+      } finally {
+        READ_LOCK.unlock();
+      }
+    }
+
+    void put(K k, V v, int hash) {
+      MapPair<K, V> newPair = new MapPair<>(k, v, hash);
+      WRITE_LOCK.lock();
+      try {
+        putPair(newPair);
+      } finally {
+        WRITE_LOCK.unlock();
+      }
+    }
+
+    boolean remove(K k, int hash) {
+      WRITE_LOCK.lock();
+      try {
+        return removePair(k, hash);
+      } finally {
+        WRITE_LOCK.unlock();
+      }
+    }
+
+    V compute(K k, int hash, BiFunction<? super K, ? super V, ? extends V> remapping) {
+      WRITE_LOCK.lock();
+      try {
+        return computePair(k, hash, remapping);
+      } finally {
+        WRITE_LOCK.unlock();
+      }
+    }
+
+    /**
+     * Put the pairs of the given indexes from the group, growing this segment once for them.
+     */
+    void putAll(MapPair<K, V>[] newPairs, int[] group, int from, int to) {
+      WRITE_LOCK.lock();
+      try {
+        reserve(to - from);
+        for (int i = from; i < to; i++) {
+          putPair(newPairs[group[i]]);
+        }
+      } finally {
+        WRITE_LOCK.unlock();
+      }
+    }
+
+    /**
+     * Get the values of the keys of the given indexes from the group, into the same indexes
+     * of the result.
+     */
+    void getAll(K[] keys, int[] hashes, int[] group, int from, int to, V[] result) {
+      READ_LOCK.lock();
+      try {
+        for (int i = from; i < to; i++) {
+          result[group[i]] = getValue(keys[group[i]], hashes[group[i]]);
+        }
+      } finally {
+        READ_LOCK.unlock();
+      }
+    }
+
+    /**
+     * Remove the keys of the given indexes from the group, and return how many were removed.
+     */
+    int removeAll(K[] keys, int[] hashes, int[] group, int from, int to) {
+      int result = 0;
+      WRITE_LOCK.lock();
+      try {
+        for (int i = from; i < to; i++) {
+          if (removePair(keys[group[i]], hashes[group[i]])) {
+            result++;
+          }
+        }
+      } finally {
+        WRITE_LOCK.unlock();
+      }
+      return result;
+    }
+
+    /**
+     * Segment read lock required from caller.
+     */
+    private V getValue(K k, int hash) {
+      MyLinkedList<MapPair> bucket = bucketList[hash & (bucketList.length - 1)];
+      if (bucket == null) {
+        return null;
+      }
+
+      MapPair<K, V> pair = bucket.getByKey(hash, k);
+      return pair == null ? null : pair.getV();
+    }
+
+    /**
+     * Segment write lock required from caller.
+     */
+    private void putPair(MapPair<K, V> newPair) {
+      rehash();
+      int hash = newPair.hash;
+      int bucketIdx = hash & (bucketList.length - 1);
+
+      if (bucketList[bucketIdx] == null) {
+        bucketList[bucketIdx] = new MyLinkedListBasicImpl<>();
+        bucketList[bucketIdx].addFirst(newPair);
+        count++;
+        return;
+      }
+
+      MapPair<K, V> oldPair = bucketList[bucketIdx].getByKey(hash, newPair.key);
+
+      if (oldPair == null) { // No such pair, add to the bucket at index 0.
+        bucketList[bucketIdx].addFirst(newPair);
+        count++;
+        treeifyIfNeeded(bucketIdx);
+      } else { // Update old value
+        oldPair.setV(newPair.getV());
+      }
+    }
+
+    /**
+     * Segment write lock required from caller.
+     */
+    private boolean removePair(K k, int hash) {
+      int bucketIdx = hash & (bucketList.length - 1);
+
+      if (bucketList[bucketIdx] == null) {
+        return false;
+      }
+
+      if (bucketList[bucketIdx].removeByKey(hash, k)) {
+        count--;
+        untreeifyIfNeeded(bucketIdx);
+        return true;
+      } else { // No such value
+        return false;
+      }
+    }
+
+    /**
+     * Update, insert or remove the pair by the new value computed from the old one, with one
+     * bucket lookup. Segment write lock required from caller.
+     */
+    private V computePair(K k, int hash,
+                          BiFunction<? super K, ? super V, ? extends V> remapping) {
+      rehash();
+      int bucketIdx = hash & (bucketList.length - 1);
+      MyLinkedList<MapPair> bucket = bucketList[bucketIdx];
+      MapPair<K, V> oldPair = bucket == null ? null : bucket.getByKey(hash, k);
+      V oldVal = oldPair == null ? null : oldPair.getV();
+      V newVal = remapping.apply(k, oldVal);
+
+      if (oldPair != null) {
+        if (newVal != null) { // Update old value
+          oldPair.setV(newVal);
+        } else if (bucket.removeByKey(hash, k)) {
+          count--;
+          untreeifyIfNeeded(bucketIdx);
+        }
+      } else if (newVal != null) { // No such pair, add to the bucket at index 0.
+        if (bucket == null) {
+          bucketList[bucketIdx] = new MyLinkedListBasicImpl<>();
+        }
+        bucketList[bucketIdx].addFirst(new MapPair<>(k, newVal, hash));
+        count++;
+        treeifyIfNeeded(bucketIdx);
+      }
+      return newVal;
+    }
+
+    void clear() {
+      WRITE_LOCK.lock();
+      try {
+        count = 0;
+        Arrays.fill(bucketList, null);
+      } finally {
+        WRITE_LOCK.unlock();
+      }
+    }
+
+    /**
+     * Double the capacity of this segment only. No need to lock since all caller functions
+     * are locked by the segment write lock.
+     */
+    private void rehash() {
+      if (count * 1.0f / capacity < loadFactor) {
+        return;
+      }
+
+      capacity *= REHASH_FACTOR;
+      MyLinkedList<MapPair>[] oldBucketList = bucketList;
+      bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+
+      int oldLength = oldBucketList.length;
+
+      // Old bucket i splits into new buckets i and i + oldLength, picked by the hash bit
+      // oldLength.
+      for (int i = 0; i < oldLength; i++) {
+        if (oldBucketList[i] == null) {
+          continue;
+        }
+
+        MyLinkedList<MapPair> lowList = null;
+        MyLinkedList<MapPair> highList = null;
+        List<MapPair> pairList = oldBucketList[i].getAll();
+
+        for (MapPair pair : pairList) {
+          if ((pair.hash & oldLength) == 0) { // Cached hash, no need to hash again
+            lowList = lowList == null ? new MyLinkedListBasicImpl<>() : lowList;
+            lowList.addFirst(pair);
+          } else {
+            highList = highList == null ? new MyLinkedListBasicImpl<>() : highList;
+            highList.addFirst(pair);
+          }
+        }
+        bucketList[i] = lowList;
+        bucketList[i + oldLength] = highList;
+        treeifyIfNeeded(i);
+        treeifyIfNeeded(i + oldLength);
+      }
+    }
+
+    /**
+     * Grow this segment once so the given number of new pairs fits under the load factor,
+     * instead of doubling it at each threshold while they are put. Segment write lock
+     * required from caller.
+     */
+    private void reserve(int pairCount) {
+      int newCapacity = MyHashMapBasicImpl.reservedCapacity(capacity, count + pairCount,
+          loadFactor, MAX_SEGMENT_CAPACITY);
+      if (newCapacity == capacity) {
+        return;
+      }
+
+      capacity = newCapacity;
+      bucketList = MyHashMapBasicImpl.regroup(bucketList, capacity, MyLinkedListBasicImpl::new);
+      for (int i = 0; i < capacity; i++) {
+        treeifyIfNeeded(i);
+      }
+    }
+
+    /**
+     * Turn the bucket at the given index into a tree bucket once its list reaches
+     * TREEIFY_THRESHOLD. Segment write lock required from caller.
+     */
+    private void treeifyIfNeeded(int bucketIdx) {
+      MyLinkedList<MapPair> bucket = bucketList[bucketIdx];
+
+      if (bucket != null && !(bucket instanceof MyHashMapTreeBucket)
+          && bucket.size() >= MyHashMapTreeBucket.TREEIFY_THRESHOLD) {
+        bucketList[bucketIdx] = new MyHashMapTreeBucket(bucket);
+      }
+    }
+
+    /**
+     * Turn the tree bucket at the given index back into a linked list once it shrinks to
+     * UNTREEIFY_THRESHOLD. Segment write lock required from caller.
+     */
+    private void untreeifyIfNeeded(int bucketIdx) {
+      MyLinkedList<MapPair> bucket = bucketList[bucketIdx];
+
+      if (bucket instanceof MyHashMapTreeBucket
+          && bucket.size() <= MyHashMapTreeBucket.UNTREEIFY_THRESHOLD) {
+        MyLinkedList<MapPair> list = new MyLinkedListBasicImpl<>();
+        for (MapPair pair : bucket) {
+          list.addFirst(pair);
+        }
+        bucketList[bucketIdx] = list;
+      }
+    }
+  }
+
+  @Override
+  public Iterator<MapPair> iterator() {
+    return new StripedIterator();
+  }
+
+  /**
+   * Split by ranges of the bucket arrays of all segments at creation, one after another.
+   * Each bucket is copied from the current array of its segment under the segment read lock,
+   * then visited without it, so pairs moved by a rehash in between are still seen once.
+   */
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    int[] bucketCounts = new int[segments.length];
+    int[] starts = new int[segments.length]; // First bucket of each segment in the range
+    int bucketCount = 0;
+
+    for (int s = 0; s < segments.length; s++) {
+      segments[s].READ_LOCK.lock();
+      try {
+        bucketCounts[s] = segments[s].bucketList.length;
+      } finally {
+        segments[s].READ_LOCK.unlock();
+      }
+      starts[s] = bucketCount;
+      bucketCount += bucketCounts[s];
+    }
+    return new BucketSpliterator(bucketCount, size(), (bucket, action) -> {
+      int s = Arrays.binarySearch(starts, bucket);
+      s = s >= 0 ? s : -s - 2; // The last segment starting before the bucket
+      Segment<K, V> segment = segments[s];
+      List<MapPair> pairs = new ArrayList<>();
+      segment.READ_LOCK.lock();
+      try {
+        BucketSpliterator.visitHashes(segment.bucketList, bucket - starts[s], bucketCounts[s],
+            pairs::add);
+      } finally {
+        segment.READ_LOCK.unlock();
+      }
+      pairs.forEach(action);
+    });
+  }
+
+  /**
+   * Iterator class for striped hash map. It walks the segments one by one and uses the bucket
+   * iterator of each segment. Like other hash map iterators, it's not thread-safe.
+   */
+  class StripedIterator implements Iterator<MapPair> {
+    int segmentIndex;
+    Iterator<MapPair> segmentIterator;
+
+    StripedIterator() {
+      this.segmentIndex = 0;
+      this.segmentIterator = null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (segmentIterator == null || !segmentIterator.hasNext()) {
+        if (segmentIndex == segments.length) {
+          return false;
+        }
+        segmentIterator =
+            new MyHashMapBasicImpl.MyHashMapIterator<>(segments[segmentIndex++].bucketList);
+      }
+      return true;
+    }
+
+    @Override
+    public MapPair next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return segmentIterator.next();
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("\"MyHashMapStripedImpl{\"");
+
+    for (MapPair<K, V> pair : this) {
+      String temp = "key=" + pair.key + ", val=" + pair.getV() + "; ";
+      result.append(temp);
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+
+  /**
+   * Method for testing only, won't expose to MyHashMap interface. Bucket sizes of all
+   * segments are listed segment by segment.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    int[][] segmentBucketSize = new int[segments.length][];
+    int length = 0;
+
+    for (int s = 0; s < segments.length; s++) {
+      Segment<K, V> segment = segments[s];
+      segment.READ_LOCK.lock();
+
+      try {
+        segmentBucketSize[s] = new int[segment.bucketList.length];
+        for (int i = 0; i < segment.bucketList.length; i++) {
+          if (segment.bucketList[i] != null) {
+            segmentBucketSize[s][i] = segment.bucketList[i].size();
+          }
+        }
+        length += segmentBucketSize[s].length;
+      } finally {
+        segment.READ_LOCK.unlock();
+      }
+    }
+
+    int[] result = new int[length];
+    int offset = 0;
+
+    for (int[] bucketSize : segmentBucketSize) {
+      System.arraycopy(bucketSize, 0, result, offset, bucketSize.length);
+      offset += bucketSize.length;
+    }
+    return result;
+  }
+
+  /**
+   * Method for testing only, won't expose to MyHashMap interface.
+   */
+  @Override
+  public int getTotalPairCount() {
+    int result = 0;
+
+    for (Segment<K, V> segment : segments) {
+      segment.READ_LOCK.lock();
+
+      try {
+        for (MyLinkedList<MapPair> bucket : segment.bucketList) {
+          if (bucket != null) {
+            result += bucket.size();
+          }
+        }
+      } finally {
+        segment.READ_LOCK.unlock();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Like MyHashMapReentrantImpl locks the whole map, this method takes the write locks of all
+   * segments in order, so no reader can see the pair between put() and remove().
+   */
+  @Override
+  public void addAndDelete(K k, V v) {
+    for (Segment<K, V> segment : segments) {
+      segment.WRITE_LOCK.lock();
+    }
+
+    try {
+      put(k, v);
+      remove(k);
+    } finally {
+      for (int i = segments.length - 1; i >= 0; i--) {
+        segments[i].WRITE_LOCK.unlock();
+      }
+    }
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work. Readers do not mutually exclude each
+   *  other, so holding the read lock of one segment is enough.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    segments[0].READ_LOCK.lock();
+
+    try {
+      Thread.sleep(THREAD_SLEEP_MILLI_SEC);
+    } finally {
+      segments[0].READ_LOCK.unlock();
+    }
+  }
+}
@@ -2,12 +2,13 @@ package johnston.hashmap;
 
 import johnston.linkedlist.MyLinkedList;
 import johnston.linkedlist.MyLinkedListBasicImpl;
-import org.apache.commons.codec.digest.MurmurHash3;
 
-import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
 
 /**
  * This is the thread-safety hash map implementation based on the basic hash map implementation.
@@ -20,17 +21,34 @@ public class MyHashMapSyncedImpl<K, V> implements MyHashMapTesting<K, V> {
   private int capacity;
   private MyLinkedList<MapPair>[] bucketList;
   private final float loadFactor;
+  private final RehashPolicy rehashPolicy;
+  private final HashStrategy hashStrategy;
+  private MyLinkedList<MapPair>[] oldBucketList; // Not null during incremental rehashing
+  private int migrateIndex; // Old buckets before this index are moved to bucketList
 
   private static final int DEFAULT_CAPACITY = 16;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
   private static final int REHASH_FACTOR = 2;
+  private static final int MIGRATION_STEP = 8; // Old buckets moved per put() or remove()
   private static final float DEFAULT_LOAD_FACTOR = 0.5f;
   private static final int THREAD_SLEEP_MILLI_SEC = 20;
 
   public MyHashMapSyncedImpl(int capacity, float loadFactor) {
-    this.capacity = capacity;
+    this(capacity, loadFactor, RehashPolicy.StopTheWorld);
+  }
+
+  public MyHashMapSyncedImpl(int capacity, float loadFactor, RehashPolicy rehashPolicy) {
+    this(capacity, loadFactor, rehashPolicy, HashStrategy.MURMUR3);
+  }
+
+  public MyHashMapSyncedImpl(int capacity, float loadFactor, RehashPolicy rehashPolicy,
+                             HashStrategy hashStrategy) {
+    this.rehashPolicy = rehashPolicy;
+    this.hashStrategy = hashStrategy;
+    this.capacity = tableSizeFor(capacity);
     this.size = 0;
     this.loadFactor = loadFactor;
-    this.bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+    this.bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[this.capacity]);
   }
 
   public MyHashMapSyncedImpl() {
@@ -57,18 +75,7 @@ public class MyHashMapSyncedImpl<K, V> implements MyHashMapTesting<K, V> {
    */
   @Override
   public synchronized V get(K k) {
-    int bucketIdx = getIndex(k);
-    if (bucketList[bucketIdx] == null) {
-      return null;
-    }
-
-    MapPair<K, V> dummy = new MapPair<>(k, null);
-    int pairIdx = bucketList[bucketIdx].getIndex(dummy);
-
-    if (pairIdx == -1) {
-      return null;
-    }
-    return (V) bucketList[bucketIdx].get(pairIdx).getV();
+    return getValue(k, hash(k));
   }
 
   /**
@@ -84,45 +91,133 @@ public class MyHashMapSyncedImpl<K, V> implements MyHashMapTesting<K, V> {
    */
   @Override
   public synchronized void put(K k, V v) {
+    putPair(new MapPair<>(k, v, hash(k)));
+  }
+
+  @Override
+  public synchronized void removeAll() {
+    size = 0;
+    Arrays.fill(bucketList, null);
+    oldBucketList = null;
+  }
+
+  /**
+   * Remove the pair by the given key and return true. If no such keys, return false.
+   */
+  @Override
+  public synchronized boolean remove(K k) {
+    return removePair(k, hash(k));
+  }
+
+  /**
+   * Grow the table once for all keys, then put the pairs, all in one synchronized block.
+   */
+  @Override
+  public synchronized void putAll(List<K> keys, List<V> vals) {
+    if (keys.size() != vals.size()) {
+      throw new IllegalArgumentException("Keys and values must have the same size.");
+    }
+    reserve(keys.size());
+    Iterator<V> valIterator = vals.iterator();
+    for (K k : keys) {
+      putPair(new MapPair<>(k, valIterator.next(), hash(k)));
+    }
+  }
+
+  /**
+   * Return the values of the given keys in one synchronized block, null for missing keys.
+   */
+  @Override
+  public synchronized List<V> getAll(List<K> keys) {
+    List<V> result = new ArrayList<>(keys.size());
+    for (K k : keys) {
+      result.add(getValue(k, hash(k)));
+    }
+    return result;
+  }
+
+  /**
+   * Remove the pairs of the given keys in one synchronized block, and return how many were
+   * removed.
+   */
+  @Override
+  public synchronized int removeAll(List<K> keys) {
+    int result = 0;
+    for (K k : keys) {
+      if (removePair(k, hash(k))) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Compute the new value of the given key from its old value, null if no such key, with one
+   * bucket lookup in one synchronized block. A null new value removes the pair.
+   */
+  @Override
+  public synchronized V compute(K k,
+                                BiFunction<? super K, ? super V, ? extends V> remapping) {
+    return computePair(k, hash(k), remapping);
+  }
+
+  /**
+   * Return the value of the pair with the given key and hash. Caller decides the lock.
+   */
+  private V getValue(K k, int hash) {
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    MyLinkedList<MapPair> bucket = table[hash & (table.length - 1)];
+
+    if (bucket == null) {
+      return null;
+    }
+
+    MapPair<K, V> pair = bucket.getByKey(hash, k);
+    return pair == null ? null : pair.getV();
+  }
+
+  /**
+   * Insert or update the given pair. Lock required from caller.
+   */
+  private void putPair(MapPair<K, V> newPair) {
     rehash();
-    int bucketIdx = getIndex(k);
-    MapPair<K, V> newPair = new MapPair<>(k, v);
+    int hash = newPair.hash;
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
 
-    if (bucketList[bucketIdx] == null) {
-      bucketList[bucketIdx] = getNewLinkedList();
-      bucketList[bucketIdx].addFirst(newPair);
+    if (table[bucketIdx] == null) {
+      table[bucketIdx] = getNewLinkedList();
+      table[bucketIdx].addFirst(newPair);
       size++;
       return;
     }
 
-    MapPair<K, V> oldPair = bucketList[bucketIdx].get(newPair);
+    MapPair<K, V> oldPair = table[bucketIdx].getByKey(hash, newPair.key);
     if (oldPair == null) { // No such pair
-      bucketList[bucketIdx].addFirst(newPair);
+      table[bucketIdx].addFirst(newPair);
       size++;
+      treeifyIfNeeded(table, bucketIdx);
     } else { // Update old value
-      oldPair.setV(v);
+      oldPair.setV(newPair.getV());
     }
   }
 
-  @Override
-  public synchronized void removeAll() {
-    size = 0;
-    Arrays.fill(bucketList, null);
-  }
-
   /**
-   * Remove the pair by the given key and return true. If no such keys, return false.
+   * Remove the pair with the given key and hash. Lock required from caller.
    */
-  @Override
-  public synchronized boolean remove(K k) {
-    int bucketIdx = getIndex(k);
-    if (bucketList[bucketIdx] == null) {
+  private boolean removePair(K k, int hash) {
+    if (oldBucketList != null) { // Incremental rehashing
+      migrate(MIGRATION_STEP);
+    }
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
+    if (table[bucketIdx] == null) {
       return false;
     }
-    MapPair<K, V> dummy = new MapPair<>(k, null);
 
-    if (bucketList[bucketIdx].remove(dummy)) {
+    if (table[bucketIdx].removeByKey(hash, k)) {
       size--;
+      untreeifyIfNeeded(table, bucketIdx);
       return true;
     } else { // No such value
       return false;
@@ -130,57 +225,195 @@ public class MyHashMapSyncedImpl<K, V> implements MyHashMapTesting<K, V> {
   }
 
   /**
-   * Return hashcode of the given key. Using MurmurHash function here to avoid
-   * primary clustering. MurmurHash is a performance efficient non-cryptographic hash function.
+   * Compute the new value of the given key from its old value in one bucket lookup, then
+   * update, insert or remove the pair. Lock required from caller.
    */
-  private int hash(K k) {
-    if (k == null) {
-      return 0;
+  private V computePair(K k, int hash, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    rehash();
+    MyLinkedList<MapPair>[] table = getTable(hash);
+    int bucketIdx = hash & (table.length - 1);
+    MapPair<K, V> oldPair = table[bucketIdx] == null ? null : table[bucketIdx].getByKey(hash, k);
+    V oldVal = oldPair == null ? null : oldPair.getV();
+    V newVal = remapping.apply(k, oldVal);
+
+    if (oldPair != null) {
+      if (newVal != null) { // Update old value
+        oldPair.setV(newVal);
+      } else if (table[bucketIdx].removeByKey(hash, k)) {
+        size--;
+        untreeifyIfNeeded(table, bucketIdx);
+      }
+    } else if (newVal != null) { // No such pair
+      if (table[bucketIdx] == null) {
+        table[bucketIdx] = getNewLinkedList();
+      }
+      table[bucketIdx].addFirst(new MapPair<>(k, newVal, hash));
+      size++;
+      treeifyIfNeeded(table, bucketIdx);
     }
-    byte[] temp = BigInteger.valueOf(k.hashCode()).toByteArray();
-    return MurmurHash3.hash32(temp) & 0x7FFFFFFF; // Ensure > 0
+    return newVal;
   }
 
-  private int getIndex(K k) {
-    int hash = hash(k);
-    return hash % bucketList.length;
+  /**
+   * Return hashcode of the given key, mixed by the hash strategy to avoid primary clustering.
+   * The default MurmurHash3 finalizer mixes the int directly, so it allocates nothing.
+   */
+  private int hash(K k) {
+    return hashStrategy.hash(k);
+  }
+
+  /**
+   * Return the smallest power of two >= the given capacity, so the bucket index of a hash is
+   * hash & (length - 1) instead of an integer division.
+   */
+  private static int tableSizeFor(int capacity) {
+    int n = 1;
+    while (n < capacity && n < MAXIMUM_CAPACITY) {
+      n <<= 1;
+    }
+    return n;
   }
 
   /**
    * Double the capacity of the hash table if the load factor is > 0.5. All pairs are guaranteed
-   * to be found by given keys after rehashing.
+   * to be found by given keys after rehashing. The capacity stays a power of two.
+   * <p>
+   * StopTheWorld policy moves all old buckets here. Incremental policy only moves
+   * MIGRATION_STEP old buckets, and each following put() and remove() moves some more.
    */
   private void rehash() {
-    if (this.size * 1.0f / this.capacity < loadFactor) {
+    if (size() * 1.0f / this.capacity >= loadFactor) {
+      if (oldBucketList != null) { // Previous rehashing not done yet, finish it first.
+        migrate(oldBucketList.length);
+      }
+
+      capacity *= REHASH_FACTOR;
+      oldBucketList = bucketList;
+      migrateIndex = 0;
+      bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+    }
+
+    if (oldBucketList != null) {
+      migrate(rehashPolicy == RehashPolicy.Incremental ? MIGRATION_STEP : oldBucketList.length);
+    }
+  }
+
+  /**
+   * Grow the table once for a batch of new pairs, within the same synchronized call as the
+   * puts. Lock required from caller.
+   */
+  private void reserve(int pairCount) {
+    int newCapacity = MyHashMapBasicImpl.reservedCapacity(capacity, size + pairCount,
+        loadFactor, MAXIMUM_CAPACITY);
+    if (newCapacity == capacity) {
       return;
     }
+    if (oldBucketList != null) { // Previous rehashing not done yet, finish it first.
+      migrate(oldBucketList.length);
+    }
+
+    capacity = newCapacity;
+    bucketList = MyHashMapBasicImpl.regroup(bucketList, capacity, this::getNewLinkedList);
+    for (int i = 0; i < capacity; i++) {
+      treeifyIfNeeded(bucketList, i);
+    }
+  }
 
-    capacity *= REHASH_FACTOR;
-    MyLinkedList<MapPair>[] oldBucketList = bucketList;
-    bucketList = (MyLinkedList<MapPair>[]) (new MyLinkedList[capacity]);
+  /**
+   * Move at most the given number of old buckets to the new table, from migrateIndex on. A
+   * bucket is moved as a whole, so each key is in exactly one of the two tables.
+   * <p>
+   * Both tables are powers of two, so old bucket i splits into new buckets i and
+   * i + oldLength only, picked by the hash bit oldLength. Nothing else writes to those two new
+   * buckets before old bucket i is moved, so each old bucket can be split on its own.
+   */
+  private void migrate(int bucketCount) {
+    int oldLength = oldBucketList.length;
+    int end = Math.min(migrateIndex + bucketCount, oldLength);
 
-    for (MyLinkedList<MapPair> oldList : oldBucketList) {
+    for (; migrateIndex < end; migrateIndex++) {
+      MyLinkedList<MapPair> oldList = oldBucketList[migrateIndex];
       if (oldList == null) {
         continue;
       }
 
+      MyLinkedList<MapPair> lowList = null;
+      MyLinkedList<MapPair> highList = null;
       List<MapPair> pairList = oldList.getAll();
-      for (MapPair pair : pairList) {
-        int bucketIdx = getIndex((K) pair.key);
 
-        if (bucketList[bucketIdx] == null) {
-          bucketList[bucketIdx] = new MyLinkedListBasicImpl<>();
-          // Using thread-safe linked list would not prevent data racing.
-          bucketList[bucketIdx] = getNewLinkedList();
+      for (MapPair pair : pairList) {
+        if ((pair.hash & oldLength) == 0) { // Cached hash, no need to hash again
+          lowList = lowList == null ? getNewLinkedList() : lowList;
+          lowList.addFirst(pair);
+        } else {
+          highList = highList == null ? getNewLinkedList() : highList;
+          highList.addFirst(pair);
         }
-        bucketList[bucketIdx].addFirst(pair);
       }
+      bucketList[migrateIndex] = lowList;
+      bucketList[migrateIndex + oldLength] = highList;
+      treeifyIfNeeded(bucketList, migrateIndex);
+      treeifyIfNeeded(bucketList, migrateIndex + oldLength);
+      oldBucketList[migrateIndex] = null;
+    }
+
+    if (migrateIndex == oldLength) { // Rehashing done
+      oldBucketList = null;
     }
   }
 
+  /**
+   * Return the table holding the key of the given hash. During incremental rehashing, the key
+   * is still in oldBucketList if its old bucket is not moved yet.
+   */
+  private MyLinkedList<MapPair>[] getTable(int hash) {
+    MyLinkedList<MapPair>[] oldTable = oldBucketList;
+
+    if (oldTable != null && (hash & (oldTable.length - 1)) >= migrateIndex) {
+      return oldTable;
+    }
+    return bucketList;
+  }
+
+  /**
+   * Return all buckets of both tables. Moved old buckets are null, so no pair is counted twice.
+   */
+  private MyLinkedList<MapPair>[] getAllBuckets() {
+    if (oldBucketList == null) {
+      return bucketList;
+    }
+
+    MyLinkedList<MapPair>[] result = Arrays.copyOf(bucketList,
+        bucketList.length + oldBucketList.length);
+    System.arraycopy(oldBucketList, 0, result, bucketList.length, oldBucketList.length);
+    return result;
+  }
+
   @Override
   public Iterator<MapPair> iterator() {
-    return new MyHashMapBasicImpl.MyHashMapIterator<>(this.bucketList);
+    return new MyHashMapBasicImpl.MyHashMapIterator<>(getAllBuckets());
+  }
+
+  /**
+   * Split by bucket ranges of the table at creation. Each bucket is copied from the current
+   * tables while synchronized, then visited without the lock, so pairs moved by a rehash in
+   * between are still seen once, and writers wait for a bucket at most, never for the
+   * traversal.
+   */
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    int bucketCount;
+    synchronized (this) {
+      bucketCount = bucketList.length;
+    }
+    return new BucketSpliterator(bucketCount, size(), (bucket, action) -> {
+      List<MapPair> pairs = new ArrayList<>();
+      synchronized (this) {
+        BucketSpliterator.visitHashes(bucketList, bucket, bucketCount, pairs::add);
+        BucketSpliterator.visitHashes(oldBucketList, bucket, bucketCount, pairs::add);
+      }
+      pairs.forEach(action);
+    });
   }
 
   /**
@@ -258,16 +491,47 @@ public class MyHashMapSyncedImpl<K, V> implements MyHashMapTesting<K, V> {
     // return new MyLinkedListThreadSafeImpl<>();
   }
 
+  /**
+   * Turn the bucket at the given index into a tree bucket once its list reaches
+   * TREEIFY_THRESHOLD, so a long collision chain is searched in O(log n).
+   */
+  private void treeifyIfNeeded(MyLinkedList<MapPair>[] table, int bucketIdx) {
+    MyLinkedList<MapPair> bucket = table[bucketIdx];
+
+    if (bucket != null && !(bucket instanceof MyHashMapTreeBucket)
+        && bucket.size() >= MyHashMapTreeBucket.TREEIFY_THRESHOLD) {
+      table[bucketIdx] = new MyHashMapTreeBucket(bucket);
+    }
+  }
+
+  /**
+   * Turn the tree bucket at the given index back into a linked list once it shrinks to
+   * UNTREEIFY_THRESHOLD. The gap between both thresholds avoids converting back and forth.
+   */
+  private void untreeifyIfNeeded(MyLinkedList<MapPair>[] table, int bucketIdx) {
+    MyLinkedList<MapPair> bucket = table[bucketIdx];
+
+    if (bucket instanceof MyHashMapTreeBucket
+        && bucket.size() <= MyHashMapTreeBucket.UNTREEIFY_THRESHOLD) {
+      MyLinkedList<MapPair> list = getNewLinkedList();
+      for (MapPair pair : bucket) {
+        list.addFirst(pair);
+      }
+      table[bucketIdx] = list;
+    }
+  }
+
   /**
    * Methods below are for testing.
    */
   @Override
   public synchronized int[] getAllBucketSize() {
-    int[] result = new int[bucketList.length];
+    MyLinkedList<MapPair>[] buckets = getAllBuckets();
+    int[] result = new int[buckets.length];
 
     for (int i = 0; i < result.length; i++) {
-      if (bucketList[i] != null) {
-        result[i] = bucketList[i].size();
+      if (buckets[i] != null) {
+        result[i] = buckets[i].size();
       }
     }
     return result;
@@ -275,11 +539,12 @@ public class MyHashMapSyncedImpl<K, V> implements MyHashMapTesting<K, V> {
 
   @Override
   public synchronized int getTotalPairCount() {
+    MyLinkedList<MapPair>[] buckets = getAllBuckets();
     int result = 0;
 
-    for (int i = 0; i < bucketList.length; i++) {
-      if (bucketList[i] != null) {
-        result += bucketList[i].size();
+    for (int i = 0; i < buckets.length; i++) {
+      if (buckets[i] != null) {
+        result += buckets[i].size();
       }
     }
     return result;
@@ -0,0 +1,131 @@
+package johnston.hashmap;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+
+/**
+ * This class adds thread-safety to a hash map without thread safety, using synchronized
+ * keyword. It's the same policy as MyHashMapSyncedImpl, but it works for any hash map
+ * implementation, such as the open addressing ones.
+ */
+public class MyHashMapSyncedWrapper<K, V> implements MyHashMapTesting<K, V> {
+  private final MyHashMapTesting<K, V> hashMap;
+
+  public MyHashMapSyncedWrapper(MyHashMapTesting<K, V> hashMap) {
+    this.hashMap = hashMap;
+  }
+
+  @Override
+  public synchronized int size() {
+    return hashMap.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.size() == 0;
+  }
+
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hashMap.isSameHash(one, two);
+  }
+
+  @Override
+  public synchronized V get(K k) {
+    return hashMap.get(k);
+  }
+
+  @Override
+  public boolean containsKey(K k) {
+    return get(k) != null;
+  }
+
+  @Override
+  public synchronized void put(K k, V v) {
+    hashMap.put(k, v);
+  }
+
+  @Override
+  public synchronized void removeAll() {
+    hashMap.removeAll();
+  }
+
+  @Override
+  public synchronized boolean remove(K k) {
+    return hashMap.remove(k);
+  }
+
+  @Override
+  public synchronized V compute(K k,
+                                BiFunction<? super K, ? super V, ? extends V> remapping) {
+    return hashMap.compute(k, remapping);
+  }
+
+  @Override
+  public synchronized void putAll(List<K> keys, List<V> vals) {
+    hashMap.putAll(keys, vals);
+  }
+
+  @Override
+  public synchronized List<V> getAll(List<K> keys) {
+    return hashMap.getAll(keys);
+  }
+
+  @Override
+  public synchronized int removeAll(List<K> keys) {
+    return hashMap.removeAll(keys);
+  }
+
+  /**
+   * The iterator is not thread-safe, same as other hash map iterators.
+   */
+  @Override
+  public Iterator<MapPair> iterator() {
+    return hashMap.iterator();
+  }
+
+  /**
+   * Pairs are copied in batches under the same lock as the writes, see LockedSpliterator.
+   */
+  @Override
+  public synchronized Spliterator<MapPair> spliterator() {
+    return new LockedSpliterator(hashMap.spliterator(), body -> {
+      synchronized (this) {
+        body.run();
+      }
+    });
+  }
+
+  @Override
+  public synchronized String toString() {
+    return hashMap.toString();
+  }
+
+  /**
+   * Methods below are for testing.
+   */
+  @Override
+  public synchronized int[] getAllBucketSize() {
+    return hashMap.getAllBucketSize();
+  }
+
+  @Override
+  public synchronized int getTotalPairCount() {
+    return hashMap.getTotalPairCount();
+  }
+
+  @Override
+  public synchronized void addAndDelete(K k, V v) {
+    hashMap.addAndDelete(k, v);
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work.
+   */
+  @Override
+  public synchronized void heavyRead() throws InterruptedException {
+    hashMap.heavyRead();
+  }
+}
@@ -0,0 +1,435 @@
+package johnston.hashmap;
+
+import johnston.linkedlist.MyLinkedList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This is a bucket for hash map pairs backed by an AVL tree. A separate chaining hash map
+ * replaces a linked list bucket with it once the list grows to TREEIFY_THRESHOLD, and turns
+ * it back into a linked list when it shrinks to UNTREEIFY_THRESHOLD. So get(), put() and
+ * remove() on a long collision chain take O(log n) instead of O(n).
+ * <p>
+ * Pairs are ordered by their cached hash first, then by the class of the key, then by
+ * compareTo() if the class is Comparable. Keys that still tie (same hash and class, not
+ * comparable, or compareTo() == 0 but not equals) share one tree node and are chained inside
+ * it, so only such keys are searched linearly. The order never depends on the key instance,
+ * so equal keys always tie and a lookup follows a single path.
+ * <p>
+ * It implements MyLinkedList so the hash maps can hold both kinds of bucket in one table.
+ * Index based methods walk the pairs in tree order. It has no thread-safety, the hash map
+ * lock guards it.
+ */
+public class MyHashMapTreeBucket implements MyLinkedList<MapPair> {
+  /**
+   * Tree node. Pairs that tie with the node pair are chained by next, and are not tree nodes.
+   */
+  static class TreeNode {
+    MapPair pair;
+    TreeNode next;
+    TreeNode left;
+    TreeNode right;
+    int height;
+
+    TreeNode(MapPair pair) {
+      this.pair = pair;
+      this.height = 1;
+    }
+  }
+
+  static final int TREEIFY_THRESHOLD = 8; // List bucket of this size turns into a tree
+  static final int UNTREEIFY_THRESHOLD = 6; // Tree bucket of this size turns into a list
+
+  // An AVL tree this high needs far more pairs than a bucket can hold. A racy reader going
+  // deeper has followed links changed by a write thread, so it gives up instead of looping.
+  private static final int MAX_DEPTH = 64;
+
+  private TreeNode root;
+  private int size;
+
+  public MyHashMapTreeBucket() {
+    this.root = null;
+    this.size = 0;
+  }
+
+  /**
+   * Build a tree bucket holding all pairs of the given bucket.
+   */
+  public MyHashMapTreeBucket(MyLinkedList<MapPair> bucket) {
+    this();
+    for (MapPair pair : bucket) {
+      addFirst(pair);
+    }
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  @Override
+  public boolean contains(MapPair pair) {
+    return get(pair) != null;
+  }
+
+  /**
+   * Return the pair at the given index in tree order.
+   */
+  @Override
+  public MapPair get(int index) {
+    if (index < 0 || index >= this.size) {
+      return null;
+    }
+    return getAll().get(index);
+  }
+
+  /**
+   * Return the pair which has the same key as the given pair. If no such pair, return null.
+   */
+  @Override
+  public MapPair get(MapPair pair) {
+    return getByKey(pair.hash, pair.key);
+  }
+
+  /**
+   * Return the pair with the given hash and key. If no such pair, return null.
+   */
+  @Override
+  public MapPair getByKey(int hash, Object key) {
+    TreeNode curr = root;
+    int depth = 0;
+
+    while (curr != null) {
+      if (++depth > MAX_DEPTH) {
+        throw new IllegalStateException("Tree bucket changed during read.");
+      }
+
+      int cmp = compare(hash, key, curr.pair);
+      if (cmp < 0) {
+        curr = curr.left;
+      } else if (cmp > 0) {
+        curr = curr.right;
+      } else {
+        for (TreeNode tie = curr; tie != null; tie = tie.next) {
+          if (tie.pair.keyEquals(hash, key)) {
+            return tie.pair;
+          }
+        }
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return the index of the given pair in tree order. If no such pair, return -1.
+   */
+  @Override
+  public int getIndex(MapPair pair) {
+    return getAll().indexOf(pair);
+  }
+
+  /**
+   * Return a list of all pairs in tree order.
+   */
+  @Override
+  public List<MapPair> getAll() {
+    List<MapPair> result = new ArrayList<>(this.size);
+    collect(root, result);
+    return result;
+  }
+
+  /**
+   * Insert the pair. Pairs have no position in a tree, so it's the same as addFirst().
+   */
+  @Override
+  public MyLinkedList addLast(MapPair pair) {
+    return addFirst(pair);
+  }
+
+  /**
+   * Insert the pair. Caller makes sure no pair with the same key exists, as the hash maps
+   * call get() before adding.
+   */
+  @Override
+  public MyLinkedList addFirst(MapPair pair) {
+    root = insert(root, pair);
+    this.size++;
+
+    return this;
+  }
+
+  /**
+   * Replace the pair at the given index in tree order. The new pair must have the same key,
+   * otherwise it would break the order.
+   */
+  @Override
+  public boolean set(MapPair pair, int index) {
+    MapPair oldPair = get(index);
+    if (oldPair == null || !oldPair.equals(pair)) {
+      return false;
+    }
+
+    TreeNode node = root;
+    while (node != null) {
+      int cmp = compare(pair.hash, pair.key, node.pair);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        node = node.right;
+      } else {
+        break;
+      }
+    }
+
+    for (TreeNode tie = node; tie != null; tie = tie.next) {
+      if (tie.pair.equals(pair)) {
+        tie.pair = pair;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Remove the pair which has the same key as the given pair. If no such pair, return false.
+   */
+  @Override
+  public boolean remove(MapPair pair) {
+    if (pair == null) {
+      return false;
+    }
+    return removeByKey(pair.hash, pair.key);
+  }
+
+  /**
+   * Remove the pair with the given hash and key. If no such pair, return false.
+   */
+  @Override
+  public boolean removeByKey(int hash, Object key) {
+    if (isEmpty()) {
+      return false;
+    }
+
+    int oldSize = this.size;
+    root = delete(root, hash, key);
+    return this.size < oldSize;
+  }
+
+  @Override
+  public MyLinkedList removeAll() {
+    this.root = null;
+    this.size = 0;
+    return this;
+  }
+
+  /**
+   * Iterate a snapshot of the pairs in tree order.
+   */
+  @Override
+  public Iterator<MapPair> iterator() {
+    return Collections.unmodifiableList(getAll()).iterator();
+  }
+
+  /**
+   * Order the given hash and key against a pair by the cached hash, then by the class of the
+   * keys, then by compareTo() if the class is Comparable. Return 0 if they can't be ordered.
+   * <p>
+   * Without the class step, keys of different classes would tie with any key, so the ties
+   * of one node could be found from some paths and not others, like HashMap.tieBreakOrder.
+   */
+  private static int compare(int hash, Object one, MapPair pair) {
+    if (hash != pair.hash) {
+      return hash < pair.hash ? -1 : 1;
+    }
+
+    Object two = pair.key;
+    if (one == null || two == null) {
+      return one == two ? 0 : (one == null ? -1 : 1);
+    }
+    if (one.getClass() != two.getClass()) {
+      return compareClasses(one.getClass(), two.getClass());
+    }
+    if (one instanceof Comparable) {
+      return ((Comparable<Object>) one).compareTo(two);
+    }
+    return 0;
+  }
+
+  /**
+   * Order two different classes by name, then by identity hash for classes of the same name
+   * from different class loaders. Both are the same for all keys of a class.
+   */
+  private static int compareClasses(Class<?> one, Class<?> two) {
+    int cmp = one.getName().compareTo(two.getName());
+    if (cmp != 0) {
+      return cmp;
+    }
+    return Integer.compare(System.identityHashCode(one), System.identityHashCode(two));
+  }
+
+  private TreeNode insert(TreeNode node, MapPair pair) {
+    if (node == null) {
+      return new TreeNode(pair);
+    }
+
+    int cmp = compare(pair.hash, pair.key, node.pair);
+    if (cmp < 0) {
+      node.left = insert(node.left, pair);
+    } else if (cmp > 0) {
+      node.right = insert(node.right, pair);
+    } else { // Tie, chain it after the node pair.
+      TreeNode tie = new TreeNode(pair);
+      tie.next = node.next;
+      node.next = tie;
+      return node;
+    }
+    return balance(node);
+  }
+
+  private TreeNode delete(TreeNode node, int hash, Object key) {
+    if (node == null) {
+      return null;
+    }
+
+    int cmp = compare(hash, key, node.pair);
+    if (cmp < 0) {
+      node.left = delete(node.left, hash, key);
+      return balance(node);
+    } else if (cmp > 0) {
+      node.right = delete(node.right, hash, key);
+      return balance(node);
+    }
+
+    if (!node.pair.keyEquals(hash, key)) { // Remove a chained tie, the tree stays the same.
+      for (TreeNode prev = node; prev.next != null; prev = prev.next) {
+        if (prev.next.pair.keyEquals(hash, key)) {
+          prev.next = prev.next.next;
+          this.size--;
+          break;
+        }
+      }
+      return node;
+    }
+
+    this.size--;
+    if (node.next != null) { // The next tie takes over the node.
+      node.pair = node.next.pair;
+      node.next = node.next.next;
+      return node;
+    }
+
+    if (node.left == null) {
+      return node.right;
+    } else if (node.right == null) {
+      return node.left;
+    }
+
+    // Two children, move the smallest node of the right subtree here.
+    TreeNode successor = node.right;
+    while (successor.left != null) {
+      successor = successor.left;
+    }
+    TreeNode newNode = new TreeNode(successor.pair);
+    newNode.next = successor.next;
+    newNode.right = deleteMin(node.right);
+    newNode.left = node.left;
+    return balance(newNode);
+  }
+
+  private TreeNode deleteMin(TreeNode node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    node.left = deleteMin(node.left);
+    return balance(node);
+  }
+
+  private static int height(TreeNode node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static void updateHeight(TreeNode node) {
+    node.height = Math.max(height(node.left), height(node.right)) + 1;
+  }
+
+  /**
+   * Restore the AVL property of the node, whose subtrees differ in height by at most 2.
+   */
+  private static TreeNode balance(TreeNode node) {
+    updateHeight(node);
+    int diff = height(node.left) - height(node.right);
+
+    if (diff > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    } else if (diff < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+
+  private static TreeNode rotateRight(TreeNode node) {
+    TreeNode newRoot = node.left;
+    node.left = newRoot.right;
+    newRoot.right = node;
+    updateHeight(node);
+    updateHeight(newRoot);
+    return newRoot;
+  }
+
+  private static TreeNode rotateLeft(TreeNode node) {
+    TreeNode newRoot = node.right;
+    node.right = newRoot.left;
+    newRoot.left = node;
+    updateHeight(node);
+    updateHeight(newRoot);
+    return newRoot;
+  }
+
+  private static void collect(TreeNode node, List<MapPair> result) {
+    if (node == null) {
+      return;
+    }
+    collect(node.left, result);
+    for (TreeNode tie = node; tie != null; tie = tie.next) {
+      result.add(tie.pair);
+    }
+    collect(node.right, result);
+  }
+
+  /**
+   * Method for testing only. Return the height of the tree.
+   */
+  public int getHeight() {
+    return height(root);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("MyHashMapTreeBucket{");
+
+    for (MapPair pair : this) {
+      result.append(pair);
+      result.append(",");
+    }
+
+    result.append("}");
+
+    return result.toString();
+  }
+}
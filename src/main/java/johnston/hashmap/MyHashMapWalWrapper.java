@@ -0,0 +1,787 @@
+package johnston.hashmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.zip.CRC32;
+
+/**
+ * This class adds durability to any hash map with a write-ahead log. Each put(), remove(),
+ * removeAll() and compute() is appended to the log as one record, then applied to the hash
+ * map, and opening the same directory again replays the log into the given empty hash map.
+ * Keys and values are serialized before the record is appended, so a failing serializer
+ * leaves neither a record nor a change.
+ * <p>
+ * Group commit: writers append records to an in-memory buffer under the log lock, and the
+ * first writer needing a flush becomes the leader. The leader swaps the buffer, writes it
+ * and forces the log without the lock, while the others keep appending to the other buffer
+ * or wait for the leader. So one fsync covers all records appended before it.
+ * <p>
+ * FsyncPolicy decides when a write returns:
+ * -> Always: after its record is forced to disk, shared with concurrent writers.
+ * -> Periodic: right away. A background thread writes and forces the log every second.
+ * -> Never: right away. The log is written when the buffer is full and by a background
+ *    thread every second, but only forced on sync() and close().
+ * <p>
+ * Log files are named "wal-<generation>.log". Once the current log outgrows the compaction
+ * size, it's sealed and a new generation is started. A background thread merges the old
+ * snapshot and sealed logs into a new snapshot, which says the first generation not in it.
+ * The new snapshot replaces the old one by an atomic move, then the sealed logs are deleted.
+ * <p>
+ * Each record is its body length, CRC32 of the body, and the body: op, key length, value
+ * length, key bytes and value bytes. Replay stops at the first torn or corrupted record of
+ * a log.
+ * <p>
+ * A failed write or force of the log fails the log: part of the batch may be on disk, so no
+ * later record may follow it. The failed batch is never reported written or durable, and
+ * every later write, sync() and close() throws UncheckedIOException with the cause.
+ * <p>
+ * Writes are serialized by the log lock so the log has the same order as the hash map.
+ * Reads go to the hash map directly, so it must be thread-safe if used by multiple threads.
+ */
+public class MyHashMapWalWrapper<K, V> implements MyHashMapTesting<K, V>, Closeable {
+  private final MyHashMapTesting<K, V> hashMap;
+  private final Path directory;
+  private final Serializer<K> keySerializer;
+  private final Serializer<V> valSerializer;
+  private final FsyncPolicy fsyncPolicy;
+  private final long compactionBytes;
+
+  // Guarded by log lock
+  private final ReentrantLock logLock;
+  private final Condition flushDone;
+  private ByteBuffer pending; // Records not written to the log yet
+  private ByteBuffer spare; // Buffer being written by the leader, or empty
+  private long appendedSeq;
+  private long writtenSeq;
+  private long durableSeq;
+  private boolean flushing;
+  private boolean compacting;
+  private long forceCount;
+  private IOException failure; // Set by the leader whose flush failed
+  private volatile boolean closed;
+
+  // Owned by the leader
+  private FileChannel log;
+  private long generation;
+  private volatile long logBytes;
+
+  private volatile long snapshotGeneration;
+  private Thread flusher;
+  private Thread compactor;
+
+  private static final byte OP_PUT = 1;
+  private static final byte OP_REMOVE = 2;
+  private static final byte OP_REMOVE_ALL = 3;
+  private static final int RECORD_HEADER_BYTES = 8;
+  private static final int BODY_HEADER_BYTES = 9;
+  private static final byte[] EMPTY_BYTES = new byte[0];
+  private static final long SNAPSHOT_MAGIC = 0x4D59484D534E4150L; // "MYHMSNAP"
+  private static final String SNAPSHOT = "snapshot";
+  private static final String SNAPSHOT_TEMP = "snapshot.tmp";
+  private static final String LOG_PREFIX = "wal-";
+  private static final String LOG_SUFFIX = ".log";
+  private static final int BUFFER_BYTES = 1 << 16;
+  private static final long DEFAULT_COMPACTION_BYTES = 1L << 26;
+  private static final long FSYNC_INTERVAL_MILLIS = 1000;
+
+  /**
+   * Replay the snapshot and logs in the directory into the given empty hash map, then start
+   * a new log generation. The directory is created if missing.
+   */
+  public MyHashMapWalWrapper(MyHashMapTesting<K, V> hashMap, Path directory,
+                             Serializer<K> keySerializer, Serializer<V> valSerializer,
+                             FsyncPolicy fsyncPolicy, long compactionBytes) {
+    this.hashMap = hashMap;
+    this.directory = directory;
+    this.keySerializer = keySerializer;
+    this.valSerializer = valSerializer;
+    this.fsyncPolicy = fsyncPolicy;
+    this.compactionBytes = compactionBytes;
+    this.logLock = new ReentrantLock();
+    this.flushDone = logLock.newCondition();
+    this.pending = ByteBuffer.allocate(BUFFER_BYTES);
+    this.spare = ByteBuffer.allocate(BUFFER_BYTES);
+
+    try {
+      Files.createDirectories(directory);
+      Files.deleteIfExists(directory.resolve(SNAPSHOT_TEMP));
+      replay();
+      this.log = FileChannel.open(logPath(generation), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    if (fsyncPolicy != FsyncPolicy.Always) {
+      flusher = new Thread(this::flushPeriodically, "wal-flusher");
+      flusher.setDaemon(true);
+      flusher.start();
+    }
+  }
+
+  public MyHashMapWalWrapper(MyHashMapTesting<K, V> hashMap, Path directory,
+                             Serializer<K> keySerializer, Serializer<V> valSerializer,
+                             FsyncPolicy fsyncPolicy) {
+    this(hashMap, directory, keySerializer, valSerializer, fsyncPolicy,
+        DEFAULT_COMPACTION_BYTES);
+  }
+
+  /**
+   * Load the snapshot, replay logs from its generation on, and delete logs older than it.
+   */
+  private void replay() throws IOException {
+    long snapshotGen = 0;
+    Path snapshot = directory.resolve(SNAPSHOT);
+    if (Files.exists(snapshot)) {
+      snapshotGen = readSnapshot(snapshot, this::apply);
+    }
+    snapshotGeneration = snapshotGen;
+
+    long lastGen = snapshotGen - 1;
+    for (long gen : logGenerations()) {
+      if (gen < snapshotGen) {
+        Files.delete(logPath(gen));
+      }
+      lastGen = Math.max(lastGen, gen);
+    }
+    for (long gen = snapshotGen; gen <= lastGen; gen++) {
+      if (Files.exists(logPath(gen))) {
+        readLog(logPath(gen), this::apply);
+      }
+    }
+    generation = lastGen + 1;
+  }
+
+  private void apply(byte op, byte[] keyBytes, byte[] valBytes) {
+    if (op == OP_REMOVE_ALL) {
+      hashMap.removeAll();
+      return;
+    }
+
+    K key = keySerializer.read(ByteBuffer.wrap(keyBytes), keyBytes.length);
+    if (op == OP_PUT) {
+      hashMap.put(key, valSerializer.read(ByteBuffer.wrap(valBytes), valBytes.length));
+    } else {
+      hashMap.remove(key);
+    }
+  }
+
+  @Override
+  public int size() {
+    return hashMap.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.size() == 0;
+  }
+
+  @Override
+  public boolean isSameHash(K one, K two) {
+    return hashMap.isSameHash(one, two);
+  }
+
+  @Override
+  public V get(K k) {
+    return hashMap.get(k);
+  }
+
+  @Override
+  public boolean containsKey(K k) {
+    return hashMap.containsKey(k);
+  }
+
+  /**
+   * Put the pair and log it. Returns once the record is as durable as the fsync policy says.
+   */
+  @Override
+  public void put(K k, V v) {
+    byte[] keyBytes = serialize(keySerializer, k);
+    byte[] valBytes = serialize(valSerializer, v);
+    long seq;
+
+    logLock.lock();
+    try {
+      ensureOpen();
+      seq = appendRecord(OP_PUT, keyBytes, valBytes);
+      hashMap.put(k, v);
+    } finally {
+      logLock.unlock();
+    }
+    afterWrite(seq);
+  }
+
+  @Override
+  public void removeAll() {
+    long seq;
+
+    logLock.lock();
+    try {
+      ensureOpen();
+      seq = appendRecord(OP_REMOVE_ALL, EMPTY_BYTES, EMPTY_BYTES);
+      hashMap.removeAll();
+    } finally {
+      logLock.unlock();
+    }
+    afterWrite(seq);
+  }
+
+  /**
+   * Remove the pair and log it. Nothing is logged if there is no such key.
+   */
+  @Override
+  public boolean remove(K k) {
+    byte[] keyBytes = serialize(keySerializer, k);
+    long seq;
+
+    logLock.lock();
+    try {
+      ensureOpen();
+      if (!hashMap.containsKey(k)) {
+        return false;
+      }
+      seq = appendRecord(OP_REMOVE, keyBytes, EMPTY_BYTES);
+      hashMap.remove(k);
+    } finally {
+      logLock.unlock();
+    }
+    afterWrite(seq);
+    return true;
+  }
+
+  /**
+   * Compute the new value from the old one, log the change as a put or a remove record, then
+   * apply it. Writes are serialized by the log lock, so nothing changes the pair in between.
+   * Nothing is logged if the pair does not change.
+   */
+  @Override
+  public V compute(K k, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    byte[] keyBytes = serialize(keySerializer, k);
+    V newVal;
+    long seq;
+
+    logLock.lock();
+    try {
+      ensureOpen();
+      V oldVal = hashMap.get(k);
+      newVal = remapping.apply(k, oldVal);
+      if (newVal == oldVal) {
+        return newVal;
+      }
+
+      if (newVal == null) {
+        seq = appendRecord(OP_REMOVE, keyBytes, EMPTY_BYTES);
+        hashMap.remove(k);
+      } else {
+        seq = appendRecord(OP_PUT, keyBytes, serialize(valSerializer, newVal));
+        hashMap.put(k, newVal);
+      }
+    } finally {
+      logLock.unlock();
+    }
+    afterWrite(seq);
+    return newVal;
+  }
+
+  /**
+   * Write and force all records appended so far.
+   */
+  public void sync() {
+    long seq;
+    logLock.lock();
+    try {
+      ensureOpen();
+      seq = appendedSeq;
+    } finally {
+      logLock.unlock();
+    }
+    flush(seq, true, false);
+  }
+
+  /**
+   * Force the log, stop the background threads and close the log. The hash map keeps its
+   * pairs. Calling it again does nothing.
+   */
+  @Override
+  public void close() {
+    logLock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    } finally {
+      logLock.unlock();
+    }
+
+    if (flusher != null) {
+      flusher.interrupt();
+      joinQuietly(flusher);
+    }
+    Thread runningCompactor;
+    logLock.lock();
+    try {
+      runningCompactor = compactor;
+    } finally {
+      logLock.unlock();
+    }
+    if (runningCompactor != null) {
+      joinQuietly(runningCompactor);
+    }
+
+    try {
+      flush(Long.MAX_VALUE, true, false);
+    } finally {
+      try {
+        log.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Log lock required.
+   */
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Write-ahead log is closed.");
+    }
+    ensureNotFailed();
+  }
+
+  /**
+   * Log lock required.
+   */
+  private void ensureNotFailed() {
+    if (failure != null) {
+      throw new UncheckedIOException("Write-ahead log failed, records after the failure " +
+          "are not logged.", failure);
+    }
+  }
+
+  private static <T> byte[] serialize(Serializer<T> serializer, T t) {
+    byte[] result = new byte[serializer.serializedSize(t)];
+    serializer.write(t, ByteBuffer.wrap(result));
+    return result;
+  }
+
+  /**
+   * Append a record of the serialized pair to the pending buffer, growing it if needed, and
+   * return its sequence number. Nothing here can fail half way, so a record is either whole
+   * or absent. Log lock required.
+   */
+  private long appendRecord(byte op, byte[] keyBytes, byte[] valBytes) {
+    int bodySize = BODY_HEADER_BYTES + keyBytes.length + valBytes.length;
+    if (pending.remaining() < RECORD_HEADER_BYTES + bodySize) {
+      ByteBuffer newPending = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+          pending.position() + RECORD_HEADER_BYTES + bodySize));
+      pending.flip();
+      newPending.put(pending);
+      pending = newPending;
+    }
+
+    int start = pending.position() + RECORD_HEADER_BYTES;
+    pending.position(start);
+    pending.put(op);
+    pending.putInt(keyBytes.length);
+    pending.putInt(valBytes.length);
+    pending.put(keyBytes);
+    pending.put(valBytes);
+    CRC32 crc = new CRC32();
+    crc.update(pending.array(), start, bodySize);
+    pending.putInt(start - RECORD_HEADER_BYTES, bodySize);
+    pending.putInt(start - 4, (int) crc.getValue());
+    return ++appendedSeq;
+  }
+
+  /**
+   * Wait for the record as the fsync policy says, and start a compaction if the log has
+   * outgrown its size.
+   */
+  private void afterWrite(long seq) {
+    if (fsyncPolicy == FsyncPolicy.Always) {
+      flush(seq, true, false);
+    } else if (pending.position() >= BUFFER_BYTES) { // Racy read, only a hint.
+      flush(seq, false, false);
+    }
+
+    if (logBytes >= compactionBytes) { // Racy read, only a hint.
+      startCompaction();
+    }
+  }
+
+  /**
+   * Return once all records up to the sequence number are written, and forced if asked. If
+   * no flush is running, this thread becomes the leader and flushes all pending records,
+   * otherwise it waits for the leader. If roll is true, the leader also seals the log and
+   * starts the next generation. Throw if the log has failed, before or during the wait.
+   */
+  private void flush(long seq, boolean force, boolean roll) {
+    ByteBuffer batch;
+    long batchSeq;
+
+    logLock.lock();
+    try {
+      long target = Math.min(seq, appendedSeq);
+      while (flushing) {
+        if (!roll && isFlushed(target, force)) {
+          return;
+        }
+        flushDone.awaitUninterruptibly();
+      }
+      ensureNotFailed();
+      if (!roll && isFlushed(target, force)) {
+        return;
+      }
+      flushing = true;
+      batch = pending;
+      pending = spare;
+      spare = null;
+      batchSeq = appendedSeq;
+    } finally {
+      logLock.unlock();
+    }
+
+    boolean written = false;
+    boolean forced = false;
+    IOException error = null;
+    try {
+      batch.flip();
+      logBytes += batch.remaining();
+      while (batch.hasRemaining()) {
+        log.write(batch);
+      }
+      if (force || roll) {
+        log.force(false);
+        forced = true;
+      }
+      if (roll) {
+        log.close();
+        generation++;
+        log = FileChannel.open(logPath(generation), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        logBytes = 0;
+      }
+      written = true;
+    } catch (IOException e) {
+      error = e;
+      throw new UncheckedIOException(e);
+    } finally {
+      logLock.lock();
+      try {
+        batch.clear();
+        spare = batch;
+        if (written) {
+          writtenSeq = batchSeq;
+          if (forced) {
+            durableSeq = batchSeq;
+            forceCount++;
+          }
+        } else { // The batch is lost, and the seqs never pass it.
+          failure = error != null ? error : new IOException("Flush of the log failed.");
+        }
+        flushing = false;
+        flushDone.signalAll();
+      } finally {
+        logLock.unlock();
+      }
+    }
+  }
+
+  private boolean isFlushed(long seq, boolean force) {
+    return (force ? durableSeq : writtenSeq) >= seq;
+  }
+
+  /**
+   * Body of the flusher thread for Periodic and Never policies.
+   */
+  private void flushPeriodically() {
+    while (!closed) {
+      try {
+        Thread.sleep(FSYNC_INTERVAL_MILLIS);
+      } catch (InterruptedException e) {
+        return;
+      }
+      try {
+        flush(Long.MAX_VALUE, fsyncPolicy == FsyncPolicy.Periodic, false);
+      } catch (UncheckedIOException e) {
+        return; // The log has failed, writers throw from now on.
+      }
+    }
+  }
+
+  /**
+   * Seal the current log and merge it into a new snapshot on the compactor thread, unless a
+   * compaction is running already.
+   */
+  private void startCompaction() {
+    logLock.lock();
+    try {
+      if (compacting || closed) {
+        return;
+      }
+      compacting = true;
+    } finally {
+      logLock.unlock();
+    }
+
+    flush(Long.MAX_VALUE, true, true);
+    long sealedGen = generation - 1;
+    Thread thread = new Thread(() -> compact(sealedGen), "wal-compactor");
+    thread.setDaemon(true);
+    logLock.lock();
+    try {
+      compactor = thread;
+    } finally {
+      logLock.unlock();
+    }
+    thread.start();
+  }
+
+  /**
+   * Merge the snapshot and the logs up to the sealed generation by key bytes, write them as
+   * the new snapshot, and delete the merged logs. The hash map isn't touched, so writers
+   * don't wait for it.
+   */
+  private void compact(long sealedGen) {
+    try {
+      MyHashMapBasicImpl<ByteBuffer, byte[]> pairs = new MyHashMapBasicImpl<>();
+      RecordVisitor merge = (op, keyBytes, valBytes) -> {
+        if (op == OP_PUT) {
+          pairs.put(ByteBuffer.wrap(keyBytes), valBytes);
+        } else if (op == OP_REMOVE) {
+          pairs.remove(ByteBuffer.wrap(keyBytes));
+        } else {
+          pairs.removeAll();
+        }
+      };
+
+      Path snapshot = directory.resolve(SNAPSHOT);
+      if (Files.exists(snapshot)) {
+        readSnapshot(snapshot, merge);
+      }
+      for (long gen = snapshotGeneration; gen <= sealedGen; gen++) {
+        if (Files.exists(logPath(gen))) {
+          readLog(logPath(gen), merge);
+        }
+      }
+
+      Path temp = directory.resolve(SNAPSHOT_TEMP);
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            Channels.newOutputStream(channel), BUFFER_BYTES));
+        out.writeLong(SNAPSHOT_MAGIC);
+        out.writeLong(sealedGen + 1);
+        for (MapPair<ByteBuffer, byte[]> pair : pairs) {
+          writeRecord(out, OP_PUT, pair.key.array(), pair.getV());
+        }
+        out.flush();
+        channel.force(true);
+      }
+      Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+      snapshotGeneration = sealedGen + 1;
+
+      for (long gen : logGenerations()) {
+        if (gen <= sealedGen) {
+          Files.delete(logPath(gen));
+        }
+      }
+    } catch (IOException e) {
+      // The old snapshot and logs are still complete, try again on the next compaction.
+    } finally {
+      logLock.lock();
+      try {
+        compacting = false;
+        compactor = null;
+      } finally {
+        logLock.unlock();
+      }
+    }
+  }
+
+  private static void writeRecord(DataOutputStream out, byte op, byte[] keyBytes,
+                                  byte[] valBytes) throws IOException {
+    ByteBuffer body = ByteBuffer.allocate(BODY_HEADER_BYTES + keyBytes.length +
+        valBytes.length);
+    body.put(op).putInt(keyBytes.length).putInt(valBytes.length).put(keyBytes).put(valBytes);
+    CRC32 crc = new CRC32();
+    crc.update(body.array(), 0, body.capacity());
+    out.writeInt(body.capacity());
+    out.writeInt((int) crc.getValue());
+    out.write(body.array());
+  }
+
+  /**
+   * Handles one record read from a log or snapshot.
+   */
+  private interface RecordVisitor {
+    void visit(byte op, byte[] keyBytes, byte[] valBytes);
+  }
+
+  /**
+   * Read the snapshot records and return the first log generation not in it.
+   */
+  private static long readSnapshot(Path snapshot, RecordVisitor visitor) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Files.newInputStream(snapshot), BUFFER_BYTES))) {
+      if (in.readLong() != SNAPSHOT_MAGIC) {
+        throw new IOException(snapshot + " is not a snapshot file.");
+      }
+      long nextGen = in.readLong();
+      readRecords(in, visitor);
+      return nextGen;
+    }
+  }
+
+  private static void readLog(Path log, RecordVisitor visitor) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Files.newInputStream(log), BUFFER_BYTES))) {
+      readRecords(in, visitor);
+    }
+  }
+
+  /**
+   * Visit records until the end, or the first torn or corrupted record.
+   */
+  private static void readRecords(DataInputStream in, RecordVisitor visitor)
+      throws IOException {
+    CRC32 crc = new CRC32();
+    try {
+      while (true) {
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length < BODY_HEADER_BYTES) {
+          return;
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+
+        crc.reset();
+        crc.update(body, 0, length);
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        byte op = buffer.get();
+        int keyLength = buffer.getInt();
+        int valLength = buffer.getInt();
+        if ((int) crc.getValue() != checksum ||
+            BODY_HEADER_BYTES + keyLength + valLength != length) {
+          return;
+        }
+
+        byte[] keyBytes = new byte[keyLength];
+        byte[] valBytes = new byte[valLength];
+        buffer.get(keyBytes);
+        buffer.get(valBytes);
+        visitor.visit(op, keyBytes, valBytes);
+      }
+    } catch (EOFException e) {
+      // Torn record at the end of the log, written by a crashed process.
+    }
+  }
+
+  private Path logPath(long gen) {
+    return directory.resolve(LOG_PREFIX + gen + LOG_SUFFIX);
+  }
+
+  private long[] logGenerations() throws IOException {
+    long[] result = new long[0];
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+        LOG_PREFIX + "*" + LOG_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        long[] newResult = new long[result.length + 1];
+        System.arraycopy(result, 0, newResult, 0, result.length);
+        newResult[result.length] = Long.parseLong(
+            name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()));
+        result = newResult;
+      }
+    }
+    return result;
+  }
+
+  private static void joinQuietly(Thread thread) {
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The iterator is not thread-safe, same as other hash map iterators.
+   */
+  @Override
+  public Iterator<MapPair> iterator() {
+    return hashMap.iterator();
+  }
+
+  @Override
+  public Spliterator<MapPair> spliterator() {
+    return hashMap.spliterator();
+  }
+
+  @Override
+  public String toString() {
+    return hashMap.toString();
+  }
+
+  /**
+   * Methods below are for testing.
+   */
+  @Override
+  public int[] getAllBucketSize() {
+    return hashMap.getAllBucketSize();
+  }
+
+  @Override
+  public int getTotalPairCount() {
+    return hashMap.getTotalPairCount();
+  }
+
+  @Override
+  public void addAndDelete(K k, V v) {
+    put(k, v);
+    remove(k);
+  }
+
+  /**
+   *  Simulates heavy time-consuming read data work.
+   */
+  @Override
+  public void heavyRead() throws InterruptedException {
+    hashMap.heavyRead();
+  }
+
+  /**
+   * Return how many times the log was forced, for checking group commit.
+   */
+  public long getForceCount() {
+    logLock.lock();
+    try {
+      return forceCount;
+    } finally {
+      logLock.unlock();
+    }
+  }
+}
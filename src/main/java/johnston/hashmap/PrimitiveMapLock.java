@@ -0,0 +1,115 @@
+package johnston.hashmap;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Lock of one segment of a primitive hash map, picked by ThreadSafePolicy:
+ * -> NoSync: no lock at all.
+ * -> SyncKeyword: one exclusive lock for read and write, same as synchronized methods.
+ * -> ReadWriteLock, Striped: Reentrant read-write lock.
+ * -> OptimisticRead, LockFree, Cuckoo: StampedLock. Reads are optimistic and take no lock
+ *    unless a write thread gets in the way.
+ * <p>
+ * Stamps are only meaningful for StampedLock, other locks return 1. It's package-private,
+ * the primitive hash map segments extend it.
+ */
+class PrimitiveMapLock {
+  private final Lock readLock;
+  private final Lock writeLock;
+  private final StampedLock stampedLock;
+
+  PrimitiveMapLock(ThreadSafePolicy policy) {
+    switch (policy) {
+      case NoSync:
+        this.readLock = null;
+        this.writeLock = null;
+        this.stampedLock = null;
+        break;
+      case SyncKeyword:
+        this.readLock = new ReentrantLock();
+        this.writeLock = this.readLock;
+        this.stampedLock = null;
+        break;
+      case ReadWriteLock:
+      case Striped:
+        ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+        this.readLock = readWriteLock.readLock();
+        this.writeLock = readWriteLock.writeLock();
+        this.stampedLock = null;
+        break;
+      default: // OptimisticRead, LockFree and Cuckoo
+        this.readLock = null;
+        this.writeLock = null;
+        this.stampedLock = new StampedLock();
+    }
+  }
+
+  /**
+   * Return a stamp for optimistic read, or 0 if optimistic read is not available now.
+   */
+  final long tryOptimisticRead() {
+    return stampedLock == null ? 0 : stampedLock.tryOptimisticRead();
+  }
+
+  final boolean validate(long stamp) {
+    return stampedLock.validate(stamp);
+  }
+
+  final long readLock() {
+    if (stampedLock != null) {
+      return stampedLock.readLock();
+    }
+    if (readLock != null) {
+      readLock.lock();
+    }
+    return 1;
+  }
+
+  final void unlockRead(long stamp) {
+    if (stampedLock != null) {
+      stampedLock.unlockRead(stamp);
+    } else if (readLock != null) {
+      readLock.unlock();
+    }
+  }
+
+  final long writeLock() {
+    if (stampedLock != null) {
+      return stampedLock.writeLock();
+    }
+    if (writeLock != null) {
+      writeLock.lock();
+    }
+    return 1;
+  }
+
+  final void unlockWrite(long stamp) {
+    if (stampedLock != null) {
+      stampedLock.unlockWrite(stamp);
+    } else if (writeLock != null) {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Return the segment count for the policy. Striped and the non-blocking policies split the
+   * map into segments, the others use one segment.
+   */
+  static int segmentCount(ThreadSafePolicy policy, int concurrencyLevel) {
+    switch (policy) {
+      case Striped:
+      case LockFree:
+      case Cuckoo:
+        int n = 1;
+        while (n < concurrencyLevel && n < (1 << 16)) {
+          n <<= 1;
+        }
+        return n;
+      default:
+        return 1;
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package johnston.hashmap;
+
+/**
+ * This enum is for factory class caller to decide how the separate chaining hash maps grow,
+ * namely copying all buckets at once inside the put() that reaches the load factor, or
+ * moving a few buckets on each put() and remove() while lookups check both tables.
+ */
+public enum RehashPolicy {
+  StopTheWorld,
+  Incremental
+}
@@ -0,0 +1,96 @@
+package johnston.hashmap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializer of keys or values for the hash maps storing bytes instead of objects, such as
+ * MyHashMapOffHeapImpl.
+ * <p>
+ * write() puts exactly serializedSize(t) bytes at the position of the buffer, and read()
+ * reads the given length of bytes from the position of the buffer. Equal objects must have
+ * equal bytes, because keys are matched by comparing bytes.
+ */
+public interface Serializer<T> {
+  int serializedSize(T t);
+  void write(T t, ByteBuffer buffer);
+  T read(ByteBuffer buffer, int length);
+
+  Serializer<Integer> INTEGER = new Serializer<Integer>() {
+    @Override
+    public int serializedSize(Integer t) {
+      return Integer.BYTES;
+    }
+
+    @Override
+    public void write(Integer t, ByteBuffer buffer) {
+      buffer.putInt(t);
+    }
+
+    @Override
+    public Integer read(ByteBuffer buffer, int length) {
+      return buffer.getInt();
+    }
+  };
+
+  Serializer<Long> LONG = new Serializer<Long>() {
+    @Override
+    public int serializedSize(Long t) {
+      return Long.BYTES;
+    }
+
+    @Override
+    public void write(Long t, ByteBuffer buffer) {
+      buffer.putLong(t);
+    }
+
+    @Override
+    public Long read(ByteBuffer buffer, int length) {
+      return buffer.getLong();
+    }
+  };
+
+  /**
+   * UTF-8 bytes of the string.
+   */
+  Serializer<String> STRING = new Serializer<String>() {
+    @Override
+    public int serializedSize(String t) {
+      return t.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Override
+    public void write(String t, ByteBuffer buffer) {
+      buffer.put(t.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String read(ByteBuffer buffer, int length) {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  };
+
+  /**
+   * Raw bytes, copied in and out.
+   */
+  Serializer<byte[]> BYTES = new Serializer<byte[]>() {
+    @Override
+    public int serializedSize(byte[] t) {
+      return t.length;
+    }
+
+    @Override
+    public void write(byte[] t, ByteBuffer buffer) {
+      buffer.put(t);
+    }
+
+    @Override
+    public byte[] read(ByteBuffer buffer, int length) {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return bytes;
+    }
+  };
+}
@@ -2,10 +2,16 @@ package johnston.hashmap;
 
 /**
  * This enum is for factory class caller to decide the policy of thread-safety, namely
- * no thread-safety, synchronized keyword, or Reentrant read-write lock.
+ * no thread-safety, synchronized keyword, Reentrant read-write lock, read-write locks
+ * striped over independent segments, non-blocking CAS on bucket heads, cuckoo hashing
+ * with lock-free reads, or StampedLock optimistic read.
  */
 public enum ThreadSafePolicy {
   NoSync,
   SyncKeyword,
-  ReadWriteLock
+  ReadWriteLock,
+  Striped,
+  LockFree,
+  Cuckoo,
+  OptimisticRead
 }
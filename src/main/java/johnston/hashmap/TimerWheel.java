@@ -0,0 +1,128 @@
+package johnston.hashmap;
+
+import johnston.hashmap.MyHashMapCacheImpl.Node;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel of the cache nodes with a time to live, so expiring a node costs
+ * O(1) instead of a scan over all pairs.
+ * <p>
+ * Each level is a ring of buckets, and each bucket is a doubly linked list of the nodes
+ * expiring in its span. A level 0 bucket spans 2^30 ns (about a second), and each level
+ * covers about 64 times more time than the level below, up to one overflow bucket for nodes
+ * more than 6.5 days away. A node goes to the lowest level that covers its remaining time:
+ * -> schedule() and deschedule() only link or unlink the node.
+ * -> advance() visits only the buckets whose span has been reached since the last call. Due
+ *    nodes are expired, the others are scheduled again on a lower level, so a node moves
+ *    down at most once per level before it expires.
+ * <p>
+ * Not thread-safe, the eviction lock of the cache segment guards it. The time is in nanos
+ * since the cache was created, so it never wraps.
+ */
+final class TimerWheel<K, V> {
+  private static final int[] BUCKETS = {64, 64, 32, 4, 1}; // Power of two
+  private static final int[] SHIFTS = {30, 36, 42, 47, 49}; // Bucket span is 2^shift nanos
+  private static final long[] SPANS = {1L << 36, 1L << 42, 1L << 47, 1L << 49}; // Per level
+
+  private final Node<K, V>[][] wheel;
+  private long nanos; // Time of the last advance()
+
+  TimerWheel() {
+    this.wheel = (Node<K, V>[][]) new Node[BUCKETS.length][];
+    for (int i = 0; i < BUCKETS.length; i++) {
+      wheel[i] = (Node<K, V>[]) new Node[BUCKETS[i]];
+      for (int j = 0; j < BUCKETS[i]; j++) {
+        Node<K, V> sentinel = new Node<>(null, null, 0);
+        sentinel.prevInTimer = sentinel;
+        sentinel.nextInTimer = sentinel;
+        wheel[i][j] = sentinel;
+      }
+    }
+  }
+
+  /**
+   * Add the node to the bucket of its expiry time, as the last one.
+   */
+  void schedule(Node<K, V> node) {
+    Node<K, V> sentinel = findBucket(node.expiresAt);
+    node.prevInTimer = sentinel.prevInTimer;
+    node.nextInTimer = sentinel;
+    sentinel.prevInTimer.nextInTimer = node;
+    sentinel.prevInTimer = node;
+  }
+
+  /**
+   * Remove the node from its bucket. Does nothing if it's not scheduled.
+   */
+  void deschedule(Node<K, V> node) {
+    if (node.nextInTimer != null) {
+      node.prevInTimer.nextInTimer = node.nextInTimer;
+      node.nextInTimer.prevInTimer = node.prevInTimer;
+      node.prevInTimer = null;
+      node.nextInTimer = null;
+    }
+  }
+
+  /**
+   * Move the wheel to the current time and pass every due node to the expirer, which must
+   * not schedule it again. A node due in the current level 0 bucket may wait for the next
+   * call after that bucket ends, so a node expires at most one bucket span late.
+   */
+  void advance(long currentTime, Consumer<Node<K, V>> expirer) {
+    long previousTime = nanos;
+    nanos = currentTime;
+
+    for (int i = 0; i < SHIFTS.length; i++) {
+      long previousTicks = previousTime >>> SHIFTS[i];
+      long currentTicks = currentTime >>> SHIFTS[i];
+      if (currentTicks <= previousTicks) { // Higher levels tick even less.
+        break;
+      }
+      expire(i, previousTicks, currentTicks - previousTicks, expirer);
+    }
+  }
+
+  /**
+   * Visit the buckets from the previous tick to the current one, at most one lap.
+   */
+  private void expire(int level, long previousTicks, long delta,
+                      Consumer<Node<K, V>> expirer) {
+    Node<K, V>[] buckets = wheel[level];
+    int mask = buckets.length - 1;
+    int steps = (int) Math.min(delta + 1, buckets.length);
+    int start = (int) (previousTicks & mask);
+
+    for (int step = 0; step < steps; step++) {
+      Node<K, V> sentinel = buckets[(start + step) & mask];
+      Node<K, V> node = sentinel.nextInTimer;
+      sentinel.prevInTimer = sentinel; // Take the whole list out of the bucket.
+      sentinel.nextInTimer = sentinel;
+
+      while (node != sentinel) {
+        Node<K, V> next = node.nextInTimer;
+        node.prevInTimer = null;
+        node.nextInTimer = null;
+        if (node.expiresAt <= nanos) {
+          expirer.accept(node);
+        } else {
+          schedule(node);
+        }
+        node = next;
+      }
+    }
+  }
+
+  private Node<K, V> findBucket(long time) {
+    long duration = time - nanos;
+    int overflow = wheel.length - 1;
+
+    for (int i = 0; i < overflow; i++) {
+      if (duration < SPANS[i]) {
+        long ticks = time >>> SHIFTS[i];
+        return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+      }
+    }
+    return wheel[overflow][0];
+  }
+}
@@ -0,0 +1,24 @@
+package johnston.hashmap;
+
+/**
+ * Weight of a pair for the bounded cache hash map, such as its size in bytes, so the cache is
+ * bounded by the total weight of its pairs instead of their count. The cache calls it once
+ * per put() or compute() under the eviction lock, so it should be cheap.
+ * <p>
+ * -> singleton(): every pair weighs 1, so the total weight is the pair count (default).
+ * <p>
+ * Caller can also pass a lambda, like (k, v) -> v.length for byte arrays.
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+  Weigher<Object, Object> SINGLETON = (key, val) -> 1;
+
+  /**
+   * Return the weight of the pair. It must be >= 0.
+   */
+  int weigh(K key, V val);
+
+  static <K, V> Weigher<K, V> singleton() {
+    return (Weigher<K, V>) SINGLETON;
+  }
+}
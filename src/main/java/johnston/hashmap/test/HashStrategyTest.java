@@ -0,0 +1,122 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.HashStrategy;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapStripedImpl;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.RehashPolicy;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashStrategyTest {
+  private static final HashStrategy[] STRATEGIES = {HashStrategy.IDENTITY,
+      HashStrategy.MURMUR3, HashStrategy.XXHASH, HashStrategy.seeded(12345),
+      HashStrategy.randomized()};
+
+  private int globalTestTime = 1000;
+
+  @Test
+  @DisplayName("Test hash is never negative, and 0 for null key.")
+  public void testHashRange() {
+    for (HashStrategy strategy : STRATEGIES) {
+      assertEquals(0, strategy.hash(null));
+
+      for (int i = -globalTestTime; i < globalTestTime; i++) {
+        assertTrue(strategy.hash(i * 0x10001) >= 0);
+      }
+      assertTrue(strategy.hash(Integer.MIN_VALUE) >= 0);
+    }
+  }
+
+  @Test
+  @DisplayName("Test mixing strategies spread sequential keys over distinct hashes.")
+  public void testMixing() {
+    HashStrategy[] mixing = {HashStrategy.MURMUR3, HashStrategy.XXHASH,
+        HashStrategy.seeded(12345)};
+
+    for (HashStrategy strategy : mixing) {
+      Set<Integer> lowBits = new HashSet<>();
+      for (int i = 0; i < globalTestTime; i++) {
+        lowBits.add(strategy.hash(i << 16) & 0xFFFF); // Identity would give only 0 here.
+      }
+      assertTrue(lowBits.size() > globalTestTime * 9 / 10);
+    }
+    assertTrue(HashStrategy.seeded(1).hash(42) != HashStrategy.seeded(2).hash(42));
+  }
+
+  @Test
+  @DisplayName("Test all hash maps work with every hash strategy.")
+  public void testHashMapWithStrategy() {
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      for (HashStrategy strategy : STRATEGIES) {
+        MyHashMapTesting<Integer, Integer> hashMap =
+            MyHashMapFactory.newMyHashMapTesting(policy, strategy, 16, 0.5f);
+
+        for (int i = 0; i < globalTestTime; i++) {
+          hashMap.put(i, i);
+        }
+        for (int i = 0; i < globalTestTime; i += 2) {
+          assertTrue(hashMap.remove(i));
+        }
+        for (int i = 0; i < globalTestTime; i++) {
+          assertEquals(i % 2 == 1, hashMap.containsKey(i), policy.toString());
+        }
+        assertEquals(globalTestTime / 2, hashMap.size());
+        assertEquals(globalTestTime / 2, hashMap.getTotalPairCount());
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Test incremental rehashing hash maps work with every hash strategy.")
+  public void testIncrementalRehashWithStrategy() {
+    ThreadSafePolicy[] policies = {ThreadSafePolicy.NoSync, ThreadSafePolicy.SyncKeyword,
+        ThreadSafePolicy.ReadWriteLock, ThreadSafePolicy.OptimisticRead};
+
+    for (ThreadSafePolicy policy : policies) {
+      for (HashStrategy strategy : STRATEGIES) {
+        MyHashMapTesting<Integer, Integer> hashMap = MyHashMapFactory.newMyHashMapTesting(
+            policy, strategy, RehashPolicy.Incremental, 2, 0.5f);
+
+        for (int i = 0; i < globalTestTime; i++) {
+          hashMap.put(i, i);
+        }
+        for (int i = 0; i < globalTestTime; i++) {
+          assertEquals(i, hashMap.get(i), policy.toString());
+        }
+        assertEquals(globalTestTime, hashMap.size());
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Test striped hash map spreads small keys of identity strategy over segments.")
+  public void testIdentitySegments() {
+    // 16 segments of 64 buckets, small enough that none of them rehashes.
+    int segmentCount = 16;
+    int segmentCapacity = 64;
+    MyHashMapTesting<Integer, Integer> hashMap = new MyHashMapStripedImpl<>(
+        segmentCount * segmentCapacity, 0.5f, segmentCount, HashStrategy.IDENTITY);
+
+    for (int i = 0; i < segmentCount; i++) {
+      hashMap.put(i, i);
+    }
+    int[] bucketSize = hashMap.getAllBucketSize();
+    assertEquals(segmentCount * segmentCapacity, bucketSize.length);
+
+    Set<Integer> usedSegments = new HashSet<>();
+    for (int i = 0; i < bucketSize.length; i++) {
+      if (bucketSize[i] > 0) {
+        usedSegments.add(i / segmentCapacity);
+      }
+    }
+    assertTrue(usedSegments.size() > segmentCount / 2, "Used segments " + usedSegments);
+  }
+}
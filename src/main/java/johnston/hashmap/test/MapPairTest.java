@@ -1,6 +1,10 @@
 package johnston.hashmap.test;
 
+import johnston.hashmap.HashStrategy;
 import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.ThreadSafePolicy;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,6 +13,7 @@ import org.junit.jupiter.api.DisplayName;
 import java.util.HashSet;
 import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class MapPairTest {
@@ -56,4 +61,61 @@ public class MapPairTest {
     assertTrue(set.contains(pairOne));
     assertTrue(set.contains(copyOne));
   }
+
+  @Test
+  @DisplayName("Test MapPair caches the spread hash.")
+  public void testCachedHash() {
+    MapPair<String, Integer> pair = new MapPair<>("pair A", 0, 12345);
+    assertEquals(12345, pair.hash);
+    assertEquals(12345, pair.hashCode());
+    assertEquals(HashStrategy.MURMUR3.hash(pairOne.key), pairOne.hash);
+
+    // Different cached hashes never reach key.equals().
+    assertTrue(!pair.equals(new MapPair<>("pair A", 0, 54321)));
+    assertTrue(pair.equals(new MapPair<>(new String("pair A"), 1, 12345)));
+  }
+
+  /**
+   * Key which counts the calls of hashCode().
+   */
+  static class CountingKey {
+    static int hashCodeCount = 0;
+    final int id;
+
+    CountingKey(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof CountingKey && ((CountingKey) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      hashCodeCount++;
+      return id;
+    }
+  }
+
+  @Test
+  @DisplayName("Test rehashing reuses the cached hash.")
+  public void testRehashReusesHash() {
+    ThreadSafePolicy[] policies = {ThreadSafePolicy.NoSync, ThreadSafePolicy.SyncKeyword,
+        ThreadSafePolicy.ReadWriteLock, ThreadSafePolicy.Striped,
+        ThreadSafePolicy.OptimisticRead};
+    int testTime = 1000;
+
+    for (ThreadSafePolicy policy : policies) {
+      MyHashMapTesting<CountingKey, Integer> hashMap =
+          MyHashMapFactory.newMyHashMapTesting(policy, 16, 0.5f);
+      CountingKey.hashCodeCount = 0;
+
+      // Rehashes several times, but each put() hashes its key once only.
+      for (int i = 0; i < testTime; i++) {
+        hashMap.put(new CountingKey(i), i);
+      }
+      assertEquals(testTime, CountingKey.hashCodeCount, policy.toString());
+    }
+  }
 }
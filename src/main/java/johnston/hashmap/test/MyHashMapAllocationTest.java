@@ -0,0 +1,125 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.MyHashMap;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test get() and remove() of all hash maps allocate nothing. Bytes come from
+ * com.sun.management.ThreadMXBean, so it needs a HotSpot JVM.
+ * <p>
+ * The JIT may allocate a few bytes once when it swaps in compiled code, so the tests check
+ * bytes per op is below 1. A dummy MapPair per op would be at least 24 bytes.
+ */
+public class MyHashMapAllocationTest {
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private int globalTestTime = 10000;
+  private int rounds = 20;
+
+  @Test
+  @DisplayName("Test get() allocates zero bytes in all hash maps.")
+  public void testGetAllocatesNothing() {
+    Integer[] keys = buildKeys();
+
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      MyHashMap<Integer, Integer> hashMap = MyHashMapFactory.newMyHashMap(policy);
+      for (Integer key : keys) {
+        hashMap.put(key, key);
+      }
+
+      warmUp(hashMap);
+      int[] hits = new int[1];
+      long bytes = allocatedBytes(() -> hits[0] = getRounds(hashMap, keys));
+      assertEquals(globalTestTime * rounds, hits[0]);
+      double bytesPerOp = bytes * 1.0 / ((long) globalTestTime * 2 * rounds);
+      assertTrue(bytesPerOp < 1, policy + " bytes per get(): " + bytesPerOp);
+    }
+  }
+
+  @Test
+  @DisplayName("Test remove() allocates zero bytes in all hash maps.")
+  public void testRemoveAllocatesNothing() {
+    Integer[] keys = buildKeys();
+
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      MyHashMap<Integer, Integer> hashMap = MyHashMapFactory.newMyHashMap(policy);
+      for (Integer key : keys) {
+        hashMap.put(key, key);
+      }
+
+      warmUp(hashMap);
+      long bytes = allocatedBytes(() -> {
+        for (Integer key : keys) {
+          hashMap.remove(key);
+        }
+      });
+      double bytesPerOp = bytes * 1.0 / globalTestTime;
+      assertTrue(bytesPerOp < 1, policy + " bytes per remove(): " + bytesPerOp);
+      assertTrue(hashMap.isEmpty());
+    }
+  }
+
+  /**
+   * Return globalTestTime keys boxed in advance, so boxing is not counted. They start at 1000,
+   * above the Integer cache, so each key is its own object as any boxed key in use would be.
+   */
+  private Integer[] buildKeys() {
+    Integer[] keys = new Integer[globalTestTime];
+    for (int i = 0; i < globalTestTime; i++) {
+      keys[i] = Integer.valueOf(1000 + i * 31);
+    }
+    return keys;
+  }
+
+  /**
+   * Run get() and remove() once, so loading their classes is not counted. No long warm-up,
+   * the JIT could hide allocations by escape analysis.
+   */
+  private void warmUp(MyHashMap<Integer, Integer> hashMap) {
+    Integer extra = -2;
+    hashMap.put(extra, extra);
+    hashMap.get(extra);
+    hashMap.remove(extra);
+    hashMap.get(extra);
+    hashMap.remove(extra);
+  }
+
+  /**
+   * Get every key, and as many keys that are not in the map. Return the count of hits.
+   */
+  private int getRounds(MyHashMap<Integer, Integer> hashMap, Integer[] keys) {
+    Integer missing = -1;
+    int hits = 0;
+
+    for (int round = 0; round < rounds; round++) {
+      for (Integer key : keys) {
+        if (hashMap.get(key) == key) {
+          hits++;
+        }
+        if (hashMap.get(missing) != null) {
+          hits--;
+        }
+      }
+    }
+    return hits;
+  }
+
+  /**
+   * Return bytes allocated by the current thread while running the given work.
+   */
+  private long allocatedBytes(Runnable work) {
+    long threadId = Thread.currentThread().getId();
+    long before = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+    work.run();
+    return THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - before;
+  }
+}
@@ -0,0 +1,235 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.CollisionPolicy;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.RehashPolicy;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyHashMapBulkTest {
+  private int globalTestTime = 10000;
+
+  @Test
+  @DisplayName("Test putAll(), getAll() and removeAll(keys) in all policies.")
+  public void testBulkCorrectness() {
+    for (MyHashMapTesting<Integer, String> hashMap : allHashMaps()) {
+      String name = hashMap.getClass().getSimpleName();
+      List<Integer> keys = new ArrayList<>();
+      List<String> vals = new ArrayList<>();
+      for (int i = 0; i < globalTestTime; i++) {
+        keys.add(i);
+        vals.add("Value " + i);
+      }
+
+      hashMap.put(0, "Old value");
+      hashMap.putAll(keys, vals);
+      hashMap.putAll(keys.subList(0, 10), vals.subList(0, 10)); // Updates only
+      assertEquals(globalTestTime, hashMap.size(), name);
+      assertEquals(globalTestTime, hashMap.getTotalPairCount(), name);
+
+      List<Integer> evenKeys = new LinkedList<>();
+      for (int i = 0; i < globalTestTime; i += 2) {
+        evenKeys.add(i);
+      }
+      evenKeys.add(-1); // No such key
+      assertEquals(globalTestTime / 2, hashMap.removeAll(evenKeys), name);
+
+      List<Integer> lookup = new ArrayList<>(keys);
+      lookup.add(-1);
+      List<String> result = hashMap.getAll(lookup);
+      assertEquals(lookup.size(), result.size());
+      for (int i = 0; i < globalTestTime; i++) {
+        assertEquals(i % 2 == 1 ? "Value " + i : null, result.get(i), name);
+      }
+      assertNull(result.get(globalTestTime));
+      assertEquals(0, hashMap.getAll(Collections.emptyList()).size());
+
+      assertThrows(IllegalArgumentException.class,
+          () -> hashMap.putAll(keys, vals.subList(0, 1)));
+    }
+  }
+
+  @Test
+  @DisplayName("Test concurrent putAll() and removeAll(keys) with put() and remove().")
+  public void testBulkDataRace() throws InterruptedException {
+    for (ThreadSafePolicy policy : new ThreadSafePolicy[] {ThreadSafePolicy.SyncKeyword,
+        ThreadSafePolicy.ReadWriteLock, ThreadSafePolicy.OptimisticRead,
+        ThreadSafePolicy.Striped}) {
+      MyHashMapTesting<Integer, Integer> hashMap = MyHashMapFactory.newMyHashMapTesting(policy);
+      int threadCount = 8;
+      List<Thread> threads = new ArrayList<>();
+
+      for (int t = 0; t < threadCount; t++) {
+        int offset = t * globalTestTime;
+        boolean bulk = t % 2 == 0;
+        threads.add(new Thread(() -> {
+          List<Integer> keys = new ArrayList<>();
+          List<Integer> removedKeys = new ArrayList<>();
+          for (int i = 0; i < globalTestTime; i++) {
+            keys.add(offset + i);
+            if (i % 2 == 0) {
+              removedKeys.add(offset + i);
+            }
+          }
+
+          if (bulk) {
+            for (int from = 0; from < globalTestTime; from += 100) {
+              hashMap.putAll(keys.subList(from, from + 100), keys.subList(from, from + 100));
+            }
+            hashMap.removeAll(removedKeys);
+          } else {
+            for (Integer key : keys) {
+              hashMap.put(key, key);
+            }
+            for (Integer key : removedKeys) {
+              hashMap.remove(key);
+            }
+          }
+        }));
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      assertEquals(threadCount * globalTestTime / 2, hashMap.size(), policy.toString());
+      assertEquals(threadCount * globalTestTime / 2, hashMap.getTotalPairCount());
+      for (int key = 0; key < threadCount * globalTestTime; key++) {
+        assertEquals(key % 2 == 1 ? (Integer) key : null, hashMap.get(key));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Test forEach(), reduce() and search() by parallelism threshold in all policies.")
+  public void testParallelBulkCorrectness() {
+    long expectedSum = (long) globalTestTime * (globalTestTime - 1) / 2;
+
+    for (MyHashMapTesting<Integer, String> hashMap : allHashMaps()) {
+      String name = hashMap.getClass().getSimpleName();
+      assertNull(hashMap.reduceValues(1, (a, b) -> a + b), name);
+      assertNull(hashMap.search(1, (key, val) -> key), name);
+      for (int i = 0; i < globalTestTime; i++) {
+        hashMap.put(i, "Value " + i);
+      }
+
+      for (long threshold : new long[] {1, globalTestTime / 100, Long.MAX_VALUE}) {
+        LongAdder keySum = new LongAdder();
+        LongAdder count = new LongAdder();
+        hashMap.forEach(threshold, (key, val) -> {
+          assertEquals("Value " + key, val);
+          keySum.add(key);
+          count.increment();
+        });
+        assertEquals(expectedSum, keySum.sum(), name);
+        assertEquals(globalTestTime, count.sum(), name);
+
+        assertEquals((Long) expectedSum,
+            hashMap.reduce(threshold, (key, val) -> (long) key, Long::sum), name);
+        assertEquals((Long) (long) (globalTestTime / 2),
+            hashMap.reduce(threshold, (key, val) -> key % 2 == 0 ? null : 1L, Long::sum), name);
+        assertEquals("Value 9999",
+            hashMap.reduceValues(threshold, (a, b) -> a.compareTo(b) >= 0 ? a : b), name);
+
+        assertEquals("Value 1234",
+            hashMap.search(threshold, (key, val) -> key == 1234 ? val : null), name);
+        assertNull(hashMap.search(threshold, (key, val) -> key < 0 ? val : null), name);
+      }
+
+      LongAdder visits = new LongAdder();
+      assertTrue(hashMap.search(1, (key, val) -> {
+        visits.increment();
+        return key;
+      }) >= 0);
+      assertTrue(visits.sum() < globalTestTime / 10, name); // Stopped at the first hit
+
+      assertThrows(IllegalArgumentException.class,
+          () -> hashMap.forEach(0, (key, val) -> { }));
+    }
+  }
+
+  @Test
+  @DisplayName("Test parallel bulk operations see stable pairs and don't block writers.")
+  public void testParallelBulkDataRace() throws InterruptedException {
+    for (ThreadSafePolicy policy : new ThreadSafePolicy[] {ThreadSafePolicy.SyncKeyword,
+        ThreadSafePolicy.ReadWriteLock, ThreadSafePolicy.OptimisticRead,
+        ThreadSafePolicy.Striped, ThreadSafePolicy.LockFree}) {
+      MyHashMapTesting<Integer, Integer> hashMap = MyHashMapFactory.newMyHashMapTesting(policy);
+      for (int i = 0; i < globalTestTime; i++) {
+        hashMap.put(i, 1);
+      }
+      AtomicBoolean done = new AtomicBoolean();
+      Thread writer = new Thread(() -> {
+        for (int i = globalTestTime; i < globalTestTime * 50 && !done.get(); i++) {
+          hashMap.put(i, -1);
+          if (i % 2 == 0) {
+            hashMap.remove(i);
+          }
+        }
+      });
+
+      writer.start();
+      for (int round = 0; round < 10; round++) {
+        assertEquals((Integer) globalTestTime,
+            hashMap.reduce(1, (key, val) -> val > 0 ? val : null, Integer::sum),
+            policy.toString());
+        assertEquals((Integer) (globalTestTime - 1),
+            hashMap.search(1, (key, val) -> key == globalTestTime - 1 ? key : null));
+      }
+      done.set(true);
+      writer.join();
+
+      // A put from another thread during the traversal must not wait for its end.
+      AtomicBoolean putDone = new AtomicBoolean();
+      hashMap.forEach(Long.MAX_VALUE, (key, val) -> {
+        if (key == 0) {
+          Thread putter = new Thread(() -> hashMap.put(-1, 1));
+          putter.start();
+          try {
+            putter.join(5000);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          putDone.set(!putter.isAlive());
+        }
+      });
+      assertTrue(putDone.get(), policy.toString());
+    }
+  }
+
+  private static List<MyHashMapTesting<Integer, String>> allHashMaps() {
+    List<MyHashMapTesting<Integer, String>> result = new ArrayList<>();
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      result.add(MyHashMapFactory.newMyHashMapTesting(policy));
+    }
+    for (CollisionPolicy collision : new CollisionPolicy[] {CollisionPolicy.LinearProbing,
+        CollisionPolicy.RobinHood}) {
+      result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.NoSync, collision));
+      result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.SyncKeyword,
+          collision));
+      result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock,
+          collision));
+    }
+    result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.NoSync,
+        RehashPolicy.Incremental));
+    result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock,
+        RehashPolicy.Incremental));
+    return result;
+  }
+}
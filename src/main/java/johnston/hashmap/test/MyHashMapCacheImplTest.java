@@ -0,0 +1,273 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.EvictionPolicy;
+import johnston.hashmap.MyHashMapCacheImpl;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.Weigher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyHashMapCacheImplTest {
+  private int globalTestTime = 10000;
+
+  @Test
+  @DisplayName("Test the least recently used pair is evicted.")
+  public void testLruEviction() {
+    MyHashMapCacheImpl<Integer, String> cache = MyHashMapFactory.newBoundedMyHashMap(100);
+
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, "Value " + i);
+    }
+    assertEquals("Value 0", cache.get(0)); // 1 is the least recently used now.
+    cache.put(2, "New value 2"); // Then 3.
+    cache.put(100, "Value 100");
+    cache.put(101, "Value 101");
+
+    assertEquals(100, cache.size());
+    assertEquals(100, cache.getTotalPairCount());
+    assertNull(cache.get(1));
+    assertNull(cache.get(3));
+    assertEquals("Value 0", cache.get(0));
+    assertEquals("New value 2", cache.get(2));
+    assertEquals("Value 101", cache.get(101));
+    assertEquals(2, cache.getEvictionCount());
+    assertEquals(4, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+
+    assertTrue(cache.remove(0));
+    assertNull(cache.putIfAbsent(-1, "Value -1"));
+    assertEquals(100, cache.size());
+    cache.removeAll();
+    assertTrue(cache.isEmpty());
+    assertEquals(2, cache.getEvictionCount());
+    assertThrows(IllegalArgumentException.class, () -> new MyHashMapCacheImpl<>(0));
+  }
+
+  @Test
+  @DisplayName("Test the bound is kept and every get() is counted by concurrent threads.")
+  public void testCacheDataRace() throws InterruptedException {
+    for (EvictionPolicy policy : EvictionPolicy.values()) {
+      int maximumSize = 1000;
+      MyHashMapCacheImpl<Integer, Integer> cache = new MyHashMapCacheImpl<>(maximumSize, 8,
+          Weigher.singleton(), policy, System::nanoTime);
+      AtomicLong getCount = new AtomicLong();
+      int threadCount = 8;
+      List<Thread> threads = new ArrayList<>();
+
+      for (int t = 0; t < threadCount; t++) {
+        threads.add(new Thread(() -> {
+          for (int i = 0; i < globalTestTime * 10; i++) {
+            int key = ThreadLocalRandom.current().nextInt(maximumSize * 2);
+            if (i % 4 == 0) {
+              cache.put(key, key);
+            } else if (i % 16 == 1) {
+              cache.remove(key);
+            } else {
+              Integer val = cache.get(key);
+              assertTrue(val == null || val == key);
+              getCount.incrementAndGet();
+            }
+          }
+        }));
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      assertTrue(cache.size() <= maximumSize, policy + " size " + cache.size());
+      assertEquals(cache.size(), cache.getTotalPairCount());
+      assertEquals(getCount.get(), cache.getHitCount() + cache.getMissCount());
+      assertTrue(cache.getEvictionCount() > 0);
+    }
+  }
+
+  @Test
+  @DisplayName("Test W-TinyLFU keeps frequently used pairs through a scan, LRU doesn't.")
+  public void testTinyLfuScanResistance() {
+    for (EvictionPolicy policy : EvictionPolicy.values()) {
+      MyHashMapCacheImpl<Integer, Integer> cache = new MyHashMapCacheImpl<>(1000, 1,
+          Weigher.singleton(), policy, System::nanoTime);
+
+      for (int round = 0; round < 5; round++) {
+        for (int i = 0; i < 500; i++) { // Hot keys
+          if (cache.get(i) == null) {
+            cache.put(i, i);
+          }
+        }
+      }
+      for (int i = 0; i < globalTestTime; i++) { // One-off keys
+        if (cache.get(-i - 1) == null) {
+          cache.put(-i - 1, -i - 1);
+        }
+      }
+
+      int hotCount = 0;
+      for (int i = 0; i < 500; i++) {
+        hotCount += cache.containsKey(i) ? 1 : 0;
+      }
+      assertEquals(1000, cache.size(), policy.toString());
+      assertEquals(1000, cache.getTotalPairCount(), policy.toString());
+      assertEquals(globalTestTime + 500 - 1000, cache.getEvictionCount(), policy.toString());
+      if (policy == EvictionPolicy.LRU) {
+        assertEquals(0, hotCount);
+      } else {
+        assertEquals(500, hotCount);
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Test the total weight is tracked on writes and kept under the maximum weight.")
+  public void testWeightBound() {
+    for (EvictionPolicy policy : EvictionPolicy.values()) {
+      long maximumWeight = 1 << 20;
+      MyHashMapCacheImpl<Integer, byte[]> cache = new MyHashMapCacheImpl<>(maximumWeight, 4,
+          (key, val) -> val.length, policy, System::nanoTime);
+      long[] expected = new long[1];
+
+      for (int i = 0; i < globalTestTime; i++) {
+        int key = ThreadLocalRandom.current().nextInt(globalTestTime / 10);
+        int length = ThreadLocalRandom.current().nextInt(16 * 1024);
+        if (i % 5 == 0) {
+          cache.remove(key);
+        } else if (i % 5 == 1) {
+          cache.merge(key, new byte[length], (old, val) -> new byte[old.length + 100]);
+        } else {
+          cache.put(key, new byte[length]);
+        }
+        long[] segmentWeights = cache.getSegmentWeights();
+        assertEquals(4, segmentWeights.length);
+        for (long weight : segmentWeights) {
+          assertTrue(weight <= maximumWeight / 4, policy + " weight " + weight);
+        }
+      }
+
+      cache.forEach(pair -> expected[0] += ((byte[]) pair.getV()).length);
+      assertEquals(expected[0], cache.getWeightedSize(), policy.toString());
+      assertTrue(cache.getEvictionCount() > 0);
+      assertTrue(cache.getWeightReport().startsWith("Segment 0: "));
+
+      cache.put(-1, new byte[(int) maximumWeight]); // Heavier than its segment share
+      assertNull(cache.get(-1));
+      cache.removeAll();
+      assertEquals(0, cache.getWeightedSize());
+      assertThrows(IllegalArgumentException.class,
+          () -> new MyHashMapCacheImpl<Integer, byte[]>(0, (key, val) -> 1, policy));
+    }
+  }
+
+  @Test
+  @DisplayName("Test a pair heavier than its segment is evicted alone.")
+  public void testHeavyPair() {
+    for (EvictionPolicy policy : EvictionPolicy.values()) {
+      MyHashMapCacheImpl<Integer, Integer> cache = new MyHashMapCacheImpl<>(1000, 1,
+          (key, val) -> val, policy, System::nanoTime);
+      for (int i = 0; i < 50; i++) {
+        cache.put(i, 10);
+      }
+      long evictionCount = cache.getEvictionCount();
+
+      cache.put(-1, 5000);
+      assertNull(cache.get(-1));
+      cache.put(0, 5000); // Replaces a pair of the cache
+      assertNull(cache.get(0));
+      assertEquals(5000, cache.compute(1, (key, val) -> 5000));
+      assertNull(cache.get(1));
+      assertEquals(5000, cache.compute(-2, (key, val) -> 5000));
+      assertNull(cache.get(-2));
+
+      assertEquals(evictionCount + 4, cache.getEvictionCount(), policy.toString());
+      assertEquals(48, cache.size(), policy.toString());
+      assertEquals(480, cache.getWeightedSize(), policy.toString());
+      for (int i = 2; i < 50; i++) {
+        assertEquals(10, cache.get(i), policy.toString());
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Test pairs expire after their time to live, by access, writes and cleanUp().")
+  public void testTtlExpiry() {
+    AtomicLong nanos = new AtomicLong(-TimeUnit.DAYS.toNanos(1)); // Negative is fine
+    MyHashMapCacheImpl<Integer, Integer> cache = new MyHashMapCacheImpl<>(Integer.MAX_VALUE,
+        16, Weigher.singleton(), EvictionPolicy.LRU, nanos::get);
+
+    cache.put(-1, -1);
+    cache.put(-2, -2, 30, TimeUnit.MINUTES);
+    cache.put(-2, -2); // No time to live anymore
+    cache.put(-3, -3, 30, TimeUnit.MINUTES);
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(29));
+    assertEquals((Integer) (-3), cache.get(-3));
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+    assertFalse(cache.containsKey(-3));
+    assertNull(cache.get(-3));
+    assertEquals(2, cache.size()); // Removed by get()
+    assertEquals(1, cache.getExpirationCount());
+    assertEquals((Integer) (-1), cache.get(-1));
+    assertEquals((Integer) (-2), cache.get(-2));
+    cache.removeAll();
+
+    // Time to live from a second to 8 days, so all wheel levels are used.
+    long[] expiresAt = new long[globalTestTime];
+    long start = nanos.get();
+    for (int i = 0; i < globalTestTime; i++) {
+      long ttl = ThreadLocalRandom.current().nextLong(TimeUnit.SECONDS.toNanos(1),
+          TimeUnit.DAYS.toNanos(8));
+      cache.put(i, i, ttl, TimeUnit.NANOSECONDS);
+      expiresAt[i] = start + ttl;
+    }
+    long tick = 1L << 30; // Level 0 bucket span, a pair expires at most one bucket late.
+    while (nanos.get() < start + TimeUnit.DAYS.toNanos(9)) {
+      nanos.addAndGet(ThreadLocalRandom.current().nextLong(TimeUnit.MINUTES.toNanos(20)));
+      cache.cleanUp();
+      int live = 0;
+      int maybeLive = 0;
+      for (long time : expiresAt) {
+        live += time > nanos.get() ? 1 : 0;
+        maybeLive += time > nanos.get() - tick ? 1 : 0;
+      }
+      assertTrue(live <= cache.size() && cache.size() <= maybeLive,
+          live + " <= " + cache.size() + " <= " + maybeLive);
+      for (int i = 0; i < 100; i++) {
+        assertEquals(expiresAt[i] > nanos.get() ? (Integer) i : null, cache.get(i));
+      }
+    }
+    assertTrue(cache.isEmpty());
+    assertEquals(globalTestTime + 1, cache.getExpirationCount());
+    assertThrows(IllegalArgumentException.class, () -> cache.put(0, 0, 0, TimeUnit.SECONDS));
+    cache.close();
+  }
+
+  @Test
+  @DisplayName("Test the sweeper thread removes expired pairs never read again.")
+  public void testSweeper() throws InterruptedException {
+    MyHashMapCacheImpl<Integer, Integer> cache = MyHashMapFactory.newExpiringMyHashMap();
+
+    for (int i = 0; i < globalTestTime; i++) {
+      cache.put(i, i, 100, TimeUnit.MILLISECONDS);
+    }
+    cache.put(-1, -1);
+    Thread.sleep(3000); // Two sweeps, one bucket span after the time to live at least.
+
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getTotalPairCount());
+    assertEquals(globalTestTime, cache.getExpirationCount());
+    cache.close();
+    cache.close();
+  }
+}
@@ -0,0 +1,179 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.CollisionPolicy;
+import johnston.hashmap.FsyncPolicy;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapMappedImpl;
+import johnston.hashmap.MyHashMapOffHeapImpl;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.MyHashMapWalWrapper;
+import johnston.hashmap.RehashPolicy;
+import johnston.hashmap.Serializer;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyHashMapComputeTest {
+  private int globalTestTime = 10000;
+
+  @Test
+  @DisplayName("Test compute(), merge(), putIfAbsent() and replace() in all hash maps.")
+  public void testComputeCorrectness() {
+    for (MyHashMapTesting<Integer, Integer> hashMap : allHashMaps()) {
+      checkCompute(hashMap);
+    }
+  }
+
+  @Test
+  @DisplayName("Test compute family in off-heap, memory-mapped and logged hash maps.")
+  public void testComputeSerialized() throws IOException {
+    MyHashMapOffHeapImpl<Integer, Integer> offHeap = MyHashMapFactory.newOffHeapMyHashMap(
+        ThreadSafePolicy.Striped, Serializer.INTEGER, Serializer.INTEGER);
+    checkCompute(offHeap);
+    offHeap.close();
+
+    Path file = Files.createTempFile("mapped-hash-map", ".bin");
+    MyHashMapMappedImpl<Integer, Integer> mapped = MyHashMapFactory.newPersistentMyHashMap(
+        ThreadSafePolicy.ReadWriteLock, file, Serializer.INTEGER, Serializer.INTEGER,
+        FsyncPolicy.Never);
+    checkCompute(mapped);
+    mapped.close();
+    Files.delete(file);
+
+    Path directory = Files.createTempDirectory("wal");
+    MyHashMapWalWrapper<Integer, Integer> logged = MyHashMapFactory.newDurableMyHashMap(
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock), directory,
+        Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Never);
+    checkCompute(logged);
+    logged.removeAll();
+    for (int i = 0; i < 100; i++) {
+      logged.merge(i % 10, 1, Integer::sum);
+    }
+    logged.close();
+
+    MyHashMapWalWrapper<Integer, Integer> replayed = MyHashMapFactory.newDurableMyHashMap(
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock), directory,
+        Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Never);
+    assertEquals(10, replayed.size());
+    assertEquals((Integer) 10, replayed.get(3));
+    replayed.close();
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path log : (Iterable<Path>) files::iterator) {
+        Files.delete(log);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  @DisplayName("Test concurrent merge() counters and putIfAbsent() are atomic.")
+  public void testComputeDataRace() throws InterruptedException {
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      if (policy == ThreadSafePolicy.NoSync) {
+        continue;
+      }
+      MyHashMapTesting<Integer, Integer> hashMap = MyHashMapFactory.newMyHashMapTesting(policy);
+      AtomicInteger winners = new AtomicInteger();
+      int threadCount = 8;
+      int keyCount = 100;
+      List<Thread> threads = new ArrayList<>();
+
+      for (int t = 0; t < threadCount; t++) {
+        int id = t;
+        threads.add(new Thread(() -> {
+          for (int i = 0; i < globalTestTime; i++) {
+            hashMap.merge(i % keyCount, 1, Integer::sum);
+            if (hashMap.putIfAbsent(keyCount + i, id) == null) {
+              winners.incrementAndGet();
+            }
+          }
+        }));
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      for (int key = 0; key < keyCount; key++) {
+        assertEquals((Integer) (threadCount * globalTestTime / keyCount), hashMap.get(key),
+            policy.toString());
+      }
+      assertEquals(globalTestTime, winners.get(), policy.toString());
+      assertEquals(keyCount + globalTestTime, hashMap.size(), policy.toString());
+      assertEquals(keyCount + globalTestTime, hashMap.getTotalPairCount());
+    }
+  }
+
+  private void checkCompute(MyHashMapTesting<Integer, Integer> hashMap) {
+    String name = hashMap.getClass().getSimpleName();
+
+    for (int i = 0; i < globalTestTime; i++) {
+      assertNull(hashMap.putIfAbsent(i, i), name);
+    }
+    assertEquals((Integer) 5, hashMap.putIfAbsent(5, -1), name);
+    for (int i = 0; i < globalTestTime; i++) {
+      assertEquals((Integer) (i + 1), hashMap.merge(i, 1, Integer::sum));
+    }
+    assertEquals((Integer) 7, hashMap.merge(-7, 7, Integer::sum));
+    assertNull(hashMap.merge(-7, 0, (old, v) -> null));
+    assertEquals(globalTestTime, hashMap.size(), name);
+
+    // Remove even keys by compute(), odd ones are doubled.
+    for (int i = 0; i < globalTestTime; i++) {
+      hashMap.compute(i, (key, old) -> key % 2 == 0 ? null : old * 2);
+    }
+    assertEquals(globalTestTime / 2, hashMap.size(), name);
+    assertEquals(globalTestTime / 2, hashMap.getTotalPairCount(), name);
+    assertNull(hashMap.get(0));
+    assertEquals((Integer) 4, hashMap.get(1));
+
+    assertNull(hashMap.computeIfPresent(0, (key, old) -> 1));
+    assertNull(hashMap.get(0));
+    assertEquals((Integer) 5, hashMap.computeIfPresent(1, (key, old) -> old + 1));
+    assertEquals((Integer) 0, hashMap.computeIfAbsent(0, key -> key));
+    assertEquals((Integer) 5, hashMap.computeIfAbsent(1, key -> -1));
+    assertNull(hashMap.computeIfAbsent(-1, key -> null));
+    assertFalse(hashMap.containsKey(-1));
+
+    assertTrue(hashMap.replace(1, 5, 50));
+    assertFalse(hashMap.replace(1, 5, 60));
+    assertFalse(hashMap.replace(-1, null, 1));
+    assertEquals((Integer) 50, hashMap.get(1));
+    assertEquals(globalTestTime / 2 + 1, hashMap.size(), name);
+  }
+
+  private static List<MyHashMapTesting<Integer, Integer>> allHashMaps() {
+    List<MyHashMapTesting<Integer, Integer>> result = new ArrayList<>();
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      result.add(MyHashMapFactory.newMyHashMapTesting(policy));
+    }
+    for (CollisionPolicy collision : new CollisionPolicy[] {CollisionPolicy.LinearProbing,
+        CollisionPolicy.RobinHood}) {
+      result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.NoSync, collision));
+      result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.SyncKeyword,
+          collision));
+      result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock,
+          collision));
+    }
+    result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.NoSync,
+        RehashPolicy.Incremental));
+    result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock,
+        RehashPolicy.Incremental));
+    return result;
+  }
+}
@@ -0,0 +1,123 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test for the Cuckoo policy, the checks the other policies in MyHashMapPolicyConcurrencyTest
+ * do not share: bucket size and keys with the same hash code.
+ */
+public class MyHashMapCuckooImplConcurrencyTest {
+  private MyHashMapTesting<String, Integer> hashMap;
+  private int globalTestTime;
+
+  @BeforeEach
+  public void init() {
+    hashMap = MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.Cuckoo, 2, 0.95f);
+    globalTestTime = 100000;
+  }
+
+  @Test
+  @DisplayName("Test Junit functionality.")
+  public void junitSanityCheck() {
+    assertTrue(true);
+    assertTrue((hashMap != null), "Test object init.");
+  }
+
+  @Test
+  @DisplayName("Test no bucket holds more than 4 pairs.")
+  public void testBucketSize() {
+    reset();
+    for (String key : buildStringInput("Pair ", globalTestTime)) {
+      hashMap.put(key, 1);
+    }
+
+    int count = 0;
+    for (int bucketSize : hashMap.getAllBucketSize()) {
+      assertTrue(bucketSize <= 4, "Bucket has more than 4 slots.");
+      count += bucketSize;
+    }
+    assertEquals(globalTestTime, count);
+    assertEquals(globalTestTime, hashMap.size());
+  }
+
+  @Test
+  @DisplayName("Test more keys with the same hash code than both buckets hold.")
+  public void testCollidingKeys() {
+    reset();
+    // "Aa" and "BB" have the same hash code, so all 256 strings of 8 of them do too.
+    List<String> colliding = new ArrayList<>();
+    colliding.add("");
+    for (int i = 0; i < 8; i++) {
+      List<String> longer = new ArrayList<>();
+      for (String prefix : colliding) {
+        longer.add(prefix + "Aa");
+        longer.add(prefix + "BB");
+      }
+      colliding = longer;
+    }
+    List<String> others = buildStringInput("Pair ", 1000);
+
+    // Other keys in between make the table rehash with colliding keys in it.
+    for (int i = 0; i < colliding.size(); i++) {
+      hashMap.put(colliding.get(i), i);
+      hashMap.put(others.get(i), -1);
+    }
+    for (int i = colliding.size(); i < others.size(); i++) {
+      hashMap.put(others.get(i), -1);
+    }
+    assertEquals(colliding.size() + others.size(), hashMap.size());
+    assertEquals(hashMap.size(), hashMap.getTotalPairCount());
+
+    Set<String> keySet = new HashSet<>();
+    for (MapPair<String, Integer> mapPair : hashMap) {
+      keySet.add(mapPair.key);
+    }
+    assertEquals(colliding.size() + others.size(), keySet.size());
+
+    for (int i = 0; i < colliding.size(); i++) {
+      String key = colliding.get(i);
+      assertEquals(i, hashMap.get(key));
+      assertEquals(i + 1, hashMap.compute(key, (k, v) -> v + 1));
+      if (i % 2 == 0) {
+        assertTrue(hashMap.remove(key));
+        assertTrue(!hashMap.containsKey(key));
+        assertTrue(!hashMap.remove(key));
+      }
+    }
+    for (int i = 0; i < colliding.size(); i++) {
+      assertEquals(i % 2 == 0 ? null : i + 1, hashMap.get(colliding.get(i)));
+    }
+    assertEquals(colliding.size() / 2 + others.size(), hashMap.size());
+    assertEquals(hashMap.size(), hashMap.getTotalPairCount());
+    for (String key : others) {
+      assertEquals(-1, hashMap.get(key));
+    }
+  }
+
+  private void reset() {
+    hashMap.removeAll();
+  }
+
+  private List<String> buildStringInput(String prefix, int count) {
+    List<String> result = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+      result.add(prefix + i);
+    }
+    return result;
+  }
+}
@@ -163,6 +163,27 @@ public class MyHashMapImplCorrectnessTest {
     assertEquals(count, 100);
   }
 
+  @Test
+  @DisplayName("Test capacity is rounded up to a power of two and survives rehashing.")
+  public void testPowerOfTwoCapacity() {
+    ThreadSafePolicy[] policies = {ThreadSafePolicy.NoSync, ThreadSafePolicy.SyncKeyword,
+        ThreadSafePolicy.ReadWriteLock, ThreadSafePolicy.OptimisticRead};
+
+    for (ThreadSafePolicy policy : policies) {
+      hashMap = MyHashMapFactory.newMyHashMapTesting(policy, 666, 0.5f);
+      assertEquals(1024, hashMap.getAllBucketSize().length);
+
+      // Rehash a few times, every key must be found in its split bucket.
+      List<String> keys = buildStringInput("Pair ", 4096);
+      writeSameValue(keys, 1);
+      assertEquals(8192, hashMap.getAllBucketSize().length);
+      for (String key : keys) {
+        assertEquals(1, hashMap.get(key));
+      }
+      assertEquals(keys.size(), hashMap.getTotalPairCount());
+    }
+  }
+
   private void reset() {
     hashMap.removeAll();
   }
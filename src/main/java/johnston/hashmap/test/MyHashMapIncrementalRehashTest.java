@@ -0,0 +1,122 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.RehashPolicy;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Correctness test for incremental rehashing. Every check runs while old buckets are still
+ * being moved, so lookups must find keys in either table.
+ */
+public class MyHashMapIncrementalRehashTest {
+  private static final ThreadSafePolicy[] POLICIES = {ThreadSafePolicy.NoSync,
+      ThreadSafePolicy.SyncKeyword, ThreadSafePolicy.ReadWriteLock,
+      ThreadSafePolicy.OptimisticRead};
+
+  private MyHashMapTesting<String, Integer> hashMap;
+  private int globalTestTime = 10000;
+
+  @Test
+  @DisplayName("Test rehashing is spread over following operations.")
+  public void testRehashIsIncremental() {
+    for (ThreadSafePolicy policy : POLICIES) {
+      hashMap = MyHashMapFactory.newMyHashMapTesting(policy, RehashPolicy.Incremental, 64, 0.5f);
+      writeSameValue(buildStringInput("Pair ", 32), 1);
+
+      // This put reaches the load factor: both tables exist, most old buckets not moved.
+      hashMap.put("Pair 32", 1);
+      assertEquals(128 + 64, hashMap.getAllBucketSize().length);
+      assertEquals(33, hashMap.getTotalPairCount());
+
+      // 64 old buckets, 8 per operation.
+      for (int i = 0; i < 7; i++) {
+        hashMap.remove("Bad " + i);
+      }
+      assertEquals(128, hashMap.getAllBucketSize().length);
+      assertEquals(33, hashMap.getTotalPairCount());
+    }
+  }
+
+  @Test
+  @DisplayName("Test put(), get() and remove() during rehashing.")
+  public void testPutGetRemove() {
+    for (ThreadSafePolicy policy : POLICIES) {
+      hashMap = MyHashMapFactory.newMyHashMapTesting(policy, RehashPolicy.Incremental, 2, 0.5f);
+      List<String> keys = buildStringInput("Pair ", globalTestTime);
+
+      for (int i = 0; i < keys.size(); i++) {
+        hashMap.put(keys.get(i), 1);
+        // All keys written so far, including those in old buckets.
+        assertEquals(hashMap.get(keys.get(i / 2)), 1);
+      }
+      writeSameValue(keys, 2);
+      assertEquals(globalTestTime, hashMap.size());
+      assertEquals(globalTestTime, hashMap.getTotalPairCount());
+
+      for (int i = 0; i < keys.size(); i += 2) {
+        assertTrue(hashMap.remove(keys.get(i)));
+      }
+      for (int i = 0; i < keys.size(); i++) {
+        assertEquals(i % 2 == 1, hashMap.containsKey(keys.get(i)));
+      }
+      assertEquals(globalTestTime / 2, hashMap.size());
+      assertEquals(globalTestTime / 2, hashMap.getTotalPairCount());
+    }
+  }
+
+  @Test
+  @DisplayName("Test iterator and removeAll() during rehashing.")
+  public void testIteratorAndRemoveAll() {
+    for (ThreadSafePolicy policy : POLICIES) {
+      hashMap = MyHashMapFactory.newMyHashMapTesting(policy, RehashPolicy.Incremental, 64, 0.5f);
+      List<String> keys = buildStringInput("Pair ", 33);
+      writeSameValue(keys, 1);
+      Set<String> keySet = new HashSet<>();
+
+      for (MapPair<String, Integer> mapPair : hashMap) {
+        assertTrue(keySet.add(mapPair.key), "Pair seen twice.");
+      }
+      assertEquals(new HashSet<>(keys), keySet);
+
+      hashMap.removeAll();
+      assertEquals(0, hashMap.size());
+      assertEquals(0, hashMap.getTotalPairCount());
+      assertTrue(!hashMap.containsKey("Pair 0"));
+    }
+  }
+
+  @Test
+  @DisplayName("Test policies without a single table lock are rejected.")
+  public void testUnsupportedPolicy() {
+    assertThrows(IllegalArgumentException.class, () ->
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.Striped, RehashPolicy.Incremental));
+  }
+
+  private List<String> buildStringInput(String prefix, int count) {
+    List<String> result = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+      result.add(prefix + i);
+    }
+    return result;
+  }
+
+  private void writeSameValue(List<String> keys, int val) {
+    for (String key : keys) {
+      hashMap.put(key, val);
+    }
+  }
+}
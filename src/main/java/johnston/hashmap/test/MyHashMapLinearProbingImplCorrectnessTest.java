@@ -0,0 +1,176 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.CollisionPolicy;
+import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyHashMapLinearProbingImplCorrectnessTest {
+  private MyHashMapTesting<String, Integer> hashMap;
+  private int globalTestTime;
+
+  @BeforeEach
+  public void init() {
+    // Use factory to create an object for testing.
+    // Select NoSync, SyncKeyword, or ReadWriteLock.
+    hashMap = MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock,
+        CollisionPolicy.LinearProbing, 16, 0.5f);
+    globalTestTime = 1000;
+  }
+
+  @Test
+  @DisplayName("Test Junit functionality.")
+  public void junitSanityCheck() {
+    assertTrue(true);
+    assertTrue((hashMap != null), "Test object init.");
+  }
+
+  @Test
+  @DisplayName("Test hash map put(), get(), update and remove.")
+  public void testPutGetRemove() {
+    reset();
+    List<String> keys = buildStringInput("Pair ", globalTestTime);
+    writeSameValue(keys, 1);
+    writeSameValue(keys, 2);
+    assertEquals(globalTestTime, hashMap.size());
+    assertEquals(globalTestTime, hashMap.getTotalPairCount());
+
+    for (String key : keys) {
+      assertEquals(hashMap.get(key), 2);
+    }
+    for (String key : buildStringInput("Bad ", globalTestTime)) {
+      assertTrue(!hashMap.containsKey(key));
+      assertTrue(!hashMap.remove(key));
+    }
+    for (String key : keys) {
+      assertTrue(hashMap.remove(key));
+      assertTrue(!hashMap.containsKey(key));
+    }
+    assertEquals(0, hashMap.size());
+    assertEquals(0, hashMap.getTotalPairCount());
+  }
+
+  @Test
+  @DisplayName("Test probing goes on over tombstones.")
+  public void testProbeOverTombstone() {
+    reset();
+    List<String> keys = buildStringInput("Pair ", globalTestTime);
+    writeSameValue(keys, 1);
+
+    // Remove every other key, the rest must still be found behind the tombstones.
+    for (int i = 0; i < keys.size(); i += 2) {
+      assertTrue(hashMap.remove(keys.get(i)));
+    }
+    for (int i = 0; i < keys.size(); i++) {
+      assertEquals(i % 2 == 1, hashMap.containsKey(keys.get(i)));
+    }
+    assertEquals(globalTestTime / 2, hashMap.size());
+  }
+
+  @Test
+  @DisplayName("Test tombstones are cleaned without growing the table.")
+  public void testTombstoneCleanup() {
+    reset();
+    int capacity = hashMap.getAllBucketSize().length;
+
+    // Put-remove loop only leaves tombstones, so the table should never grow.
+    for (int i = 0; i < globalTestTime * 10; i++) {
+      String key = "Churn " + i;
+      hashMap.put(key, i);
+      assertTrue(hashMap.containsKey(key));
+      assertTrue(hashMap.remove(key));
+    }
+    assertEquals(capacity, hashMap.getAllBucketSize().length);
+    assertEquals(0, hashMap.size());
+  }
+
+  @Test
+  @DisplayName("Test missing keys are not found in the smallest table.")
+  public void testSmallestCapacity() {
+    hashMap = MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.NoSync,
+        CollisionPolicy.LinearProbing, 1, 0.99f);
+
+    // Probing for a missing key must stop even when the table is as small as it gets.
+    for (int i = 0; i < 10; i++) {
+      hashMap.put("Key " + i, i);
+      assertEquals(i, hashMap.get("Key " + i));
+      assertTrue(!hashMap.containsKey("Missing " + i));
+      int computed = i + 1;
+      assertEquals(computed, hashMap.compute("Missing " + i, (k, v) -> v == null ? computed : v));
+      assertTrue(hashMap.remove("Missing " + i));
+    }
+    assertEquals(10, hashMap.size());
+  }
+
+  @Test
+  @DisplayName("Test null key.")
+  public void testNullKey() {
+    reset();
+    hashMap.put(null, 1);
+    assertEquals(hashMap.get(null), 1);
+    assertEquals(1, hashMap.size());
+    assertTrue(hashMap.remove(null));
+    assertTrue(!hashMap.containsKey(null));
+  }
+
+  @Test
+  @DisplayName("Test hash map iterator")
+  public void testHashMapIterator() {
+    reset();
+    List<String> keys = buildStringInput("Pair ", 100);
+    writeSameValue(keys, 1);
+    Set<String> keySet = new HashSet<>();
+
+    for (MapPair<String, Integer> mapPair : hashMap) {
+      assertEquals(mapPair.getV(), 1);
+      keySet.add(mapPair.key);
+    }
+    assertEquals(new HashSet<>(keys), keySet);
+  }
+
+  @Test
+  @DisplayName("Test every thread-safe policy returns a working map.")
+  public void testAllPolicies() {
+    ThreadSafePolicy[] policies = {ThreadSafePolicy.NoSync, ThreadSafePolicy.SyncKeyword,
+        ThreadSafePolicy.ReadWriteLock};
+
+    for (ThreadSafePolicy policy : policies) {
+      hashMap = MyHashMapFactory.newMyHashMapTesting(policy, CollisionPolicy.LinearProbing);
+      List<String> keys = buildStringInput("Pair ", 100);
+      writeSameValue(keys, 1);
+      assertEquals(100, hashMap.size());
+      assertEquals(hashMap.get("Pair 50"), 1);
+    }
+  }
+
+  private void reset() {
+    hashMap.removeAll();
+  }
+
+  private List<String> buildStringInput(String prefix, int count) {
+    List<String> result = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+      result.add(prefix + i);
+    }
+    return result;
+  }
+
+  private void writeSameValue(List<String> keys, int val) {
+    for (String key : keys) {
+      hashMap.put(key, val);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.MyHashMapCacheImpl;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapLoadingCache;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyHashMapLoadingCacheTest {
+  @Test
+  @DisplayName("Test concurrent misses of a key collapse into one load.")
+  public void testSingleFlight() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    AtomicInteger loads = new AtomicInteger();
+    MyHashMapLoadingCache<Integer, String> cache = new MyHashMapLoadingCache<>(
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.Striped), key -> {
+          loads.incrementAndGet();
+          sleep(50);
+          return "Value " + key;
+        }, executor);
+    int threadCount = 16;
+    int keyCount = 4;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+
+    for (int t = 0; t < threadCount; t++) {
+      int id = t;
+      threads.add(new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        int key = id % keyCount;
+        if (id % 2 == 0) {
+          assertEquals("Value " + key, cache.get(key));
+        } else {
+          assertEquals("Value " + key, cache.getAsync(key).join());
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(keyCount, loads.get());
+    assertEquals(keyCount, cache.getLoadCount());
+    assertEquals(keyCount, cache.size());
+    assertEquals("Value 1", cache.getAsync(1).join()); // No load for a present key
+    assertEquals(keyCount, loads.get());
+    executor.shutdown();
+  }
+
+  @Test
+  @DisplayName("Test stale pairs are refreshed on the executor, expired ones are loaded.")
+  public void testRefreshAndExpiry() throws InterruptedException {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    AtomicInteger version = new AtomicInteger();
+    AtomicInteger failures = new AtomicInteger();
+    MyHashMapCacheImpl<Integer, MyHashMapLoadingCache.Entry<Integer>> expiring =
+        MyHashMapFactory.newExpiringMyHashMap();
+    MyHashMapLoadingCache<Integer, Integer> cache = MyHashMapFactory.newLoadingMyHashMap(
+        expiring, key -> {
+          if (failures.getAndDecrement() > 0) {
+            throw new IllegalStateException("Backend down");
+          }
+          return key < 0 ? null : version.incrementAndGet();
+        }, 100, 400, TimeUnit.MILLISECONDS, executor);
+
+    assertEquals((Integer) 1, cache.get(0));
+    sleep(150);
+    assertEquals((Integer) 1, cache.get(0)); // Stale, served while refreshing
+    assertEquals((Integer) 2, waitFor(cache, 0, 2));
+    assertEquals(2, cache.getLoadCount());
+
+    failures.set(1);
+    sleep(150);
+    assertEquals((Integer) 2, cache.get(0)); // Failed refresh keeps the old value.
+    for (int i = 0; i < 100 && cache.getLoadFailureCount() == 0; i++) {
+      sleep(10);
+    }
+    assertEquals((Integer) 2, cache.getIfPresent(0));
+    assertEquals(1, cache.getLoadFailureCount());
+
+    sleep(400);
+    assertNull(cache.getIfPresent(0));
+    assertFalse(cache.containsKey(0));
+    assertEquals((Integer) 3, cache.get(0)); // Expired, loaded again
+    assertEquals((Integer) 4, cache.refresh(0).join());
+
+    assertNull(cache.get(-1));
+    assertFalse(cache.containsKey(-1));
+    failures.set(1);
+    assertThrows(IllegalStateException.class, () -> cache.get(1));
+    assertTrue(cache.getAsync(1).thenApply(v -> v > 0).join());
+    assertThrows(IllegalArgumentException.class, () -> MyHashMapFactory.newLoadingMyHashMap(
+        expiring, key -> key, 2, 1, TimeUnit.SECONDS, executor));
+    executor.shutdown();
+    expiring.close();
+  }
+
+  @Test
+  @DisplayName("Test a loader getting its own key throws instead of waiting for itself.")
+  public void testRecursiveLoad() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    AtomicReference<MyHashMapLoadingCache<Integer, Integer>> self = new AtomicReference<>();
+    MyHashMapTesting<Integer, MyHashMapLoadingCache.Entry<Integer>> hashMap =
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock);
+    MyHashMapLoadingCache<Integer, Integer> cache = new MyHashMapLoadingCache<>(hashMap, key -> {
+      if (key == 10) {
+        return self.get().get(10); // Directly
+      }
+      if (key == 20 || key == 21) {
+        return self.get().get(41 - key); // Through the other key
+      }
+      return key == 0 ? 0 : self.get().get(key - 1) + 1;
+    }, executor);
+    self.set(cache);
+
+    assertEquals((Integer) 5, cache.get(5)); // Nested loads of other keys are fine.
+    assertThrows(IllegalStateException.class, () -> cache.get(10));
+    assertThrows(IllegalStateException.class, () -> cache.get(20));
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> cache.getAsync(10).join());
+    assertTrue(e.getCause() instanceof IllegalStateException);
+
+    // Failed loads are not left in flight.
+    assertNull(cache.getIfPresent(10));
+    assertNull(cache.getIfPresent(21));
+    assertThrows(IllegalStateException.class, () -> cache.get(21));
+    assertEquals(6, cache.getLoadFailureCount()); // Loads of 20 and 21 fail together
+    executor.shutdown();
+  }
+
+  private static Integer waitFor(MyHashMapLoadingCache<Integer, Integer> cache, int key,
+                                 int expected) {
+    for (int i = 0; i < 100 && !((Integer) expected).equals(cache.getIfPresent(key)); i++) {
+      sleep(10);
+    }
+    return cache.getIfPresent(key);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
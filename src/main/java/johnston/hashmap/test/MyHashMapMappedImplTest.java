@@ -0,0 +1,214 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.FsyncPolicy;
+import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapMappedImpl;
+import johnston.hashmap.Serializer;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyHashMapMappedImplTest {
+  private static final ThreadSafePolicy[] POLICIES = {ThreadSafePolicy.NoSync,
+      ThreadSafePolicy.SyncKeyword, ThreadSafePolicy.ReadWriteLock};
+  private static final int CHUNK_SIZE = 1 << 16;
+
+  private int globalTestTime = 10000;
+
+  @Test
+  @DisplayName("Test put(), get(), update and remove() in all policies.")
+  public void testCorrectness() throws IOException {
+    for (ThreadSafePolicy policy : POLICIES) {
+      Path file = tempFile();
+      MyHashMapMappedImpl<String, Integer> hashMap = MyHashMapFactory.newPersistentMyHashMap(
+          policy, file, Serializer.STRING, Serializer.INTEGER, FsyncPolicy.Never);
+
+      for (int i = 0; i < globalTestTime; i++) {
+        hashMap.put("Pair " + i, i);
+      }
+      for (int i = 0; i < globalTestTime; i++) {
+        hashMap.put("Pair " + i, i * 2);
+      }
+      assertEquals(globalTestTime, hashMap.size());
+      assertEquals(globalTestTime, hashMap.getTotalPairCount());
+
+      for (int i = 0; i < globalTestTime; i += 2) {
+        assertTrue(hashMap.remove("Pair " + i));
+      }
+      assertTrue(!hashMap.remove("Pair 0"));
+      for (int i = 0; i < globalTestTime; i++) {
+        assertEquals(i % 2 == 1 ? (Integer) (i * 2) : null, hashMap.get("Pair " + i),
+            policy.toString());
+      }
+
+      Set<String> keys = new HashSet<>();
+      for (MapPair<String, Integer> pair : hashMap) {
+        assertEquals(pair.key, "Pair " + pair.getV() / 2);
+        keys.add(pair.key);
+      }
+      assertEquals(globalTestTime / 2, keys.size());
+
+      hashMap.removeAll();
+      assertTrue(hashMap.isEmpty());
+      hashMap.put("Pair 1", 1);
+      assertEquals((Integer) 1, hashMap.get("Pair 1"));
+      hashMap.close();
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  @DisplayName("Test pairs survive close and reopen, across chunks.")
+  public void testReopen() throws IOException {
+    Path file = tempFile();
+    MyHashMapMappedImpl<Integer, String> hashMap = new MyHashMapMappedImpl<>(file,
+        ThreadSafePolicy.ReadWriteLock, Serializer.INTEGER, Serializer.STRING,
+        FsyncPolicy.Periodic, CHUNK_SIZE);
+
+    for (int i = 0; i < globalTestTime; i++) {
+      hashMap.put(i, "Value " + i);
+    }
+    for (int i = 0; i < globalTestTime; i += 3) {
+      hashMap.remove(i);
+    }
+    int size = hashMap.size();
+    assertTrue(hashMap.getFileSize() > CHUNK_SIZE * 4);
+    hashMap.close();
+    assertThrows(IllegalStateException.class, () -> hashMap.get(1));
+
+    MyHashMapMappedImpl<Integer, String> reopened = new MyHashMapMappedImpl<>(file,
+        ThreadSafePolicy.ReadWriteLock, Serializer.INTEGER, Serializer.STRING,
+        FsyncPolicy.Periodic, CHUNK_SIZE);
+    assertEquals(size, reopened.size());
+    for (int i = 0; i < globalTestTime; i++) {
+      assertEquals(i % 3 == 0 ? null : "Value " + i, reopened.get(i));
+    }
+    reopened.put(globalTestTime, "New");
+    reopened.close();
+    Files.delete(file);
+  }
+
+  @Test
+  @DisplayName("Test a file not closed is recovered on open.")
+  public void testCrashRecovery() throws IOException {
+    Path file = tempFile();
+    MyHashMapMappedImpl<Integer, Integer> crashed = new MyHashMapMappedImpl<>(file,
+        ThreadSafePolicy.NoSync, Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Always,
+        CHUNK_SIZE);
+    for (int i = 0; i < 1000; i++) {
+      crashed.put(i, i);
+    }
+    crashed.remove(0);
+    // No close(), the mapped pages are still in the page cache like after a process crash.
+
+    MyHashMapMappedImpl<Integer, Integer> recovered = new MyHashMapMappedImpl<>(file,
+        ThreadSafePolicy.NoSync, Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Always,
+        CHUNK_SIZE);
+    assertEquals(999, recovered.size());
+    assertEquals(999, recovered.getTotalPairCount());
+    assertNull(recovered.get(0));
+    assertEquals((Integer) 999, recovered.get(999));
+    recovered.close();
+    Files.delete(file);
+  }
+
+  @Test
+  @DisplayName("Test an update cut before its last commit keeps the old or the new value.")
+  public void testCrashDuringUpdate() throws IOException {
+    for (boolean byCompute : new boolean[] {false, true}) {
+      Path file = tempFile();
+      MyHashMapMappedImpl<Integer, Integer> crashed = new MyHashMapMappedImpl<>(file,
+          ThreadSafePolicy.NoSync, Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Always,
+          CHUNK_SIZE);
+      crashed.put(1, 100);
+      crashed.sync();
+      if (byCompute) {
+        crashed.compute(1, (key, old) -> old * 2);
+      } else {
+        crashed.put(1, 200);
+      }
+
+      // Lose the last commit, as if the process died right before it: the metadata slot
+      // with the higher sequence gets a bad CRC, so opening falls back to the other one.
+      try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+        raf.seek(64);
+        long first = raf.readLong();
+        raf.seek(128);
+        long second = raf.readLong();
+        long crcOffset = (first > second ? 64 : 128) + 44;
+        raf.seek(crcOffset);
+        int crc = raf.readInt();
+        raf.seek(crcOffset);
+        raf.writeInt(crc ^ 1);
+      }
+
+      MyHashMapMappedImpl<Integer, Integer> recovered = new MyHashMapMappedImpl<>(file,
+          ThreadSafePolicy.NoSync, Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Always,
+          CHUNK_SIZE);
+      Integer val = recovered.get(1);
+      assertTrue(val != null && (val == 100 || val == 200), String.valueOf(val));
+      assertEquals(1, recovered.size());
+      assertEquals(1, recovered.getTotalPairCount());
+      recovered.close();
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  @DisplayName("Test a corrupted metadata slot falls back to the other one.")
+  public void testTornMetadata() throws IOException {
+    for (int slotOffset : new int[] {64, 128}) {
+      Path file = tempFile();
+      MyHashMapMappedImpl<Integer, Integer> hashMap = new MyHashMapMappedImpl<>(file,
+          ThreadSafePolicy.NoSync, Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Never,
+          CHUNK_SIZE);
+      for (int i = 0; i < 100; i++) {
+        hashMap.put(i, i);
+      }
+      hashMap.close();
+
+      // close() and the last put() commit the same pairs, so either slot is enough.
+      try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+        raf.seek(slotOffset + 20);
+        raf.writeInt(12345);
+      }
+
+      MyHashMapMappedImpl<Integer, Integer> reopened = new MyHashMapMappedImpl<>(file,
+          ThreadSafePolicy.NoSync, Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Never,
+          CHUNK_SIZE);
+      assertEquals(100, reopened.size());
+      assertEquals((Integer) 42, reopened.get(42));
+      reopened.close();
+
+      try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+        raf.seek(64 + 20);
+        raf.writeInt(12345);
+        raf.seek(128 + 20);
+        raf.writeInt(12345);
+      }
+      assertThrows(IllegalStateException.class, () -> new MyHashMapMappedImpl<>(file,
+          ThreadSafePolicy.NoSync, Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Never,
+          CHUNK_SIZE));
+      Files.delete(file);
+    }
+  }
+
+  private static Path tempFile() throws IOException {
+    Path file = Files.createTempFile("mapped-hash-map", ".bin");
+    file.toFile().deleteOnExit();
+    return file;
+  }
+}
@@ -0,0 +1,162 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapOffHeapImpl;
+import johnston.hashmap.Serializer;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyHashMapOffHeapImplTest {
+  private static final ThreadSafePolicy[] POLICIES = {ThreadSafePolicy.NoSync,
+      ThreadSafePolicy.Striped};
+
+  private int globalTestTime = 10000;
+
+  @Test
+  @DisplayName("Test put(), get(), update and remove() in both policies.")
+  public void testCorrectness() {
+    for (ThreadSafePolicy policy : POLICIES) {
+      MyHashMapOffHeapImpl<String, Integer> hashMap =
+          MyHashMapFactory.newOffHeapMyHashMap(policy, Serializer.STRING, Serializer.INTEGER);
+
+      for (int i = 0; i < globalTestTime; i++) {
+        hashMap.put("Pair " + i, i);
+      }
+      for (int i = 0; i < globalTestTime; i++) {
+        hashMap.put("Pair " + i, i * 2);
+      }
+      assertEquals(globalTestTime, hashMap.size());
+      assertEquals(globalTestTime, hashMap.getTotalPairCount());
+
+      for (int i = 0; i < globalTestTime; i += 2) {
+        assertTrue(hashMap.remove("Pair " + i));
+      }
+      assertTrue(!hashMap.remove("Pair 0"));
+      for (int i = 0; i < globalTestTime; i++) {
+        assertEquals(i % 2 == 1 ? (Integer) (i * 2) : null, hashMap.get("Pair " + i),
+            policy.toString());
+      }
+
+      Set<String> keys = new HashSet<>();
+      for (MapPair<String, Integer> pair : hashMap) {
+        assertEquals(pair.key, "Pair " + pair.getV() / 2);
+        keys.add(pair.key);
+      }
+      assertEquals(globalTestTime / 2, keys.size());
+
+      hashMap.removeAll();
+      assertTrue(hashMap.isEmpty());
+      hashMap.close();
+    }
+  }
+
+  @Test
+  @DisplayName("Test garbage records are compacted away.")
+  public void testCompaction() {
+    MyHashMapOffHeapImpl<Integer, String> hashMap = new MyHashMapOffHeapImpl<>(
+        ThreadSafePolicy.NoSync, Serializer.INTEGER, Serializer.STRING, 16, 1, 4096);
+
+    for (int round = 0; round < 100; round++) {
+      for (int i = 0; i < 100; i++) {
+        hashMap.put(i, "Value " + round);
+      }
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals("Value 99", hashMap.get(i));
+    }
+    // 100 live records of about 24 bytes, so 10000 puts must not keep 10000 records.
+    assertTrue(hashMap.getOffHeapBytes() < 20 * 4096, "Off-heap " + hashMap.getOffHeapBytes());
+    hashMap.close();
+  }
+
+  @Test
+  @DisplayName("Test heap usage stays flat while pairs go off-heap.")
+  public void testHeapStaysFlat() {
+    MyHashMapOffHeapImpl<Integer, byte[]> hashMap = MyHashMapFactory.newOffHeapMyHashMap(
+        ThreadSafePolicy.Striped, Serializer.INTEGER, Serializer.BYTES);
+    byte[] value = new byte[100];
+
+    hashMap.put(-1, value); // Load classes first.
+    long heapBefore = usedHeap();
+    for (int i = 0; i < globalTestTime * 20; i++) {
+      hashMap.put(i, value);
+    }
+    long heapGrowth = usedHeap() - heapBefore;
+
+    // 200000 pairs of over 100 bytes, but only the slab list grows on heap.
+    assertTrue(hashMap.getOffHeapBytes() > 20_000_000);
+    assertTrue(heapGrowth < 1_000_000, "Heap growth " + heapGrowth);
+    assertEquals(100, hashMap.get(globalTestTime).length);
+    hashMap.close();
+  }
+
+  @Test
+  @DisplayName("Test hash map can't be used after close().")
+  public void testClose() {
+    MyHashMapOffHeapImpl<String, String> hashMap =
+        MyHashMapFactory.newOffHeapMyHashMap(ThreadSafePolicy.NoSync, Serializer.STRING,
+            Serializer.STRING);
+    hashMap.put("key", "val");
+    hashMap.close();
+    hashMap.close();
+
+    assertEquals(0, hashMap.getOffHeapBytes());
+    assertThrows(IllegalStateException.class, () -> hashMap.get("key"));
+    assertThrows(IllegalStateException.class, () -> hashMap.put("key", "val"));
+    assertThrows(IllegalArgumentException.class, () -> MyHashMapFactory.newOffHeapMyHashMap(
+        ThreadSafePolicy.LockFree, Serializer.STRING, Serializer.STRING));
+  }
+
+  @Test
+  @DisplayName("Test write data racing in Striped policy.")
+  public void testWriteDataRace() throws InterruptedException {
+    MyHashMapOffHeapImpl<Integer, Integer> hashMap = MyHashMapFactory.newOffHeapMyHashMap(
+        ThreadSafePolicy.Striped, Serializer.INTEGER, Serializer.INTEGER);
+    int threadCount = 8;
+    List<Thread> threads = new ArrayList<>();
+
+    for (int t = 0; t < threadCount; t++) {
+      int offset = t * globalTestTime;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < globalTestTime; i++) {
+          hashMap.put(offset + i, i);
+          hashMap.get(offset + i / 2);
+        }
+        for (int i = 0; i < globalTestTime; i += 2) {
+          hashMap.remove(offset + i);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(threadCount * globalTestTime / 2, hashMap.size());
+    for (int key = 0; key < threadCount * globalTestTime; key++) {
+      assertEquals(key % 2 == 1 ? (Integer) (key % globalTestTime) : null, hashMap.get(key));
+    }
+    hashMap.close();
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
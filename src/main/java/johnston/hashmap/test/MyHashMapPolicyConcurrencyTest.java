@@ -0,0 +1,223 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrency test shared by the policies that let threads write at the same time. Each test
+ * runs once for every policy, and the checks only one policy needs stay in its own test class.
+ * <p>
+ * -> Striped: threads write to different segments at the same time.
+ * -> OptimisticRead: many optimistic reads fail validation and fall back to read lock.
+ * -> LockFree: reads and writes never take a lock, even during rehashing.
+ * -> Cuckoo: high load factor keeps writes moving keys along cuckoo paths.
+ */
+public class MyHashMapPolicyConcurrencyTest {
+  private static final ThreadSafePolicy[] POLICIES = {ThreadSafePolicy.Striped,
+      ThreadSafePolicy.OptimisticRead, ThreadSafePolicy.LockFree, ThreadSafePolicy.Cuckoo};
+
+  private MyHashMapTesting<String, Integer> hashMap;
+  private int globalTestTime;
+  private Random random;
+
+  @BeforeEach
+  public void init() {
+    globalTestTime = 100000;
+    random = new Random();
+  }
+
+  @Test
+  @DisplayName("Test Junit functionality.")
+  public void junitSanityCheck() {
+    for (ThreadSafePolicy policy : POLICIES) {
+      hashMap = newHashMap(policy);
+      assertTrue((hashMap != null), "Test object init.");
+    }
+  }
+
+  @Test
+  @DisplayName("Test write data racing.")
+  public void writeDataRace() {
+    int threadCount = 10;
+    int testTime = globalTestTime;
+
+    class WriteThread extends Thread {
+      public void run() {
+        for (int i = 0; i < testTime; i++) {
+          String key = String.valueOf(random.nextDouble()); // Generates unique key.
+          hashMap.put(key, i);
+          assertTrue(hashMap.containsKey(key));
+        }
+        System.out.println("Write thread (id: " + this.getId() + ") finished.");
+      }
+    }
+
+    for (ThreadSafePolicy policy : POLICIES) {
+      hashMap = newHashMap(policy);
+      Thread[] threadPool = new Thread[threadCount];
+      for (int i = 0; i < threadCount; i++) {
+        threadPool[i] = new WriteThread();
+      }
+      startAndJoin(threadPool);
+
+      assertEquals(hashMap.getTotalPairCount(), hashMap.size(), policy.name());
+      assertEquals(testTime * threadCount, hashMap.size(), policy.name());
+    }
+  }
+
+  @Test
+  @DisplayName("Test delete data racing.")
+  public void deleteDataRace() {
+    int threadCount = 10;
+    int testTime = globalTestTime;
+
+    class DeletionThread extends Thread {
+      public void run() {
+        String prefix = String.valueOf(random.nextInt());
+        for (int i = 0; i < testTime; i++) {
+          String key = prefix + " " + i;
+          hashMap.put(key, 1);
+          assertTrue(hashMap.containsKey(key));
+          hashMap.remove(key);
+          assertTrue(!hashMap.containsKey(key));
+        }
+        System.out.println("Deletion thread (id: " + this.getId() + ") finished.");
+      }
+    }
+
+    for (ThreadSafePolicy policy : POLICIES) {
+      hashMap = newHashMap(policy);
+      Thread[] threadPool = new Thread[threadCount];
+      for (int i = 0; i < threadCount; i++) {
+        threadPool[i] = new DeletionThread();
+      }
+      startAndJoin(threadPool);
+
+      assertEquals(0, hashMap.size(), policy.name());
+      assertEquals(0, hashMap.getTotalPairCount(), policy.name());
+    }
+  }
+
+  private volatile boolean writeFinished = false;
+  private volatile boolean missing = false;
+
+  @Test
+  @DisplayName("Test read threads during rehashing.")
+  public void testReadDuringRehash() {
+    int readThreadCount = 4;
+    List<String> oldKeys = buildStringInput("Old ", 1000);
+
+    // Keeps the table growing, so reads race with rehashing.
+    class WriteThread extends Thread {
+      public void run() {
+        for (int i = 0; i < globalTestTime * 5; i++) {
+          hashMap.put("New " + i, 2);
+        }
+        writeFinished = true;
+      }
+    }
+
+    class ReadThread extends Thread {
+      public void run() {
+        while (!writeFinished && !missing) {
+          for (String key : oldKeys) {
+            Integer val = hashMap.get(key);
+            if (val == null || val != 1) {
+              missing = true;
+              System.out.println(key + " !!!!!!!!!!!!!!!!");
+              break;
+            }
+          }
+        }
+      }
+    }
+
+    for (ThreadSafePolicy policy : POLICIES) {
+      hashMap = newHashMap(policy);
+      writeFinished = false;
+      missing = false;
+      for (String key : oldKeys) {
+        hashMap.put(key, 1);
+      }
+
+      Thread[] threadPool = new Thread[readThreadCount + 1];
+      for (int i = 0; i < readThreadCount; i++) {
+        threadPool[i] = new ReadThread();
+      }
+      threadPool[readThreadCount] = new WriteThread();
+      startAndJoin(threadPool);
+
+      assertTrue(!missing, policy.name());
+      assertEquals(oldKeys.size() + globalTestTime * 5, hashMap.size(), policy.name());
+    }
+  }
+
+  @Test
+  @DisplayName("Test hash map iterator")
+  public void testHashMapIterator() {
+    List<String> keys = buildStringInput("Pair ", 1000);
+
+    for (ThreadSafePolicy policy : POLICIES) {
+      hashMap = newHashMap(policy);
+      for (String key : keys) {
+        hashMap.put(key, 1);
+      }
+      Set<String> keySet = new HashSet<>();
+
+      for (MapPair<String, Integer> mapPair : hashMap) {
+        assertEquals(mapPair.getV(), 1);
+        keySet.add(mapPair.key);
+      }
+      assertEquals(new HashSet<>(keys), keySet, policy.name());
+    }
+  }
+
+  // Small tables make every policy rehash many times during the tests.
+  private MyHashMapTesting<String, Integer> newHashMap(ThreadSafePolicy policy) {
+    switch (policy) {
+      case Striped:
+        return MyHashMapFactory.newMyHashMapTesting(policy, 16, 0.5f, 16);
+      case Cuckoo:
+        return MyHashMapFactory.newMyHashMapTesting(policy, 2, 0.95f);
+      default:
+        return MyHashMapFactory.newMyHashMapTesting(policy, 2, 0.5f);
+    }
+  }
+
+  private void startAndJoin(Thread[] threadPool) {
+    for (Thread thread : threadPool) {
+      thread.start();
+    }
+
+    // Let the main thread waits until all working threads finished.
+    try {
+      for (Thread thread : threadPool) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+    }
+  }
+
+  private List<String> buildStringInput(String prefix, int count) {
+    List<String> result = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+      result.add(prefix + i);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,145 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.CollisionPolicy;
+import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyHashMapRobinHoodImplCorrectnessTest {
+  private MyHashMapTesting<String, Integer> hashMap;
+  private int globalTestTime;
+  private Random random;
+
+  @BeforeEach
+  public void init() {
+    // Use factory to create an object for testing.
+    // Select NoSync, SyncKeyword, or ReadWriteLock.
+    hashMap = MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.NoSync,
+        CollisionPolicy.RobinHood, 16, 0.5f);
+    globalTestTime = 1000;
+    random = new Random();
+  }
+
+  @Test
+  @DisplayName("Test Junit functionality.")
+  public void junitSanityCheck() {
+    assertTrue(true);
+    assertTrue((hashMap != null), "Test object init.");
+  }
+
+  @Test
+  @DisplayName("Test hash map put(), get(), update and remove.")
+  public void testPutGetRemove() {
+    reset();
+    List<String> keys = buildStringInput("Pair ", globalTestTime);
+    writeSameValue(keys, 1);
+    writeSameValue(keys, 2);
+    assertEquals(globalTestTime, hashMap.size());
+    assertEquals(globalTestTime, hashMap.getTotalPairCount());
+
+    for (String key : keys) {
+      assertEquals(hashMap.get(key), 2);
+    }
+    for (String key : buildStringInput("Bad ", globalTestTime)) {
+      assertTrue(!hashMap.containsKey(key));
+    }
+
+    // Backward shift must keep every remaining key reachable.
+    for (int i = 0; i < keys.size(); i += 2) {
+      assertTrue(hashMap.remove(keys.get(i)));
+    }
+    for (int i = 0; i < keys.size(); i++) {
+      assertEquals(i % 2 == 1, hashMap.containsKey(keys.get(i)));
+    }
+    assertEquals(globalTestTime / 2, hashMap.size());
+    assertEquals(globalTestTime / 2, hashMap.getTotalPairCount());
+  }
+
+  @Test
+  @DisplayName("Test probe distance histogram after put-remove churn.")
+  public void testProbeDistanceAfterChurn() {
+    reset();
+    List<String> keys = buildStringInput("Pair ", globalTestTime);
+    writeSameValue(keys, 1);
+    int[] before = hashMap.getAllBucketSize();
+
+    // Same loop as the deleteDataRace test, on top of a filled table.
+    for (int i = 0; i < globalTestTime * 100; i++) {
+      String key = "Churn " + random.nextInt();
+      hashMap.put(key, 1);
+      assertTrue(hashMap.containsKey(key));
+      hashMap.remove(key);
+      assertTrue(!hashMap.containsKey(key));
+    }
+    int[] after = hashMap.getAllBucketSize();
+
+    // The histogram counts every pair once, and no tombstones are left behind.
+    int count = 0;
+    for (int pairs : after) {
+      count += pairs;
+    }
+    assertEquals(globalTestTime, count);
+    assertEquals(globalTestTime, hashMap.getTotalPairCount());
+    assertTrue(after.length <= before.length + 2, "Probe distance tail grows after churn.");
+    printHistogram(after);
+  }
+
+  @Test
+  @DisplayName("Test hash map iterator")
+  public void testHashMapIterator() {
+    reset();
+    List<String> keys = buildStringInput("Pair ", 100);
+    writeSameValue(keys, 1);
+    hashMap.put(null, 1);
+    Set<String> keySet = new HashSet<>();
+
+    for (MapPair<String, Integer> mapPair : hashMap) {
+      assertEquals(mapPair.getV(), 1);
+      keySet.add(mapPair.key);
+    }
+    keys.add(null);
+    assertEquals(new HashSet<>(keys), keySet);
+  }
+
+  private void reset() {
+    hashMap.removeAll();
+  }
+
+  /**
+   * This method is to print the probe distance histogram to show if the tail is flat.
+   */
+  private void printHistogram(int[] histogram) {
+    for (int i = 0; i < histogram.length; i++) {
+      System.out.print(i + ":" + histogram[i] + ",");
+    }
+    System.out.println();
+  }
+
+  private List<String> buildStringInput(String prefix, int count) {
+    List<String> result = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+      result.add(prefix + i);
+    }
+    return result;
+  }
+
+  private void writeSameValue(List<String> keys, int val) {
+    for (String key : keys) {
+      hashMap.put(key, val);
+    }
+  }
+}
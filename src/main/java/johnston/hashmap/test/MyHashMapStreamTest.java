@@ -0,0 +1,135 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.CollisionPolicy;
+import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.RehashPolicy;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class MyHashMapStreamTest {
+  private int globalTestTime = 100000;
+
+  @Test
+  @DisplayName("Test stream() and parallelStream() see every pair once in all hash maps.")
+  public void testStreamCorrectness() {
+    long expectedSum = (long) globalTestTime * (globalTestTime - 1) / 2;
+
+    for (MyHashMapTesting<Integer, Integer> hashMap : allHashMaps()) {
+      String name = hashMap.getClass().getSimpleName();
+      for (int i = 0; i < globalTestTime; i++) {
+        hashMap.put(i, i);
+      }
+
+      assertEquals(expectedSum, hashMap.stream().mapToLong(MapPair::getV).sum(), name);
+      assertEquals(expectedSum, hashMap.parallelStream().mapToLong(MapPair::getV).sum(), name);
+      assertEquals(globalTestTime / 2,
+          hashMap.parallelStream().filter(pair -> pair.getV() % 2 == 0).count(), name);
+      Set<Integer> keys = hashMap.parallelStream().map(pair -> pair.key)
+          .collect(Collectors.toSet());
+      assertEquals(globalTestTime, keys.size(), name);
+    }
+  }
+
+  @Test
+  @DisplayName("Test splits of the spliterator cover all pairs, mixing tryAdvance().")
+  public void testSpliteratorSplit() {
+    for (MyHashMapTesting<Integer, Integer> hashMap : allHashMaps()) {
+      String name = hashMap.getClass().getSimpleName();
+      for (int i = 0; i < globalTestTime; i++) {
+        hashMap.put(i, i);
+      }
+
+      List<Spliterator<MapPair>> splits = new ArrayList<>();
+      splits.add(hashMap.spliterator());
+      for (int round = 0; round < 4; round++) {
+        for (int i = splits.size() - 1; i >= 0; i--) {
+          Spliterator<MapPair> prefix = splits.get(i).trySplit();
+          assertNotNull(prefix, name);
+          splits.add(prefix);
+        }
+      }
+      assertEquals(16, splits.size());
+
+      long[] count = new long[1];
+      for (Spliterator<MapPair> split : splits) {
+        split.tryAdvance(pair -> count[0]++);
+        split.forEachRemaining(pair -> count[0]++);
+      }
+      assertEquals(globalTestTime, count[0], name);
+    }
+  }
+
+  @Test
+  @DisplayName("Test parallel streams see stable pairs while the hash map grows.")
+  public void testStreamDataRace() throws InterruptedException {
+    List<MyHashMapTesting<Integer, Integer>> hashMaps = new ArrayList<>();
+    for (ThreadSafePolicy policy : new ThreadSafePolicy[] {ThreadSafePolicy.SyncKeyword,
+        ThreadSafePolicy.ReadWriteLock, ThreadSafePolicy.OptimisticRead,
+        ThreadSafePolicy.Striped, ThreadSafePolicy.LockFree}) {
+      hashMaps.add(MyHashMapFactory.newMyHashMapTesting(policy));
+    }
+    for (CollisionPolicy collision : new CollisionPolicy[] {CollisionPolicy.LinearProbing,
+        CollisionPolicy.RobinHood}) {
+      hashMaps.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.SyncKeyword,
+          collision));
+      hashMaps.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock,
+          collision));
+    }
+
+    for (MyHashMapTesting<Integer, Integer> hashMap : hashMaps) {
+      int stableCount = globalTestTime / 10;
+      for (int i = 0; i < stableCount; i++) {
+        hashMap.put(i, 1);
+      }
+      AtomicBoolean done = new AtomicBoolean();
+      Thread writer = new Thread(() -> {
+        for (int i = stableCount; i < globalTestTime * 5 && !done.get(); i++) {
+          hashMap.put(i, -1);
+          if (i % 2 == 0) {
+            hashMap.remove(i);
+          }
+        }
+      });
+
+      writer.start();
+      for (int round = 0; round < 20; round++) {
+        long stableSum = hashMap.parallelStream().filter(pair -> pair.getV() > 0)
+            .mapToLong(MapPair::getV).sum();
+        assertEquals(stableCount, stableSum, hashMap.getClass().getSimpleName());
+      }
+      done.set(true);
+      writer.join();
+    }
+  }
+
+  private static List<MyHashMapTesting<Integer, Integer>> allHashMaps() {
+    List<MyHashMapTesting<Integer, Integer>> result = new ArrayList<>();
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      result.add(MyHashMapFactory.newMyHashMapTesting(policy));
+    }
+    for (CollisionPolicy collision : new CollisionPolicy[] {CollisionPolicy.LinearProbing,
+        CollisionPolicy.RobinHood}) {
+      result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.NoSync, collision));
+      result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock,
+          collision));
+    }
+    result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.NoSync,
+        RehashPolicy.Incremental));
+    result.add(MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock,
+        RehashPolicy.Incremental));
+    return result;
+  }
+}
@@ -0,0 +1,142 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrency test for the Striped policy, the checks the other policies in
+ * MyHashMapPolicyConcurrencyTest do not share: segments rehash on their own, and
+ * addAndDelete() is still atomic across segments.
+ */
+public class MyHashMapStripedImplConcurrencyTest {
+  private MyHashMapTesting<String, Integer> hashMap;
+  private int globalTestTime;
+  private Random random;
+  private int concurrencyLevel;
+
+  @BeforeEach
+  public void init() {
+    concurrencyLevel = 16;
+    hashMap = MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.Striped, 16, 0.5f,
+        concurrencyLevel);
+    globalTestTime = 1000;
+    random = new Random();
+  }
+
+  @Test
+  @DisplayName("Test Junit functionality.")
+  public void junitSanityCheck() {
+    assertTrue(true);
+    assertTrue((hashMap != null), "Test object init.");
+  }
+
+  @Test
+  @DisplayName("Test each segment rehashes on its own.")
+  public void testSegmentRehash() {
+    reset();
+    int testTime = 1000;
+
+    for (int i = 0; i < testTime; i++) {
+      hashMap.put("Pair " + i, i);
+    }
+
+    for (int i = 0; i < testTime; i++) {
+      assertEquals(i, hashMap.get("Pair " + i));
+    }
+
+    // Segments start with 2 buckets each, so all of them must have grown.
+    assertTrue(hashMap.getAllBucketSize().length > concurrencyLevel * 2);
+    assertEquals(testTime, hashMap.size());
+    assertEquals(testTime, hashMap.getTotalPairCount());
+
+    Set<String> keySet = new HashSet<>();
+    for (MapPair<String, Integer> mapPair : hashMap) {
+      keySet.add(mapPair.key);
+    }
+    assertEquals(testTime, keySet.size());
+  }
+
+  private int finishedThread = 0;
+  private boolean diff = false;
+
+  @Test
+  @DisplayName("Test read-write data racing.")
+  public void testReadWriteDataRace() {
+    reset();
+    int testTime = globalTestTime * 10;
+    int threadCount = 10;
+
+    class WriteDeleteThread extends Thread {
+      public void run() {
+        for (int i = 0; i < testTime; i++) {
+          hashMap.addAndDelete(String.valueOf(random.nextDouble()), 1);
+        }
+        System.out.println("WriteDeleteThread thread (id: " + this.getId() + ") finished.");
+        synchronized (MyHashMapStripedImplConcurrencyTest.this) {
+          finishedThread++;
+        }
+      }
+    }
+
+    Thread readThread = new Thread() {
+      public void run() {
+        while (finishedThread != threadCount) {
+          int size = hashMap.size();
+          if (size < 0 || size > 1) {
+            diff = true;
+            System.out.println(size + " !!!!!!!!!!!!!!!!");
+            break;
+          }
+        }
+      }
+    };
+
+    readThread.start();
+    runAll(threadCount, WriteDeleteThread::new);
+
+    try {
+      readThread.join();
+    } catch (InterruptedException e) {
+    }
+    assertTrue(!diff);
+  }
+
+  private void reset() {
+    hashMap.removeAll();
+  }
+
+  private interface ThreadSupplier {
+    Thread get();
+  }
+
+  // Start all threads and let the main thread wait until all working threads finished.
+  private void runAll(int threadCount, ThreadSupplier supplier) {
+    Thread[] threadPool = new Thread[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      threadPool[i] = supplier.get();
+    }
+
+    for (Thread thread : threadPool) {
+      thread.start();
+    }
+
+    try {
+      for (Thread thread : threadPool) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.MapPair;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapTesting;
+import johnston.hashmap.MyHashMapTreeBucket;
+import johnston.hashmap.ThreadSafePolicy;
+import johnston.linkedlist.MyLinkedListBasicImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Correctness test for tree buckets. All keys have the same hash code, so they all land in
+ * one bucket and the bucket has to be a tree to stay fast.
+ */
+public class MyHashMapTreeBucketTest {
+  private static final ThreadSafePolicy[] POLICIES = {ThreadSafePolicy.NoSync,
+      ThreadSafePolicy.SyncKeyword, ThreadSafePolicy.ReadWriteLock, ThreadSafePolicy.Striped,
+      ThreadSafePolicy.OptimisticRead};
+
+  private int globalTestTime = 1000;
+
+  /**
+   * Comparable key with a constant hash code.
+   */
+  static class CollidingKey implements Comparable<CollidingKey> {
+    final int id;
+
+    CollidingKey(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      return 42;
+    }
+
+    @Override
+    public int compareTo(CollidingKey o) {
+      return Integer.compare(id, o.id);
+    }
+  }
+
+  /**
+   * Key with a constant hash code that can't be ordered.
+   */
+  static class PlainCollidingKey {
+    final int id;
+
+    PlainCollidingKey(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof PlainCollidingKey && ((PlainCollidingKey) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      return 42;
+    }
+  }
+
+  @Test
+  @DisplayName("Test colliding keys put(), get() and remove() in all chaining hash maps.")
+  public void testCollidingKeys() {
+    for (ThreadSafePolicy policy : POLICIES) {
+      MyHashMapTesting<CollidingKey, Integer> hashMap =
+          MyHashMapFactory.newMyHashMapTesting(policy);
+
+      for (int i = 0; i < globalTestTime; i++) {
+        hashMap.put(new CollidingKey(i), i);
+      }
+      for (int i = 0; i < globalTestTime; i++) {
+        hashMap.put(new CollidingKey(i), i * 2);
+      }
+      assertEquals(globalTestTime, hashMap.size());
+      assertEquals(globalTestTime, hashMap.getTotalPairCount());
+
+      for (int i = 0; i < globalTestTime; i++) {
+        assertEquals(i * 2, hashMap.get(new CollidingKey(i)));
+      }
+      assertTrue(!hashMap.containsKey(new CollidingKey(-1)));
+
+      for (int i = 0; i < globalTestTime; i += 2) {
+        assertTrue(hashMap.remove(new CollidingKey(i)));
+      }
+      assertTrue(!hashMap.remove(new CollidingKey(0)));
+      for (int i = 0; i < globalTestTime; i++) {
+        assertEquals(i % 2 == 1, hashMap.containsKey(new CollidingKey(i)), policy.toString());
+      }
+      assertEquals(globalTestTime / 2, hashMap.size());
+
+      // Shrink below the untreeify threshold, the rest must still be found.
+      for (int i = 1; i < globalTestTime - 6; i += 2) {
+        assertTrue(hashMap.remove(new CollidingKey(i)));
+      }
+      assertEquals(3, hashMap.size());
+      for (int i = globalTestTime - 5; i < globalTestTime; i += 2) {
+        assertEquals(i * 2, hashMap.get(new CollidingKey(i)));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Test tree bucket stays balanced and keeps every pair.")
+  public void testTreeBucket() {
+    MyHashMapTreeBucket bucket = new MyHashMapTreeBucket();
+
+    for (int i = 0; i < globalTestTime; i++) {
+      bucket.addFirst(new MapPair<>(new CollidingKey(i), i));
+    }
+    assertEquals(globalTestTime, bucket.size());
+    // AVL tree height is below 1.45 * log2(n + 2).
+    assertTrue(bucket.getHeight() <= 15, "Tree height " + bucket.getHeight());
+
+    for (int i = 0; i < globalTestTime; i += 3) {
+      assertTrue(bucket.remove(new MapPair<>(new CollidingKey(i), null)));
+    }
+    assertTrue(bucket.getHeight() <= 15, "Tree height " + bucket.getHeight());
+
+    Set<Integer> values = new HashSet<>();
+    for (MapPair pair : bucket) {
+      values.add((Integer) pair.getV());
+    }
+    assertEquals(bucket.size(), values.size());
+    for (int i = 0; i < globalTestTime; i++) {
+      assertEquals(i % 3 != 0, values.contains(i));
+      assertEquals(i % 3 != 0, bucket.contains(new MapPair<>(new CollidingKey(i), null)));
+    }
+  }
+
+  @Test
+  @DisplayName("Test keys that can't be ordered share a tree node.")
+  public void testNotComparableKeys() {
+    MyHashMapTreeBucket bucket = new MyHashMapTreeBucket(new MyLinkedListBasicImpl<>());
+
+    for (int i = 0; i < 100; i++) {
+      bucket.addFirst(new MapPair<>(new PlainCollidingKey(i), i));
+    }
+    assertEquals(1, bucket.getHeight());
+
+    for (int i = 0; i < 100; i += 2) {
+      assertTrue(bucket.remove(new MapPair<>(new PlainCollidingKey(i), null)));
+    }
+    for (int i = 0; i < 100; i++) {
+      MapPair pair = bucket.get(new MapPair<>(new PlainCollidingKey(i), null));
+      assertEquals(i % 2 == 1 ? (Object) i : null, pair == null ? null : pair.getV());
+    }
+    assertEquals(50, bucket.size());
+  }
+
+  @Test
+  @DisplayName("Test colliding keys of different classes are found and never duplicated.")
+  public void testMixedClassKeys() {
+    for (ThreadSafePolicy policy : POLICIES) {
+      MyHashMapTesting<Object, Integer> hashMap = MyHashMapFactory.newMyHashMapTesting(policy);
+      List<Object> keys = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        keys.add(new CollidingKey(i));
+        if (i == 8) { // In the tree already, later puts rotate it.
+          keys.add(42); // Integer.hashCode() is 42 too
+          keys.add(new PlainCollidingKey(0));
+        }
+      }
+      for (int i = 1; i < 4; i++) {
+        keys.add(new PlainCollidingKey(i));
+      }
+      keys.add("*"); // So is "*".hashCode()
+
+      for (int i = 0; i < keys.size(); i++) {
+        hashMap.put(keys.get(i), i);
+      }
+      for (int i = 0; i < keys.size(); i++) {
+        hashMap.put(keys.get(i), i * 2);
+      }
+      assertEquals(keys.size(), hashMap.size(), policy.toString());
+      assertEquals(keys.size(), hashMap.getTotalPairCount(), policy.toString());
+      for (int i = 0; i < keys.size(); i++) {
+        assertEquals(i * 2, hashMap.get(keys.get(i)), policy + " " + keys.get(i));
+      }
+      assertEquals(keys.size() * 2 - 2, hashMap.get(new String("*")));
+
+      assertTrue(hashMap.remove(42));
+      assertTrue(!hashMap.containsKey(42));
+      assertTrue(hashMap.remove(new PlainCollidingKey(2)));
+      assertEquals(keys.size() - 2, hashMap.size());
+      for (int i = 0; i < 16; i++) {
+        int index = keys.indexOf(new CollidingKey(i));
+        assertEquals(index * 2, hashMap.get(new CollidingKey(i)), policy.toString());
+      }
+    }
+  }
+}
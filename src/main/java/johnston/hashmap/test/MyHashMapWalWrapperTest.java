@@ -0,0 +1,263 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.FsyncPolicy;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.MyHashMapWalWrapper;
+import johnston.hashmap.Serializer;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyHashMapWalWrapperTest {
+  private int globalTestTime = 10000;
+
+  @Test
+  @DisplayName("Test pairs are replayed after close in all fsync policies.")
+  public void testReplay() throws IOException {
+    for (FsyncPolicy fsyncPolicy : FsyncPolicy.values()) {
+      Path directory = Files.createTempDirectory("wal");
+      MyHashMapWalWrapper<Integer, String> hashMap = newDurableMap(directory, fsyncPolicy);
+
+      hashMap.put(-1, "Cleared");
+      hashMap.removeAll();
+      for (int i = 0; i < 1000; i++) {
+        hashMap.put(i, "Value " + i);
+      }
+      for (int i = 0; i < 1000; i += 2) {
+        assertTrue(hashMap.remove(i));
+      }
+      assertTrue(!hashMap.remove(0));
+      hashMap.close();
+      assertThrows(IllegalStateException.class, () -> hashMap.put(1, "Closed"));
+
+      MyHashMapWalWrapper<Integer, String> replayed = newDurableMap(directory, fsyncPolicy);
+      assertEquals(500, replayed.size(), fsyncPolicy.toString());
+      assertNull(replayed.get(-1));
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(i % 2 == 1 ? "Value " + i : null, replayed.get(i));
+      }
+      replayed.close();
+      deleteDirectory(directory);
+    }
+  }
+
+  @Test
+  @DisplayName("Test a torn record at the log end is dropped on replay.")
+  public void testTornRecord() throws IOException {
+    Path directory = Files.createTempDirectory("wal");
+    MyHashMapWalWrapper<Integer, String> hashMap = newDurableMap(directory,
+        FsyncPolicy.Always);
+    for (int i = 0; i < 100; i++) {
+      hashMap.put(i, "Value " + i);
+    }
+    // No close(), then a crash while writing the next record.
+    Path log;
+    try (Stream<Path> files = Files.list(directory)) {
+      log = files.filter(file -> file.toString().endsWith(".log")).findFirst().get();
+    }
+    Files.write(log, new byte[] {0, 0, 0, 30, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    MyHashMapWalWrapper<Integer, String> replayed = newDurableMap(directory,
+        FsyncPolicy.Always);
+    assertEquals(100, replayed.size());
+    assertEquals("Value 99", replayed.get(99));
+    replayed.put(100, "Value 100");
+    replayed.close();
+    deleteDirectory(directory);
+  }
+
+  @Test
+  @DisplayName("Test a failing serializer leaves no record, so later records are replayed.")
+  public void testSerializerFailure() throws IOException {
+    Path directory = Files.createTempDirectory("wal");
+    MyHashMapWalWrapper<Integer, Integer> hashMap = newIntegerMap(directory);
+    hashMap.put(1, 1);
+    assertThrows(NullPointerException.class, () -> hashMap.put(2, null));
+    assertThrows(NullPointerException.class, () -> hashMap.compute(4, (key, old) -> -1));
+    hashMap.put(3, 3);
+    hashMap.close();
+    assertNull(hashMap.get(2));
+    assertEquals((Integer) 1, hashMap.get(1));
+
+    MyHashMapWalWrapper<Integer, Integer> replayed = newIntegerMap(directory);
+    assertEquals(2, replayed.size());
+    assertEquals((Integer) 1, replayed.get(1));
+    assertNull(replayed.get(2));
+    assertEquals((Integer) 3, replayed.get(3));
+    replayed.close();
+    deleteDirectory(directory);
+  }
+
+  @Test
+  @DisplayName("Test a failed log write is never reported durable, and fails later writes.")
+  public void testWriteFailure() throws IOException {
+    Path full = Paths.get("/dev/full"); // Every write to it fails with no space left.
+    if (!Files.exists(full)) {
+      return;
+    }
+    Path directory = Files.createTempDirectory("wal");
+    MyHashMapWalWrapper<Integer, String> hashMap = new MyHashMapWalWrapper<>(
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock), directory,
+        Serializer.INTEGER, Serializer.STRING, FsyncPolicy.Periodic, 1);
+    Files.createSymbolicLink(directory.resolve("wal-1.log"), full);
+
+    hashMap.put(1, "Value 1");
+    hashMap.sync();
+    hashMap.put(2, "Value 2"); // Compaction rolls the log over to the full device.
+    hashMap.put(3, "Value 3");
+    assertThrows(UncheckedIOException.class, hashMap::sync);
+    assertThrows(UncheckedIOException.class, hashMap::sync); // Not durable on a retry either
+    assertThrows(UncheckedIOException.class, () -> hashMap.put(4, "Value 4"));
+    assertThrows(UncheckedIOException.class, () -> hashMap.remove(1));
+    assertNull(hashMap.get(4));
+    assertEquals("Value 1", hashMap.get(1));
+    assertThrows(UncheckedIOException.class, hashMap::close);
+
+    Files.delete(directory.resolve("wal-1.log"));
+    MyHashMapWalWrapper<Integer, String> replayed = newDurableMap(directory,
+        FsyncPolicy.Always);
+    assertEquals(2, replayed.size());
+    assertEquals("Value 2", replayed.get(2));
+    replayed.close();
+    deleteDirectory(directory);
+  }
+
+  @Test
+  @DisplayName("Test logs are compacted into a snapshot.")
+  public void testCompaction() throws IOException {
+    Path directory = Files.createTempDirectory("wal");
+    MyHashMapWalWrapper<Integer, String> hashMap = new MyHashMapWalWrapper<>(
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock), directory,
+        Serializer.INTEGER, Serializer.STRING, FsyncPolicy.Never, 1 << 16);
+
+    for (int round = 0; round < 100; round++) {
+      for (int i = 0; i < 100; i++) {
+        hashMap.put(i, "Value " + round);
+      }
+      hashMap.sync();
+    }
+    hashMap.remove(0);
+    hashMap.close();
+
+    // 10000 records of about 30 bytes, but only 99 live pairs.
+    assertTrue(Files.exists(directory.resolve("snapshot")));
+    assertTrue(directorySize(directory) < 3 * (1 << 16), "Size " + directorySize(directory));
+
+    MyHashMapWalWrapper<Integer, String> replayed = newDurableMap(directory,
+        FsyncPolicy.Never);
+    assertEquals(99, replayed.size());
+    assertNull(replayed.get(0));
+    assertEquals("Value 99", replayed.get(1));
+    replayed.close();
+    deleteDirectory(directory);
+  }
+
+  @Test
+  @DisplayName("Test concurrent writers share fsyncs by group commit.")
+  public void testGroupCommit() throws IOException, InterruptedException {
+    Path directory = Files.createTempDirectory("wal");
+    MyHashMapWalWrapper<Integer, Integer> hashMap = MyHashMapFactory.newDurableMyHashMap(
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.Striped), directory,
+        Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Always);
+    int threadCount = 8;
+    int opCount = globalTestTime / 10;
+    List<Thread> threads = new ArrayList<>();
+
+    for (int t = 0; t < threadCount; t++) {
+      int offset = t * opCount;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < opCount; i++) {
+          hashMap.put(offset + i, i);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(threadCount * opCount, hashMap.size());
+    assertTrue(hashMap.getForceCount() < threadCount * opCount,
+        "Forces " + hashMap.getForceCount());
+    hashMap.close();
+
+    MyHashMapWalWrapper<Integer, Integer> replayed = MyHashMapFactory.newDurableMyHashMap(
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock), directory,
+        Serializer.INTEGER, Serializer.INTEGER, FsyncPolicy.Never);
+    assertEquals(threadCount * opCount, replayed.size());
+    replayed.close();
+    deleteDirectory(directory);
+  }
+
+  private static MyHashMapWalWrapper<Integer, String> newDurableMap(Path directory,
+                                                                  FsyncPolicy fsyncPolicy) {
+    return MyHashMapFactory.newDurableMyHashMap(
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock), directory,
+        Serializer.INTEGER, Serializer.STRING, fsyncPolicy);
+  }
+
+  /**
+   * Integer values, whose serializer throws on a null value or -1.
+   */
+  private static MyHashMapWalWrapper<Integer, Integer> newIntegerMap(Path directory) {
+    Serializer<Integer> failing = new Serializer<Integer>() {
+      @Override
+      public int serializedSize(Integer t) {
+        return Integer.BYTES;
+      }
+
+      @Override
+      public void write(Integer t, ByteBuffer buffer) {
+        if (t == -1) {
+          throw new NullPointerException();
+        }
+        buffer.putInt(t);
+      }
+
+      @Override
+      public Integer read(ByteBuffer buffer, int length) {
+        return buffer.getInt();
+      }
+    };
+    return MyHashMapFactory.newDurableMyHashMap(
+        MyHashMapFactory.newMyHashMapTesting(ThreadSafePolicy.ReadWriteLock), directory,
+        Serializer.INTEGER, failing, FsyncPolicy.Always);
+  }
+
+  private static long directorySize(Path directory) throws IOException {
+    long result = 0;
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        result += Files.size(file);
+      }
+    }
+    return result;
+  }
+
+  private static void deleteDirectory(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+}
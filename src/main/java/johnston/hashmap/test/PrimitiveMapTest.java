@@ -0,0 +1,147 @@
+package johnston.hashmap.test;
+
+import johnston.hashmap.IntIntMap;
+import johnston.hashmap.LongLongMap;
+import johnston.hashmap.LongObjectMap;
+import johnston.hashmap.MyHashMapFactory;
+import johnston.hashmap.ThreadSafePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Correctness and concurrency test for the primitive hash maps, against java.util.HashMap.
+ */
+public class PrimitiveMapTest {
+  private int globalTestTime = 10000;
+
+  @Test
+  @DisplayName("Test IntIntMap with random put() and remove() in all policies.")
+  public void testIntIntMap() {
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      IntIntMap map = MyHashMapFactory.newIntIntMap(policy, 4, 0.5f);
+      Map<Integer, Integer> expected = new HashMap<>();
+      Random random = new Random(policy.ordinal());
+
+      for (int i = 0; i < globalTestTime; i++) {
+        int key = random.nextInt(globalTestTime / 4) - globalTestTime / 8; // Includes 0
+        if (random.nextInt(3) == 0) {
+          assertEquals(expected.remove(key) != null, map.remove(key), policy.toString());
+        } else {
+          map.put(key, i);
+          expected.put(key, i);
+        }
+      }
+
+      assertEquals(expected.size(), map.size(), policy.toString());
+      for (int key = -globalTestTime / 8; key < globalTestTime / 8; key++) {
+        assertEquals(expected.containsKey(key), map.containsKey(key), policy.toString());
+        assertEquals(expected.getOrDefault(key, -1), map.getOrDefault(key, -1));
+      }
+
+      map.removeAll();
+      assertTrue(map.isEmpty());
+      assertTrue(!map.containsKey(0));
+    }
+  }
+
+  @Test
+  @DisplayName("Test LongLongMap and LongObjectMap with keys over the int range.")
+  public void testLongMaps() {
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      LongLongMap longMap = MyHashMapFactory.newLongLongMap(policy);
+      LongObjectMap<String> objectMap = MyHashMapFactory.newLongObjectMap(policy);
+
+      for (int i = 0; i < globalTestTime; i++) {
+        long key = (long) i << 32 | i; // Same low half for keys i << 32 and i
+        longMap.put(key, -key);
+        longMap.put(i, i);
+        objectMap.put(key, "Value " + i);
+      }
+      assertEquals(globalTestTime * 2 - 1, longMap.size(), policy.toString());
+      assertEquals(globalTestTime, objectMap.size(), policy.toString());
+
+      for (int i = 0; i < globalTestTime; i += 2) {
+        long key = (long) i << 32 | i;
+        assertTrue(longMap.remove(key));
+        assertTrue(objectMap.remove(key));
+      }
+      assertTrue(!objectMap.remove(0));
+
+      for (int i = 0; i < globalTestTime; i++) {
+        long key = (long) i << 32 | i;
+        assertEquals(i % 2 == 1 ? -key : Long.MIN_VALUE,
+            longMap.getOrDefault(key, Long.MIN_VALUE), policy.toString());
+        assertEquals(i % 2 == 1 ? "Value " + i : null, objectMap.get(key));
+        if (i > 0) {
+          assertEquals(i, longMap.getOrDefault(i, Long.MIN_VALUE));
+        }
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Test primitive map takes far less memory than boxed pairs.")
+  public void testFootprint() {
+    IntIntMap map = MyHashMapFactory.newIntIntMap(ThreadSafePolicy.NoSync);
+    LongObjectMap<Object> objectMap = MyHashMapFactory.newLongObjectMap(ThreadSafePolicy.NoSync);
+
+    for (int i = 1; i <= globalTestTime; i++) {
+      map.put(i, i);
+      objectMap.put(i, map);
+    }
+
+    // Two ints per slot, at least half of slots used after rehashing at load factor 0.5.
+    double bytesPerEntry = map.getMemoryFootprint() * 1.0 / map.size();
+    assertTrue(bytesPerEntry <= 32, "IntIntMap bytes per entry " + bytesPerEntry);
+    bytesPerEntry = objectMap.getMemoryFootprint() * 1.0 / objectMap.size();
+    assertTrue(bytesPerEntry <= 48, "LongObjectMap bytes per entry " + bytesPerEntry);
+  }
+
+  @Test
+  @DisplayName("Test write data racing in all thread-safe policies.")
+  public void testWriteDataRace() throws InterruptedException {
+    int threadCount = 8;
+
+    for (ThreadSafePolicy policy : ThreadSafePolicy.values()) {
+      if (policy == ThreadSafePolicy.NoSync) {
+        continue;
+      }
+      IntIntMap map = MyHashMapFactory.newIntIntMap(policy);
+      List<Thread> threads = new ArrayList<>();
+
+      for (int t = 0; t < threadCount; t++) {
+        int offset = t * globalTestTime;
+        threads.add(new Thread(() -> {
+          for (int i = 0; i < globalTestTime; i++) {
+            map.put(offset + i, i);
+            map.getOrDefault(offset + i / 2, -1);
+          }
+          for (int i = 0; i < globalTestTime; i += 2) {
+            map.remove(offset + i);
+          }
+        }));
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      assertEquals(threadCount * globalTestTime / 2, map.size(), policy.toString());
+      for (int key = 0; key < threadCount * globalTestTime; key++) {
+        assertEquals(key % 2 == 1 ? key % globalTestTime : -1, map.getOrDefault(key, -1),
+            policy.toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package johnston.linkedlist;
+
+/**
+ * Value which can be found in a linked list by its key. The hash map buckets hold MapPair,
+ * so get() and remove() can search a bucket by key without building a pair to compare with.
+ */
+public interface Keyed {
+  /**
+   * Return true if this value has the given hash and its key equals the given key.
+   */
+  boolean keyEquals(int hash, Object key);
+}
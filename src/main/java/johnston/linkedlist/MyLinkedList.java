@@ -21,4 +21,11 @@ public interface MyLinkedList<V> extends Iterable<V> {
 
   public boolean remove(V v);
   public MyLinkedList removeAll();
+
+  /**
+   * Key based search for values implementing Keyed. They walk the list once and allocate
+   * nothing.
+   */
+  public V getByKey(int hash, Object key);
+  public boolean removeByKey(int hash, Object key);
 }
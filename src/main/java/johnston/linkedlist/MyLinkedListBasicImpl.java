@@ -204,6 +204,39 @@ public class MyLinkedListBasicImpl<V> implements MyLinkedList<V>, MyLinkedListTe
     return true;
   }
 
+  /**
+   * Return the value with the given hash and key. Values must implement Keyed.
+   */
+  @Override
+  public V getByKey(int hash, Object key) {
+    ListNode curr = this.dummy.next;
+
+    while (curr != null && !((Keyed) curr.v).keyEquals(hash, key)) {
+      curr = curr.next;
+    }
+    return curr == null ? null : (V) curr.v;
+  }
+
+  /**
+   * Remove the value with the given hash and key. If no such value, return false.
+   */
+  @Override
+  public boolean removeByKey(int hash, Object key) {
+    ListNode curr = this.dummy;
+
+    while (curr.next != null && !((Keyed) curr.next.v).keyEquals(hash, key)) {
+      curr = curr.next;
+    }
+
+    if (curr.next == null) { // No such value
+      return false;
+    }
+
+    curr.next = curr.next.next;
+    this.size--;
+    return true;
+  }
+
   @Override
   public MyLinkedList removeAll() {
     this.dummy.next = null;
@@ -302,6 +302,57 @@ public class MyLinkedListReentrantLockImpl<V> implements MyLinkedList<V>,
     }
   }
 
+  /**
+   * Return the value with the given hash and key. Values must implement Keyed.
+   * <p>
+   * Read lock required.
+   */
+  @Override
+  public V getByKey(int hash, Object key) {
+    ListNode curr;
+    READ_LOCK.lock();
+
+    try {
+      curr = this.dummy.next;
+
+      while (curr != null && !((Keyed) curr.v).keyEquals(hash, key)) {
+        curr = curr.next;
+      }
+      return curr == null ? null : (V) curr.v;
+    } finally {
+      READ_LOCK.unlock();
+    }
+  }
+
+  /**
+   * Remove the value with the given hash and key. If no such value, return false.
+   * <p>
+   * Write lock required.
+   */
+  @Override
+  public boolean removeByKey(int hash, Object key) {
+    ListNode curr;
+    WRITE_LOCK.lock();
+
+    try {
+      curr = this.dummy;
+
+      while (curr.next != null && !((Keyed) curr.next.v).keyEquals(hash, key)) {
+        curr = curr.next;
+      }
+
+      if (curr.next == null) { // No such value
+        return false;
+      }
+
+      curr.next = curr.next.next;
+      this.size.decrementAndGet();
+      return true;
+    } finally {
+      WRITE_LOCK.unlock();
+    }
+  }
+
   /**
    * Empty the linked list.
    * <p>